@@ -0,0 +1,123 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tc.async.impl;
+
+import com.tc.async.api.AbstractEventHandler;
+import com.tc.async.api.MultiThreadedEventContext;
+import com.tc.logging.DefaultLoggerProvider;
+import com.tc.properties.TCPropertiesImpl;
+import com.tc.util.concurrent.QueueFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of {@link StageImpl} sink delivery with single and multiple producers.  The handler does no work so
+ * the numbers reflect the queueing, event wrapping and worker hand-off overhead of the stage itself.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StageBenchmark {
+
+  @Param({"1", "4"})
+  public int queueCount;
+
+  @Param({"1024"})
+  public int queueSize;
+
+  @Param({"false", "true"})
+  public boolean keyed;
+
+  @Param({"blocking", "mpsc"})
+  public String queue;
+
+  private final LongAdder handled = new LongAdder();
+  private StageImpl<Context> stage;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    TCPropertiesImpl.getProperties().setProperty("seda.benchmark_stage.queue", queue);
+    stage = new StageImpl<>(new DefaultLoggerProvider(), "benchmark_stage", Context.class, new AbstractEventHandler<Context>() {
+      @Override
+      public void handleEvent(Context context) {
+        handled.increment();
+      }
+    }, queueCount, null, new QueueFactory(), null, queueSize, false, false);
+    stage.start(new ConfigurationContextImpl("benchmark", null));
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() {
+    stage.destroy();
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void singleProducer(Producer producer) {
+    stage.getSink().addToSink(producer.next(keyed));
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void multiProducer(Producer producer) {
+    stage.getSink().addToSink(producer.next(keyed));
+  }
+
+  @State(Scope.Thread)
+  public static class Producer {
+    private int counter;
+
+    Context next(boolean keyed) {
+      return new Context(keyed ? Integer.valueOf(counter++ & 0xff) : null);
+    }
+  }
+
+  public static class Context implements MultiThreadedEventContext {
+    private final Object key;
+
+    Context(Object key) {
+      this.key = key;
+    }
+
+    @Override
+    public Object getSchedulingKey() {
+      return key;
+    }
+
+    @Override
+    public boolean flush() {
+      return false;
+    }
+  }
+}
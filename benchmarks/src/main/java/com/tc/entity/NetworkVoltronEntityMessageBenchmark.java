@@ -0,0 +1,167 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tc.entity;
+
+import com.tc.bytes.TCByteBufferFactory;
+import com.tc.bytes.TCReference;
+import com.tc.entity.VoltronEntityMessage.Acks;
+import com.tc.io.TCByteBufferInputStream;
+import com.tc.io.TCByteBufferOutputStream;
+import com.tc.net.ClientID;
+import com.tc.net.protocol.tcm.MessageMonitor;
+import com.tc.net.protocol.tcm.TCAction;
+import com.tc.net.protocol.tcm.TCActionNetworkMessage;
+import com.tc.net.protocol.tcm.TCMessageHeader;
+import com.tc.net.protocol.tcm.TCMessageType;
+import com.tc.net.protocol.tcm.UnknownNameException;
+import com.tc.object.ClientInstanceID;
+import com.tc.object.EntityDescriptor;
+import com.tc.object.EntityID;
+import com.tc.object.FetchID;
+import com.tc.object.session.SessionID;
+import com.tc.object.tx.TransactionID;
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.terracotta.entity.EntityMessage;
+import org.terracotta.entity.EntityResponse;
+import org.terracotta.entity.MessageCodec;
+
+/**
+ * Encode and decode cost of the invoke message sent from the client to the active.  Encoding includes packing the
+ * header and payload into the buffer array handed to the connection for writing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NetworkVoltronEntityMessageBenchmark {
+
+  @Param({"64", "4096", "65536"})
+  public int payloadSize;
+
+  private final MessageMonitor monitor = new NullMessageMonitor();
+  private final MessageCodecSupplier codecs = descriptor->new ByteArrayCodec();
+  private final ClientID clientID = new ClientID(1);
+  private final EntityDescriptor descriptor = EntityDescriptor.createDescriptorForInvoke(new FetchID(1), new ClientInstanceID(1));
+  private byte[] payload;
+  private TCMessageHeader encodedHeader;
+  private byte[] encodedPayload;
+  private long transaction;
+
+  @Setup
+  public void setup() throws IOException {
+    payload = new byte[payloadSize];
+    NetworkVoltronEntityMessageImpl message = createMessage();
+    TCActionNetworkMessage network = message.getNetworkMessage();
+    network.load();
+    encodedHeader = (TCMessageHeader) network.getHeader();
+    try (TCReference ref = network.getPayload()) {
+      TCByteBufferInputStream in = new TCByteBufferInputStream(ref);
+      encodedPayload = new byte[in.available()];
+      in.readFully(encodedPayload);
+    }
+  }
+
+  private NetworkVoltronEntityMessageImpl createMessage() {
+    TCByteBufferOutputStream out = new TCByteBufferOutputStream();
+    NetworkVoltronEntityMessageImpl message = new NetworkVoltronEntityMessageImpl(SessionID.NULL_ID, monitor, out, null, TCMessageType.VOLTRON_ENTITY_MESSAGE);
+    TransactionID tid = new TransactionID(++transaction);
+    message.setContents(clientID, tid, EntityID.NULL_ID, descriptor, VoltronEntityMessage.Type.INVOKE_ACTION,
+        true, TCByteBufferFactory.wrap(payload), tid, EnumSet.of(Acks.RECEIVED, Acks.RETIRED));
+    return message;
+  }
+
+  @Benchmark
+  public int encode() {
+    TCActionNetworkMessage network = createMessage().getNetworkMessage();
+    network.load();
+    int size;
+    try (TCReference wire = network.getEntireMessageData()) {
+      size = wire.toByteBufferArray().length;
+    }
+    network.complete();
+    return size;
+  }
+
+  @Benchmark
+  public void decode(Blackhole bh) throws IOException, UnknownNameException {
+    NetworkVoltronEntityMessageImpl decoded = new NetworkVoltronEntityMessageImpl(SessionID.NULL_ID, monitor, null,
+        encodedHeader, new TCByteBufferInputStream(TCByteBufferFactory.wrap(encodedPayload)));
+    decoded.setMessageCodecSupplier(codecs);
+    decoded.hydrate();
+    bh.consume(decoded.getEntityMessage());
+  }
+
+  private static class ByteArrayCodec implements MessageCodec<ByteArrayMessage, EntityResponse> {
+    @Override
+    public byte[] encodeMessage(ByteArrayMessage message) {
+      return message.data;
+    }
+
+    @Override
+    public ByteArrayMessage decodeMessage(byte[] payload) {
+      return new ByteArrayMessage(payload);
+    }
+
+    @Override
+    public byte[] encodeResponse(EntityResponse response) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public EntityResponse decodeResponse(byte[] payload) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  private static class ByteArrayMessage implements EntityMessage {
+    private final byte[] data;
+
+    ByteArrayMessage(byte[] data) {
+      this.data = data;
+    }
+  }
+
+  private static class NullMessageMonitor implements MessageMonitor {
+    @Override
+    public void newIncomingMessage(TCAction message) {
+    }
+
+    @Override
+    public void newOutgoingMessage(TCAction message) {
+    }
+
+    @Override
+    public void shutdown() {
+    }
+  }
+}
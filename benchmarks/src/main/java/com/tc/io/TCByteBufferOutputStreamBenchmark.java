@@ -0,0 +1,84 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tc.io;
+
+import com.tc.bytes.TCByteBufferFactory;
+import com.tc.bytes.TCReference;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Write paths of {@link TCByteBufferOutputStream} used when messages are dehydrated.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TCByteBufferOutputStreamBenchmark {
+
+  @Param({"64", "4096", "1048576"})
+  public int size;
+
+  private byte[] data;
+
+  @Setup
+  public void setup() {
+    data = new byte[size];
+  }
+
+  @Benchmark
+  public long writeBytes() {
+    TCByteBufferOutputStream out = new TCByteBufferOutputStream();
+    out.write(data);
+    return close(out);
+  }
+
+  @Benchmark
+  public long writeBuffer() {
+    TCByteBufferOutputStream out = new TCByteBufferOutputStream();
+    out.write(TCByteBufferFactory.wrap(data));
+    return close(out);
+  }
+
+  @Benchmark
+  public long writePrimitives() {
+    TCByteBufferOutputStream out = new TCByteBufferOutputStream();
+    for (int x = 0; x < size / Long.BYTES; x++) {
+      out.writeLong(x);
+    }
+    return close(out);
+  }
+
+  private static long close(TCByteBufferOutputStream out) {
+    out.close();
+    try (TCReference ref = out.accessBuffers()) {
+      return ref.available();
+    }
+  }
+}
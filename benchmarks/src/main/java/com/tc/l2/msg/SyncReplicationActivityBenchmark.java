@@ -0,0 +1,102 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tc.l2.msg;
+
+import com.tc.bytes.TCByteBufferFactory;
+import com.tc.bytes.TCReference;
+import com.tc.io.TCByteBufferInputStream;
+import com.tc.io.TCByteBufferOutputStream;
+import com.tc.l2.msg.SyncReplicationActivity.ActivityType;
+import com.tc.net.ClientID;
+import com.tc.object.ClientInstanceID;
+import com.tc.object.FetchID;
+import com.tc.object.tx.TransactionID;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Encode and decode cost of a batch of replicated invokes as it travels from the active to a passive.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SyncReplicationActivityBenchmark {
+
+  @Param({"1", "64", "1024"})
+  public int batchSize;
+
+  @Param({"64", "4096"})
+  public int payloadSize;
+
+  private final ClientID client = new ClientID(1);
+  private final ClientInstanceID instance = new ClientInstanceID(1);
+  private final FetchID fetch = new FetchID(1);
+  private byte[] payload;
+  private byte[] encoded;
+  private long transaction;
+
+  @Setup
+  public void setup() throws IOException {
+    payload = new byte[payloadSize];
+    encoded = encode();
+  }
+
+  private SyncReplicationActivity createActivity() {
+    TransactionID tid = new TransactionID(++transaction);
+    return SyncReplicationActivity.createInvokeMessage(fetch, client, instance, tid, tid, ActivityType.INVOKE_ACTION,
+        TCByteBufferFactory.wrap(payload), (int)(transaction & 0xf), null);
+  }
+
+  @Benchmark
+  public byte[] encode() throws IOException {
+    ReplicationMessage message = ReplicationMessage.createActivityContainer(createActivity());
+    for (int x = 1; x < batchSize; x++) {
+      message.addToBatch(createActivity());
+    }
+    message.setSequenceID(transaction);
+    TCByteBufferOutputStream out = new TCByteBufferOutputStream();
+    message.serializeTo(out);
+    out.close();
+    try (TCReference ref = out.accessBuffers()) {
+      TCByteBufferInputStream in = new TCByteBufferInputStream(ref);
+      byte[] data = new byte[in.available()];
+      in.readFully(data);
+      return data;
+    }
+  }
+
+  @Benchmark
+  public int decode() throws IOException {
+    ReplicationMessage message = new ReplicationMessage();
+    message.deserializeFrom(new TCByteBufferInputStream(TCByteBufferFactory.wrap(encoded)));
+    return message.getActivities().size();
+  }
+}
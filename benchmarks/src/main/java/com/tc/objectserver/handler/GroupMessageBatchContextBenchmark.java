@@ -0,0 +1,117 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tc.objectserver.handler;
+
+import com.tc.bytes.TCByteBufferFactory;
+import com.tc.io.TCByteBufferOutputStream;
+import com.tc.l2.msg.ReplicationMessage;
+import com.tc.l2.msg.SyncReplicationActivity;
+import com.tc.l2.msg.SyncReplicationActivity.ActivityType;
+import com.tc.net.ClientID;
+import com.tc.net.ServerID;
+import com.tc.net.groups.AbstractGroupMessage;
+import com.tc.net.groups.GroupException;
+import com.tc.net.groups.GroupManager;
+import com.tc.object.ClientInstanceID;
+import com.tc.object.FetchID;
+import com.tc.object.tx.TransactionID;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Batching and flushing of replicated activities through {@link GroupMessageBatchContext}.  The group manager is
+ * replaced by one which serializes each batch, as the network layer would, and acknowledges it immediately so the
+ * numbers isolate the batching and serialization overhead from the network.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GroupMessageBatchContextBenchmark {
+
+  @Param({"1024"})
+  public int maximumBatchSize;
+
+  @Param({"1", "4"})
+  public int messagesInFlight;
+
+  @Param({"64"})
+  public int payloadSize;
+
+  private GroupMessageBatchContext<ReplicationMessage, SyncReplicationActivity> batchContext;
+  private byte[] payload;
+
+  @Setup(Level.Trial)
+  @SuppressWarnings("unchecked")
+  public void setup() {
+    payload = new byte[payloadSize];
+    GroupManager<AbstractGroupMessage> groupManager = (GroupManager<AbstractGroupMessage>)Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {GroupManager.class}, (proxy, method, args)->{
+      if (method.getName().equals("sendToWithSentCallback")) {
+        TCByteBufferOutputStream out = new TCByteBufferOutputStream();
+        ((AbstractGroupMessage)args[1]).serializeTo(out);
+        out.close();
+        ((Runnable)args[2]).run();
+        return null;
+      }
+      throw new UnsupportedOperationException(method.getName());
+    });
+    batchContext = new GroupMessageBatchContext<>(ReplicationMessage::createActivityContainer, groupManager, ServerID.NULL_ID, maximumBatchSize, messagesInFlight, null);
+  }
+
+  @Benchmark
+  @Threads(1)
+  public boolean singleSender(Sender sender) throws GroupException {
+    return sender.send(batchContext, payload);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public boolean multiSender(Sender sender) throws GroupException {
+    return sender.send(batchContext, payload);
+  }
+
+  @State(Scope.Thread)
+  public static class Sender {
+    private final ClientID client = new ClientID(1);
+    private final ClientInstanceID instance = new ClientInstanceID(1);
+    private final FetchID fetch = new FetchID(1);
+    private long transaction;
+
+    boolean send(GroupMessageBatchContext<ReplicationMessage, SyncReplicationActivity> batchContext, byte[] payload) throws GroupException {
+      TransactionID tid = new TransactionID(++transaction);
+      boolean created = batchContext.batchMessage(SyncReplicationActivity.createInvokeMessage(fetch, client, instance,
+          tid, tid, ActivityType.INVOKE_ACTION, TCByteBufferFactory.wrap(payload), 0, null));
+      batchContext.flushBatch();
+      return created;
+    }
+  }
+}
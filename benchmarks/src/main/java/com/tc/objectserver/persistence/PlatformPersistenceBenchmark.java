@@ -0,0 +1,115 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tc.objectserver.persistence;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.terracotta.persistence.IPlatformPersistence;
+import org.terracotta.persistence.IPlatformPersistence.SequenceTuple;
+
+/**
+ * Durable transaction order writes as done by TransactionOrderPersistor, each writer waits for its write to be durable
+ * so concurrent writers show how well commits are grouped.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlatformPersistenceBenchmark {
+
+  @Param({"memory", "file"})
+  public String storage;
+
+  private Path directory;
+  private IPlatformPersistence persistence;
+  private final AtomicLong clients = new AtomicLong();
+
+  @State(Scope.Thread)
+  public static class Client {
+    long index;
+    long transaction;
+  }
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    if (storage.equals("file")) {
+      directory = Files.createTempDirectory("platform-persistence");
+      persistence = new FilePlatformPersistentStorage(directory, 8 * 1024 * 1024);
+    } else {
+      persistence = new NullPlatformPersistentStorage();
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws IOException {
+    if (persistence instanceof FilePlatformPersistentStorage) {
+      ((FilePlatformPersistentStorage)persistence).close();
+      delete(directory);
+    }
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void singleWriter(Client client) throws InterruptedException, ExecutionException {
+    store(client);
+  }
+
+  @Benchmark
+  @Threads(8)
+  public void concurrentWriters(Client client) throws InterruptedException, ExecutionException {
+    store(client);
+  }
+
+  private void store(Client client) throws InterruptedException, ExecutionException {
+    if (client.index == 0) {
+      client.index = clients.incrementAndGet();
+    }
+    SequenceTuple tuple = new SequenceTuple();
+    tuple.localSequenceID = ++client.transaction;
+    tuple.globalSequenceID = client.transaction;
+//  clients typically have a handful of transactions in flight
+    persistence.fastStoreSequence(client.index, tuple, client.transaction - 16).get();
+  }
+
+  static void delete(Path directory) throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+    }
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tc.objectserver.persistence;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.terracotta.persistence.IPlatformPersistence.SequenceTuple;
+
+/**
+ * Time for a restarting server to recover its platform state from a log which has not been compacted since it was
+ * written.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PlatformPersistenceRestartBenchmark {
+
+  @Param({"16", "256"})
+  public int clients;
+
+  @Param({"10000", "100000"})
+  public int transactions;
+
+  private Path directory;
+
+  @Setup(Level.Iteration)
+  public void write() throws IOException, InterruptedException, ExecutionException {
+    directory = Files.createTempDirectory("platform-restart");
+    try (FilePlatformPersistentStorage storage = new FilePlatformPersistentStorage(directory, 8 * 1024 * 1024)) {
+      HashMap<String, Long> counters = new HashMap<>();
+      counters.put("transactions", (long)transactions);
+      storage.storeDataElement("counters", counters);
+      Future<Void> last = null;
+      for (int x = 1; x <= transactions; x++) {
+        SequenceTuple tuple = new SequenceTuple();
+        tuple.localSequenceID = x;
+        tuple.globalSequenceID = x;
+        last = storage.fastStoreSequence(x % clients, tuple, x - clients * 16);
+      }
+      last.get();
+    }
+  }
+
+  @TearDown(Level.Iteration)
+  public void clean() throws IOException {
+    PlatformPersistenceBenchmark.delete(directory);
+  }
+
+  @Benchmark
+  public int restart() throws IOException {
+    try (FilePlatformPersistentStorage storage = new FilePlatformPersistentStorage(directory, 8 * 1024 * 1024)) {
+      int count = storage.loadDataElement("counters") != null ? 1 : 0;
+      for (int x = 0; x < clients; x++) {
+        count += storage.loadSequence(x).size();
+      }
+      return count;
+    }
+  }
+}
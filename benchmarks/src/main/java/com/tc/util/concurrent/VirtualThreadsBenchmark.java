@@ -0,0 +1,179 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tc.util.concurrent;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.runner.IterationType;
+
+/**
+ * Models the per connection reader loops of many mostly idle connections.  Each reader blocks on its own queue the way
+ * a connection reader blocks on its socket.  The benchmark wakes every reader once and waits for all of them to answer,
+ * so the score is dominated by the cost of switching to and from a blocked thread.  The {@link Footprint} counters 
+ * report the platform threads and heap the parked readers add and the context switches the process takes per reader 
+ * woken, read from /proc on Linux.  Run with -prof gc for allocation rates and with -XX:NativeMemoryTracking=summary 
+ * to see the thread stack reservations that platform readers add outside the heap.  On a runtime before Java 21 both 
+ * modes use platform threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VirtualThreadsBenchmark {
+
+  @Param({"false", "true"})
+  public boolean virtual;
+
+  @Param({"100", "2000"})
+  public int readers;
+
+  private final List<BlockingQueue<CountDownLatch>> inboxes = new ArrayList<>();
+  private final List<Thread> threads = new ArrayList<>();
+  private int platformThreadsAdded;
+  private long heapAddedKB;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    System.gc();
+    Runtime runtime = Runtime.getRuntime();
+    long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+    int platformBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+    for (int x = 0; x < readers; x++) {
+      BlockingQueue<CountDownLatch> inbox = new ArrayBlockingQueue<>(1);
+      Thread reader = VirtualThreads.newThread("reader-" + x, ()->{
+        try {
+          while (true) {
+            inbox.take().countDown();
+          }
+        } catch (InterruptedException ie) {
+          // done
+        }
+      }, virtual);
+      reader.start();
+      inboxes.add(inbox);
+      threads.add(reader);
+    }
+    System.gc();
+    long heapAfter = runtime.totalMemory() - runtime.freeMemory();
+    int platformAfter = ManagementFactory.getThreadMXBean().getThreadCount();
+    platformThreadsAdded = platformAfter - platformBefore;
+    heapAddedKB = (heapAfter - heapBefore) / 1024;
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws InterruptedException {
+    threads.forEach(Thread::interrupt);
+    for (Thread t : threads) {
+      t.join();
+    }
+  }
+
+  @Benchmark
+  public void wakeAllReaders(Footprint footprint) throws InterruptedException {
+    footprint.wakes += readers;
+    CountDownLatch answered = new CountDownLatch(readers);
+    for (BlockingQueue<CountDownLatch> inbox : inboxes) {
+      inbox.put(answered);
+    }
+    answered.await();
+  }
+
+  /**
+   * Reported alongside the score.  JMH sums event counters over the measurement iterations, so the footprint is only 
+   * reported by the first of them and each iteration contributes its share of the context switch average.  Context 
+   * switches are summed over all threads of the process, NaN where /proc is not available.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Footprint {
+    public long platformThreads;
+    public long heapKB;
+    public double contextSwitchesPerReaderWake;
+    private long wakes;
+    private long switchesBefore;
+    private boolean reported;
+
+    @Setup(Level.Iteration)
+    public void start() {
+      wakes = 0;
+      switchesBefore = contextSwitches();
+    }
+
+    // JMH clears the counters as the iteration starts, so they are filled in once it ends
+    @TearDown(Level.Iteration)
+    public void stop(VirtualThreadsBenchmark benchmark, IterationParams iteration) {
+      if (iteration.getType() != IterationType.MEASUREMENT) {
+        return;
+      }
+      if (!reported) {
+        platformThreads = benchmark.platformThreadsAdded;
+        heapKB = benchmark.heapAddedKB;
+        reported = true;
+      }
+      long switchesAfter = contextSwitches();
+      contextSwitchesPerReaderWake = (switchesBefore < 0 || switchesAfter < 0 || wakes == 0) ? Double.NaN 
+          : (double)(switchesAfter - switchesBefore) / wakes / iteration.getCount();
+    }
+
+    private static long contextSwitches() {
+      long total = 0;
+      try (DirectoryStream<Path> tasks = Files.newDirectoryStream(Paths.get("/proc/self/task"))) {
+        for (Path task : tasks) {
+          try {
+            for (String line : Files.readAllLines(task.resolve("status"))) {
+              if (line.startsWith("voluntary_ctxt_switches:") || line.startsWith("nonvoluntary_ctxt_switches:")) {
+                total += Long.parseLong(line.substring(line.indexOf(':') + 1).trim());
+              }
+            }
+          } catch (IOException exited) {
+            // the thread finished while the tasks were listed
+          }
+        }
+      } catch (IOException | UnsupportedOperationException notLinux) {
+        return -1;
+      }
+      return total;
+    }
+  }
+}
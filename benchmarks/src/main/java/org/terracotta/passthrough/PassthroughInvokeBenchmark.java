@@ -0,0 +1,103 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.passthrough;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.terracotta.connection.entity.EntityRef;
+import org.terracotta.entity.map.ConcurrentClusteredMap;
+import org.terracotta.entity.map.MapConfig;
+import org.terracotta.entity.map.TerracottaClusteredMapClientService;
+import org.terracotta.entity.map.server.TerracottaClusteredMapService;
+
+/**
+ * End-to-end invoke latency through an in-process {@link PassthroughServer} using the clustered map example entity.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PassthroughInvokeBenchmark {
+
+  private PassthroughClusterControl cluster;
+  private PassthroughConnection connection;
+  private ConcurrentClusteredMap<Long, Long> map;
+
+  @Setup(Level.Trial)
+  @SuppressWarnings("unchecked")
+  public void setup() throws Exception {
+    PassthroughServer server = new PassthroughServer();
+    server.setServerName("benchmark");
+    server.registerServerEntityService(new TerracottaClusteredMapService());
+    server.registerClientEntityService(new TerracottaClusteredMapClientService());
+    cluster = new PassthroughClusterControl("benchmark", server);
+    cluster.waitForActive();
+    connection = server.connectNewClient("benchmark");
+    EntityRef<ConcurrentClusteredMap, MapConfig, Object> ref = connection.getEntityRef(ConcurrentClusteredMap.class, ConcurrentClusteredMap.VERSION, "benchmark");
+    ref.create(new MapConfig(4, "benchmark"));
+    map = ref.fetchEntity(null);
+    map.setTypes(Long.class, Long.class);
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws Exception {
+    map.close();
+    connection.close();
+    cluster.tearDown();
+  }
+
+  @Benchmark
+  @Threads(1)
+  public Long put(Client client) {
+    return map.put(client.nextKey(), client.key);
+  }
+
+  @Benchmark
+  @Threads(1)
+  public Long get(Client client) {
+    return map.get(client.nextKey());
+  }
+
+  @Benchmark
+  @Threads(4)
+  public Long contendedPut(Client client) {
+    return map.put(client.nextKey(), client.key);
+  }
+
+  @State(Scope.Thread)
+  public static class Client {
+    private long key;
+
+    Long nextKey() {
+      return ++key & 0xffff;
+    }
+  }
+}
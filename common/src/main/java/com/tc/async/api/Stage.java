@@ -46,4 +46,8 @@ public interface Stage<EC> {
   public boolean isStarted();
   
   public Map<String, ?> getState();
+/**
+ * Queue wait and execution time percentiles of this stage since it was created, in nanoseconds.
+ */
+  public Map<String, ?> getLatency();
 }
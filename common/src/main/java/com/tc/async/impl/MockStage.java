@@ -94,6 +94,11 @@ public class MockStage implements Stage {
     return Collections.emptyMap();
   }
 
+  @Override
+  public Map getLatency() {
+    return Collections.emptyMap();
+  }
+
   @Override
   public void setSpinningCount(int spin) {
   }
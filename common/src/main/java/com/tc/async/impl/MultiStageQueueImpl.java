@@ -21,18 +21,32 @@ import com.tc.async.api.EventHandlerException;
 import com.tc.async.api.MultiThreadedEventContext;
 import com.tc.async.api.Source;
 import com.tc.logging.TCLoggerProvider;
+import com.tc.properties.TCPropertiesImpl;
 import com.tc.util.Assert;
 import com.tc.util.concurrent.QueueFactory;
 
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Consumer;
+import java.util.function.IntFunction;
 
 /**
  * This StageQueueImpl represents the sink and gives a handle to the source. We are internally just using a queue
  * since our queues are locally processed. This class can be replaced with a distributed queue to enable processing
  * across process boundaries.
+ * <p>
+ * With the tc-property {@code seda.<stage>.workstealing} set, contexts without a scheduling key are also published
+ * to a per queue deque and idle workers claim the oldest of them from their peers instead of waiting for the owning
+ * worker to get past a slow handler.  Keyed and flushing contexts always stay on the queue they were put on.
  */
 public class MultiStageQueueImpl<EC extends MultiThreadedEventContext> extends AbstractStageQueueImpl<EC> {
 
@@ -63,6 +77,16 @@ public class MultiStageQueueImpl<EC extends MultiThreadedEventContext> extends A
   private final MultiSourceQueueImpl[] sourceQueues;
   private volatile int fcheck = 0;  // used to start the shortest queue search
   AtomicInteger partitionHand =new AtomicInteger(0);
+  private final boolean workStealing;
+  private final LongAdder stolen = new LongAdder();
+  // flushes between enqueue and execution; no new steals are started while any are pending
+  private final AtomicInteger flushesInFlight = new AtomicInteger();
+  // stolen events claimed but not yet finished executing; a flush waits for these before it runs
+  private final AtomicInteger stealsInProgress = new AtomicInteger();
+  // idle workers wake up this often to look for work on the other queues
+  static final long STEAL_POLL_MILLIS = 5;
+  // a flush stops waiting for claimed steals after this long, a worker held on a debug pause can keep one indefinitely
+  static final long STEAL_WAIT_MILLIS = 1000;
 
   /**
    * The Constructor.
@@ -81,7 +105,21 @@ public class MultiStageQueueImpl<EC extends MultiThreadedEventContext> extends A
                       TCLoggerProvider loggerProvider,
                       String stageName,
                       int queueSize) {
+    this(queueCount, queueFactory, type, creator, loggerProvider, stageName, queueSize,
+        TCPropertiesImpl.getProperties().getBoolean("seda." + stageName + ".workstealing", false));
+  }
+
+  @SuppressWarnings("unchecked")
+  MultiStageQueueImpl(int queueCount,
+                      QueueFactory queueFactory,
+                      Class<EC> type,
+                      EventCreator<EC> creator,
+                      TCLoggerProvider loggerProvider,
+                      String stageName,
+                      int queueSize,
+                      boolean workStealing) {
     super(loggerProvider, stageName, creator, queueSize);
+    this.workStealing = workStealing && queueCount > 1;
     Assert.eval(queueCount > 0);
 
     if (queueCount >= 8) {
@@ -132,7 +170,7 @@ public class MultiStageQueueImpl<EC extends MultiThreadedEventContext> extends A
     }
 
     for (int i = 0; i < queueCount; i++) {
-      this.sourceQueues[i] = new MultiSourceQueueImpl(queueFactory.createInstance(type, queueSize), v->this.fcheck = v, i);
+      this.sourceQueues[i] = new MultiSourceQueueImpl(queueFactory.createInstance(type, queueSize), v->this.fcheck = v, i, workStealing ? this::steal : null);
     }
   }
 
@@ -155,11 +193,24 @@ public class MultiStageQueueImpl<EC extends MultiThreadedEventContext> extends A
       // NOTE:  We don't currently consult the predicate for multi-threaded events (the only implementation always returns true, in any case).
       boolean interrupted = Thread.interrupted();
       int index = getSourceQueueFor(context);
-      Event wrapper = (context.flush()) ? new FlushingHandledContext(event, index) : event;
+      Event wrapper;
+      if (context.flush()) {
+        if (workStealing) {
+          flushesInFlight.incrementAndGet();
+        }
+        wrapper = new FlushingHandledContext(event, index);
+      } else if (workStealing && context.getSchedulingKey() == null) {
+        wrapper = new StealableEvent(event);
+      } else {
+        wrapper = event;
+      }
       try {
         while (true) {
           try {
             updateDepth(this.sourceQueues[index].put(wrapper));
+            if (wrapper instanceof StealableEvent) {
+              this.sourceQueues[index].publish((StealableEvent)wrapper);
+            }
             break;
           } catch (InterruptedException e) {
             this.logger.debug("StageQueue Add: " + e);
@@ -238,6 +289,53 @@ public class MultiStageQueueImpl<EC extends MultiThreadedEventContext> extends A
   private int hashCodeToArrayIndex(int hashcode, int arrayLength) {
     return Math.abs(hashcode % arrayLength);
   }
+
+  /**
+   * Claim the oldest keyless event waiting on any queue other than the thief's own.
+   * Nothing is stolen while a flush is pending:  the flush barrier visits the queues one at a time so an event stolen
+   * from a queue it has not reached yet could otherwise still be running when the flush executes.
+   */
+  private Event steal(int thief) {
+    // announce the steal before checking for flushes so that a flush either stops it or waits for it
+    stealsInProgress.incrementAndGet();
+    if (flushesInFlight.get() == 0) {
+      for (int x = 1; x < this.sourceQueues.length; x++) {
+        MultiSourceQueueImpl victim = this.sourceQueues[moduloQueueCount(thief + x)];
+        StealableEvent candidate;
+        while ((candidate = victim.stealable.pollFirst()) != null) {
+          if (candidate.claim()) {
+            victim.stolenPending.incrementAndGet();
+            stolen.increment();
+            return new StolenEvent(candidate);
+          }
+        }
+      }
+    }
+    stealsInProgress.decrementAndGet();
+    return null;
+  }
+
+  private void awaitStealsInProgress() {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(STEAL_WAIT_MILLIS);
+    while (stealsInProgress.get() > 0 && !isClosed()) {
+      if (System.nanoTime() - deadline > 0) {
+        logger.warn("flush on {} proceeding with {} stolen events still unfinished", stageName, stealsInProgress.get());
+        return;
+      }
+      LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+    }
+  }
+
+  @Override
+  public Map<String, ?> getState() {
+    Map<String, ?> base = super.getState();
+    if (!workStealing) {
+      return base;
+    }
+    Map<String, Object> state = new LinkedHashMap<>(base);
+    state.put("stolen", stolen.sum());
+    return state;
+  }
   
   @Override
   public String toString() {
@@ -249,11 +347,21 @@ public class MultiStageQueueImpl<EC extends MultiThreadedEventContext> extends A
     private final Consumer<Integer> hint;
     private final BlockingQueue<Event> queue;
     private final int                      sourceIndex;
+    private final IntFunction<Event> thief;
+    // keyless events of this queue that other workers may claim, claimed entries are pruned lazily
+    private final Deque<StealableEvent> stealable = new ConcurrentLinkedDeque<>();
+    // events still in the queue that another worker already stole, excluded from size()
+    private final AtomicInteger stolenPending = new AtomicInteger();
 
-    public MultiSourceQueueImpl(BlockingQueue<Event> queue, Consumer<Integer> hint, int sourceIndex) {
+    public MultiSourceQueueImpl(BlockingQueue<Event> queue, Consumer<Integer> hint, int sourceIndex, IntFunction<Event> thief) {
       this.queue = queue;
       this.hint = hint;
       this.sourceIndex = sourceIndex;
+      this.thief = thief;
+    }
+
+    void publish(StealableEvent event) {
+      stealable.addLast(event);
     }
 
     @Override
@@ -263,12 +371,13 @@ public class MultiStageQueueImpl<EC extends MultiThreadedEventContext> extends A
 
     @Override
     public boolean isEmpty() {
-      return this.queue.isEmpty();
+      return size() <= 0;
     }
 
     @Override
     public Event poll(long timeout) throws InterruptedException {
-      Event rv = timeout == 0 ? this.queue.poll() : this.queue.poll(timeout, TimeUnit.MILLISECONDS);
+      Event rv = (thief == null) ?
+          (timeout == 0 ? this.queue.poll() : this.queue.poll(timeout, TimeUnit.MILLISECONDS)) : pollOrSteal(timeout);
       if (rv != null) {
         if (queue.isEmpty()) {
           // set the empty index for shortest queue in hopes of catching it on the first try
@@ -280,6 +389,45 @@ public class MultiStageQueueImpl<EC extends MultiThreadedEventContext> extends A
       return rv;
     }
 
+    private Event pollOrSteal(long timeout) throws InterruptedException {
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+      while (true) {
+        Event rv = claim(this.queue.poll());
+        if (rv == null) {
+          rv = thief.apply(this.sourceIndex);
+        }
+        if (rv != null) {
+          return rv;
+        }
+        long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (remaining <= 0) {
+          return null;
+        }
+        rv = claim(this.queue.poll(Math.min(remaining, STEAL_POLL_MILLIS), TimeUnit.MILLISECONDS));
+        if (rv != null) {
+          return rv;
+        }
+      }
+    }
+
+    /**
+     * Events taken off the owning queue that were already stolen are skipped.
+     */
+    private Event claim(Event event) {
+      if (event instanceof StealableEvent) {
+        StealableEvent head;
+        while ((head = stealable.peekFirst()) != null && head.isClaimed()) {
+          stealable.removeFirstOccurrence(head);
+        }
+        if (((StealableEvent)event).claim()) {
+          return event;
+        }
+        stolenPending.decrementAndGet();
+        return null;
+      }
+      return event;
+    }
+
     @Override
     public int put(Event context) throws InterruptedException {
       this.queue.put(context);
@@ -288,7 +436,7 @@ public class MultiStageQueueImpl<EC extends MultiThreadedEventContext> extends A
 
     @Override
     public int size() {
-      return this.queue.size();
+      return this.queue.size() - stolenPending.get();
     }
 
     @Override
@@ -298,6 +446,57 @@ public class MultiStageQueueImpl<EC extends MultiThreadedEventContext> extends A
 
   }
 
+  private static final class StealableEvent implements Event {
+    private static final AtomicIntegerFieldUpdater<StealableEvent> CLAIMED = AtomicIntegerFieldUpdater.newUpdater(StealableEvent.class, "claimed");
+    private final Event event;
+    private volatile int claimed = 0;
+
+    StealableEvent(Event event) {
+      this.event = event;
+    }
+
+    boolean claim() {
+      return claimed == 0 && CLAIMED.compareAndSet(this, 0, 1);
+    }
+
+    boolean isClaimed() {
+      return claimed != 0;
+    }
+
+    @Override
+    public void call() throws EventHandlerException {
+      event.call();
+    }
+  }
+
+  /**
+   * A claimed steal, counted in stealsInProgress until it finishes.  The claim is released exactly once however the 
+   *  event ends, including when the handler throws.
+   */
+  private final class StolenEvent implements Event {
+    private final StealableEvent claimed;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    private StolenEvent(StealableEvent claimed) {
+      this.claimed = claimed;
+    }
+
+    @Override
+    public void call() throws EventHandlerException {
+      try {
+        claimed.call();
+      } finally {
+        release();
+      }
+    }
+
+    private void release() {
+      if (released.compareAndSet(false, true)) {
+        stealsInProgress.decrementAndGet();
+      }
+    }
+  }
+
   private class FlushingHandledContext<T extends EC> extends HandledEvent<EC> {
     private final int offset;
     private int executionCount = 0;
@@ -310,7 +509,16 @@ public class MultiStageQueueImpl<EC extends MultiThreadedEventContext> extends A
     public void call() throws EventHandlerException {
       if (++executionCount == sourceQueues.length) {
 //  been through all the queues.  execute now.
-        super.call();
+        if (workStealing) {
+          try {
+            awaitStealsInProgress();
+            super.call();
+          } finally {
+            flushesInFlight.decrementAndGet();
+          }
+        } else {
+          super.call();
+        }
       } else {
 //  move to next queue
         boolean interrupted = false;
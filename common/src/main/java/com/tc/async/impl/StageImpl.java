@@ -34,7 +34,9 @@ import com.tc.exception.TCShutdownServerException;
 import com.tc.logging.TCLoggerProvider;
 import com.tc.properties.TCPropertiesConsts;
 import com.tc.properties.TCPropertiesImpl;
+import com.tc.stats.LatencyHistogram;
 import com.tc.util.concurrent.QueueFactory;
+import com.tc.util.concurrent.RingBufferQueueFactory;
 import com.tc.util.concurrent.ThreadUtil;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -44,6 +46,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.LongAdder;
+import org.terracotta.tripwire.StageLatency;
 import org.terracotta.tripwire.StageMonitor;
 import org.terracotta.tripwire.TripwireFactory;
 
@@ -69,6 +72,12 @@ public class StageImpl<EC> implements Stage<EC> {
                                                      .getLong(TCPropertiesConsts.L2_SEDA_STAGE_STALL_WARNING, 500);
   private volatile long lastWarnTime = 0;
   private int spinning = 0;
+  // time from enqueue to the start of execution and time spent in the handler, across all threads
+  private final LatencyHistogram queued = new LatencyHistogram();
+  private final LatencyHistogram executed = new LatencyHistogram();
+  // only touched by the flight recorder's periodic thread
+  private LatencyHistogram.Snapshot lastQueued = queued.snapshot();
+  private LatencyHistogram.Snapshot lastExecuted = executed.snapshot();
   
   private StageMonitor event;
   /**
@@ -95,7 +104,7 @@ public class StageImpl<EC> implements Stage<EC> {
     }
     this.threads = new WorkerThread[queueCount];
     this.handler = handler;
-    this.stageQueue = StageQueue.FACTORY.factory(queueCount, queueFactory, type, eventCreator(canBeDirect), loggerProvider, name, queueSize);
+    this.stageQueue = StageQueue.FACTORY.factory(queueCount, stageQueueFactory(queueFactory, queueCount, queueSize), type, eventCreator(canBeDirect), loggerProvider, name, queueSize);
     this.group = group;
     this.listener = listener;
     this.sleepMs = TCPropertiesImpl.getProperties().getInt("seda." + name + ".sleepMs", 0);
@@ -106,12 +115,50 @@ public class StageImpl<EC> implements Stage<EC> {
     if (this.pausable) {
       logger.warn("Stage pausing is enabled for stage " + name);
     }
-    this.event = TripwireFactory.createStageMonitor(name, queueCount);
+    this.event = TripwireFactory.createStageMonitor(name, queueCount, this::intervalLatency);
     if (!stallLogging) {
       lastWarnTime = Long.MAX_VALUE;
     }
   }
   
+  /**
+   * The queue implementation can be chosen per stage with the tc-property {@code seda.<stage>.queue}.  {@code mpsc} and
+   * {@code spsc} select the lock-free ring buffer for many or a single producer, anything else keeps the supplied factory.
+   * The ring buffer is bounded, so unbounded stages get {@code seda.<stage>.queue.capacity} slots.  A stage with more
+   * than one queue always has several producers per queue, its workers pass flushes from queue to queue, so
+   * {@code spsc} is downgraded to {@code mpsc} there.
+   */
+  QueueFactory stageQueueFactory(QueueFactory defaultFactory, int queueCount, int queueSize) {
+    String queueType = TCPropertiesImpl.getProperties().getProperty("seda." + name + ".queue", true);
+    if (queueType == null) {
+      return defaultFactory;
+    }
+    boolean singleProducer;
+    switch (queueType.trim().toLowerCase()) {
+      case "mpsc":
+        singleProducer = false;
+        break;
+      case "spsc":
+        if (queueCount > 1) {
+          logger.warn("Stage {} has {} queues fed by several threads, using an mpsc ring buffer instead of spsc", name, queueCount);
+          queueType = "mpsc";
+          singleProducer = false;
+        } else {
+          singleProducer = true;
+        }
+        break;
+      default:
+        return defaultFactory;
+    }
+    int capacity = TCPropertiesImpl.getProperties().getInt("seda." + name + ".queue.capacity", RingBufferQueueFactory.DEFAULT_UNBOUNDED_CAPACITY);
+    if (queueSize < 0 || queueSize == Integer.MAX_VALUE) {
+      logger.warn("Stage {} is unbounded but uses a {} ring buffer, queue is limited to {} entries", name, queueType, capacity);
+    } else {
+      logger.info("Stage {} uses a {} ring buffer", name, queueType);
+    }
+    return new RingBufferQueueFactory(singleProducer, capacity);
+  }
+
   private EventCreator<EC> eventCreator(boolean direct) {
     return (direct) ? new DirectEventCreator<>(baseCreator(), ()->isEmpty()) : baseCreator();
   }
@@ -122,6 +169,7 @@ public class StageImpl<EC> implements Stage<EC> {
       inflight.increment();
       return ()-> {
         long exec = System.nanoTime();
+        queued.record(exec - start);
         if (exec - start > TimeUnit.MILLISECONDS.toNanos(warnStallTime)) {
           warnIfWarranted("queue", event, TimeUnit.NANOSECONDS.toMillis(exec-start));
         }
@@ -132,12 +180,38 @@ public class StageImpl<EC> implements Stage<EC> {
             warnIfWarranted("executed", event, TimeUnit.NANOSECONDS.toMillis(end-exec));
           }
         } finally {
+          executed.record(System.nanoTime() - exec);
           inflight.decrement();
         }
       };
     };
   }
   
+  private StageLatency intervalLatency() {
+    LatencyHistogram.Snapshot q = queued.snapshot();
+    LatencyHistogram.Snapshot e = executed.snapshot();
+    LatencyHistogram.Snapshot qi = q.minus(lastQueued);
+    LatencyHistogram.Snapshot ei = e.minus(lastExecuted);
+    lastQueued = q;
+    lastExecuted = e;
+    return new StageLatency() {
+      @Override
+      public long getCount() {
+        return ei.getCount();
+      }
+
+      @Override
+      public long getQueued(double percentile) {
+        return qi.getValueAtPercentile(percentile);
+      }
+
+      @Override
+      public long getExecuted(double percentile) {
+        return ei.getValueAtPercentile(percentile);
+      }
+    };
+  }
+
   private void warnIfWarranted(String type, Object event, long time) {
     long now = System.currentTimeMillis();
     if (now - lastWarnTime > 1000) {
@@ -276,10 +350,19 @@ public class StageImpl<EC> implements Stage<EC> {
     data.put("threadCount", threads.length);
     data.put("backlog", inflight.sum());
     data.put("sink", this.stageQueue.getState());
+    data.put("latency", getLatency());
     data.put("threads", tl);
     return data;
   }
 
+  @Override
+  public Map<String, ?> getLatency() {
+    Map<String, Object> data = new LinkedHashMap<>();
+    data.put("queued", queued.snapshot().getSummary());
+    data.put("executed", executed.snapshot().getSummary());
+    return data;
+  }
+
   private class WorkerThread<EC> extends Thread {
     private final Source       source;
     private volatile boolean idle = false;
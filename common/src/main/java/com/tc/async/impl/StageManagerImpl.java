@@ -200,6 +200,18 @@ public class StageManagerImpl implements StageManager {
     return stats;
   }
 
+  @Override
+  public synchronized Map<String, ?> getLatencies() {
+    Map<String, Object> map = new LinkedHashMap<>();
+    for (String name : stageNames) {
+      Stage<?> stage = stages.get(name);
+      if (stage != null && stage.isStarted()) {
+        map.put(name, stage.getLatency());
+      }
+    }
+    return map;
+  }
+
   @Override
   public Map<String, ?> getStateMap() {
     Map<String,Object> map = new LinkedHashMap<>();
@@ -27,7 +27,10 @@ import com.tc.net.protocol.transport.WireProtocolHeader;
 import com.tc.net.protocol.transport.WireProtocolMessage;
 import com.tc.net.protocol.transport.WireProtocolMessageImpl;
 import com.tc.util.Assert;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
 import com.tc.util.TCTimeoutException;
+import com.tc.util.concurrent.VirtualThreads;
 import java.io.IOException;
 import java.net.Socket;
 import java.util.LinkedHashMap;
@@ -67,6 +70,8 @@ import java.util.Set;
  *
  */
 public class BasicConnection implements TCConnection {
+  // the reader spends its life blocked on the socket so it can run on a virtual thread where available
+  private static final boolean VIRTUAL_READERS = TCPropertiesImpl.getProperties().getBoolean(TCPropertiesConsts.L1_CONNECTION_VIRTUAL_THREADS, false);
   private static final Logger LOGGER = LoggerFactory.getLogger(BasicConnection.class);
 
   private long connect = 0;
@@ -364,8 +369,7 @@ public class BasicConnection implements TCConnection {
   private void readMessages() {
     Assert.assertNull(readerExec);
     readerExec = Executors.newFixedThreadPool(1, (r) -> {
-      serviceThread = new Thread(r, id + " - BasicConnectionReader-" + this.src.getLocalSocketAddress() + "<-" + this.src.getRemoteSocketAddress() + " for (" + System.identityHashCode(this) + ")");
-      serviceThread.setDaemon(true);
+      serviceThread = VirtualThreads.newThread(id + " - BasicConnectionReader-" + this.src.getLocalSocketAddress() + "<-" + this.src.getRemoteSocketAddress() + " for (" + System.identityHashCode(this) + ")", r, VIRTUAL_READERS);
       return serviceThread;
     });
     LOGGER.debug("CREATED {} reader connected:{} established:{} reader:{}", System.identityHashCode(this), connected, established, readerExec);
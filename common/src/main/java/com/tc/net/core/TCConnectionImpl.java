@@ -52,8 +52,10 @@ import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
@@ -84,6 +86,7 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
   private static final long NO_CONNECT_TIME = -1L;
   private static final Logger logger = LoggerFactory.getLogger(TCConnection.class);
   private static final long WARN_THRESHOLD = 0x800000L;                                                    // 4MB
+  private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0).asReadOnlyBuffer();
 
   private volatile CoreNIOServices commWorker;
   private volatile SocketChannel channel;
@@ -100,6 +103,7 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
   private final AtomicLong lastDataWriteTime = new AtomicLong(System.currentTimeMillis());
   private final LongAdder messagesWritten = new LongAdder();
   private final LongAdder messageBatch = new LongAdder();
+  private final LongAdder gatheredWrites = new LongAdder();
   private final AtomicLong lastDataReceiveTime = new AtomicLong(System.currentTimeMillis());
   private final LongAdder messagesRead = new LongAdder();
   private final AtomicLong connectTime = new AtomicLong(NO_CONNECT_TIME);
@@ -115,6 +119,9 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
   private final LongAdder totalWrite = new LongAdder();
   private final Queue<WriteContext>  writeContexts = new ConcurrentLinkedQueue<>();
   private final ReentrantLock writeContextControl = new ReentrantLock();
+  // reused by every gathering write, only touched under the writerLock
+  private final List<WriteContext> gathered = new ArrayList<>();
+  private ByteBuffer[] gatherBuffers = new ByteBuffer[16];
 
   private static final boolean MSG_GROUPING_ENABLED = TCPropertiesImpl
                           .getProperties()
@@ -127,10 +134,23 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
                           .getProperties()
                           .getInt(TCPropertiesConsts.TC_MESSAGE_GROUPING_MAX_COUNT,
                                   1024);
+  // limits of a single gathering write across queued write contexts, the buffer limit matches the usual IOV_MAX
+  private static final int GATHER_MAX_BUFFERS = TCPropertiesImpl
+                          .getProperties()
+                          .getInt(TCPropertiesConsts.TC_MESSAGE_GATHER_MAX_BUFFERS,
+                                  1024);
+  private static final long GATHER_MAX_BYTES = TCPropertiesImpl
+                          .getProperties()
+                          .getInt(TCPropertiesConsts.TC_MESSAGE_GATHER_MAXSIZE_KB,
+                                  4096) * 1024L;
   private static final boolean MESSAGE_PACKUP = TCPropertiesImpl
                           .getProperties()
                           .getBoolean(TCPropertiesConsts.TC_MESSAGE_PACKUP_ENABLED,
                                       false);
+  private static final boolean READ_BUFFER_POOL = TCPropertiesImpl
+                          .getProperties()
+                          .getBoolean(TCPropertiesConsts.TC_MESSAGE_PACKUP_POOL_ENABLED,
+                                      false);
   private final Object readerLock = new Object();
   private final Object writerLock = new Object();
 
@@ -172,7 +192,11 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
     this.commWorker = nioServiceThread;
 
     this.buffers = MESSAGE_PACKUP ? new TCDirectByteBufferCache(parent.getBufferCache()) : null;
-    this.readAllocator = MESSAGE_PACKUP ? new TCSocketEndpointReader(buffers) : new TCSocketEndpointReader();
+    if (MESSAGE_PACKUP) {
+      this.readAllocator = READ_BUFFER_POOL ? new TCSocketEndpointReader(parent.getBufferPool()) : new TCSocketEndpointReader(buffers);
+    } else {
+      this.readAllocator = new TCSocketEndpointReader();
+    }
   }
 
   @Override
@@ -187,6 +211,7 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
     state.put("idleTime", this.getIdleTime());
     state.put("messageWritten", this.messagesWritten.longValue());
     state.put("messageBatch", this.messageBatch.longValue());
+    state.put("gatheredWrites", this.gatheredWrites.longValue());
     state.put("messageRead", this.messagesRead.longValue());
     state.put("worker", commWorker.getName());
     state.put("closed", isClosed());
@@ -461,18 +486,22 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
     }
 
     while (context != null) {
-      long bytesWritten = context.write();
-      messageBatch.increment();
+      long bytesWritten = writeGathered(context);
+      gatheredWrites.increment();
       if (debug) {
-        logger.debug("Wrote " + bytesWritten + " bytes on connection " + this.channel + " with batch size " + context.getBatchSize());
+        logger.debug("Wrote " + bytesWritten + " bytes on connection " + this.channel + " from " + gathered.size() + " write contexts");
       }
       totalBytesWritten += bytesWritten;
 
-      Assert.assertTrue(context.done());
+      for (WriteContext sent : gathered) {
+        Assert.assertTrue(sent.done());
+        messageBatch.increment();
+        sent.writeComplete();
+      }
+      gathered.clear();
       if (debug) {
-        logger.debug("Complete message sent on connection " + this.channel);
+        logger.debug("Complete messages sent on connection " + this.channel);
       }
-      context.writeComplete();
       context = writeContexts.poll();
     }
 
@@ -483,6 +512,100 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
     return totalBytesWritten;
   }
 
+  /**
+   * Collect write contexts for one gathering write.  The write stays corked while the queue keeps
+   * producing messages and is flushed as soon as the queue drains or the buffer or byte limit is
+   * reached, so a lone message is never held back and a busy connection pays one syscall per batch.
+   */
+  private long gatherWriteContexts(WriteContext first) {
+    WriteContext next = first;
+    int buffers = 0;
+    long bytes = 0;
+    while (next != null) {
+      next.open();
+      gathered.add(next);
+      buffers += next.getBufferCount();
+      bytes += next.getSize();
+      if (buffers >= GATHER_MAX_BUFFERS || bytes >= GATHER_MAX_BYTES) {
+        break;
+      }
+      next = this.writeContexts.poll();
+      if (next == null && !this.writeMessages.isEmpty() && buildWriteContextsFromMessages(true)) {
+        next = this.writeContexts.poll();
+      }
+    }
+    return bytes;
+  }
+
+  /**
+   * Lay the buffers of all gathered contexts into the reused array, which only grows.  Slots past the gathered 
+   * buffers hold an empty buffer so the whole array can be handed to the socket.
+   */
+  private ByteBuffer[] gatherBuffers() {
+    int count = 0;
+    for (WriteContext context : gathered) {
+      count += context.getBufferCount();
+    }
+    if (count > gatherBuffers.length) {
+      gatherBuffers = new ByteBuffer[Math.max(count, gatherBuffers.length << 1)];
+    }
+    int index = 0;
+    for (WriteContext context : gathered) {
+      ByteBuffer[] buffers = context.getNioBuffers();
+      System.arraycopy(buffers, 0, gatherBuffers, index, buffers.length);
+      index += buffers.length;
+    }
+    Arrays.fill(gatherBuffers, index, gatherBuffers.length, EMPTY_BUFFER);
+    return gatherBuffers;
+  }
+
+  private long writeGathered(WriteContext first) throws IOException {
+    boolean written = false;
+    try {
+      long size = gatherWriteContexts(first);
+      ByteBuffer[] compat = (gathered.size() == 1) ? gathered.get(0).getNioBuffers() : gatherBuffers();
+      int index = 0;
+      while ((index = firstRemaining(compat, index)) < compat.length) {
+        switch (socket.writeFrom(compat)) {
+          case SUCCESS:
+          case ZERO:
+            break;
+          case EOF:
+            throw new EOFException();
+          case OVERFLOW:
+            // unexpected
+            throw new IOException();
+          case UNDERFLOW:
+            if (size > 0) {
+              throw new IOException("underflow");
+            }
+            break;
+            // not sure what to do here.  need to figure out if there is some way to
+            // send dummy bytes
+        }
+      }
+      gathered.forEach(WriteContext::setSent);
+      written = true;
+      return size;
+    } finally {
+      // do not hold on to the buffers of released contexts
+      Arrays.fill(gatherBuffers, null);
+      gathered.forEach(WriteContext::release);
+      if (!written) {
+        // these are off the queue so close cleanup will not see them
+        gathered.forEach(WriteContext::writeComplete);
+        gathered.clear();
+      }
+    }
+  }
+
+  private static int firstRemaining(ByteBuffer[] buffers, int from) {
+    while (from < buffers.length && !buffers[from].hasRemaining()) {
+      from++;
+    }
+    return from;
+  }
+
   private void putMessageImpl(TCNetworkMessage message) {
     // ??? Does the message queue and the WriteContext belong in the base connection class?
     final boolean debug = logger.isDebugEnabled();
@@ -831,6 +954,9 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
     private final WireProtocolMessage message;
     private final int batchSize;
     private boolean sent = false;
+    private TCReference data;
+    private ByteBuffer[] nio;
+    private long size;
 
     WriteContext(WireProtocolMessage message, int batchSize) {
       this.message = message;
@@ -845,6 +971,40 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
       }
     }
 
+    void open() {
+      this.data = prep();
+      this.size = data.available();
+      this.nio = data.toByteBufferArray();
+    }
+
+    void release() {
+      if (data != null) {
+        try {
+          data.returnByteBufferArray(nio);
+        } finally {
+          data.close();
+          data = null;
+          nio = null;
+        }
+      }
+    }
+
+    ByteBuffer[] getNioBuffers() {
+      return nio;
+    }
+
+    int getBufferCount() {
+      return nio.length;
+    }
+
+    long getSize() {
+      return size;
+    }
+
+    void setSent() {
+      this.sent = true;
+    }
+
     boolean done() {
       return sent;
     }
@@ -860,40 +1020,6 @@ final class TCConnectionImpl implements TCConnection, TCChannelReader, TCChannel
     int getBatchSize() {
       return batchSize;
     }
-
-    long write() throws IOException {
-      long written = 0;
-      try (TCReference msgRef = prep()) {
-        long msgSize = msgRef.available();
-        ByteBuffer[] compat = msgRef.toByteBufferArray();
-        try {
-          while (msgRef.hasRemaining()) {
-            switch (socket.writeFrom(compat)) {
-              case SUCCESS:
-              case ZERO:
-                break;
-              case EOF:
-                throw new EOFException();
-              case OVERFLOW:
-                // unexpected
-                throw new IOException();
-              case UNDERFLOW:
-                if (msgSize > 0) {
-                  throw new IOException("underflow");
-                }
-                break;
-                // not sure what to do here.  need to figure out if there is some way to
-                // send dummy bytes
-            }
-          }
-          sent = true;
-          written = msgSize - msgRef.available();
-        } finally {
-          msgRef.returnByteBufferArray(compat);
-        }
-      }
-      return written;
-    }
   }
 
   @Override
@@ -19,6 +19,7 @@ package com.tc.net.core;
 
 import com.tc.bytes.TCByteBufferFactory;
 import com.tc.bytes.TCDirectByteBufferCache;
+import com.tc.bytes.TCDirectByteBufferPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -70,6 +71,11 @@ public class TCConnectionManagerImpl implements TCConnectionManager {
   private final SocketEndpointFactory    socketEndpointFactory;
 
   private final TCDirectByteBufferCache buffers = new TCDirectByteBufferCache(TCByteBufferFactory.getFixedBufferSize(), 16 * 1024);
+  // size classed buffers for reads, whole messages land in one buffer instead of a chain of fixed ones
+  private final TCDirectByteBufferPool  readBuffers = new TCDirectByteBufferPool(TCByteBufferFactory.getFixedBufferSize(),
+      TCPropertiesImpl.getProperties().getInt(TCPropertiesConsts.TC_MESSAGE_PACKUP_POOL_MAX_BUFFER, 1024 * 1024),
+      TCPropertiesImpl.getProperties().getLong(TCPropertiesConsts.TC_MESSAGE_PACKUP_POOL_BUDGET, 64L * 1024 * 1024),
+      TCPropertiesImpl.getProperties().getLong(TCPropertiesConsts.TC_MESSAGE_PACKUP_POOL_RETAIN, 4L * 1024 * 1024));
 
   public TCConnectionManagerImpl() {
     this("ConnectionMgr", null, 0, new ClearTextSocketEndpointFactory());
@@ -93,6 +99,7 @@ public class TCConnectionManagerImpl implements TCConnectionManager {
     state.put("processors", comm.getState());
     state.put("buffers.cached", buffers.size());
     state.put("buffers.referenced", buffers.referenced());
+    state.put("readBuffers", readBuffers.getState());
     if (socketEndpointFactory instanceof PrettyPrintable) {
       state.put("bufferManager", ((PrettyPrintable)socketEndpointFactory).getStateMap());
     } else {
@@ -238,6 +245,7 @@ public class TCConnectionManagerImpl implements TCConnectionManager {
       closeAllListeners();
       asynchCloseAllConnections();
       this.buffers.close();
+      this.readBuffers.clear();
       comm.stop();
     }
   }
@@ -340,6 +348,10 @@ public class TCConnectionManagerImpl implements TCConnectionManager {
   TCDirectByteBufferCache getBufferCache() {
     return buffers;
   }
+
+  TCDirectByteBufferPool getBufferPool() {
+    return readBuffers;
+  }
   
   @Override
   public int getBufferCount() {
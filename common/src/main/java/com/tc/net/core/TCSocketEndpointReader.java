@@ -20,6 +20,7 @@ package com.tc.net.core;
 import com.tc.bytes.TCByteBuffer;
 import com.tc.bytes.TCByteBufferFactory;
 import com.tc.bytes.TCDirectByteBufferCache;
+import com.tc.bytes.TCDirectByteBufferPool;
 import com.tc.bytes.TCReference;
 import com.tc.bytes.TCReferenceSupport;
 import static com.tc.net.core.SocketEndpoint.ResultType.EOF;
@@ -63,6 +64,11 @@ public class TCSocketEndpointReader implements AutoCloseable {
     this.returns = cache::offer;
   }
 
+  public TCSocketEndpointReader(TCDirectByteBufferPool pool) {
+    this.allocator = pool::poll;
+    this.returns = pool::offer;
+  }
+
   // for testing
   TCSocketEndpointReader(Function<Integer, TCByteBuffer> allocator, Consumer<TCByteBuffer> returns) {
     this.allocator = allocator;
@@ -31,6 +31,7 @@ import com.tc.properties.TCPropertiesImpl;
 import com.tc.util.Assert;
 import com.tc.util.CompositeIterator;
 import com.tc.util.TCTimeoutException;
+import com.tc.util.concurrent.VirtualThreads;
 
 import java.io.IOException;
 import java.net.InetAddress;
@@ -49,6 +50,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
@@ -60,8 +62,11 @@ public class ClientConnectionEstablisher {
   private static final Logger LOGGER = LoggerFactory.getLogger(ClientConnectionEstablisher.class);
 
   private static final long                 CONNECT_RETRY_INTERVAL;
+  private static final long                 MAX_RETRY_INTERVAL;
   private static final long                 MIN_RETRY_INTERVAL    = 1000;
   public static final String                RECONNECT_THREAD_NAME = "ConnectionEstablisher";
+  // reconnect loops mostly sleep between attempts, virtual threads keep idle transports cheap
+  private static final boolean              VIRTUAL_RECONNECT     = TCPropertiesImpl.getProperties().getBoolean(TCPropertiesConsts.L1_CONNECTION_VIRTUAL_THREADS, false);
 
   private volatile Iterable<InetSocketAddress>       serverAddresses;
   private final Set<InetSocketAddress>      redirects = new LinkedHashSet<>();
@@ -69,6 +74,8 @@ public class ClientConnectionEstablisher {
   //  tie these two variables in synchronized blocks
   private boolean               allowReconnects       = false;
   private AsyncReconnect        asyncReconnect;
+  //  consecutive failed attempts of the current reconnect, only touched by the reconnect thread
+  private int                   retries;
     
   static {
     Logger logger = LoggerFactory.getLogger(ClientConnectionEstablisher.class);
@@ -79,6 +86,7 @@ public class ClientConnectionEstablisher {
     }
 
     CONNECT_RETRY_INTERVAL = value;
+    MAX_RETRY_INTERVAL = Math.max(value, TCPropertiesImpl.getProperties().getLong(TCPropertiesConsts.L1_SOCKET_RECONNECT_MAX_WAIT_INTERVAL, value * 10));
   }
 
   public ClientConnectionEstablisher(ClientMessageTransport cmt) {
@@ -182,9 +190,12 @@ public class ClientConnectionEstablisher {
 
       boolean connected = transport.isConnected();
       boolean reconnectionRejected = false;
+      retries = 0;
       InetSocketAddress target = null;
 
       for (int i = 0; tryToConnect(connected, stopCheck); i++) {
+        // back off once per pass over the servers, not for every server that fails in a pass
+        retries = i;
         Iterator<InetSocketAddress> serverAddressIterator = getServerAddressIterator();
         while ((target != null || serverAddressIterator.hasNext()) && tryToConnect(connected, stopCheck)) {
 
@@ -238,6 +249,11 @@ public class ClientConnectionEstablisher {
             }
           } catch (TransportRedirect redirect) {
             target = InetSocketAddress.createUnresolved(redirect.getHostname(), redirect.getPort());
+          } catch (TransportRetryAfter retry) {
+            target = null;
+            // the server is admitting other clients, wait as long as it asked instead of backing off
+            connectionErrorLossyLogger.info("Connection refused, retrying after " + retry.getRetryAfter() + "ms");
+            Thread.sleep(retryAfterDelay(retry.getRetryAfter()));
           } catch (NoActiveException noactive) {
             target = null;
             handleConnectException(new IOException(noactive), false, connectionErrorLossyLogger);
@@ -302,7 +318,26 @@ public class ClientConnectionEstablisher {
       logger.error("Connect Exception", e);
     }
 
-    Thread.sleep(CONNECT_RETRY_INTERVAL);
+    Thread.sleep(retryDelay(retries, CONNECT_RETRY_INTERVAL, MAX_RETRY_INTERVAL));
+  }
+
+  /**
+   * Exponential backoff with equal jitter.  The ceiling doubles with every consecutive failure up to
+   * {@code max} and the actual sleep is picked uniformly from the upper half of it so clients that lost
+   * the same server at the same time do not come back in lockstep.  If {@code max} is not above
+   * {@code base} the ceiling stays at {@code base} and only the jitter remains.
+   */
+  static long retryDelay(int attempt, long base, long max) {
+    long ceiling = Math.max(base, Math.min(max, base << Math.min(attempt, 20)));
+    long half = ceiling / 2;
+    return half + ThreadLocalRandom.current().nextLong(ceiling - half + 1);
+  }
+
+  /**
+   * The wait a server asked for, stretched by up to as much again so the clients it refused together spread out.
+   */
+  static long retryAfterDelay(long retryAfter) {
+    return retryAfter + ThreadLocalRandom.current().nextLong(retryAfter + 1);
   }
 
   public boolean asyncReconnect(Supplier<Boolean> stopCheck) {
@@ -406,11 +441,9 @@ public class ClientConnectionEstablisher {
   }
   
   private class AsyncReconnect {
-    private final ExecutorService connectionEstablisher = new ThreadPoolExecutor(0, 1, 5, TimeUnit.SECONDS, new SynchronousQueue<>(), (Runnable r) -> {
-      Thread t = new Thread(r, RECONNECT_THREAD_NAME + "-" + serverAddresses.toString() + "-" + transport.getConnectionID());
-      t.setDaemon(true);
-      return t;
-    });
+    private final ExecutorService connectionEstablisher = new ThreadPoolExecutor(0, 1, 5, TimeUnit.SECONDS, new SynchronousQueue<>(), (Runnable r) -> 
+      VirtualThreads.newThread(RECONNECT_THREAD_NAME + "-" + serverAddresses.toString() + "-" + transport.getConnectionID(), r, VIRTUAL_RECONNECT)
+    );
     private volatile Future<?> currentTask = CompletableFuture.completedFuture(null);
 
     public boolean isStopped() {
@@ -182,7 +182,8 @@ public class ClientMessageTransport extends MessageTransportBase {
       switch (result.getError()) {
         case ERROR_NO_ACTIVE:
           if (this.getProductID().isRedirectEnabled()) {
-            throw new NoActiveException();
+            long retryAfter = TransportRetryAfter.parse(result.synAck.getErrorContext());
+            throw retryAfter > 0 ? new TransportRetryAfter(retryAfter) : new NoActiveException();
           } else {
             Assert.assertTrue(getProductID().isInternal());
           }
@@ -22,4 +22,8 @@ public class NoActiveException extends TransportHandshakeException {
   public NoActiveException() {
     super("no active");
   }
+
+  NoActiveException(String message) {
+    super(message);
+  }
 }
@@ -0,0 +1,31 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tc.net.protocol.transport;
+
+import java.util.function.Predicate;
+
+/**
+ * Validates new transports on a listener and tells the ones it refuses when to come back.
+ */
+public interface RetryAfterValidator extends Predicate<MessageTransport> {
+
+  /**
+   * @return milliseconds a transport refused by {@link #test(Object)} should wait before retrying, 0 leaves the wait
+   *         to the client's own backoff
+   */
+  long retryAfter(MessageTransport refused);
+}
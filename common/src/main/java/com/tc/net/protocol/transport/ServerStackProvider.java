@@ -372,7 +372,9 @@ public class ServerStackProvider implements NetworkStackProvider, MessageTranspo
       }
       
       if (!validateTransport.test(this.transport)) {
-        sendSynAck(connectionId, new TransportHandshakeErrorContext("connection not allowed", TransportHandshakeError.ERROR_NO_ACTIVE), 
+        long retryAfter = validateTransport instanceof RetryAfterValidator ? ((RetryAfterValidator)validateTransport).retryAfter(this.transport) : 0;
+        String reason = retryAfter > 0 ? TransportRetryAfter.describe(retryAfter) : "connection not allowed";
+        sendSynAck(connectionId, new TransportHandshakeErrorContext(reason, TransportHandshakeError.ERROR_NO_ACTIVE), 
             syn.getSource(), isMaxConnectionReached);
         return;
       }
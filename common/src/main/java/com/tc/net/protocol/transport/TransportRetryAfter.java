@@ -0,0 +1,58 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tc.net.protocol.transport;
+
+/**
+ * A server which can't take a client yet answers the handshake with no active and how long the client should wait
+ * before it tries again.  The wait travels in the error context, clients which don't know about it just see no active
+ * and fall back on their own backoff.
+ */
+public class TransportRetryAfter extends NoActiveException {
+  private static final String PREFIX = "retry after ";
+
+  private final long retryAfter;
+
+  public TransportRetryAfter(long retryAfter) {
+    super(describe(retryAfter));
+    this.retryAfter = retryAfter;
+  }
+
+  /**
+   * @return milliseconds the server asked the client to wait
+   */
+  public long getRetryAfter() {
+    return retryAfter;
+  }
+
+  static String describe(long retryAfter) {
+    return PREFIX + retryAfter;
+  }
+
+  /**
+   * @return the wait carried by a no active error context or 0 if it has none
+   */
+  static long parse(String errorContext) {
+    if (errorContext == null || !errorContext.startsWith(PREFIX)) {
+      return 0;
+    }
+    try {
+      return Math.max(0, Long.parseLong(errorContext.substring(PREFIX.length()).trim()));
+    } catch (NumberFormatException format) {
+      return 0;
+    }
+  }
+}
@@ -43,10 +43,43 @@ public interface TCPropertiesConsts {
    *                                      seda stage
    * stage.sink.capacity                : Capacity of seda stage queue, Integer.MAX_VALUE if not set
    *                                      (experimental, do not change)
+   * entity.processor.lanes             : Number of ordering lanes used to schedule entity requests, 1 serializes
+   *                                      all scheduling and is the default for a single threaded server
+   * entity.processor.credit            : Maximum number of in-flight invokes advertised to each client, 0 disables
+   *                                      credit based flow control
+   * entity.response.coalesce.bytes     : Encoded size at which a response to a client stops coalescing further ops
+   * entity.response.coalesce.micros    : Time after the first op at which a response stops coalescing, 0 disables
+   * passive.sync.snapshot.chunkSize    : Size in bytes of the chunks an entity snapshot is cut into for passive sync
+   * passive.sync.snapshot.window       : Number of snapshot chunks sent ahead of the passive acknowledging receipt
+   * passive.sync.window                : Number of entities streamed to a syncing passive at the same time, 1 syncs
+   *                                      one entity after another
+   * passive.sync.compact               : Send the entity journal at the end of passive sync in the compact encoding,
+   *                                      only when every passive in the stripe can read it
+   * passive.catchup.backlog.memory     : Bytes of replicated activity the active retains in memory so a passive whose
+   *                                      replication stream was interrupted can catch up, 0 disables catch-up
+   * passive.catchup.backlog.disk       : Bytes of older replicated activity spilled to disk past the memory bound,
+   *                                      0 drops the oldest activity instead
+   * passive.catchup.backlog.directory  : Directory the spilled backlog is written to, java.io.tmpdir if not set
+   * passive.catchup.restart            : A passive stopped cleanly keeps its entities and is caught up by the same
+   *                                      active when it restarts, needs durable storage for all entity state
    * </code>
    ********************************************************************************************************************/
   public static final String ENTITY_PROCESSOR_THREADS                                    = "server.entity.processor.threads";
   public static final String MIN_ENTITY_PROCESSOR_THREADS                                    = "server.entity.processor.minthreads";
+  public static final String ENTITY_PROCESSOR_LANES                                    = "server.entity.processor.lanes";
+  public static final String ENTITY_PROCESSOR_CREDIT                                    = "server.entity.processor.credit";
+  public static final String ENTITY_RESPONSE_COALESCE_BYTES                                    = "server.entity.response.coalesce.bytes";
+  public static final String ENTITY_RESPONSE_COALESCE_MICROS                                    = "server.entity.response.coalesce.micros";
+  public static final String ENTITY_RESPONSE_PACKED                                    = "server.entity.response.packed";
+  public static final String L2_PASSIVE_SYNC_SNAPSHOT_CHUNK_SIZE                                    = "l2.passive.sync.snapshot.chunkSize";
+  public static final String L2_PASSIVE_SYNC_SNAPSHOT_WINDOW                                    = "l2.passive.sync.snapshot.window";
+  public static final String L2_PASSIVE_SYNC_SNAPSHOT_ENABLED                                    = "l2.passive.sync.snapshot.enabled";
+  public static final String L2_PASSIVE_SYNC_WINDOW                                    = "l2.passive.sync.window";
+  public static final String L2_PASSIVE_SYNC_COMPACT                                    = "l2.passive.sync.compact";
+  public static final String L2_PASSIVE_CATCHUP_BACKLOG_MEMORY                                    = "l2.passive.catchup.backlog.memory";
+  public static final String L2_PASSIVE_CATCHUP_BACKLOG_DISK                                    = "l2.passive.catchup.backlog.disk";
+  public static final String L2_PASSIVE_CATCHUP_BACKLOG_DIRECTORY                                    = "l2.passive.catchup.backlog.directory";
+  public static final String L2_PASSIVE_CATCHUP_RESTART                                    = "l2.passive.catchup.restart";
   public static final String L2_SEDA_STAGE_SINK_CAPACITY                                    = "l2.seda.stage.sink.capacity";
   public static final String L2_SEDA_STAGE_DISABLE_DIRECT_SINKS                                    = "l2.seda.stage.sink.disable.direct";
   public static final String L2_SEDA_STAGE_SINGLE_THREAD                                    = "l2.seda.stage.single.thread";
@@ -115,12 +148,23 @@ public interface TCPropertiesConsts {
    * socket.connect.timeout            - Socket timeout (ms) when connecting to server
    * reconnect.waitInterval            - Sleep time (ms) between trying connections to the server
    *                                     (values less than 10ms will be set to 10ms)
+   * reconnect.maxWaitInterval         - Upper bound (ms) of the sleep between reconnect attempts, the sleep doubles
+   *                                     from waitInterval on each failed pass over the servers and is jittered.
+   *                                     Defaults to ten times waitInterval
    * l2.l1redirect.enabled             - Allow the server to redirect the client to the current active
+   * l2.l1.handshake.admission.limit   - Maximum number of clients the server lets through the transport handshake
+   *                                     while their client handshake is still pending, others are told to retry.
+   *                                     0 disables the limit
+   * l1.connection.virtualthreads      - Run the per connection reader and reconnect loops on virtual threads when the
+   *                                     JVM supports them (21+), platform threads are used otherwise
    * </code>
    ********************************************************************************************************************/
   public static final String L1_SOCKET_CONNECT_TIMEOUT                                      = "l1.socket.connect.timeout";
   public static final String L1_SOCKET_RECONNECT_WAIT_INTERVAL                              = "l1.socket.reconnect.waitInterval";
+  public static final String L1_SOCKET_RECONNECT_MAX_WAIT_INTERVAL                          = "l1.socket.reconnect.maxWaitInterval";
   public static final String L2_L1REDIRECT_ENABLED                                          = "l2.l1redirect.enabled";
+  public static final String L2_L1_HANDSHAKE_ADMISSION_LIMIT                                = "l2.l1.handshake.admission.limit";
+  public static final String L1_CONNECTION_VIRTUAL_THREADS                                  = "l1.connection.virtualthreads";
 
   /*********************************************************************************************************************
    * <code>
@@ -144,6 +188,12 @@ public interface TCPropertiesConsts {
    * bytebuffer.pooling.enabled           : Enable/disable tc byte buffer pooling
    * bytebuffer.common.pool.maxcount      : Max size of pool for tc byte buffer
    * bytebuffer.threadlocal.pool.maxcount : Thread pool size
+   * messages.gather.maxBuffers           : Maximum number of buffers handed to one gathering socket write
+   * messages.gather.maxSizeKiloBytes     : Byte limit of one gathering socket write across queued messages
+   * messages.packup.pool.enabled         : Read with the size classed buffer pool instead of the fixed size cache
+   * messages.packup.pool.budget          : Bytes of direct memory the size classed read buffer pool may hold
+   * messages.packup.pool.retain          : Bytes of free buffers the pool keeps for reuse, the rest are released
+   * messages.packup.pool.maxBufferSize   : Largest size class of the read buffer pool, larger reads chain buffers
    * </code>
    ********************************************************************************************************************/
   
@@ -154,7 +204,13 @@ public interface TCPropertiesConsts {
   public static final String TC_MESSAGE_GROUPING_ENABLED                                    = "tc.messages.grouping.enabled";
   public static final String TC_MESSAGE_GROUPING_MAXSIZE_KB                                 = "tc.messages.grouping.maxSizeKiloBytes";
   public static final String TC_MESSAGE_GROUPING_MAX_COUNT                                  = "tc.messages.grouping.maxCount";
+  public static final String TC_MESSAGE_GATHER_MAX_BUFFERS                                  = "tc.messages.gather.maxBuffers";
+  public static final String TC_MESSAGE_GATHER_MAXSIZE_KB                                   = "tc.messages.gather.maxSizeKiloBytes";
   public static final String TC_MESSAGE_PACKUP_ENABLED                                      = "tc.messages.packup.enabled";
+  public static final String TC_MESSAGE_PACKUP_POOL_ENABLED                                 = "tc.messages.packup.pool.enabled";
+  public static final String TC_MESSAGE_PACKUP_POOL_BUDGET                                  = "tc.messages.packup.pool.budget";
+  public static final String TC_MESSAGE_PACKUP_POOL_RETAIN                                  = "tc.messages.packup.pool.retain";
+  public static final String TC_MESSAGE_PACKUP_POOL_MAX_BUFFER                              = "tc.messages.packup.pool.maxBufferSize";
 
   /*********************************************************************************************************************
    * <code>
@@ -260,6 +316,25 @@ public interface TCPropertiesConsts {
   public static final String L2_ELECTION_TIMEOUT                                            = "l2.election.timeout";
   public static final String L2_CLASSLOADER_COMPATIBILITY                                   = "l2.classloader.compatibility";
 
+  /*********************************************************************************************************************
+   * <code>
+   * Section :  L2 Platform Persistence
+   * l2.persistence.directory    - directory for durable platform persistence, when not set and no persistence service
+   *                               is configured the server keeps its platform state in memory.  Setting it changes
+   *                               restart semantics, a restarted server reloads its entities and client state
+   * l2.persistence.segment.size - size in bytes of each memory-mapped segment of the sequence log
+   * l2.persistence.entity.checkpoint - number of entity lifecycle deltas written before the entity and journal maps
+   *                               are checkpointed and the deltas dropped
+   * l2.persistence.clientid.block - number of client IDs leased from storage with each write of the next client ID
+   * l2.persistence.clients.checkpoint - number of client add/remove records written before the clients map is rewritten
+   * </code>
+   ********************************************************************************************************************/
+  public static final String L2_PERSISTENCE_DIRECTORY                                       = "l2.persistence.directory";
+  public static final String L2_PERSISTENCE_SEGMENT_SIZE                                    = "l2.persistence.segment.size";
+  public static final String L2_PERSISTENCE_ENTITY_CHECKPOINT                               = "l2.persistence.entity.checkpoint";
+  public static final String L2_PERSISTENCE_CLIENTID_BLOCK                                  = "l2.persistence.clientid.block";
+  public static final String L2_PERSISTENCE_CLIENTS_CHECKPOINT                              = "l2.persistence.clients.checkpoint";
+
   /*********************************************************************************************************************
    * <code>
    * Section :  L1 Shutdown Settings
@@ -270,6 +345,16 @@ public interface TCPropertiesConsts {
   public static final String L1_SHUTDOWN_THREADGROUP_GRACETIME                              = "l1.shutdown.threadgroup.gracetime";
   public static final String L1_SHUTDOWN_FORCE_FINALIZATION                                 = "l1.shutdown.force.finalization";
 
+  /*********************************************************************************************************************
+   * <code>
+   * Section :  L1 Flow Control Settings
+   * l1.entity.credit.failfast - when the server advertised window of in-flight invokes is exhausted, reject new
+   *                             invokes instead of blocking the caller until credit is returned.
+   * </code>
+   ********************************************************************************************************************/
+  public static final String L1_ENTITY_CREDIT_FAILFAST                                      = "l1.entity.credit.failfast";
+  public static final String L1_ENTITY_INVOKE_PACKED                                        = "l1.entity.invoke.packed";
+
   /*********************************************************************************************************************
    * <code>
    * Section :  Some useful subcategories
@@ -286,6 +371,7 @@ public interface TCPropertiesConsts {
 
   String[] TC_PROPERTIES_WITH_NO_DEFAULTS = {
       ENTITY_PROCESSOR_THREADS,
+      ENTITY_PROCESSOR_LANES,
       L2_TCCOM_WORKERTHREADS,
       L2_SEDA_STAGE_WORKERTHREADS,
       L2_SEDA_STAGE_DISABLE_DIRECT_SINKS,
@@ -294,6 +380,8 @@ public interface TCPropertiesConsts {
       L2_SEDA_STAGE_STALL_WARNING,
       L2_SEDA_STAGE_ALWAYS_HYDRATE,
       L2_NHA_TCGROUPCOMM_RECONNECT_L2PROXY_TO_PORT,
+      L2_PERSISTENCE_DIRECTORY,
+      L2_PASSIVE_CATCHUP_BACKLOG_DIRECTORY,
   };
 
 }
@@ -0,0 +1,144 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tc.stats;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size, log-linear histogram of nanosecond latencies.  Each power of two is split into
+ * {@value #SUB_BUCKETS} linear buckets so any recorded value is reported within about 3% of its
+ * true value.  Recording is a single atomic increment and never allocates, so it is safe to use on
+ * the stage hot path.  Values of {@code 2^40} nanos (roughly 18 minutes) or more land in the last bucket.
+ */
+public class LatencyHistogram {
+
+  private static final int SUB_BITS = 6;
+  private static final int SUB_BUCKETS = 1 << SUB_BITS;
+  private static final int HALF_BUCKETS = SUB_BUCKETS >> 1;
+  private static final int MAX_BITS = 40;
+  private static final long MAX_TRACKABLE = (1L << MAX_BITS) - 1;
+  private static final int BUCKET_COUNT = (MAX_BITS - SUB_BITS + 2) * HALF_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+  private final AtomicLong max = new AtomicLong();
+
+  public void record(long nanos) {
+    long value = Math.min(Math.max(nanos, 0L), MAX_TRACKABLE);
+    counts.incrementAndGet(indexOf(value));
+    long current = max.get();
+    while (value > current && !max.compareAndSet(current, value)) {
+      current = max.get();
+    }
+  }
+
+  public Snapshot snapshot() {
+    long[] copy = new long[BUCKET_COUNT];
+    long total = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      copy[i] = counts.get(i);
+      total += copy[i];
+    }
+    return new Snapshot(copy, total, max.get());
+  }
+
+  static int indexOf(long value) {
+    int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+    if (shift <= 0) {
+      return (int)value;
+    }
+    return (shift * HALF_BUCKETS) + (int)(value >>> shift);
+  }
+
+  static long highestValueAt(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int shift = (index / HALF_BUCKETS) - 1;
+    long sub = index - (shift * HALF_BUCKETS);
+    return ((sub + 1) << shift) - 1;
+  }
+
+  /**
+   * A point in time copy of the histogram.  Snapshots can be subtracted from each other to get the
+   * distribution of an interval, in which case the maximum is the upper bound of the highest bucket hit.
+   */
+  public static class Snapshot {
+    private final long[] counts;
+    private final long count;
+    private final long max;
+
+    private Snapshot(long[] counts, long count, long max) {
+      this.counts = counts;
+      this.count = count;
+      this.max = max;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    public long getMax() {
+      return max;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the highest value equivalent to the recorded values at the requested percentile, 0 if empty
+     */
+    public long getValueAtPercentile(double percentile) {
+      if (count == 0) {
+        return 0;
+      }
+      long rank = Math.max(1L, (long)Math.ceil(Math.min(percentile, 100d) / 100d * count));
+      long seen = 0;
+      for (int i = 0; i < counts.length; i++) {
+        seen += counts[i];
+        if (seen >= rank) {
+          return Math.min(highestValueAt(i), max);
+        }
+      }
+      return max;
+    }
+
+    public Snapshot minus(Snapshot previous) {
+      long[] diff = new long[counts.length];
+      long total = 0;
+      int highest = -1;
+      for (int i = 0; i < counts.length; i++) {
+        diff[i] = counts[i] - previous.counts[i];
+        total += diff[i];
+        if (diff[i] > 0) {
+          highest = i;
+        }
+      }
+      return new Snapshot(diff, total, highest < 0 ? 0 : Math.min(highestValueAt(highest), max));
+    }
+
+    public Map<String, Long> getSummary() {
+      Map<String, Long> summary = new LinkedHashMap<>();
+      summary.put("count", count);
+      summary.put("p50", getValueAtPercentile(50));
+      summary.put("p99", getValueAtPercentile(99));
+      summary.put("p99.9", getValueAtPercentile(99.9));
+      summary.put("max", max);
+      return summary;
+    }
+  }
+}
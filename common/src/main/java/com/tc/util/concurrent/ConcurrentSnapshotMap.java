@@ -0,0 +1,115 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tc.util.concurrent;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+/**
+ * A concurrent registry for maps which are written often in bursts but whose values are occasionally read as a whole,
+ * like the set of connected clients.  Puts and removes are O(1) on an underlying {@link ConcurrentHashMap}.  Every
+ * mutation advances an epoch.  {@link #valuesToArray()} builds a snapshot of the values tagged with the epoch it was
+ * started at and reuses it until the epoch moves on, so a burst of mutations costs a single copy on the next read
+ * rather than one copy per mutation.
+ * <p>
+ * Snapshots are consistent: each is a detached array which never changes after it is taken.  Unlike 
+ * {@link CopyOnWriteSequentialMap}, iteration order is not insertion order.
+ */
+public class ConcurrentSnapshotMap<K, V> {
+
+  private final ConcurrentHashMap<K, V> map = new ConcurrentHashMap<>();
+  private final AtomicLong epoch = new AtomicLong();
+  private final IntFunction<V[]> arrayFactory;
+  private volatile Snapshot<V> snapshot;
+
+  public ConcurrentSnapshotMap(IntFunction<V[]> arrayFactory) {
+    this.arrayFactory = arrayFactory;
+  }
+
+  public V put(K key, V value) {
+    V old = map.put(key, value);
+    if (old != value) {
+      epoch.incrementAndGet();
+    }
+    return old;
+  }
+
+  public V remove(K key) {
+    V old = map.remove(key);
+    if (old != null) {
+      epoch.incrementAndGet();
+    }
+    return old;
+  }
+
+  public V get(K key) {
+    return map.get(key);
+  }
+
+  public boolean containsKey(K key) {
+    return map.containsKey(key);
+  }
+
+  public int size() {
+    return map.size();
+  }
+
+  public boolean isEmpty() {
+    return map.isEmpty();
+  }
+
+  /**
+   * @return a read-only, weakly consistent view of the live keys
+   */
+  public Set<K> keySet() {
+    return Collections.unmodifiableSet(map.keySet());
+  }
+
+  /**
+   * @return the epoch of the current contents, it changes every time the contents do
+   */
+  public long epoch() {
+    return epoch.get();
+  }
+
+  /**
+   * @return a copy of the values as of the current epoch
+   */
+  public V[] valuesToArray() {
+    long current = epoch.get();
+    Snapshot<V> last = snapshot;
+    if (last == null || last.epoch != current) {
+      // a mutation racing with the copy leaves the snapshot tagged with an older epoch so the next read rebuilds it
+      last = new Snapshot<>(current, map.values().toArray(arrayFactory.apply(0)));
+      snapshot = last;
+    }
+    return last.values.clone();
+  }
+
+  private static class Snapshot<V> {
+    private final long epoch;
+    private final V[] values;
+
+    Snapshot(long epoch, V[] values) {
+      this.epoch = epoch;
+      this.values = values;
+    }
+  }
+}
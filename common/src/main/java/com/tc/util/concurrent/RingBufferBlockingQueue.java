@@ -0,0 +1,300 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tc.util.concurrent;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded, array backed queue for many producers (or optionally exactly one producer) and exactly one consumer.
+ * Slots are claimed with a CAS on the tail sequence and published through a per-slot sequence number so no nodes are
+ * allocated and no locks are taken on the hot path.
+ * <p>
+ * Only a single thread may call the consuming methods ({@link #poll()}, {@link #take()}, {@link #drainTo(Collection)}
+ * etc.).  A consumer with nothing to do parks and is unparked by the next producer.  Producers finding the queue full
+ * spin briefly and then park for short intervals until space is available.
+ * <p>
+ * The capacity is rounded up to the next power of two.
+ */
+public class RingBufferBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+  private static final int PRODUCER_SPINS = 64;
+  private static final long PRODUCER_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+  private final boolean singleProducer;
+  private final int mask;
+  private final AtomicReferenceArray<E> buffer;
+  private final AtomicLongArray sequences;
+  private final AtomicLong tail = new AtomicLong();
+  private final AtomicLong head = new AtomicLong();
+  private volatile Thread waitingConsumer;
+
+  public RingBufferBlockingQueue(int capacity) {
+    this(capacity, false);
+  }
+
+  public RingBufferBlockingQueue(int capacity, boolean singleProducer) {
+    if (capacity <= 0 || capacity > (1 << 30)) {
+      throw new IllegalArgumentException("invalid capacity " + capacity);
+    }
+    int size = 1 << (32 - Integer.numberOfLeadingZeros(capacity - 1));
+    this.singleProducer = singleProducer;
+    this.mask = size - 1;
+    this.buffer = new AtomicReferenceArray<>(size);
+    this.sequences = new AtomicLongArray(size);
+    for (int x = 0; x < size; x++) {
+      this.sequences.set(x, x);
+    }
+  }
+
+  public int capacity() {
+    return mask + 1;
+  }
+
+  public boolean isSingleProducer() {
+    return singleProducer;
+  }
+
+  @Override
+  public boolean offer(E e) {
+    Objects.requireNonNull(e);
+    long pos;
+    int index;
+    if (singleProducer) {
+      pos = tail.get();
+      index = (int)pos & mask;
+      if (sequences.get(index) != pos) {
+        return false;
+      }
+      tail.lazySet(pos + 1);
+    } else {
+      while (true) {
+        pos = tail.get();
+        index = (int)pos & mask;
+        long diff = sequences.get(index) - pos;
+        if (diff == 0) {
+          if (tail.compareAndSet(pos, pos + 1)) {
+            break;
+          }
+        } else if (diff < 0) {
+          return false;
+        }
+      }
+    }
+    buffer.lazySet(index, e);
+    // volatile publish so the consumer either sees the element or is seen waiting below
+    sequences.set(index, pos + 1);
+    Thread consumer = waitingConsumer;
+    if (consumer != null) {
+      LockSupport.unpark(consumer);
+    }
+    return true;
+  }
+
+  @Override
+  public void put(E e) throws InterruptedException {
+    int spins = 0;
+    while (!offer(e)) {
+      spins = backoff(spins);
+    }
+  }
+
+  @Override
+  public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    int spins = 0;
+    while (!offer(e)) {
+      if (deadline - System.nanoTime() <= 0) {
+        return false;
+      }
+      spins = backoff(spins);
+    }
+    return true;
+  }
+
+  private static int backoff(int spins) throws InterruptedException {
+    if (Thread.interrupted()) {
+      throw new InterruptedException();
+    }
+    if (spins < PRODUCER_SPINS) {
+      Thread.onSpinWait();
+      return spins + 1;
+    } else {
+      LockSupport.parkNanos(PRODUCER_PARK_NANOS);
+      return spins;
+    }
+  }
+
+  @Override
+  public E poll() {
+    long pos = head.get();
+    int index = (int)pos & mask;
+    if (sequences.get(index) != pos + 1) {
+      return null;
+    }
+    E e = buffer.get(index);
+    buffer.lazySet(index, null);
+    head.lazySet(pos + 1);
+    sequences.set(index, pos + mask + 1);
+    return e;
+  }
+
+  @Override
+  public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+    E e = poll();
+    if (e != null) {
+      return e;
+    }
+    long remaining = unit.toNanos(timeout);
+    long deadline = System.nanoTime() + remaining;
+    waitingConsumer = Thread.currentThread();
+    try {
+      while ((e = poll()) == null) {
+        if (remaining <= 0) {
+          return null;
+        }
+        LockSupport.parkNanos(this, remaining);
+        if (Thread.interrupted()) {
+          throw new InterruptedException();
+        }
+        remaining = deadline - System.nanoTime();
+      }
+      return e;
+    } finally {
+      waitingConsumer = null;
+    }
+  }
+
+  @Override
+  public E take() throws InterruptedException {
+    E e = poll();
+    if (e != null) {
+      return e;
+    }
+    waitingConsumer = Thread.currentThread();
+    try {
+      while ((e = poll()) == null) {
+        LockSupport.park(this);
+        if (Thread.interrupted()) {
+          throw new InterruptedException();
+        }
+      }
+      return e;
+    } finally {
+      waitingConsumer = null;
+    }
+  }
+
+  @Override
+  public E peek() {
+    long pos = head.get();
+    int index = (int)pos & mask;
+    return (sequences.get(index) == pos + 1) ? buffer.get(index) : null;
+  }
+
+  @Override
+  public int size() {
+    // read head first so a concurrent poll can only make the result larger than the truth, never negative
+    long h = head.get();
+    long t = tail.get();
+    return (int)Math.max(0, Math.min(t - h, mask + 1));
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  @Override
+  public int remainingCapacity() {
+    return mask + 1 - size();
+  }
+
+  @Override
+  public int drainTo(Collection<? super E> c) {
+    return drainTo(c, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public int drainTo(Collection<? super E> c, int maxElements) {
+    Objects.requireNonNull(c);
+    if (c == this) {
+      throw new IllegalArgumentException();
+    }
+    int count = 0;
+    E e;
+    while (count < maxElements && (e = poll()) != null) {
+      c.add(e);
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * Weakly consistent, read-only view of the elements published at the time of the call.  Intended for diagnostics only.
+   */
+  @Override
+  public Iterator<E> iterator() {
+    return new Iterator<E>() {
+      private long pos = head.get();
+      private E next = advance();
+
+      private E advance() {
+        while (true) {
+          int index = (int)pos & mask;
+          if (sequences.get(index) != pos + 1) {
+            return null;
+          }
+          E e = buffer.get(index);
+          pos += 1;
+          if (e != null) {
+            return e;
+          }
+        }
+      }
+
+      @Override
+      public boolean hasNext() {
+        return next != null;
+      }
+
+      @Override
+      public E next() {
+        if (next == null) {
+          throw new NoSuchElementException();
+        }
+        E e = next;
+        next = advance();
+        return e;
+      }
+    };
+  }
+
+  @Override
+  public String toString() {
+    return "RingBufferBlockingQueue{capacity=" + capacity() + ", size=" + size() + ", singleProducer=" + singleProducer + '}';
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tc.util.concurrent;
+
+import com.tc.async.impl.Event;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Hands out {@link RingBufferBlockingQueue}s in place of the lock based queues of {@link QueueFactory}.  The ring buffer
+ * is always bounded, so requests for an unbounded queue get {@code unboundedCapacity} slots instead.  Synchronous
+ * hand-off queues (capacity zero) are left to the default factory.
+ */
+public class RingBufferQueueFactory extends QueueFactory {
+
+  public static final int DEFAULT_UNBOUNDED_CAPACITY = 64 * 1024;
+
+  private final boolean singleProducer;
+  private final int unboundedCapacity;
+
+  public RingBufferQueueFactory(boolean singleProducer) {
+    this(singleProducer, DEFAULT_UNBOUNDED_CAPACITY);
+  }
+
+  public RingBufferQueueFactory(boolean singleProducer, int unboundedCapacity) {
+    this.singleProducer = singleProducer;
+    this.unboundedCapacity = unboundedCapacity;
+  }
+
+  @Override
+  public <E> BlockingQueue<Event> createInstance(Class<E> type, int capacity) {
+    if (capacity == 0) {
+      return super.createInstance(type, capacity);
+    }
+    return new RingBufferBlockingQueue<>((capacity == Integer.MAX_VALUE || capacity < 0) ? unboundedCapacity : capacity, singleProducer);
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tc.util.concurrent;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Creates threads for blocking per connection loops, virtual when asked for and the running JVM supports them.  The 
+ * code base compiles against Java 17 so the Java 21 builder API is reached reflectively, on older runtimes or if the 
+ * lookup fails a named daemon platform thread is returned instead.
+ */
+public final class VirtualThreads {
+
+  private static final MethodHandle OF_VIRTUAL;
+  private static final MethodHandle UNSTARTED;
+  private static final MethodHandle NAME;
+
+  static {
+    MethodHandle ofVirtual = null;
+    MethodHandle unstarted = null;
+    MethodHandle name = null;
+    try {
+      MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+      Class<?> builder = Class.forName("java.lang.Thread$Builder");
+      ofVirtual = lookup.findStatic(Thread.class, "ofVirtual", MethodType.methodType(Class.forName("java.lang.Thread$Builder$OfVirtual")));
+      name = lookup.findVirtual(builder, "name", MethodType.methodType(builder, String.class));
+      unstarted = lookup.findVirtual(builder, "unstarted", MethodType.methodType(Thread.class, Runnable.class));
+    } catch (ReflectiveOperationException | RuntimeException notSupported) {
+      ofVirtual = null;
+    }
+    OF_VIRTUAL = ofVirtual;
+    UNSTARTED = unstarted;
+    NAME = name;
+  }
+
+  private VirtualThreads() {
+  }
+
+  public static boolean isSupported() {
+    return OF_VIRTUAL != null;
+  }
+
+  /**
+   * @param name the name of the thread
+   * @param task what the thread runs
+   * @param virtual true to prefer a virtual thread
+   * @return an unstarted thread, virtual if requested and supported, otherwise a daemon platform thread
+   */
+  public static Thread newThread(String name, Runnable task, boolean virtual) {
+    if (virtual && OF_VIRTUAL != null) {
+      try {
+        Object builder = OF_VIRTUAL.invoke();
+        builder = NAME.invoke(builder, name);
+        return (Thread)UNSTARTED.invoke(builder, task);
+      } catch (Throwable t) {
+        // fall through to a platform thread
+      }
+    }
+    Thread thread = new Thread(task, name);
+    thread.setDaemon(true);
+    return thread;
+  }
+}
@@ -17,6 +17,7 @@
  */
 package com.tc.async.impl;
 
+import com.tc.async.api.EventHandlerException;
 import com.tc.async.api.MultiThreadedEventContext;
 import com.tc.logging.DefaultLoggerProvider;
 import com.tc.logging.TCLoggerProvider;
@@ -33,6 +34,8 @@ import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Queue;
 import java.util.Random;
@@ -235,6 +238,192 @@ public class MultiStageQueueImplTest {
     assertTrue(impl.partitionHand.get() < prior);
   }
 
+  @Test
+  public void testKeylessEventsStolenByIdleWorker() throws Exception {
+    TCLoggerProvider logger = new DefaultLoggerProvider();
+    List<Object> handled = new ArrayList<>();
+    MultiStageQueueImpl<MultiThreadedEventContext> impl = new MultiStageQueueImpl<>(2, new QueueFactory(), MultiThreadedEventContext.class,
+        (event)->()->handled.add(event), logger, "steal", 16, true);
+    MultiThreadedEventContext keyless = mock(MultiThreadedEventContext.class);
+    when(keyless.getSchedulingKey()).thenReturn(null);
+    impl.addToSink(keyless);
+    int owner = impl.getSource(0).isEmpty() ? 1 : 0;
+    int idle = 1 - owner;
+    // the idle worker claims the event, the owner skips the stale entry
+    Event stolen = impl.getSource(idle).poll(0);
+    assertNotNull(stolen);
+    stolen.call();
+    assertEquals(keyless, handled.get(0));
+    assertNull(impl.getSource(owner).poll(0));
+    assertTrue(impl.getSource(owner).isEmpty());
+    assertEquals(1L, impl.getState().get("stolen"));
+    // keyed events stay on their queue
+    MultiThreadedEventContext keyed = mock(MultiThreadedEventContext.class);
+    when(keyed.getSchedulingKey()).thenReturn(owner);
+    impl.addToSink(keyed);
+    assertNull(impl.getSource(idle).poll(0));
+    assertNotNull(impl.getSource(owner).poll(0));
+  }
+
+  @Test
+  public void testNoStealingWhileFlushPending() throws Exception {
+    TCLoggerProvider logger = new DefaultLoggerProvider();
+    List<Object> handled = Collections.synchronizedList(new ArrayList<>());
+    MultiStageQueueImpl<MultiThreadedEventContext> impl = new MultiStageQueueImpl<>(2, new QueueFactory(), MultiThreadedEventContext.class,
+        (event)->()->handled.add(event), logger, "steal", 16, true);
+    MultiThreadedEventContext keyless = mock(MultiThreadedEventContext.class);
+    when(keyless.getSchedulingKey()).thenReturn(null);
+    impl.addToSink(keyless);
+    int owner = impl.getSource(0).isEmpty() ? 1 : 0;
+    int idle = 1 - owner;
+    MultiThreadedEventContext flush = mock(MultiThreadedEventContext.class);
+    when(flush.getSchedulingKey()).thenReturn(owner);
+    when(flush.flush()).thenReturn(true);
+    impl.addToSink(flush);
+    // the flush is pending so the idle worker must leave the keyless event to its owner
+    assertNull(impl.getSource(idle).poll(0));
+    impl.getSource(owner).poll(0).call();
+    impl.getSource(owner).poll(0).call();
+    impl.getSource(idle).poll(0).call();
+    assertEquals(Arrays.asList(keyless, flush), handled);
+    // once the flush has run, stealing resumes
+    impl.addToSink(keyless);
+    owner = impl.getSource(0).isEmpty() ? 1 : 0;
+    assertNotNull(impl.getSource(1 - owner).poll(0));
+  }
+
+  @Test
+  public void testFlushWaitsForStolenEvent() throws Exception {
+    TCLoggerProvider logger = new DefaultLoggerProvider();
+    List<Object> handled = Collections.synchronizedList(new ArrayList<>());
+    MultiStageQueueImpl<MultiThreadedEventContext> impl = new MultiStageQueueImpl<>(2, new QueueFactory(), MultiThreadedEventContext.class,
+        (event)->()->handled.add(event), logger, "steal", 16, true);
+    MultiThreadedEventContext keyless = mock(MultiThreadedEventContext.class);
+    when(keyless.getSchedulingKey()).thenReturn(null);
+    impl.addToSink(keyless);
+    int owner = impl.getSource(0).isEmpty() ? 1 : 0;
+    int idle = 1 - owner;
+    // the idle worker claims the event but has not run it yet
+    Event stolen = impl.getSource(idle).poll(0);
+    assertNotNull(stolen);
+    assertEquals(0, impl.getSource(owner).size());
+    MultiThreadedEventContext flush = mock(MultiThreadedEventContext.class);
+    when(flush.getSchedulingKey()).thenReturn(owner);
+    when(flush.flush()).thenReturn(true);
+    impl.addToSink(flush);
+    // the owner skips the stolen entry and passes the flush on
+    Event next = impl.getSource(owner).poll(0);
+    if (next == null) {
+      next = impl.getSource(owner).poll(0);
+    }
+    next.call();
+    Event last = impl.getSource(idle).poll(0);
+    Thread flusher = new Thread(()->{
+      try {
+        last.call();
+      } catch (EventHandlerException e) {
+        throw new RuntimeException(e);
+      }
+    });
+    flusher.start();
+    flusher.join(200);
+    assertTrue(flusher.isAlive());
+    assertTrue(handled.isEmpty());
+    stolen.call();
+    flusher.join();
+    assertEquals(Arrays.asList(keyless, flush), handled);
+  }
+
+  @Test
+  public void testFlushStopsWaitingForAbandonedSteal() throws Exception {
+    TCLoggerProvider logger = new DefaultLoggerProvider();
+    List<Object> handled = Collections.synchronizedList(new ArrayList<>());
+    MultiStageQueueImpl<MultiThreadedEventContext> impl = new MultiStageQueueImpl<>(2, new QueueFactory(), MultiThreadedEventContext.class,
+        (event)->()->{
+          handled.add(event);
+          throw new EventHandlerException(new RuntimeException("handler failed"));
+        }, logger, "steal", 16, true);
+    MultiThreadedEventContext keyless = mock(MultiThreadedEventContext.class);
+    when(keyless.getSchedulingKey()).thenReturn(null);
+    impl.addToSink(keyless);
+    int owner = impl.getSource(0).isEmpty() ? 1 : 0;
+    int idle = 1 - owner;
+    // the idle worker claims the event and never runs it
+    Event abandoned = impl.getSource(idle).poll(0);
+    assertNotNull(abandoned);
+    MultiThreadedEventContext flush = mock(MultiThreadedEventContext.class);
+    when(flush.getSchedulingKey()).thenReturn(owner);
+    when(flush.flush()).thenReturn(true);
+    impl.addToSink(flush);
+    Event next = impl.getSource(owner).poll(0);
+    if (next == null) {
+      next = impl.getSource(owner).poll(0);
+    }
+    next.call();
+    long start = System.nanoTime();
+    try {
+      impl.getSource(idle).poll(0).call();
+    } catch (EventHandlerException expected) {
+      // the handler always fails
+    }
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= MultiStageQueueImpl.STEAL_WAIT_MILLIS);
+    assertEquals(Arrays.asList(flush), handled);
+
+    // a failing stolen event still releases its claim, so the next flush does not wait
+    impl.addToSink(keyless);
+    owner = impl.getSource(0).isEmpty() ? 1 : 0;
+    idle = 1 - owner;
+    Event failing = impl.getSource(idle).poll(0);
+    try {
+      failing.call();
+    } catch (EventHandlerException expected) {
+      // the handler always fails
+    }
+    try {
+      abandoned.call();
+    } catch (EventHandlerException expected) {
+      // the handler always fails
+    }
+    impl.addToSink(flush);
+    next = impl.getSource(owner).poll(0);
+    if (next == null) {
+      next = impl.getSource(owner).poll(0);
+    }
+    next.call();
+    start = System.nanoTime();
+    try {
+      impl.getSource(idle).poll(0).call();
+    } catch (EventHandlerException expected) {
+      // the handler always fails
+    }
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < MultiStageQueueImpl.STEAL_WAIT_MILLIS);
+  }
+
+  @Test
+  public void testIdleWorkerWakesToSteal() throws Exception {
+    if (!MultiStageQueueImpl.SHORTEST_FIND_STRATEGY.equals(MultiStageQueueImpl.ShortestFindStrategy.PARTITION)) {
+      return;
+    }
+    TCLoggerProvider logger = new DefaultLoggerProvider();
+    MultiStageQueueImpl<MultiThreadedEventContext> impl = new MultiStageQueueImpl<>(2, new QueueFactory(), MultiThreadedEventContext.class,
+        (event)->()->{}, logger, "steal", 16, true);
+    MultiThreadedEventContext keyless = mock(MultiThreadedEventContext.class);
+    when(keyless.getSchedulingKey()).thenReturn(null);
+    BlockingQueue<Event> taken = new ArrayBlockingQueue<>(1);
+    Thread idle = new Thread(()->{
+      try {
+        taken.add(impl.getSource(1).poll(TimeUnit.MINUTES.toMillis(1)));
+      } catch (InterruptedException ie) {
+      }
+    });
+    idle.start();
+    // with two empty queues the partition search always settles on the first one
+    impl.addToSink(keyless);
+    assertNotNull(taken.poll(10, TimeUnit.SECONDS));
+    assertNull(impl.getSource(0).poll(0));
+    idle.join();
+  }
+
   @Test
   @Ignore
   public void testThroughput8() throws InterruptedException {
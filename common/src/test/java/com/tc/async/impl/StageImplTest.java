@@ -17,13 +17,17 @@
  */
 package com.tc.async.impl;
 
+import com.tc.async.api.AbstractEventHandler;
 import com.tc.async.api.ConfigurationContext;
 import com.tc.async.api.EventHandler;
 import com.tc.async.api.EventHandlerException;
 import com.tc.async.api.MultiThreadedEventContext;
 import com.tc.logging.DefaultLoggerProvider;
 import com.tc.logging.TCLoggerProvider;
+import com.tc.properties.TCPropertiesImpl;
 import com.tc.util.concurrent.QueueFactory;
+import com.tc.util.concurrent.RingBufferBlockingQueue;
+import com.tc.util.concurrent.ThreadUtil;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -36,12 +40,17 @@ import org.mockito.invocation.InvocationOnMock;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -101,6 +110,83 @@ public class StageImplTest {
     
   }
   
+  @Test
+  public void testRingBufferQueueSelectedByProperty() throws Exception {
+    TCPropertiesImpl.getProperties().setProperty("seda.ring.queue", "mpsc");
+    TCPropertiesImpl.getProperties().setProperty("seda.ring.queue.capacity", "8");
+    try {
+      TCLoggerProvider logger = new DefaultLoggerProvider();
+      QueueFactory context = mock(QueueFactory.class);
+      CountDownLatch handled = new CountDownLatch(100);
+      EventHandler<MultiThreadedEventContext> handler = new AbstractEventHandler<MultiThreadedEventContext>() {
+        @Override
+        public void handleEvent(MultiThreadedEventContext context) throws EventHandlerException {
+          handled.countDown();
+        }
+      };
+      StageImpl<MultiThreadedEventContext> instance = new StageImpl<>(logger, "ring", MultiThreadedEventContext.class, handler, 4, null, context, null, -1, false, true);
+      verify(context, never()).createInstance(ArgumentMatchers.any(), anyInt());
+      instance.start(mock(ConfigurationContext.class));
+      for (int x = 0; x < 100; x++) {
+        MultiThreadedEventContext cxt = mock(MultiThreadedEventContext.class);
+        when(cxt.getSchedulingKey()).thenReturn(x % 3 == 0 ? null : x);
+        instance.getSink().addToSink(cxt);
+      }
+      assertTrue(handled.await(1, TimeUnit.MINUTES));
+      instance.destroy();
+    } finally {
+      TCPropertiesImpl.getProperties().setProperty("seda.ring.queue", "");
+    }
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testSingleProducerQueueOnlyForSingleThreadedStage() throws Exception {
+    TCPropertiesImpl.getProperties().setProperty("seda.spsc.queue", "spsc");
+    try {
+      TCLoggerProvider logger = new DefaultLoggerProvider();
+      EventHandler<MultiThreadedEventContext> handler = mock(EventHandler.class);
+      StageImpl<MultiThreadedEventContext> instance = new StageImpl<>(logger, "spsc", MultiThreadedEventContext.class, handler, 4, null, new QueueFactory(), null, 16, false, true);
+      // workers pass flushes between the queues of a multi-threaded stage so each queue has several producers
+      assertFalse(((RingBufferBlockingQueue<?>)instance.stageQueueFactory(new QueueFactory(), 4, 16).createInstance(Event.class, 16)).isSingleProducer());
+      assertTrue(((RingBufferBlockingQueue<?>)instance.stageQueueFactory(new QueueFactory(), 1, 16).createInstance(Event.class, 16)).isSingleProducer());
+      instance.destroy();
+    } finally {
+      TCPropertiesImpl.getProperties().setProperty("seda.spsc.queue", "");
+    }
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testLatencyRecordedPerEvent() throws Exception {
+    TCLoggerProvider logger = new DefaultLoggerProvider();
+    QueueFactory context = mock(QueueFactory.class);
+    when(context.createInstance(ArgumentMatchers.any(), anyInt())).thenReturn(new ArrayBlockingQueue<>(16));
+    EventHandler<Object> handler = new AbstractEventHandler<Object>() {
+      @Override
+      public void handleEvent(Object context) throws EventHandlerException {
+        ThreadUtil.reallySleep(5);
+      }
+    };
+    StageImpl<Object> instance = new StageImpl<>(logger, "latency", Object.class, handler, 1, null, context, null, 16, false, true);
+    instance.start(mock(ConfigurationContext.class));
+    for (int x = 0; x < 10; x++) {
+      instance.getSink().addToSink(new Object());
+    }
+    // stopping joins the worker so every event has been recorded
+    instance.destroy();
+    Map<String, ?> latency = instance.getLatency();
+    Map<String, Long> executed = (Map<String, Long>)latency.get("executed");
+    Map<String, Long> queued = (Map<String, Long>)latency.get("queued");
+    assertEquals(10L, (long)executed.get("count"));
+    assertEquals(10L, (long)queued.get("count"));
+    assertTrue(executed.get("p50") >= TimeUnit.MILLISECONDS.toNanos(5) * 31 / 32);
+    assertTrue(executed.get("max") >= executed.get("p99"));
+    // the last event waits behind the other nine
+    assertTrue(queued.get("max") >= TimeUnit.MILLISECONDS.toNanos(40));
+    assertEquals(latency, instance.getState().get("latency"));
+  }
+
   private void testMultiContextFlush(int size) throws Exception {
     System.out.println("test a multi context flush");
     TCLoggerProvider logger = new DefaultLoggerProvider();
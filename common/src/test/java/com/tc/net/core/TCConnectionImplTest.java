@@ -36,6 +36,7 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import com.tc.net.protocol.TCProtocolAdaptor;
@@ -455,6 +456,53 @@ public class TCConnectionImplTest {
     }
   }
   
+  @Test
+  public void testQueuedMessagesGatheredIntoOneWrite() throws Exception {
+    try (PortManager.PortRef portRef = PortManager.getInstance().reservePort()) {
+      int port = portRef.port();
+      try (ServerSocket socket = new ServerSocket(port)) {
+        TCConnectionEventListener listener = mock(TCConnectionEventListener.class);
+        TCProtocolAdaptor adaptor = mock(TCProtocolAdaptor.class);
+        TCConnectionManagerImpl mgr = new TCConnectionManagerImpl();
+        final CoreNIOServices nioServiceThread = mock(CoreNIOServices.class);
+        SocketParams socketParams = new SocketParams();
+        SocketEndpointFactory bufferManagerFactory = mock(SocketEndpointFactory.class);
+
+        SocketEndpoint bufferManager = mock(SocketEndpoint.class);
+        when(bufferManager.writeFrom(any())).then(iom -> {
+          for (ByteBuffer b : (ByteBuffer[])iom.getArgument(0)) {
+            b.position(b.limit());
+          }
+          return SocketEndpoint.ResultType.SUCCESS;
+        });
+
+        when(bufferManagerFactory.createSocketEndpoint(any(SocketChannel.class), anyBoolean())).thenReturn(bufferManager);
+
+        TCConnectionImpl conn = new TCConnectionImpl(listener, adaptor, mgr, nioServiceThread, socketParams,
+            bufferManagerFactory);
+        InetSocketAddress addr = new InetSocketAddress("localhost", port);
+        conn.connect(addr, 0);
+
+        WireProtocolMessage[] msgs = new WireProtocolMessage[16];
+        for (int x=0;x<msgs.length;x++) {
+          WireProtocolMessage msg = mock(WireProtocolMessage.class);
+          when(msg.prepareToSend()).thenReturn(Boolean.TRUE);
+          when(msg.getHeader()).thenReturn(mock(WireProtocolHeader.class));
+          when(msg.getEntireMessageData()).thenReturn(TCReferenceSupport.createGCReference(TCByteBufferFactory.wrap(new byte[64])));
+          conn.putMessage(msg);
+          msgs[x] = msg;
+        }
+        Assert.assertEquals(64L * msgs.length, conn.doWrite());
+        //  every queued message goes out in a single gathering write
+        verify(bufferManager, times(1)).writeFrom(any());
+        for (WireProtocolMessage msg : msgs) {
+          verify(msg).complete();
+        }
+        Assert.assertEquals(1L, conn.getState().get("gatheredWrites"));
+      }
+    }
+  }
+
   private void sleepThenClose(TCConnectionImpl conn) {
     try {
       TimeUnit.SECONDS.sleep(3);
@@ -19,6 +19,7 @@ package com.tc.net.core;
 
 import com.tc.bytes.TCByteBuffer;
 import com.tc.bytes.TCByteBufferFactory;
+import com.tc.bytes.TCDirectByteBufferPool;
 import com.tc.bytes.TCReference;
 import com.tc.util.Assert;
 import java.nio.ByteBuffer;
@@ -127,4 +128,27 @@ public class TCSocketEndpointReaderTest {
     }
     verify(returns, times(3)).accept(any());
   }
+
+  @Test
+  public void testPooledBigReadReturnsToPool() throws Exception {
+    SocketEndpoint endpoint = mock(SocketEndpoint.class);
+    when(endpoint.readTo(any())).then((InvocationOnMock iom) -> {
+      for (ByteBuffer b : ((ByteBuffer[])iom.getArgument(0))) {
+        b.position(b.limit());
+      }
+      return SocketEndpoint.ResultType.SUCCESS;
+    });
+    TCDirectByteBufferPool pool = new TCDirectByteBufferPool(4096, 1024 * 1024, 64 * 1024 * 1024);
+    try (TCSocketEndpointReader reader = new TCSocketEndpointReader(pool)) {
+      try (TCReference ref = reader.readFromSocket(endpoint, 32)) {
+        Assert.assertEquals(32L, ref.available());
+      }
+      //  a large message is read into one size classed buffer rather than a chain of fixed ones
+      try (TCReference ref = reader.readFromSocket(endpoint, 1000 * 1000)) {
+        Assert.assertEquals(1000L * 1000, ref.available());
+        Assert.assertEquals(2, pool.leased());
+      }
+    }
+    Assert.assertEquals(0, pool.leased());
+  }
 }
@@ -281,4 +281,32 @@ public class ClientConnectionEstablisherTest {
       assertTrue(ioe.getMessage().startsWith("checked"));
     }
   }
+
+  @Test
+  public void test_retry_delay_backs_off_with_jitter() {
+    for (int attempt = 0; attempt < 40; attempt++) {
+      long ceiling = Math.min(30_000L, 1_000L << Math.min(attempt, 20));
+      long delay = ClientConnectionEstablisher.retryDelay(attempt, 1_000L, 30_000L);
+      assertTrue(delay >= ceiling / 2);
+      assertTrue(delay <= ceiling);
+    }
+    // without room to back off the wait stops growing but stays jittered
+    for (int attempt = 0; attempt < 40; attempt++) {
+      long delay = ClientConnectionEstablisher.retryDelay(attempt, 10_000L, 10_000L);
+      assertTrue(delay >= 5_000L);
+      assertTrue(delay <= 10_000L);
+    }
+  }
+
+  @Test
+  public void test_retry_after_from_server_is_honoured() {
+    Assert.assertEquals(250L, TransportRetryAfter.parse(TransportRetryAfter.describe(250L)));
+    Assert.assertEquals(0L, TransportRetryAfter.parse("connection not allowed"));
+    Assert.assertEquals(0L, TransportRetryAfter.parse(null));
+    for (int x = 0; x < 40; x++) {
+      long delay = ClientConnectionEstablisher.retryAfterDelay(250L);
+      assertTrue(delay >= 250L);
+      assertTrue(delay <= 500L);
+    }
+  }
 }
@@ -0,0 +1,80 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tc.stats;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+  @Test
+  public void testBucketsAreContiguous() {
+    for (long v = 0; v < 100_000; v++) {
+      int index = LatencyHistogram.indexOf(v);
+      assertTrue(v <= LatencyHistogram.highestValueAt(index));
+      if (index > 0) {
+        assertTrue(v > LatencyHistogram.highestValueAt(index - 1));
+      }
+    }
+  }
+
+  @Test
+  public void testPercentilesWithinPrecision() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long v = 1; v <= 10_000; v++) {
+      histogram.record(v * 1000);
+    }
+    LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+    assertEquals(10_000, snapshot.getCount());
+    assertEquals(10_000_000, snapshot.getMax());
+    assertWithin(5_000_000, snapshot.getValueAtPercentile(50));
+    assertWithin(9_900_000, snapshot.getValueAtPercentile(99));
+    assertWithin(9_990_000, snapshot.getValueAtPercentile(99.9));
+    assertEquals(10_000_000, snapshot.getValueAtPercentile(100));
+  }
+
+  @Test
+  public void testOutOfRangeValuesAreClamped() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(-5);
+    histogram.record(Long.MAX_VALUE);
+    LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+    assertEquals(2, snapshot.getCount());
+    assertEquals(0, snapshot.getValueAtPercentile(50));
+    assertEquals((1L << 40) - 1, snapshot.getMax());
+  }
+
+  @Test
+  public void testIntervalFromSnapshots() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(1_000_000);
+    LatencyHistogram.Snapshot first = histogram.snapshot();
+    histogram.record(10);
+    histogram.record(20);
+    LatencyHistogram.Snapshot interval = histogram.snapshot().minus(first);
+    assertEquals(2, interval.getCount());
+    assertEquals(20, interval.getMax());
+    assertEquals(10, interval.getValueAtPercentile(50));
+    assertEquals(0, histogram.snapshot().minus(histogram.snapshot()).getValueAtPercentile(99));
+  }
+
+  private static void assertWithin(long expected, long actual) {
+    assertTrue(expected + " vs " + actual, Math.abs(expected - actual) <= expected / 32);
+  }
+}
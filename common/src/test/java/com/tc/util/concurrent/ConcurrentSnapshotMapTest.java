@@ -0,0 +1,96 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tc.util.concurrent;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrentSnapshotMapTest {
+
+  @Test
+  public void testSnapshotTracksMutations() {
+    ConcurrentSnapshotMap<Integer, String> map = new ConcurrentSnapshotMap<>(String[]::new);
+    assertEquals(0, map.valuesToArray().length);
+    map.put(1, "one");
+    map.put(2, "two");
+    String[] first = map.valuesToArray();
+    assertEquals(new HashSet<>(Arrays.asList("one", "two")), new HashSet<>(Arrays.asList(first)));
+
+    // detached from the map and from other readers
+    first[0] = null;
+    assertNotSame(first, map.valuesToArray());
+    assertEquals(2, Arrays.stream(map.valuesToArray()).filter(v->v != null).count());
+
+    map.remove(1);
+    assertArrayEquals(new String[] {"two"}, map.valuesToArray());
+    assertNull(map.get(1));
+    assertTrue(map.containsKey(2));
+  }
+
+  @Test
+  public void testEpochOnlyMovesOnChange() {
+    ConcurrentSnapshotMap<Integer, String> map = new ConcurrentSnapshotMap<>(String[]::new);
+    String value = "v";
+    map.put(1, value);
+    long epoch = map.epoch();
+    map.put(1, value);
+    map.remove(2);
+    assertEquals(epoch, map.epoch());
+    map.remove(1);
+    assertEquals(epoch + 1, map.epoch());
+  }
+
+  @Test
+  public void testConcurrentRegistrationIsVisible() throws Exception {
+    ConcurrentSnapshotMap<Integer, Integer> map = new ConcurrentSnapshotMap<>(Integer[]::new);
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    CountDownLatch start = new CountDownLatch(1);
+    try {
+      for (int t = 0; t < 4; t++) {
+        int base = t * 1000;
+        pool.execute(()->{
+          try {
+            start.await();
+          } catch (InterruptedException ie) {
+            throw new RuntimeException(ie);
+          }
+          for (int x = base; x < base + 1000; x++) {
+            map.put(x, x);
+            map.valuesToArray();
+          }
+        });
+      }
+      start.countDown();
+    } finally {
+      pool.shutdown();
+      assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+    }
+    assertEquals(4000, map.size());
+    assertEquals(4000, map.valuesToArray().length);
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tc.util.concurrent;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RingBufferBlockingQueueTest {
+
+  @Test
+  public void testCapacityIsRoundedToPowerOfTwo() {
+    assertEquals(1, new RingBufferBlockingQueue<>(1).capacity());
+    assertEquals(8, new RingBufferBlockingQueue<>(5).capacity());
+    assertEquals(1024, new RingBufferBlockingQueue<>(1024).capacity());
+  }
+
+  @Test
+  public void testOfferFailsWhenFull() {
+    RingBufferBlockingQueue<Integer> queue = new RingBufferBlockingQueue<>(4);
+    for (int x = 0; x < 4; x++) {
+      assertTrue(queue.offer(x));
+    }
+    assertFalse(queue.offer(4));
+    assertEquals(4, queue.size());
+    assertEquals(0, queue.remainingCapacity());
+    assertEquals(Integer.valueOf(0), queue.poll());
+    assertTrue(queue.offer(4));
+    for (int x = 1; x < 5; x++) {
+      assertEquals(Integer.valueOf(x), queue.poll());
+    }
+    assertNull(queue.poll());
+    assertTrue(queue.isEmpty());
+  }
+
+  @Test
+  public void testSingleProducerWraps() {
+    RingBufferBlockingQueue<Integer> queue = new RingBufferBlockingQueue<>(2, true);
+    for (int x = 0; x < 100; x++) {
+      assertTrue(queue.offer(x));
+      assertEquals(Integer.valueOf(x), queue.peek());
+      assertEquals(Integer.valueOf(x), queue.poll());
+    }
+  }
+
+  @Test
+  public void testPollTimesOut() throws Exception {
+    RingBufferBlockingQueue<Integer> queue = new RingBufferBlockingQueue<>(4);
+    long start = System.nanoTime();
+    assertNull(queue.poll(50, TimeUnit.MILLISECONDS));
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+  }
+
+  @Test
+  public void testParkedConsumerIsWoken() throws Exception {
+    RingBufferBlockingQueue<Integer> queue = new RingBufferBlockingQueue<>(4);
+    CountDownLatch polling = new CountDownLatch(1);
+    Thread producer = new Thread(() -> {
+      try {
+        polling.await();
+        Thread.sleep(100);
+        queue.put(1);
+      } catch (InterruptedException ie) {
+        throw new RuntimeException(ie);
+      }
+    });
+    producer.start();
+    polling.countDown();
+    assertEquals(Integer.valueOf(1), queue.poll(1, TimeUnit.MINUTES));
+    producer.join();
+  }
+
+  @Test
+  public void testMultipleProducersKeepPerProducerOrder() throws Exception {
+    int producers = 4;
+    int count = 100000;
+    RingBufferBlockingQueue<long[]> queue = new RingBufferBlockingQueue<>(64);
+    List<Thread> threads = new ArrayList<>();
+    for (int p = 0; p < producers; p++) {
+      long id = p;
+      Thread t = new Thread(() -> {
+        try {
+          for (long x = 0; x < count; x++) {
+            queue.put(new long[] {id, x});
+          }
+        } catch (InterruptedException ie) {
+          throw new RuntimeException(ie);
+        }
+      });
+      threads.add(t);
+      t.start();
+    }
+    long[] next = new long[producers];
+    for (int x = 0; x < producers * count; x++) {
+      long[] e = queue.poll(1, TimeUnit.MINUTES);
+      assertEquals(next[(int)e[0]]++, e[1]);
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+    assertTrue(queue.isEmpty());
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tc.util.concurrent;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class VirtualThreadsTest {
+
+  @Test
+  public void testPlatformThreadWhenNotRequested() throws Exception {
+    Thread thread = VirtualThreads.newThread("reader", ()->{}, false);
+    assertEquals("reader", thread.getName());
+    assertTrue(thread.isDaemon());
+    assertFalse(thread.isAlive());
+  }
+
+  @Test
+  public void testRequestedThreadRunsOnAnyRuntime() throws Exception {
+    CountDownLatch ran = new CountDownLatch(1);
+    AtomicReference<String> name = new AtomicReference<>();
+    Thread thread = VirtualThreads.newThread("reconnect", ()->{
+      name.set(Thread.currentThread().getName());
+      ran.countDown();
+    }, true);
+    // virtual threads are always daemon, the fallback is made daemon explicitly
+    assertTrue(thread.isDaemon());
+    thread.start();
+    assertTrue(ran.await(10, TimeUnit.SECONDS));
+    assertEquals("reconnect", name.get());
+    assertEquals(Runtime.version().feature() >= 21, VirtualThreads.isSupported());
+  }
+}
@@ -0,0 +1,28 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.testing.load;
+
+import org.terracotta.passthrough.IClusterControl;
+
+
+/**
+ * An action run against the cluster while a load is running, typically to inject a failover (for example,
+ * {@code IClusterControl::terminateActive}).
+ */
+public interface ClusterAction {
+  public void runOn(IClusterControl control) throws Exception;
+}
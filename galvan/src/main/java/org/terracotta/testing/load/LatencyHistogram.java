@@ -0,0 +1,168 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.testing.load;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * A high dynamic range histogram of latencies, in nanoseconds, kept to 3 significant digits.
+ * Values are counted in log-linear buckets:  each power of 2 is split into 1024 linear sub-buckets so the error of any
+ * reported value is within 0.1% of the recorded one, from 1 nanosecond up to {@link #HIGHEST_TRACKABLE_NANOS}.  Larger
+ * values are counted in the top bucket (the exact maximum is still reported).
+ * Histograms recorded in different client processes can be encoded, decoded and added together so the report for a run
+ * is computed from all of its samples, not from per-client percentiles.
+ */
+public class LatencyHistogram {
+  public static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.HOURS.toNanos(1);
+
+  private static final int SUB_BUCKET_BITS = 11;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;
+  private static final int COUNTS_LENGTH = indexFor(HIGHEST_TRACKABLE_NANOS) + 1;
+
+  private final long[] counts = new long[COUNTS_LENGTH];
+  private long totalCount;
+  private long minValue = Long.MAX_VALUE;
+  private long maxValue;
+  private double sum;
+
+  public synchronized void record(long nanos) {
+    if (nanos < 0) {
+      throw new IllegalArgumentException("Negative latency: " + nanos);
+    }
+    this.counts[indexFor(Math.min(nanos, HIGHEST_TRACKABLE_NANOS))] += 1;
+    this.totalCount += 1;
+    this.minValue = Math.min(this.minValue, nanos);
+    this.maxValue = Math.max(this.maxValue, nanos);
+    this.sum += nanos;
+  }
+
+  public void add(LatencyHistogram other) {
+    // Take a snapshot first so that we never hold both monitors.
+    LatencyHistogram copy = other.copy();
+    synchronized (this) {
+      for (int i = 0; i < COUNTS_LENGTH; ++i) {
+        this.counts[i] += copy.counts[i];
+      }
+      this.totalCount += copy.totalCount;
+      this.minValue = Math.min(this.minValue, copy.minValue);
+      this.maxValue = Math.max(this.maxValue, copy.maxValue);
+      this.sum += copy.sum;
+    }
+  }
+
+  public synchronized LatencyHistogram copy() {
+    LatencyHistogram copy = new LatencyHistogram();
+    System.arraycopy(this.counts, 0, copy.counts, 0, COUNTS_LENGTH);
+    copy.totalCount = this.totalCount;
+    copy.minValue = this.minValue;
+    copy.maxValue = this.maxValue;
+    copy.sum = this.sum;
+    return copy;
+  }
+
+  public synchronized long getTotalCount() {
+    return this.totalCount;
+  }
+
+  public synchronized long getMinValue() {
+    return (0 == this.totalCount) ? 0 : this.minValue;
+  }
+
+  public synchronized long getMaxValue() {
+    return this.maxValue;
+  }
+
+  public synchronized double getMean() {
+    return (0 == this.totalCount) ? 0.0 : (this.sum / this.totalCount);
+  }
+
+  /**
+   * @param percentile The percentile, between 0 and 100
+   * @return The highest value equivalent to the one found at the given percentile, or 0 if the histogram is empty
+   */
+  public synchronized long getValueAtPercentile(double percentile) {
+    if (percentile < 0.0 || percentile > 100.0) {
+      throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+    }
+    if (0 == this.totalCount) {
+      return 0;
+    }
+    long countAtPercentile = Math.max(1, (long) Math.ceil((percentile / 100.0) * this.totalCount));
+    long seen = 0;
+    for (int i = 0; i < COUNTS_LENGTH; ++i) {
+      seen += this.counts[i];
+      if (seen >= countAtPercentile) {
+        // Never report beyond what was actually seen, and the top bucket also holds anything too large to track.
+        return (i == (COUNTS_LENGTH - 1)) ? this.maxValue : Math.min(highestEquivalentValue(i), this.maxValue);
+      }
+    }
+    return this.maxValue;
+  }
+
+  /**
+   * Encodes the histogram as a single line of text:  the summary values followed by the non-zero buckets.
+   */
+  public synchronized String encode() {
+    StringBuilder builder = new StringBuilder();
+    builder.append(this.totalCount).append(',').append(getMinValue()).append(',').append(this.maxValue).append(',').append(Double.doubleToLongBits(this.sum));
+    for (int i = 0; i < COUNTS_LENGTH; ++i) {
+      if (0 != this.counts[i]) {
+        builder.append(' ').append(i).append(':').append(this.counts[i]);
+      }
+    }
+    return builder.toString();
+  }
+
+  public static LatencyHistogram decode(String encoded) {
+    LatencyHistogram histogram = new LatencyHistogram();
+    String[] parts = encoded.trim().split(" ");
+    String[] summary = parts[0].split(",");
+    if (4 != summary.length) {
+      throw new IllegalArgumentException("Not an encoded histogram: " + encoded);
+    }
+    histogram.totalCount = Long.parseLong(summary[0]);
+    histogram.minValue = (0 == histogram.totalCount) ? Long.MAX_VALUE : Long.parseLong(summary[1]);
+    histogram.maxValue = Long.parseLong(summary[2]);
+    histogram.sum = Double.longBitsToDouble(Long.parseLong(summary[3]));
+    for (int i = 1; i < parts.length; ++i) {
+      int separator = parts[i].indexOf(':');
+      int index = Integer.parseInt(parts[i].substring(0, separator));
+      histogram.counts[index] = Long.parseLong(parts[i].substring(separator + 1));
+    }
+    return histogram;
+  }
+
+  private static int indexFor(long value) {
+    // The bucket is the power of 2 above the sub-bucket resolution, the sub-bucket the top bits of the value within it.
+    int bucket = Math.max(0, (Long.SIZE - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS);
+    int subBucket = (int) (value >>> bucket);
+    return (0 == bucket)
+        ? subBucket
+        : SUB_BUCKET_COUNT + ((bucket - 1) * SUB_BUCKET_HALF_COUNT) + (subBucket - SUB_BUCKET_HALF_COUNT);
+  }
+
+  private static long highestEquivalentValue(int index) {
+    if (index < SUB_BUCKET_COUNT) {
+      return index;
+    }
+    int bucket = ((index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF_COUNT) + 1;
+    long subBucket = ((index - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF_COUNT) + SUB_BUCKET_HALF_COUNT;
+    return ((subBucket + 1) << bucket) - 1;
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.testing.load;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.terracotta.passthrough.IClientTestEnvironment;
+import org.terracotta.passthrough.IClusterControl;
+
+
+/**
+ * Drives a {@link LoadProfile} from within a test client.
+ * The load is open-loop:  each client issues its share of the aggregate rate on a fixed schedule, regardless of how long
+ * earlier invocations take, handing each invocation to a pool of workers.  Latency is measured from the time at which an
+ * invocation was scheduled to start, not when a worker got to it, so stalls (a failover, a GC pause, a saturated worker
+ * pool) are reflected in every invocation they delayed instead of being hidden by coordinated omission.
+ * The schedules of the clients are staggered so that they do not all issue at the same instant.
+ * Cluster actions in the profile are run by the first client only, on a separate thread, while the load continues.
+ */
+public class LoadDriver {
+  private final LoadProfile profile;
+  private final IClientTestEnvironment environment;
+  private final IClusterControl control;
+
+  public LoadDriver(LoadProfile profile, IClientTestEnvironment environment, IClusterControl control) {
+    this.profile = profile;
+    this.environment = environment;
+    this.control = control;
+  }
+
+  /**
+   * Runs the profile, blocking until every scheduled invocation and cluster action has completed.
+   * 
+   * @param operation The invocation to issue
+   * @return The result of the measured (post-warm-up) part of the run
+   * @throws Exception The first failure of an injected cluster action
+   */
+  public LoadResult run(LoadOperation operation) throws Exception {
+    int clientCount = this.environment.getTotalClientCount();
+    int clientIndex = this.environment.getThisClientIndex();
+    double clientRatePerSecond = this.profile.getTotalRatePerSecond() / clientCount;
+    long intervalNanos = Math.max(1L, Math.round(TimeUnit.SECONDS.toNanos(1) / clientRatePerSecond));
+    long durationNanos = this.profile.getDuration().toNanos();
+    long warmUpNanos = this.profile.getWarmUp().toNanos();
+    long staggerNanos = (intervalNanos * clientIndex) / clientCount;
+    long scheduled = Math.max(1L, (durationNanos - staggerNanos + intervalNanos - 1) / intervalNanos);
+
+    LatencyHistogram histogram = new LatencyHistogram();
+    AtomicLong errors = new AtomicLong();
+    long issued = 0;
+    ExecutorService workers = Executors.newFixedThreadPool(this.profile.getMaxInFlight(), new WorkerThreadFactory());
+    List<Exception> actionFailures = new ArrayList<>();
+    Thread injector = null;
+
+    long start = System.nanoTime();
+    if ((0 == clientIndex) && !this.profile.getActions().isEmpty()) {
+      injector = new Thread(() -> runActions(start, actionFailures), "load-injector");
+      injector.start();
+    }
+    try {
+      for (long sequence = 0; sequence < scheduled; ++sequence) {
+        long intendedStart = start + staggerNanos + (sequence * intervalNanos);
+        waitUntil(intendedStart);
+        boolean measured = (intendedStart - start) >= warmUpNanos;
+        if (measured) {
+          issued += 1;
+        }
+        long thisSequence = sequence;
+        workers.execute(() -> {
+          try {
+            operation.invoke(thisSequence);
+            if (measured) {
+              histogram.record(System.nanoTime() - intendedStart);
+            }
+          } catch (Exception e) {
+            if (measured) {
+              errors.incrementAndGet();
+            }
+          }
+        });
+      }
+    } finally {
+      workers.shutdown();
+      while (!workers.awaitTermination(1, TimeUnit.MINUTES)) {
+        // Keep waiting:  a failover can hold invocations for longer than a reconnect window.
+      }
+    }
+    long end = System.nanoTime();
+    if (null != injector) {
+      injector.join();
+    }
+    synchronized (actionFailures) {
+      if (!actionFailures.isEmpty()) {
+        throw actionFailures.get(0);
+      }
+    }
+    return new LoadResult(issued, errors.get(), end - (start + warmUpNanos), histogram);
+  }
+
+  private void runActions(long start, List<Exception> failures) {
+    List<LoadProfile.ScheduledAction> actions = new ArrayList<>(this.profile.getActions());
+    actions.sort(Comparator.comparing(LoadProfile.ScheduledAction::getAt));
+    for (LoadProfile.ScheduledAction action : actions) {
+      waitUntil(start + action.getAt().toNanos());
+      try {
+        action.getAction().runOn(this.control);
+      } catch (Exception e) {
+        synchronized (failures) {
+          failures.add(e);
+        }
+        return;
+      }
+    }
+  }
+
+  private static void waitUntil(long nanoTime) {
+    long remaining = nanoTime - System.nanoTime();
+    while (remaining > 0) {
+      LockSupport.parkNanos(remaining);
+      remaining = nanoTime - System.nanoTime();
+    }
+  }
+
+
+  private static class WorkerThreadFactory implements ThreadFactory {
+    private final AtomicInteger nextIndex = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "load-worker-" + this.nextIndex.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.testing.load;
+
+
+/**
+ * The unit of work issued by a {@link LoadDriver}.  It is called concurrently from the driver's worker threads so it must
+ * be thread-safe.  Any exception counts the invocation as an error and its latency is not recorded.
+ */
+public interface LoadOperation {
+  /**
+   * @param sequence The 0-indexed position of this invocation in this client's schedule
+   */
+  public void invoke(long sequence) throws Exception;
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.testing.load;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * Describes the workload of a {@link LoadDriver} run:  the aggregate rate issued by all the test clients, how long to run
+ * (and how much of that is warm-up, excluded from the report), how many invocations each client may have in flight and
+ * the cluster actions to inject at given offsets from the start of the run.
+ */
+public class LoadProfile {
+  public static final int DEFAULT_MAX_IN_FLIGHT = 16;
+
+  private final double totalRatePerSecond;
+  private final Duration duration;
+  private final Duration warmUp;
+  private final int maxInFlight;
+  private final List<ScheduledAction> actions;
+
+  private LoadProfile(Builder builder) {
+    this.totalRatePerSecond = builder.totalRatePerSecond;
+    this.duration = builder.duration;
+    this.warmUp = builder.warmUp;
+    this.maxInFlight = builder.maxInFlight;
+    this.actions = Collections.unmodifiableList(new ArrayList<>(builder.actions));
+  }
+
+  /**
+   * @param totalRatePerSecond The rate of invocations, per second, summed across all test clients
+   * @param duration The length of the run, including any warm-up
+   */
+  public static Builder newProfile(double totalRatePerSecond, Duration duration) {
+    if (!(totalRatePerSecond > 0.0)) {
+      throw new IllegalArgumentException("Rate must be positive: " + totalRatePerSecond);
+    }
+    if (duration.isNegative() || duration.isZero()) {
+      throw new IllegalArgumentException("Duration must be positive: " + duration);
+    }
+    return new Builder(totalRatePerSecond, duration);
+  }
+
+  public double getTotalRatePerSecond() {
+    return this.totalRatePerSecond;
+  }
+
+  public Duration getDuration() {
+    return this.duration;
+  }
+
+  public Duration getWarmUp() {
+    return this.warmUp;
+  }
+
+  public int getMaxInFlight() {
+    return this.maxInFlight;
+  }
+
+  public List<ScheduledAction> getActions() {
+    return this.actions;
+  }
+
+
+  public static class Builder {
+    private final double totalRatePerSecond;
+    private final Duration duration;
+    private Duration warmUp = Duration.ZERO;
+    private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+    private final List<ScheduledAction> actions = new ArrayList<>();
+
+    private Builder(double totalRatePerSecond, Duration duration) {
+      this.totalRatePerSecond = totalRatePerSecond;
+      this.duration = duration;
+    }
+
+    public Builder warmUp(Duration warmUp) {
+      if (warmUp.isNegative() || warmUp.compareTo(this.duration) >= 0) {
+        throw new IllegalArgumentException("Warm-up must be shorter than the run: " + warmUp);
+      }
+      this.warmUp = warmUp;
+      return this;
+    }
+
+    /**
+     * @param maxInFlight The number of invocations each client may run at once (the size of its worker pool)
+     */
+    public Builder maxInFlight(int maxInFlight) {
+      if (maxInFlight < 1) {
+        throw new IllegalArgumentException("Must allow at least one invocation in flight");
+      }
+      this.maxInFlight = maxInFlight;
+      return this;
+    }
+
+    /**
+     * Runs the given action against the cluster once the run has been going for the given time.  Actions are run, in
+     * order, by the first test client only, while the load continues.
+     */
+    public Builder inject(Duration at, ClusterAction action) {
+      if (at.isNegative() || at.compareTo(this.duration) >= 0) {
+        throw new IllegalArgumentException("Action must be scheduled within the run: " + at);
+      }
+      this.actions.add(new ScheduledAction(at, action));
+      return this;
+    }
+
+    public LoadProfile build() {
+      return new LoadProfile(this);
+    }
+  }
+
+
+  public static class ScheduledAction {
+    private final Duration at;
+    private final ClusterAction action;
+
+    private ScheduledAction(Duration at, ClusterAction action) {
+      this.at = at;
+      this.action = action;
+    }
+
+    public Duration getAt() {
+      return this.at;
+    }
+
+    public ClusterAction getAction() {
+      return this.action;
+    }
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.testing.load;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Properties;
+
+
+/**
+ * The outcome of a {@link LoadDriver} run, excluding its warm-up:  how many invocations were issued, how many failed, how
+ * long the measured window lasted and the latency of every successful invocation.
+ * Results are saved as a small properties file so that the harness can merge those written by each client process.
+ */
+public class LoadResult {
+  /**
+   * The name of the file, in a client's working directory, which the harness merges into the report for the run.
+   */
+  public static final String FILE_NAME = "load-result.properties";
+
+  private static final String ISSUED = "issued";
+  private static final String ERRORS = "errors";
+  private static final String ELAPSED_NANOS = "elapsedNanos";
+  private static final String HISTOGRAM = "histogram";
+
+  private final long issued;
+  private final long errors;
+  private final long elapsedNanos;
+  private final LatencyHistogram histogram;
+
+  public LoadResult(long issued, long errors, long elapsedNanos, LatencyHistogram histogram) {
+    this.issued = issued;
+    this.errors = errors;
+    this.elapsedNanos = elapsedNanos;
+    this.histogram = histogram;
+  }
+
+  /**
+   * Merges the results of clients which ran concurrently:  counts and latencies are summed while the elapsed time is that
+   * of the longest client.
+   */
+  public static LoadResult merge(Collection<LoadResult> results) {
+    long issued = 0;
+    long errors = 0;
+    long elapsedNanos = 0;
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (LoadResult result : results) {
+      issued += result.issued;
+      errors += result.errors;
+      elapsedNanos = Math.max(elapsedNanos, result.elapsedNanos);
+      histogram.add(result.histogram);
+    }
+    return new LoadResult(issued, errors, elapsedNanos, histogram);
+  }
+
+  public static LoadResult load(Path file) throws IOException {
+    Properties properties = new Properties();
+    try (InputStream input = Files.newInputStream(file)) {
+      properties.load(input);
+    }
+    return new LoadResult(Long.parseLong(properties.getProperty(ISSUED)),
+                          Long.parseLong(properties.getProperty(ERRORS)),
+                          Long.parseLong(properties.getProperty(ELAPSED_NANOS)),
+                          LatencyHistogram.decode(properties.getProperty(HISTOGRAM)));
+  }
+
+  public void save(Path file) throws IOException {
+    Properties properties = new Properties();
+    properties.setProperty(ISSUED, Long.toString(this.issued));
+    properties.setProperty(ERRORS, Long.toString(this.errors));
+    properties.setProperty(ELAPSED_NANOS, Long.toString(this.elapsedNanos));
+    properties.setProperty(HISTOGRAM, this.histogram.encode());
+    try (OutputStream output = Files.newOutputStream(file)) {
+      properties.store(output, summary());
+    }
+  }
+
+  /**
+   * Saves this result into the working directory of a test client run by the harness, so that it is included in the
+   * merged report written once all the test clients have terminated.
+   */
+  public void saveForHarness() throws IOException {
+    save(Paths.get(FILE_NAME));
+  }
+
+  public long getIssued() {
+    return this.issued;
+  }
+
+  public long getErrors() {
+    return this.errors;
+  }
+
+  public long getElapsedNanos() {
+    return this.elapsedNanos;
+  }
+
+  public LatencyHistogram getHistogram() {
+    return this.histogram;
+  }
+
+  public double getAchievedRatePerSecond() {
+    return (0 == this.elapsedNanos) ? 0.0 : (this.issued * 1_000_000_000.0 / this.elapsedNanos);
+  }
+
+  /**
+   * @return A one-line description of the result, with latencies in microseconds
+   */
+  public String summary() {
+    return String.format(Locale.ROOT, "issued=%d errors=%d rate=%.1f/s latency(us) mean=%.1f p50=%.1f p90=%.1f p99=%.1f p99.9=%.1f p99.99=%.1f max=%.1f",
+        this.issued, this.errors, getAchievedRatePerSecond(),
+        this.histogram.getMean() / 1000.0,
+        micros(50.0), micros(90.0), micros(99.0), micros(99.9), micros(99.99),
+        this.histogram.getMaxValue() / 1000.0);
+  }
+
+  @Override
+  public String toString() {
+    return summary();
+  }
+
+  private double micros(double percentile) {
+    return this.histogram.getValueAtPercentile(percentile) / 1000.0;
+  }
+}
@@ -138,6 +138,10 @@ public class ClientRunner extends Thread {
     this.process.destroyForcibly();
   }
 
+  public Path getClientWorkingDirectory() {
+    return this.clientWorkingDirectory;
+  }
+
   public synchronized void setListener(Listener listener) {
     Assert.assertNull(this.listener);
     this.listener = listener;
@@ -18,10 +18,15 @@ package org.terracotta.testing.master;
 
 import org.terracotta.testing.common.Assert;
 import org.terracotta.testing.config.ClientsConfiguration;
+import org.terracotta.testing.load.LoadResult;
 import org.terracotta.testing.logging.ContextualLogger;
 import org.terracotta.testing.logging.VerboseManager;
 
 import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 
 
@@ -67,7 +72,7 @@ public class ClientSubProcessManager extends Thread {
     boolean destroyWasClean = true;
     String errorMessage = null;
     if (setupWasClean) {
-      didRunCleanly = runTestClients(clientInstaller);
+      didRunCleanly = runTestClients(clientInstaller, harnessLogger);
       if (didRunCleanly) {
         // Run the destroy client, synchronously.
         List<String> extraDestroyArguments = clientsConfig.getClientArgumentBuilder().getArgumentsForDestroyRun(
@@ -91,7 +96,7 @@ public class ClientSubProcessManager extends Thread {
     }
   }
 
-  private boolean runTestClients(ClientInstaller clientInstaller) {
+  private boolean runTestClients(ClientInstaller clientInstaller, ContextualLogger harnessLogger) {
     ClientRunner[] concurrentTests = installTestClients(clientsConfig.getTestClientDebugPortStart(), clientsConfig.getClientsToCreate(), clientInstaller);
 
     // Create a listener.
@@ -125,9 +130,42 @@ public class ClientSubProcessManager extends Thread {
 
     boolean didRunCleanly = didRegisterAndStart && didTerminateWithoutError;
     shutDownAndCleanUpClients(!didRunCleanly, concurrentTests);
+    reportLoadResults(concurrentTests, harnessLogger);
     return didRunCleanly;
   }
 
+  /**
+   * Merges the results saved by any test clients which ran a load (see LoadResult.saveForHarness()) into a single report
+   * in the test directory.  Tests which don't run a load save nothing and get no report.
+   */
+  private void reportLoadResults(ClientRunner[] concurrentTests, ContextualLogger harnessLogger) {
+    List<LoadResult> results = new ArrayList<>();
+    StringBuilder perClient = new StringBuilder();
+    try {
+      for (ClientRunner oneClient : concurrentTests) {
+        Path resultFile = oneClient.getClientWorkingDirectory().resolve(LoadResult.FILE_NAME);
+        if (Files.exists(resultFile)) {
+          LoadResult result = LoadResult.load(resultFile);
+          results.add(result);
+          perClient.append(oneClient.getClientWorkingDirectory().getFileName()).append(": ").append(result.summary()).append(System.lineSeparator());
+        }
+      }
+      if (!results.isEmpty()) {
+        LoadResult merged = LoadResult.merge(results);
+        Path testDirectory = this.clientsConfig.getTestParentDirectory();
+        merged.save(testDirectory.resolve(LoadResult.FILE_NAME));
+        try (Writer report = Files.newBufferedWriter(testDirectory.resolve("load-report.txt"))) {
+          report.write("merged: " + merged.summary() + System.lineSeparator());
+          report.write(perClient.toString());
+        }
+        harnessLogger.output("Load (" + results.size() + " clients): " + merged.summary());
+      }
+    } catch (IOException | RuntimeException e) {
+      // A broken report doesn't change the outcome of the test so just say so.
+      harnessLogger.error("Failed to merge client load results: " + e);
+    }
+  }
+
   private void shutDownAndCleanUpClients(boolean shouldForceTerminate, ClientRunner[] concurrentTests) {
     if (shouldForceTerminate) {
       // Terminate all the tests.
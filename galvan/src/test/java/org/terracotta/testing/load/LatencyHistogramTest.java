@@ -0,0 +1,103 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.testing.load;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class LatencyHistogramTest {
+  @Test
+  public void testEmpty() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.getTotalCount());
+    assertEquals(0, histogram.getValueAtPercentile(99.0));
+    assertEquals(0, histogram.getMinValue());
+    assertEquals(0.0, histogram.getMean(), 0.0);
+  }
+
+  @Test
+  public void testPercentilesWithinPrecision() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long i = 1; i <= 100_000; ++i) {
+      histogram.record(i * 1000);
+    }
+    assertEquals(100_000, histogram.getTotalCount());
+    assertEquals(1000, histogram.getMinValue());
+    assertEquals(100_000_000, histogram.getMaxValue());
+    assertWithinPrecision(50_000_000, histogram.getValueAtPercentile(50.0));
+    assertWithinPrecision(99_000_000, histogram.getValueAtPercentile(99.0));
+    assertWithinPrecision(99_900_000, histogram.getValueAtPercentile(99.9));
+    assertEquals(100_000_000, histogram.getValueAtPercentile(100.0));
+    assertEquals(50_000_500.0, histogram.getMean(), 1.0);
+  }
+
+  @Test
+  public void testSmallValuesAreExact() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long i = 0; i < 2048; ++i) {
+      histogram.record(i);
+    }
+    assertEquals(1023, histogram.getValueAtPercentile(50.0));
+    assertEquals(2047, histogram.getValueAtPercentile(100.0));
+  }
+
+  @Test
+  public void testHugeValuesClamped() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    long huge = LatencyHistogram.HIGHEST_TRACKABLE_NANOS * 10;
+    histogram.record(huge);
+    assertEquals(huge, histogram.getMaxValue());
+    assertEquals(huge, histogram.getValueAtPercentile(100.0));
+  }
+
+  @Test
+  public void testAddMatchesSingleHistogram() {
+    LatencyHistogram all = new LatencyHistogram();
+    LatencyHistogram even = new LatencyHistogram();
+    LatencyHistogram odd = new LatencyHistogram();
+    for (long i = 1; i <= 10_000; ++i) {
+      long value = i * 7919;
+      all.record(value);
+      ((0 == (i % 2)) ? even : odd).record(value);
+    }
+    LatencyHistogram merged = new LatencyHistogram();
+    merged.add(even);
+    merged.add(odd);
+    assertEquals(all.encode(), merged.encode());
+  }
+
+  @Test
+  public void testEncodeDecode() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(5);
+    histogram.record(123_456);
+    histogram.record(987_654_321);
+    LatencyHistogram decoded = LatencyHistogram.decode(histogram.encode());
+    assertEquals(histogram.encode(), decoded.encode());
+    assertEquals(3, decoded.getTotalCount());
+    assertEquals(5, decoded.getMinValue());
+    assertEquals(987_654_321, decoded.getMaxValue());
+    assertEquals(histogram.getMean(), decoded.getMean(), 0.0);
+  }
+
+  private static void assertWithinPrecision(long expected, long actual) {
+    assertTrue("expected " + expected + " but was " + actual, Math.abs(expected - actual) <= (expected / 1000));
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.testing.load;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.terracotta.passthrough.IClusterControl;
+import org.terracotta.passthrough.SimpleClientTestEnvironment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+
+public class LoadDriverTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testIssuesClientShareOfRate() throws Exception {
+    // 2 clients at 400/s in total:  this one issues 200/s for a second, the first 200ms of which is warm-up.
+    LoadProfile profile = LoadProfile.newProfile(400, Duration.ofSeconds(1)).warmUp(Duration.ofMillis(200)).build();
+    AtomicLong invoked = new AtomicLong();
+    LoadResult result = new LoadDriver(profile, environment(2, 1), mock(IClusterControl.class)).run(sequence -> invoked.incrementAndGet());
+    assertEquals(200, invoked.get());
+    assertEquals(160, result.getIssued());
+    assertEquals(160, result.getHistogram().getTotalCount());
+    assertEquals(0, result.getErrors());
+  }
+
+  @Test
+  public void testStallIsNotOmitted() throws Exception {
+    // A single worker stalled for 200ms:  every invocation scheduled during the stall must see it in its latency.
+    LoadProfile profile = LoadProfile.newProfile(500, Duration.ofMillis(600)).maxInFlight(1).build();
+    LoadResult result = new LoadDriver(profile, environment(1, 0), mock(IClusterControl.class)).run(sequence -> {
+      if (50 == sequence) {
+        Thread.sleep(200);
+      }
+    });
+    assertEquals(300, result.getIssued());
+    // About 100 invocations were scheduled during the stall so well over 10% of them are delayed.
+    assertTrue(result.summary(), result.getHistogram().getValueAtPercentile(80.0) > TimeUnit.MILLISECONDS.toNanos(50));
+  }
+
+  @Test
+  public void testErrorsCounted() throws Exception {
+    LoadProfile profile = LoadProfile.newProfile(100, Duration.ofMillis(500)).build();
+    LoadResult result = new LoadDriver(profile, environment(1, 0), mock(IClusterControl.class)).run(sequence -> {
+      if (0 == (sequence % 5)) {
+        throw new Exception("failed");
+      }
+    });
+    assertEquals(50, result.getIssued());
+    assertEquals(10, result.getErrors());
+    assertEquals(40, result.getHistogram().getTotalCount());
+  }
+
+  @Test
+  public void testActionsRunOnFirstClientOnly() throws Exception {
+    LoadProfile profile = LoadProfile.newProfile(100, Duration.ofMillis(300)).inject(Duration.ofMillis(100), IClusterControl::terminateActive).build();
+    IClusterControl first = mock(IClusterControl.class);
+    new LoadDriver(profile, environment(2, 0), first).run(sequence -> {});
+    verify(first).terminateActive();
+    IClusterControl second = mock(IClusterControl.class);
+    new LoadDriver(profile, environment(2, 1), second).run(sequence -> {});
+    verify(second, never()).terminateActive();
+  }
+
+  @Test
+  public void testMergeAndReload() throws Exception {
+    LatencyHistogram fast = new LatencyHistogram();
+    fast.record(1000);
+    LatencyHistogram slow = new LatencyHistogram();
+    slow.record(9000);
+    LoadResult merged = LoadResult.merge(Arrays.asList(new LoadResult(10, 1, 2_000_000_000L, fast), new LoadResult(20, 2, 1_000_000_000L, slow)));
+    assertEquals(30, merged.getIssued());
+    assertEquals(3, merged.getErrors());
+    assertEquals(15.0, merged.getAchievedRatePerSecond(), 0.0);
+    assertEquals(9000, merged.getHistogram().getMaxValue());
+
+    Path file = this.folder.getRoot().toPath().resolve(LoadResult.FILE_NAME);
+    merged.save(file);
+    assertTrue(Files.exists(file));
+    LoadResult loaded = LoadResult.load(file);
+    assertEquals(merged.summary(), loaded.summary());
+  }
+
+  private static SimpleClientTestEnvironment environment(int clientCount, int clientIndex) {
+    return new SimpleClientTestEnvironment("terracotta://localhost:9410", clientCount, clientIndex, null, 1, 1);
+  }
+}
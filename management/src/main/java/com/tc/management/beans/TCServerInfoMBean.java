@@ -111,6 +111,8 @@ public interface TCServerInfoMBean extends TerracottaMBean, RuntimeStatisticCons
 
   String getClusterState(boolean shortForm);
 
+  Map<String, ?> getStageLatencies();
+
   String getConnectedClients() throws IOException;
 
   String getCurrentChannelProperties() throws IOException;
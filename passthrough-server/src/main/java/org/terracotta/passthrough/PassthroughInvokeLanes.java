@@ -0,0 +1,167 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.passthrough;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.terracotta.entity.ConcurrencyStrategy;
+
+
+/**
+ * A fixed set of single-threaded lanes used by the active passthrough server to run invokes concurrently, following the
+ * same rules the multi-process server applies to concurrency keys:
+ * -invokes with the same key always run on the same lane, in the order they were submitted
+ * -invokes on the UNIVERSAL_KEY may run on any lane, so they are given to the least busy one
+ * -invokes on the MANAGEMENT_KEY are a barrier:  the caller must drain all lanes and run them itself
+ * All submissions and drains are made from the server thread, so a drain observes everything submitted before it.
+ */
+class PassthroughInvokeLanes {
+  private final Lane[] lanes;
+
+  /**
+   * @param name The prefix used to name the lane threads
+   * @param count The number of lanes (must be positive)
+   * @param threadSetup Run on each lane thread before it starts taking work
+   * @param running Checked when a lane task fails:  failures are only fatal while the server is still running
+   * @param handler The handler for fatal failures on a lane thread
+   */
+  PassthroughInvokeLanes(String name, int count, Runnable threadSetup, BooleanSupplier running, Thread.UncaughtExceptionHandler handler) {
+    Assert.assertTrue(count > 0);
+    this.lanes = new Lane[count];
+    for (int i = 0; i < count; ++i) {
+      this.lanes[i] = new Lane(name + " invoke lane " + i, threadSetup, running, handler);
+    }
+  }
+
+  void start() {
+    for (Lane lane : this.lanes) {
+      lane.thread.start();
+    }
+  }
+
+  /**
+   * Hands the given task to the lane responsible for the given concurrency key.
+   * 
+   * @param concurrencyKey The key of the invoke (must not be the MANAGEMENT_KEY)
+   * @param task The invoke to run
+   */
+  void execute(int concurrencyKey, Runnable task) {
+    Assert.assertTrue(ConcurrencyStrategy.MANAGEMENT_KEY != concurrencyKey);
+    laneFor(concurrencyKey).submit(task);
+  }
+
+  /**
+   * Blocks until every task submitted before this call has run.
+   */
+  void drain() throws InterruptedException {
+    CountDownLatch latch = new CountDownLatch(this.lanes.length);
+    for (Lane lane : this.lanes) {
+      lane.submit(latch::countDown);
+    }
+    latch.await();
+  }
+
+  boolean isLaneThread(Thread thread) {
+    for (Lane lane : this.lanes) {
+      if (lane.thread == thread) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Stops all lanes, dropping any tasks which have not yet started.  Called after the server has stopped running.
+   */
+  void shutdown() {
+    for (Lane lane : this.lanes) {
+      lane.thread.interrupt();
+    }
+    for (Lane lane : this.lanes) {
+      // Entity code running on a lane may be what asked the server to stop.
+      if (lane.thread != Thread.currentThread()) {
+        try {
+          lane.thread.join();
+        } catch (InterruptedException e) {
+          Assert.unexpected(e);
+        }
+      }
+      lane.queue.clear();
+    }
+  }
+
+  private Lane laneFor(int concurrencyKey) {
+    if (ConcurrencyStrategy.UNIVERSAL_KEY == concurrencyKey) {
+      Lane idlest = this.lanes[0];
+      for (Lane lane : this.lanes) {
+        if (lane.pending.get() < idlest.pending.get()) {
+          idlest = lane;
+        }
+      }
+      return idlest;
+    } else {
+      return this.lanes[Math.floorMod(concurrencyKey, this.lanes.length)];
+    }
+  }
+
+
+  private static class Lane {
+    private final BlockingQueue<Runnable> queue = new LinkedBlockingQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Thread thread;
+
+    public Lane(String name, Runnable threadSetup, BooleanSupplier running, Thread.UncaughtExceptionHandler handler) {
+      this.thread = new Thread(() -> {
+        threadSetup.run();
+        runLane(running);
+      }, name);
+      this.thread.setUncaughtExceptionHandler(handler);
+    }
+
+    public void submit(Runnable task) {
+      this.pending.incrementAndGet();
+      this.queue.add(task);
+    }
+
+    private void runLane(BooleanSupplier running) {
+      while (true) {
+        Runnable task;
+        try {
+          task = this.queue.take();
+        } catch (InterruptedException e) {
+          // Interruption is how the lane is told to stop.
+          return;
+        }
+        try {
+          task.run();
+        } catch (Throwable t) {
+          // As on the server thread, entity code may object to being interrupted during shutdown so only a failure
+          // while the server is still running is fatal.
+          if (running.getAsBoolean()) {
+            throw t;
+          }
+        } finally {
+          this.pending.decrementAndGet();
+        }
+      }
+    }
+  }
+}
@@ -29,10 +29,11 @@ import org.terracotta.entity.EntityMessage;
 
 
 /**
- * This is a heavily simplified retirement manager which would have to be replaced/extended if we were to switch to a
- * multi-threaded passthrough server.
- * Additionally, it is currently very coarse:  on deferred message will block ALL retirement, not just the retirement on its
+ * This is a heavily simplified retirement manager.
+ * It is currently very coarse:  on deferred message will block ALL retirement, not just the retirement on its
  * concurrency key.
+ * When the server runs invokes on several lanes, a deferral may be attached to the retirement of a message from another
+ * lane.  This only delays that retirement until the deferral is resolved so the ordering guarantees still hold.
  */
 public class PassthroughRetirementManager {
 
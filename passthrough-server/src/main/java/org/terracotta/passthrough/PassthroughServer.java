@@ -56,6 +56,7 @@ public class PassthroughServer implements PassthroughDumper {
   private String serverName;
   private int bindPort;
   private int groupPort;
+  private int invokeLaneCount;
   
   private boolean isActive;
     
@@ -106,6 +107,18 @@ public class PassthroughServer implements PassthroughDumper {
   public void setGroupPort(int groupPort) {
     this.groupPort = groupPort;
   }
+
+  /**
+   * Lets the active run invokes on the given number of worker lanes instead of the server thread, honoring the
+   * ConcurrencyStrategy of each entity:  invokes with the same key run in order on the same lane, UNIVERSAL_KEY invokes
+   * run on any lane and MANAGEMENT_KEY invokes, like all other messages, wait for the lanes to drain.
+   * The default of 0 runs everything on the server thread.  Passives always apply invokes sequentially.
+   * 
+   * @param invokeLaneCount The number of lanes, or 0 to disable concurrent invokes
+   */
+  public void setInvokeLaneCount(int invokeLaneCount) {
+    this.invokeLaneCount = invokeLaneCount;
+  }
    
   public void registerServerEntityService(EntityServerService<?, ?> service) {
     assertFalse(()->this.hasStarted);
@@ -184,6 +197,7 @@ public class PassthroughServer implements PassthroughDumper {
 
   private void bootstrapProcess(boolean active) {
     this.serverProcess = new PassthroughServerProcess(serverName, bindPort, groupPort, this.extendedConfigurationObjects, active, this.crasher);
+    this.serverProcess.setInvokeLaneCount(this.invokeLaneCount);
 
     // Populate the server with its services.
     for (EntityServerService<?, ?> serverEntityService : this.savedServerEntityServices) {
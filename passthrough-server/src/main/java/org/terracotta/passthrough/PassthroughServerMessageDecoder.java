@@ -30,7 +30,7 @@ import java.util.Set;
  * A helper class which decodes a message, on the server, deciding if it needs to be replicated to a passive and translating
  * it into high-level operations on the server.
  * One instance of this is created for every message processed by a server.
- * It is used entirely on the server thread.
+ * It is used entirely on the server thread, except for the completion of an invoke which the server ran on a worker lane.
  */
 public class PassthroughServerMessageDecoder implements PassthroughMessageCodec.Decoder<Void> {
   private final PassthroughServerProcess thisServer;
@@ -289,17 +289,24 @@ public class PassthroughServerMessageDecoder implements PassthroughMessageCodec.
         long clientInstanceID = input.readLong();
         byte[] payload = new byte[input.readInt()];
         input.readFully(payload);
+        // Note that the invoke is asynchronous since the server may hand it off to a worker lane.
+        IInvokeResult onInvoke = new IInvokeResult() {
+          @Override
+          public void onInvokeComplete(byte[] response, EntityException error) {
+            sendCompleteResponse(sender, transactionID, response, error);
+          }
+        };
         byte[] response = null;
         EntityException error = null;
         try {
-          // We respond with the config, if found.
-          response = this.messageHandler.invoke(sender,
-                                                clientInstanceID,
-                                                transactionID,
-                                                oldestTransactionID,
-                                                entityClassName,
-                                                entityName,
-                                                payload);
+          this.messageHandler.invoke(sender,
+                                     clientInstanceID,
+                                     transactionID,
+                                     oldestTransactionID,
+                                     entityClassName,
+                                     entityName,
+                                     payload,
+                                     onInvoke);
         } catch (EntityException e) {
           error = e;
         } catch (RuntimeException e) {
@@ -307,7 +314,10 @@ public class PassthroughServerMessageDecoder implements PassthroughMessageCodec.
           // Just wrap this as a user exception since it was unexpected.
           error = new EntityServerException(entityClassName, entityName, e.getLocalizedMessage(), e);
         }
-        sendCompleteResponse(sender, transactionID, response, error);
+        // A failure before the invoke could be run is the only case where we send the response at this level.
+        if (null != error) {
+          sendCompleteResponse(sender, transactionID, response, error);
+        }
         break;
       }
       case ACK_FROM_SERVER:
@@ -501,13 +511,14 @@ public class PassthroughServerMessageDecoder implements PassthroughMessageCodec.
     boolean destroy(String entityClassName, String entityName) throws EntityException;
     void fetch(IMessageSenderWrapper sender, long clientInstanceID, String entityClassName, String entityName, long version, IFetchResult onFetch);
     void release(IMessageSenderWrapper sender, long clientInstanceID, String entityClassName, String entityName) throws EntityException;
-    byte[] invoke(IMessageSenderWrapper sender,
-                  long clientInstanceID,
-                  long transactionId,
-                  long eldestTransactionId,
-                  String entityClassName,
-                  String entityName,
-                  byte[] payload) throws EntityException;
+    void invoke(IMessageSenderWrapper sender,
+                long clientInstanceID,
+                long transactionId,
+                long eldestTransactionId,
+                String entityClassName,
+                String entityName,
+                byte[] payload,
+                IInvokeResult onInvoke) throws EntityException;
     void reconnect(IMessageSenderWrapper sender, long clientInstanceID, String entityClassName, String entityName, byte[] extendedData);
     void syncEntityStart(IMessageSenderWrapper sender, String entityClassName, String entityName) throws EntityException;
     void syncEntityEnd(IMessageSenderWrapper sender, String entityClassName, String entityName) throws EntityException;
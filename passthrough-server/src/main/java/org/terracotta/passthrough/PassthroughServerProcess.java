@@ -50,6 +50,7 @@ import org.terracotta.monitoring.PlatformMonitoringConstants;
 import org.terracotta.monitoring.PlatformServer;
 import org.terracotta.monitoring.ServerState;
 import org.terracotta.passthrough.PassthroughImplementationProvidedServiceProvider.DeferredEntityContainer;
+import org.terracotta.passthrough.PassthroughMessage.Type;
 import org.terracotta.passthrough.PassthroughServerMessageDecoder.LifeCycleMessageHandler;
 import org.terracotta.passthrough.PassthroughServerMessageDecoder.MessageHandler;
 import org.terracotta.persistence.IPlatformPersistence;
@@ -105,6 +106,9 @@ public class PassthroughServerProcess implements MessageHandler, PassthroughDump
   private final List<EntityServerService<?, ?>> entityServices;
   private Thread serverThread;
   private Thread.UncaughtExceptionHandler crashHandler;
+  // The number of lanes used to run invokes concurrently, on the active, or 0 to run them all on the server thread.
+  private int invokeLaneCount;
+  private PassthroughInvokeLanes invokeLanes;
   private final BlockingQueue<PassthroughMessageContainer> messageQueue;
   // Currently, for simplicity, we will resolve entities by name.
   // Technically, these should be resolved by class+name.
@@ -163,9 +167,16 @@ public class PassthroughServerProcess implements MessageHandler, PassthroughDump
   void setCrashHandler(Thread.UncaughtExceptionHandler handler) {
     this.crashHandler = handler;
   }
+
+  void setInvokeLaneCount(int invokeLaneCount) {
+    Assert.assertTrue(invokeLaneCount >= 0);
+    this.invokeLaneCount = invokeLaneCount;
+  }
   
   public boolean isServerThread() {
-    return serverThread == Thread.currentThread();
+    Thread current = Thread.currentThread();
+    PassthroughInvokeLanes lanes = this.invokeLanes;
+    return (serverThread == current) || ((null != lanes) && lanes.isLaneThread(current));
   }
 
   public PassthroughRetirementManager getRetirementManager() {
@@ -301,10 +312,11 @@ public class PassthroughServerProcess implements MessageHandler, PassthroughDump
   private void startServerThreadRunning() {
     Assert.assertTrue(null == this.serverThread);
     this.serverThread = new Thread(this::runServerThread);
-    if (this.crashHandler != null) {
-      this.serverThread.setUncaughtExceptionHandler(this.crashHandler);
-    } else {
-      this.serverThread.setUncaughtExceptionHandler(PassthroughUncaughtExceptionHandler.sharedInstance);
+    Thread.UncaughtExceptionHandler handler = (this.crashHandler != null) ? this.crashHandler : PassthroughUncaughtExceptionHandler.sharedInstance;
+    this.serverThread.setUncaughtExceptionHandler(handler);
+    // Only the active runs invokes concurrently:  passives apply them in the order they were replicated.
+    if ((this.invokeLaneCount > 0) && (null != this.activeEntities)) {
+      this.invokeLanes = new PassthroughInvokeLanes(getSafeServerName(), this.invokeLaneCount, this::setServerEnv, this.running::isRaised, handler);
     }
 
     this.running.raise();
@@ -327,6 +339,9 @@ public class PassthroughServerProcess implements MessageHandler, PassthroughDump
       long timestamp = System.currentTimeMillis();
       this.serviceInterface.addNode(PlatformMonitoringConstants.PLATFORM_PATH, PlatformMonitoringConstants.STATE_NODE_NAME, new ServerState(stateValue, timestamp, (this.activeEntities != null) ? timestamp : -1));
     }
+    if (null != this.invokeLanes) {
+      this.invokeLanes.start();
+    }
     this.serverThread.start();
   }
 
@@ -369,6 +384,11 @@ public class PassthroughServerProcess implements MessageHandler, PassthroughDump
     } catch (InterruptedException e) {
       Assert.unexpected(e);
     }
+    // Any invokes still running on the lanes are abandoned in the same way as the messages in the queue.
+    if (null != this.invokeLanes) {
+      this.invokeLanes.shutdown();
+      this.invokeLanes = null;
+    }
     // We also want to clear the message queue, in case anything else is still sitting there.
     this.messageQueue.clear();
     this.serverThread = null;
@@ -531,10 +551,13 @@ public class PassthroughServerProcess implements MessageHandler, PassthroughDump
   
   private void retireReadyItems(EntityMessage messageRun) {
     if (null != this.activeEntities) {
-      List<PassthroughRetirementManager.RetirementTuple> messagesToRetire = retirementManager.retireableListAfterMessageDone(messageRun);
-      for (PassthroughRetirementManager.RetirementTuple oneTuple : messagesToRetire) {
-        if (null != oneTuple.sender) {
-          oneTuple.sender.sendMessageToClient(this, oneTuple.response);
+      // Invokes may complete on different lanes so hold the manager while sending to keep the retirement order.
+      synchronized (retirementManager) {
+        List<PassthroughRetirementManager.RetirementTuple> messagesToRetire = retirementManager.retireableListAfterMessageDone(messageRun);
+        for (PassthroughRetirementManager.RetirementTuple oneTuple : messagesToRetire) {
+          if (null != oneTuple.sender) {
+            oneTuple.sender.sendMessageToClient(this, oneTuple.response);
+          }
         }
       }
     }
@@ -545,9 +568,11 @@ public class PassthroughServerProcess implements MessageHandler, PassthroughDump
     if (null != this.activeEntities) {
       // Ask the retirement manager what to do with this.
       PassthroughRetirementManager.RetirementTuple tuple = new PassthroughRetirementManager.RetirementTuple(sender, retired.asSerializedBytes());
-      if (!retirementManager.addRetirementTuple(tuple)) {
-        if (null != sender) {
-          sender.sendMessageToClient(this, tuple.response);
+      synchronized (retirementManager) {
+        if (!retirementManager.addRetirementTuple(tuple)) {
+          if (null != sender) {
+            sender.sendMessageToClient(this, tuple.response);
+          }
         }
       }
     }
@@ -754,32 +779,51 @@ public class PassthroughServerProcess implements MessageHandler, PassthroughDump
   
   private void serverThreadHandleMessage(IMessageSenderWrapper sender, byte[] message) {
     // Called on the server thread to handle a message.
+    // Only invokes can overlap with the work on the lanes:  anything else waits for the lanes to drain, first.
+    if (null != this.invokeLanes) {
+      Type type = PassthroughMessageCodec.decodeRawMessage((messageType, shouldReplicate, transactionID, oldestTransactionID, input) -> messageType, message);
+      if (Type.INVOKE_ON_SERVER != type) {
+        drainInvokeLanes();
+      }
+    }
     PassthroughMessageCodec.Decoder<Void> decoder = new PassthroughServerMessageDecoder(this, this, this.transactionOrderManager, this.lifeCycleMessageHandler, this.downstreamPassives, sender, this.crasher, message);
     PassthroughMessageCodec.decodeRawMessage(decoder, message);
   }
 
+  private void drainInvokeLanes() {
+    try {
+      this.invokeLanes.drain();
+    } catch (InterruptedException e) {
+      // Interruption is how the server thread is told to stop.
+      if (running.isRaised()) {
+        Assert.unexpected(e);
+      }
+    }
+  }
+
   @Override
-  public byte[] invoke(IMessageSenderWrapper sender,
-                       long clientInstanceID,
-                       long transactionId,
-                       long eldestTransactionId,
-                       String entityClassName,
-                       String entityName,
-                       byte[] payload) throws EntityException {
+  public void invoke(IMessageSenderWrapper sender,
+                     long clientInstanceID,
+                     long transactionId,
+                     long eldestTransactionId,
+                     String entityClassName,
+                     String entityName,
+                     byte[] payload,
+                     IInvokeResult onInvoke) throws EntityException {
     final PassthroughEntityTuple entityTuple = new PassthroughEntityTuple(entityClassName, entityName);
-    byte[] response = null;
     if (null != this.activeEntities) {
       // Invoke on active.
       CreationData<?, ?> data = this.activeEntities.get(entityTuple);
       if (null != data) {
         PassthroughClientDescriptor clientDescriptor = sender.clientDescriptorForID(clientInstanceID);
-        response = sendActiveInvocation(sender, entityClassName,
-                                        entityName,
-                                        clientDescriptor,
-                                        transactionId,
-                                        eldestTransactionId,
-                                        data,
-                                        payload);
+        sendActiveInvocation(sender, entityClassName,
+                             entityName,
+                             clientDescriptor,
+                             transactionId,
+                             eldestTransactionId,
+                             data,
+                             payload,
+                             onInvoke);
       } else {
         throw new EntityNotFoundException(entityClassName, entityName);
       }
@@ -799,37 +843,58 @@ public class PassthroughServerProcess implements MessageHandler, PassthroughDump
                               eldestTransactionId,
                               data,
                               payload);
+        onInvoke.onInvokeComplete(null, null);
       } else {
         throw new EntityNotFoundException(entityClassName, entityName);
       }
     }
-    return response;
   }
 
-  private <M extends EntityMessage, R extends EntityResponse> byte[] sendActiveInvocation(IMessageSenderWrapper sender, String className,
-                                                                                          String entityName,
-                                                                                          ClientDescriptor clientDescriptor,
-                                                                                          long transactionId,
-                                                                                          long eldestTransactionId,
-                                                                                          CreationData<M, R> data,
-                                                                                          byte[] payload) throws EntityException {
+  private <M extends EntityMessage, R extends EntityResponse> void sendActiveInvocation(IMessageSenderWrapper sender, String className,
+                                                                                        String entityName,
+                                                                                        ClientDescriptor clientDescriptor,
+                                                                                        long transactionId,
+                                                                                        long eldestTransactionId,
+                                                                                        CreationData<M, R> data,
+                                                                                        byte[] payload,
+                                                                                        IInvokeResult onInvoke) throws EntityException {
     ActiveServerEntity<M, R> entity = data.getActive();
     MessageCodec<M, R> codec = data.messageCodec;
     M msg = deserialize(className, entityName, codec, payload);
     if (data.executionStrategy.getExecutionLocation(msg).runOnActive()) {
-      try {
-        int cKey = data.concurrency.concurrencyKey(msg);
-        R response = entity.invokeActive(new PassThroughServerActiveInvokeContext<>(msg, clientDescriptor,
+      int cKey = data.concurrency.concurrencyKey(msg);
+      Runnable task = () -> {
+        byte[] response = null;
+        EntityException error = null;
+        try {
+          R result = entity.invokeActive(new PassThroughServerActiveInvokeContext<>(msg, clientDescriptor,
                                                                                   cKey,
                                                                                   transactionId,
                                                                                   eldestTransactionId, sender, retirementManager, codec),
                                          msg);
-        return serializeResponse(className, entityName, codec, response);
-      } catch (EntityUserException eu) {
-        throw new EntityServerException(className, entityName, eu.getLocalizedMessage(), eu);
+          response = serializeResponse(className, entityName, codec, result);
+        } catch (EntityUserException eu) {
+          error = new EntityServerException(className, entityName, eu.getLocalizedMessage(), eu);
+        } catch (EntityException e) {
+          error = e;
+        } catch (RuntimeException e) {
+          e.printStackTrace();
+          // Just wrap this as a user exception since it was unexpected.
+          error = new EntityServerException(className, entityName, e.getLocalizedMessage(), e);
+        }
+        onInvoke.onInvokeComplete(response, error);
+      };
+      if ((null == this.invokeLanes) || (ConcurrencyStrategy.MANAGEMENT_KEY == cKey)) {
+        // The MANAGEMENT_KEY is a barrier:  it runs on the server thread once everything before it has run.
+        if (null != this.invokeLanes) {
+          drainInvokeLanes();
+        }
+        task.run();
+      } else {
+        this.invokeLanes.execute(cKey, task);
       }
     } else {
-      return new byte[0];
+      onInvoke.onInvokeComplete(new byte[0], null);
     }
   }
 
@@ -0,0 +1,129 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.passthrough;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.terracotta.entity.ConcurrencyStrategy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class PassthroughInvokeLanesTest {
+  private PassthroughInvokeLanes lanes;
+
+  @Before
+  public void setUp() {
+    this.lanes = new PassthroughInvokeLanes("test", 4, () -> {}, () -> true, PassthroughUncaughtExceptionHandler.sharedInstance);
+    this.lanes.start();
+  }
+
+  @After
+  public void tearDown() {
+    this.lanes.shutdown();
+  }
+
+  @Test
+  public void testSameKeyRunsInOrderOnOneLane() throws Exception {
+    List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+    Set<Thread> threads = Collections.synchronizedSet(new HashSet<>());
+    for (int i = 0; i < 100; ++i) {
+      int value = i;
+      this.lanes.execute(7, () -> {
+        threads.add(Thread.currentThread());
+        order.add(value);
+      });
+    }
+    this.lanes.drain();
+    assertEquals(1, threads.size());
+    for (int i = 0; i < 100; ++i) {
+      assertEquals(i, order.get(i).intValue());
+    }
+    assertTrue(this.lanes.isLaneThread(threads.iterator().next()));
+    assertFalse(this.lanes.isLaneThread(Thread.currentThread()));
+  }
+
+  @Test
+  public void testDifferentKeysRunConcurrently() throws Exception {
+    // Keys 1 and 2 land on different lanes so the first can only finish once the second has run.
+    CountDownLatch secondRan = new CountDownLatch(1);
+    CountDownLatch firstFinished = new CountDownLatch(1);
+    this.lanes.execute(1, () -> {
+      try {
+        if (secondRan.await(10, TimeUnit.SECONDS)) {
+          firstFinished.countDown();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    this.lanes.execute(2, secondRan::countDown);
+    assertTrue(firstFinished.await(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testUniversalKeyAvoidsBusyLane() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    Set<Thread> busy = Collections.synchronizedSet(new HashSet<>());
+    this.lanes.execute(4, () -> {
+      busy.add(Thread.currentThread());
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    CountDownLatch universalRan = new CountDownLatch(3);
+    for (int i = 0; i < 3; ++i) {
+      this.lanes.execute(ConcurrencyStrategy.UNIVERSAL_KEY, universalRan::countDown);
+    }
+    // None of these should be queued behind the blocked lane.
+    assertTrue(universalRan.await(10, TimeUnit.SECONDS));
+    release.countDown();
+    this.lanes.drain();
+    assertEquals(1, busy.size());
+  }
+
+  @Test
+  public void testDrainWaitsForAllLanes() throws Exception {
+    List<Integer> done = Collections.synchronizedList(new ArrayList<>());
+    for (int i = 1; i <= 8; ++i) {
+      int key = i;
+      this.lanes.execute(key, () -> {
+        try {
+          Thread.sleep(10);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        done.add(key);
+      });
+    }
+    this.lanes.drain();
+    assertEquals(8, done.size());
+  }
+}
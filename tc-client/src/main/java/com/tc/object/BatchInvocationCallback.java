@@ -0,0 +1,116 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tc.object;
+
+import org.terracotta.entity.EntityResponse;
+import org.terracotta.entity.InvocationCallback;
+import org.terracotta.entity.MessageCodec;
+import org.terracotta.entity.MessageCodecException;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntFunction;
+
+/**
+ * The one callback shared by every invoke of a batch.  Responses are decoded into their slot of the batch and each
+ * acknowledgement is passed on once every invoke of the batch has seen it.  Failures are passed on as they happen and
+ * a batch with any failure has no result.
+ */
+class BatchInvocationCallback<R extends EntityResponse> implements IntFunction<SafeInvocationCallback<byte[]>> {
+  private final MessageCodec<?, R> codec;
+  private final SafeInvocationCallback<List<R>> callback;
+  private final Object[] results;
+  private final AtomicIntegerArray counts = new AtomicIntegerArray(InvocationCallback.Types.values().length);
+  private volatile boolean failed;
+
+  BatchInvocationCallback(MessageCodec<?, R> codec, SafeInvocationCallback<List<R>> callback, int size) {
+    this.codec = codec;
+    this.callback = callback;
+    this.results = new Object[size];
+  }
+
+  @Override
+  public SafeInvocationCallback<byte[]> apply(int index) {
+    return new Slot(index);
+  }
+
+  void failure(Throwable failure) {
+    failed = true;
+    callback.failure(failure);
+  }
+
+  private boolean last(InvocationCallback.Types type) {
+    return counts.incrementAndGet(type.ordinal()) == results.length;
+  }
+
+  private class Slot implements SafeInvocationCallback<byte[]> {
+    private final int index;
+
+    private Slot(int index) {
+      this.index = index;
+    }
+
+    @Override
+    public void sent() {
+      if (last(InvocationCallback.Types.SENT)) {
+        callback.sent();
+      }
+    }
+
+    @Override
+    public void received() {
+      if (last(InvocationCallback.Types.RECEIVED)) {
+        callback.received();
+      }
+    }
+
+    @Override
+    public void result(byte[] response) {
+      try {
+        results[index] = codec.decodeResponse(response);
+      } catch (MessageCodecException e) {
+        BatchInvocationCallback.this.failure(e);
+      }
+    }
+
+    @Override
+    public void failure(Throwable failure) {
+      BatchInvocationCallback.this.failure(failure);
+    }
+
+    @Override
+    public void complete() {
+      if (last(InvocationCallback.Types.COMPLETE)) {
+        if (!failed) {
+          @SuppressWarnings("unchecked")
+          List<R> responses = (List<R>) (List<?>) Collections.unmodifiableList(Arrays.asList(results));
+          callback.result(responses);
+        }
+        callback.complete();
+      }
+    }
+
+    @Override
+    public void retired() {
+      if (last(InvocationCallback.Types.RETIRED)) {
+        callback.retired();
+      }
+    }
+  }
+}
@@ -17,6 +17,7 @@
  */
 package com.tc.object;
 
+import com.tc.bytes.TCByteBuffer;
 import com.tc.bytes.TCByteBufferFactory;
 import com.tc.exception.EntityBusyException;
 import com.tc.exception.EntityReferencedException;
@@ -53,14 +54,18 @@ import com.tc.object.msg.ClientEntityReferenceContext;
 import com.tc.object.msg.ClientHandshakeMessage;
 import com.tc.object.session.SessionID;
 import com.tc.object.tx.TransactionID;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
 import com.tc.text.MapListPrettyPrint;
 import com.tc.text.PrettyPrintable;
 import com.tc.util.Assert;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 
+import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
@@ -70,7 +75,9 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
 import java.util.function.Supplier;
 
 import org.terracotta.exception.EntityNotFoundException;
@@ -99,6 +106,18 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
   private final LongAdder msgCount = new LongAdder();
   private final LongAdder inflights = new LongAdder();
   private final LongAdder addWindow = new LongAdder();
+  private final LongAdder creditWaits = new LongAdder();
+
+  // number of in-flight messages the server is willing to accept, unbounded until the server advertises
+  private volatile int creditWindow = Integer.MAX_VALUE;
+  private volatile int creditWaiters = 0;
+  // in-flight messages holding credit, reserved before the message is tracked so concurrent callers can't overshoot
+  private final AtomicInteger creditUsed = new AtomicInteger();
+  // set while this thread delivers server responses to callbacks, it can't wait on credit only it can return
+  private static final ThreadLocal<Boolean> DELIVERING = new ThreadLocal<>();
+  private final boolean creditFailFast = TCPropertiesImpl.getProperties().getBoolean(TCPropertiesConsts.L1_ENTITY_CREDIT_FAILFAST, false);
+  // only servers that know the packed encoding can read a batch sent as one message
+  private final boolean packInvokes = TCPropertiesImpl.getProperties().getBoolean(TCPropertiesConsts.L1_ENTITY_INVOKE_PACKED, false);
 
   public ClientEntityManagerImpl(ClientMessageChannel channel) {
     this.channel = channel;
@@ -117,12 +136,91 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
   private boolean enqueueMessage(InFlightMessage msg) throws RejectedExecutionException {
     if (this.stateManager.isShutdown()) {
       return false;
+    } else if (!waitForCredit()) {
+      return false;
     } else {
       inFlightMessages.put(msg.getTransactionID(), msg);
       return true;
     }
   }
 
+  /**
+   * Remove an in-flight message and return its credit.
+   */
+  private boolean untrack(TransactionID id, InFlightMessage msg) {
+    if (inFlightMessages.remove(id, msg)) {
+      creditUsed.decrementAndGet();
+      releaseCredit();
+      return true;
+    }
+    return false;
+  }
+
+  private boolean reserveCredit() {
+    while (true) {
+      int used = creditUsed.get();
+      if (used >= creditWindow) {
+        return false;
+      } else if (creditUsed.compareAndSet(used, used + 1)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Reserve credit for one in-flight message, blocking the caller while the server advertised window is exhausted.
+   * Invokes made while delivering a response take credit regardless, the thread waiting would be the one returning it.
+   *
+   * @return false if the manager was shutdown while waiting
+   * @throws RejectedExecutionException if the window is exhausted and fail fast is configured
+   */
+  private boolean waitForCredit() throws RejectedExecutionException {
+    if (reserveCredit()) {
+      return true;
+    }
+    if (DELIVERING.get() != null) {
+      creditUsed.incrementAndGet();
+      return true;
+    }
+    if (creditFailFast) {
+      throw new RejectedExecutionException("server window of " + creditWindow + " in-flight messages is exhausted");
+    }
+    creditWaits.increment();
+    boolean interrupted = false;
+    try {
+      synchronized (this) {
+        creditWaiters += 1;
+        try {
+          while (!reserveCredit()) {
+            if (stateManager.isShutdown()) {
+              return false;
+            }
+            try {
+              wait(TimeUnit.SECONDS.toMillis(1));
+            } catch (InterruptedException ie) {
+              interrupted = true;
+            }
+          }
+        } finally {
+          creditWaiters -= 1;
+        }
+      }
+      return true;
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private void releaseCredit() {
+    if (creditWaiters > 0) {
+      synchronized (this) {
+        notifyAll();
+      }
+    }
+  }
+
   @SuppressWarnings("rawtypes")
   @Override
   public EntityClientEndpoint fetchEntity(EntityID entity, long version, ClientInstanceID instance, MessageCodec<? extends EntityMessage, ? extends EntityResponse> codec) throws EntityException {
@@ -133,7 +231,12 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
   public void handleMessage(TransactionID tid, byte[] message) {
     InFlightMessage msg = this.inFlightMessages.get(tid);
     if (msg != null) {
-      msg.handleMessage(message);
+      Boolean outer = deliver();
+      try {
+        msg.handleMessage(message);
+      } finally {
+        DELIVERING.set(outer);
+      }
     } else {
       logger.info("transaction " + tid + " not found. Ignoring message.");
     }
@@ -214,7 +317,7 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
   }
 
   private Invocation<byte[]> lifecycle(EntityID entityID, EntityDescriptor entityDescriptor, VoltronEntityMessage.Type type, byte[] message) {
-    return (callback, callbacks) -> ClientEntityManagerImpl.this.invoke(entityID, entityDescriptor, callbacks, safe(callback), true, type, message);
+    return (callback, callbacks) -> ClientEntityManagerImpl.this.invoke(entityID, entityDescriptor, callbacks, safe(callback), true, type, TCByteBufferFactory.wrap(message));
   }
 
   @Override
@@ -247,15 +350,117 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
   @Override
   public Invocation.Task invokeAction(EntityID eid, EntityDescriptor entityDescriptor, Set<InvocationCallback.Types> requestedCallbacks,
                                       SafeInvocationCallback<byte[]> callback, boolean requiresReplication, byte[] payload) {
-    return invoke(eid, entityDescriptor, requestedCallbacks, callback, requiresReplication, VoltronEntityMessage.Type.INVOKE_ACTION, payload);
+    return invoke(eid, entityDescriptor, requestedCallbacks, callback, requiresReplication, VoltronEntityMessage.Type.INVOKE_ACTION, TCByteBufferFactory.wrap(payload));
+  }
+
+  @Override
+  public Invocation.Task invokeAction(EntityID eid, EntityDescriptor entityDescriptor, Set<InvocationCallback.Types> requestedCallbacks,
+                                      SafeInvocationCallback<byte[]> callback, boolean requiresReplication, ByteBuffer payload) {
+    return invoke(eid, entityDescriptor, requestedCallbacks, callback, requiresReplication, VoltronEntityMessage.Type.INVOKE_ACTION, TCByteBufferFactory.wrap(payload));
   }
 
   private Invocation.Task invoke(EntityID eid, EntityDescriptor entityDescriptor, Set<InvocationCallback.Types> requestedCallbacks,
-                                 SafeInvocationCallback<byte[]> callback, boolean requiresReplication, VoltronEntityMessage.Type type, byte[] payload) {
+                                 SafeInvocationCallback<byte[]> callback, boolean requiresReplication, VoltronEntityMessage.Type type, TCByteBuffer payload) {
     Set<VoltronEntityMessage.Acks> requestedAcks = makeServerAcks(requestedCallbacks);
     return queueInFlightMessage(eid, () -> createMessageWithDescriptor(eid, entityDescriptor, requiresReplication, payload, type, requestedAcks), callback);
   }
 
+  @Override
+  public Invocation.Task invokeActions(EntityID eid, EntityDescriptor entityDescriptor, Set<InvocationCallback.Types> requestedCallbacks,
+                                       IntFunction<SafeInvocationCallback<byte[]>> callbacks, boolean requiresReplication, List<ByteBuffer> payloads) {
+    if (!packInvokes) {
+      return ClientEntityManager.super.invokeActions(eid, entityDescriptor, requestedCallbacks, callbacks, requiresReplication, payloads);
+    }
+    Set<VoltronEntityMessage.Acks> requestedAcks = makeServerAcks(requestedCallbacks);
+    List<List<InFlightMessage>> frames = new ArrayList<>();
+    List<InFlightMessage> frame = null;
+    try {
+      for (int x = 0; x < payloads.size(); x++) {
+        // the unsent frame can't retire so send it rather than wait on credit it holds
+        if (frame != null && creditUsed.get() >= creditWindow) {
+          sendFrame(frame);
+          frame = null;
+        }
+        TCByteBuffer payload = TCByteBufferFactory.wrap(payloads.get(x));
+        NetworkVoltronEntityMessage carrier = frame == null ? null : (NetworkVoltronEntityMessage)frame.get(0).getMessage();
+        InFlightMessage inFlight = new InFlightMessage(eid, carrier == null
+            ? () -> createMessageWithDescriptor(eid, entityDescriptor, requiresReplication, payload, VoltronEntityMessage.Type.INVOKE_ACTION, requestedAcks)
+            : () -> carrier.createBatchedInvoke(transactionSource.create(), payload, requestedAcks), callbacks.apply(x));
+        msgCount.increment();
+        inflights.add(inFlightMessages.size());
+        boolean queued;
+        try {
+          queued = enqueueMessage(inFlight);
+        } catch (Throwable t) {
+          transactionSource.retire(inFlight.getTransactionID());
+          throw t;
+        }
+        if (queued) {
+          if (carrier == null) {
+            frame = new ArrayList<>();
+            frames.add(frame);
+          } else {
+            carrier.addBatchedInvoke(inFlight.getMessage());
+          }
+          frame.add(inFlight);
+        } else {
+          throwClosedExceptionOnMessage(inFlight, "Connection closed before sending message");
+        }
+      }
+    } finally {
+      if (frame != null) {
+        sendFrame(frame);
+      }
+    }
+    return () -> {
+      boolean cancelled = true;
+      for (List<InFlightMessage> sent : frames) {
+        cancelled &= cancelFrame(sent);
+      }
+      return cancelled;
+    };
+  }
+
+  /**
+   * Send the network message of the first in-flight message of the frame, which carries the rest.
+   */
+  private void sendFrame(List<InFlightMessage> frame) {
+    InFlightMessage carrier = frame.get(0);
+    if (!stateManager.isShutdown()) {
+      frame.forEach(InFlightMessage::sent);
+      boolean sent = carrier.send();
+      frame.forEach(inFlight -> inFlight.sentWith(carrier));
+      if (!sent) {
+        logger.debug("message not sent.  Make sure resend happens " + carrier);
+        if (!channel.getProductID().isReconnectEnabled()) {
+          frame.forEach(inFlight -> throwClosedExceptionOnMessage(inFlight, "connection not capable of resend"));
+        }
+      }
+    } else {
+      frame.forEach(inFlight -> throwClosedExceptionOnMessage(inFlight, "Connection closed before sending message"));
+    }
+  }
+
+  /**
+   * The invokes of a frame share one network message so they are only cancelled if the carrier can be recalled.
+   */
+  private boolean cancelFrame(List<InFlightMessage> frame) {
+    InFlightMessage carrier = frame.get(0);
+    if (!carrier.cancel()) {
+      return false;
+    }
+    untrack(carrier.getTransactionID(), carrier);
+    boolean cancelled = true;
+    for (InFlightMessage inFlight : frame.subList(1, frame.size())) {
+      if (inFlight.cancel()) {
+        untrack(inFlight.getTransactionID(), inFlight);
+      } else {
+        cancelled = false;
+      }
+    }
+    return cancelled;
+  }
+
   @Override
   public Map<String, ?> getStateMap() {
     Map<String, Object> map = new LinkedHashMap<>();
@@ -267,6 +472,10 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
       map.put("averagePending", inflights.sum()/msgCount.sum());
       map.put("averageServerWindow", addWindow.sum()/msgCount.sum());
     }
+    if (creditWindow != Integer.MAX_VALUE) {
+      map.put("creditWindow", creditWindow);
+      map.put("creditWaits", creditWaits.sum());
+    }
 
     Object stats = channel.getAttachment("ChannelStats");
     Map<String, Object> sub = new LinkedHashMap<>();
@@ -288,12 +497,26 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
     return map;
   }
 
+  @Override
+  public void credit(int window) {
+    int last = creditWindow;
+    creditWindow = window;
+    if (window > last) {
+      releaseCredit();
+    }
+  }
+
   @Override
   public void received(TransactionID id) {
     // Note that this call comes the platform, potentially concurrently with complete()/failure().
     InFlightMessage inFlight = inFlightMessages.get(id);
     if (inFlight != null) {
-      inFlight.received();
+      Boolean outer = deliver();
+      try {
+        inFlight.received();
+      } finally {
+        DELIVERING.set(outer);
+      }
     } else {
    // resend result or stop
     }
@@ -310,7 +533,12 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
     // Note that this call comes the platform, potentially concurrently with received().
     InFlightMessage inFlight = inFlightMessages.get(id);
     if (inFlight != null) {
-      inFlight.setResult(value, null);
+      Boolean outer = deliver();
+      try {
+        inFlight.setResult(value, null);
+      } finally {
+        DELIVERING.set(outer);
+      }
     } else {
    // resend result or stop
     }
@@ -321,7 +549,12 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
     // Note that this call comes the platform, potentially concurrently with received().
     InFlightMessage inFlight = inFlightMessages.get(id);
     if (inFlight != null) {
-      inFlight.setResult(null, error);
+      Boolean outer = deliver();
+      try {
+        inFlight.setResult(null, error);
+      } finally {
+        DELIVERING.set(outer);
+      }
     } else {
    // resend result or stop
     }
@@ -330,18 +563,28 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
   @Override
   public void retired(TransactionID id) {
     // We only retire the InFlightMessage from our mapping and release the request ticket once we get the retired ACK.
+    Boolean outer = deliver();
     try {
       InFlightMessage inFlight = inFlightMessages.remove(id);
       if (inFlight != null) {
+        creditUsed.decrementAndGet();
         inFlight.retired();
       } else {
         // resend result or stop
       }
     } finally {
+      DELIVERING.set(outer);
       transactionSource.retire(id);
+      releaseCredit();
     }
   }
 
+  private static Boolean deliver() {
+    Boolean outer = DELIVERING.get();
+    DELIVERING.set(Boolean.TRUE);
+    return outer;
+  }
+
   @Override
   public synchronized void pause() {
     stateManager.pause();
@@ -350,6 +593,8 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
   @Override
   public synchronized void unpause() {
     stateManager.running();
+    // the window belongs to the server we were connected to, wait for the new one to advertise
+    creditWindow = Integer.MAX_VALUE;
     notifyAll();
   }
 
@@ -419,7 +664,7 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
     msg.setResult(null, closed);
     msg.retired();
     // may or may not be there.
-    inFlightMessages.remove(msg.getTransactionID());
+    untrack(msg.getTransactionID(), msg);
     transactionSource.retire(msg.getTransactionID());
   }
 
@@ -530,7 +775,7 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
       }
       return () -> {
         if (inFlight.cancel()) {
-          inFlightMessages.remove(inFlight.getTransactionID(), inFlight);
+          untrack(inFlight.getTransactionID(), inFlight);
           return true;
         } else {
           return false;
@@ -548,15 +793,15 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
   private NetworkVoltronEntityMessage createMessageWithoutClientInstance(EntityID entityID, long version, boolean requiresReplication, byte[] config, VoltronEntityMessage.Type type, Set<VoltronEntityMessage.Acks> acks) {
     // We have no client instance for a create but the request currently requires a full descriptor.
     EntityDescriptor entityDescriptor = createDescriptorForLifecycle(entityID, version);
-    return createMessageWithDescriptor(entityID, entityDescriptor, requiresReplication, config, type, acks);
+    return createMessageWithDescriptor(entityID, entityDescriptor, requiresReplication, TCByteBufferFactory.wrap(config), type, acks);
   }
 
-  private NetworkVoltronEntityMessage createMessageWithDescriptor(EntityID entityID, EntityDescriptor entityDescriptor, boolean requiresReplication, byte[] config, VoltronEntityMessage.Type type, Set<VoltronEntityMessage.Acks> acks) {
+  private NetworkVoltronEntityMessage createMessageWithDescriptor(EntityID entityID, EntityDescriptor entityDescriptor, boolean requiresReplication, TCByteBuffer config, VoltronEntityMessage.Type type, Set<VoltronEntityMessage.Acks> acks) {
     NetworkVoltronEntityMessage message = (NetworkVoltronEntityMessage) channel.createMessage(TCMessageType.VOLTRON_ENTITY_MESSAGE);
     ClientID clientID = channel.getClientID();
     TransactionID transactionID = transactionSource.create();
     TransactionID oldestTransactionPending = transactionSource.oldest();//either premature retirement or late (or missing) removal from inflight
-    message.setContents(clientID, transactionID, entityID, entityDescriptor, type, requiresReplication, TCByteBufferFactory.wrap(config), oldestTransactionPending, acks);
+    message.setContents(clientID, transactionID, entityID, entityDescriptor, type, requiresReplication, config, oldestTransactionPending, acks);
     return message;
   }
 
@@ -17,6 +17,7 @@
  */
 package com.tc.object;
 
+import org.terracotta.entity.BufferMessageCodec;
 import org.terracotta.entity.EndpointDelegate;
 import org.terracotta.entity.EntityClientEndpoint;
 import org.terracotta.entity.Invocation;
@@ -28,6 +29,9 @@ import org.terracotta.entity.MessageCodecException;
 
 import com.tc.util.Assert;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
@@ -127,6 +131,24 @@ public class EntityClientEndpointImpl<M extends EntityMessage, R extends EntityR
     return new InvocationImpl(message);
   }
 
+  @Override
+  public Invocation<List<R>> messages(List<M> messages) {
+    // We can't create new invocations when the endpoint is closed.
+    checkEndpointOpen();
+    if (messages.isEmpty()) {
+      throw new IllegalArgumentException("empty batch");
+    }
+    return new BatchInvocationImpl(new ArrayList<>(messages));
+  }
+
+  private ByteBuffer encode(M request) throws MessageCodecException {
+    if (codec instanceof BufferMessageCodec) {
+      return ((BufferMessageCodec<M, R>)codec).encodeMessageToBuffer(request);
+    } else {
+      return ByteBuffer.wrap(codec.encodeMessage(request));
+    }
+  }
+
   private class InvocationImpl implements Invocation<R> {
     private boolean invoked = false;
     private final M request;
@@ -143,7 +165,11 @@ public class EntityClientEndpointImpl<M extends EntityMessage, R extends EntityR
       invoked = true;
       SafeInvocationCallback<byte[]> binaryCallback = new BinaryInvocationCallback<>(codec, safe(callback));
       try {
-        return invocationHandler.invokeAction(entityID, invokeDescriptor, callbacks, binaryCallback, true, codec.encodeMessage(request));
+        if (codec instanceof BufferMessageCodec) {
+          return invocationHandler.invokeAction(entityID, invokeDescriptor, callbacks, binaryCallback, true, ((BufferMessageCodec<M, R>)codec).encodeMessageToBuffer(request));
+        } else {
+          return invocationHandler.invokeAction(entityID, invokeDescriptor, callbacks, binaryCallback, true, codec.encodeMessage(request));
+        }
       } catch (MessageCodecException e) {
         binaryCallback.failure(e);
         binaryCallback.complete();
@@ -159,6 +185,38 @@ public class EntityClientEndpointImpl<M extends EntityMessage, R extends EntityR
     }
   }
 
+  private class BatchInvocationImpl implements Invocation<List<R>> {
+    private boolean invoked = false;
+    private final List<M> requests;
+
+    private BatchInvocationImpl(List<M> requests) {
+      this.requests = requests;
+    }
+
+    @Override
+    public Task invoke(InvocationCallback<List<R>> callback, Set<InvocationCallback.Types> callbacks) {
+      if (invoked) {
+        throw new IllegalStateException("Already invoked");
+      }
+      invoked = true;
+      SafeInvocationCallback<List<R>> safeCallback = safe(callback);
+      List<ByteBuffer> payloads = new ArrayList<>(requests.size());
+      try {
+        for (M request : requests) {
+          payloads.add(encode(request));
+        }
+      } catch (MessageCodecException e) {
+        // nothing was sent so fail the batch as a whole
+        safeCallback.failure(e);
+        safeCallback.complete();
+        safeCallback.retired();
+        return () -> false;
+      }
+      BatchInvocationCallback<R> batch = new BatchInvocationCallback<>(codec, safeCallback, payloads.size());
+      return invocationHandler.invokeActions(entityID, invokeDescriptor, callbacks, batch, true, payloads);
+    }
+  }
+
   public byte[] getExtendedReconnectData() {
     // TODO:  Determine if we need to limit anything here on closed.  The call can come from another thread so it may not
     // yet know that we are closed when the call originated.
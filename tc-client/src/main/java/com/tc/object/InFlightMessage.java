@@ -178,6 +178,14 @@ public class InFlightMessage implements PrettyPrintable {
     }
   }
   
+  /**
+   * Used for invokes packed into the network message of the carrier, which sent them.
+   */
+  void sentWith(InFlightMessage carrier) {
+    this.send = carrier.send;
+    this.sent = carrier.sent;
+  }
+
   synchronized void sent() {
     if (ackDelivered(VoltronEntityMessage.Acks.SENT)) {
       this.notifySent = System.nanoTime();
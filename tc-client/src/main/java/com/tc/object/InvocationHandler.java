@@ -20,7 +20,11 @@ package com.tc.object;
 import org.terracotta.entity.Invocation;
 import org.terracotta.entity.InvocationCallback;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import java.util.function.IntFunction;
 
 
 
@@ -29,4 +33,35 @@ import java.util.Set;
  */
 public interface InvocationHandler {
   Invocation.Task invokeAction(EntityID eid, EntityDescriptor entityDescriptor, Set<InvocationCallback.Types> callbacks, SafeInvocationCallback<byte[]> callback, boolean requiresReplication, byte[] payload);
+
+  /**
+   * Invoke with a payload encoded by a {@link org.terracotta.entity.BufferMessageCodec}.  The remaining content of the
+   * buffer is sent and the handler takes ownership of it.
+   */
+  default Invocation.Task invokeAction(EntityID eid, EntityDescriptor entityDescriptor, Set<InvocationCallback.Types> callbacks, SafeInvocationCallback<byte[]> callback, boolean requiresReplication, ByteBuffer payload) {
+    byte[] copy = new byte[payload.remaining()];
+    payload.duplicate().get(copy);
+    return invokeAction(eid, entityDescriptor, callbacks, callback, requiresReplication, copy);
+  }
+
+  /**
+   * Invoke a batch of encoded payloads against the same entity instance, in order.  The callback for the payload at
+   * each index is supplied by {@code callback}.  The handler takes ownership of the buffers and may pack the batch into
+   * fewer network messages; by default each payload is invoked on its own.
+   *
+   * @return a task which cancels the whole batch
+   */
+  default Invocation.Task invokeActions(EntityID eid, EntityDescriptor entityDescriptor, Set<InvocationCallback.Types> callbacks, IntFunction<SafeInvocationCallback<byte[]>> callback, boolean requiresReplication, List<ByteBuffer> payloads) {
+    List<Invocation.Task> tasks = new ArrayList<>(payloads.size());
+    for (int x = 0; x < payloads.size(); x++) {
+      tasks.add(invokeAction(eid, entityDescriptor, callbacks, callback.apply(x), requiresReplication, payloads.get(x)));
+    }
+    return () -> {
+      boolean cancelled = true;
+      for (Invocation.Task task : tasks) {
+        cancelled &= task.cancel();
+      }
+      return cancelled;
+    };
+  }
 }
@@ -88,6 +88,12 @@ public class MultiRequestReceiveHandler extends AbstractEventHandler<VoltronEnti
         opCount.increment();
         handler.handleStatistics(tid, message);
       }
+
+      @Override
+      public void credit(int window) {
+        opCount.increment();
+        handler.credit(window);
+      }
     });
   }
 }
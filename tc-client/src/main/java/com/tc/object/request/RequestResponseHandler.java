@@ -74,4 +74,11 @@ public interface RequestResponseHandler {
   void handleMessage(TransactionID transaction, byte[] message);
   
   void handleStatistics(TransactionID transaction, long[] message);
+
+  /**
+   * Called when the server advertises how many requests this client may have in-flight.
+   *
+   * @param window number of requests the server is currently willing to accept
+   */
+  void credit(int window);
 }
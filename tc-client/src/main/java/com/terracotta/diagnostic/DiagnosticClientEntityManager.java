@@ -87,6 +87,11 @@ public class DiagnosticClientEntityManager implements ClientEntityManager {
     throw new UnsupportedOperationException();
   }
 
+  @Override
+  public void credit(int window) {
+    // diagnostic requests are synchronous, there is no window to manage
+  }
+
   @Override
   public byte[] createEntity(EntityID entityID, long version, byte[] config) throws EntityException {
     throw new UnsupportedOperationException();
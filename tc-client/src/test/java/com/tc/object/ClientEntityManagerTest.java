@@ -36,6 +36,8 @@ import org.terracotta.exception.EntityException;
 import org.terracotta.exception.EntityNotFoundException;
 
 import com.tc.entity.NetworkVoltronEntityMessage;
+import com.tc.entity.ResendVoltronEntityMessage;
+import com.tc.entity.VoltronEntityMessage;
 import com.tc.entity.VoltronEntityMessage.Acks;
 import com.tc.net.ClientID;
 import com.tc.net.NodeID;
@@ -47,16 +49,24 @@ import com.tc.object.session.SessionID;
 import com.tc.object.tx.TransactionID;
 import com.tc.net.core.ProductID;
 import com.tc.net.protocol.tcm.NetworkRecall;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
 import com.tc.util.concurrent.ThreadUtil;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
@@ -593,6 +603,215 @@ public class ClientEntityManagerTest extends TestCase {
     }
   }  
 
+  @Test
+  public void testInvokeWaitsForCredit() throws Exception {
+    TestRequestBatchMessage first = new TestRequestBatchMessage(this.manager, new byte[0], null, false);
+    TestRequestBatchMessage second = new TestRequestBatchMessage(this.manager, new byte[0], null, false);
+    when(channel.createMessage(TCMessageType.VOLTRON_ENTITY_MESSAGE)).thenReturn(first, second);
+    this.manager.credit(1);
+
+    this.manager.invokeAction(entityID, descriptor, EnumSet.noneOf(Types.class), new SafeInvocationCallback<byte[]>() {}, false, new byte[0]);
+    assertTrue(first.sent);
+
+    CompletableFuture<Void> blocked = CompletableFuture.runAsync(() -> {
+      this.manager.invokeAction(entityID, descriptor, EnumSet.noneOf(Types.class), new SafeInvocationCallback<byte[]>() {}, false, new byte[0]);
+    });
+    try {
+      blocked.get(500, TimeUnit.MILLISECONDS);
+      Assert.fail();
+    } catch (TimeoutException to) {
+      // expected, the window is exhausted
+    }
+    assertFalse(second.sent);
+
+    first.explicitComplete(new byte[0], null);
+    this.manager.retired(first.getTransactionID());
+    blocked.get(5, TimeUnit.SECONDS);
+    assertTrue(second.sent);
+  }
+
+  public void testConcurrentInvokesDoNotOvershootCredit() throws Exception {
+    TestRequestBatchMessage first = new TestRequestBatchMessage(this.manager, new byte[0], null, false);
+    TestRequestBatchMessage second = new TestRequestBatchMessage(this.manager, new byte[0], null, false);
+    when(channel.createMessage(TCMessageType.VOLTRON_ENTITY_MESSAGE)).thenReturn(first, second);
+    this.manager.credit(1);
+
+    CyclicBarrier start = new CyclicBarrier(2);
+    Runnable invoke = () -> {
+      try {
+        start.await();
+      } catch (Exception e) {
+        throw new AssertionError(e);
+      }
+      this.manager.invokeAction(entityID, descriptor, EnumSet.noneOf(Types.class), new SafeInvocationCallback<byte[]>() {}, false, new byte[0]);
+    };
+    CompletableFuture<Void> one = CompletableFuture.runAsync(invoke);
+    CompletableFuture<Void> two = CompletableFuture.runAsync(invoke);
+    try {
+      CompletableFuture.allOf(one, two).get(500, TimeUnit.MILLISECONDS);
+      Assert.fail();
+    } catch (TimeoutException to) {
+      // expected, only one of them gets the credit
+    }
+    assertTrue(first.sent ^ second.sent);
+
+    TestRequestBatchMessage sent = first.sent ? first : second;
+    sent.explicitComplete(new byte[0], null);
+    this.manager.retired(sent.getTransactionID());
+    CompletableFuture.allOf(one, two).get(5, TimeUnit.SECONDS);
+    assertTrue(first.sent && second.sent);
+  }
+
+  public void testInvokeFromResponseDoesNotWaitForCredit() throws Exception {
+    TestRequestBatchMessage first = new TestRequestBatchMessage(this.manager, new byte[0], null, false);
+    TestRequestBatchMessage second = new TestRequestBatchMessage(this.manager, new byte[0], null, false);
+    when(channel.createMessage(TCMessageType.VOLTRON_ENTITY_MESSAGE)).thenReturn(first, second);
+    this.manager.credit(1);
+
+    this.manager.invokeAction(entityID, descriptor, EnumSet.of(Types.RESULT), new SafeInvocationCallback<byte[]>() {
+      @Override
+      public void result(byte[] response) {
+        // the thread delivering responses is the one that would return the credit
+        manager.invokeAction(entityID, descriptor, EnumSet.noneOf(Types.class), new SafeInvocationCallback<byte[]>() {}, false, new byte[0]);
+      }
+    }, false, new byte[0]);
+    assertTrue(first.sent);
+
+    CompletableFuture.runAsync(() -> first.explicitComplete(new byte[0], null)).get(5, TimeUnit.SECONDS);
+    assertTrue(second.sent);
+  }
+
+  public void testInvokeAsync() throws Exception {
+    final byte[] resultObject = new byte[8];
+    ByteBuffer.wrap(resultObject).putLong(1L);
+    when(channel.createMessage(Mockito.eq(TCMessageType.VOLTRON_ENTITY_MESSAGE))).then(new Answer<TCAction>() {
+      @Override
+      public TCAction answer(InvocationOnMock invocation) throws Throwable {
+        return new TestRequestBatchMessage(manager, resultObject, null, true);
+      }
+    });
+    EntityClientEndpoint endpoint = this.manager.fetchEntity(entityID, 1L, instance, new ByteArrayMessageCodec());
+
+    CompletionStage<ByteArrayEntityResponse> stage = endpoint.message(new ByteArrayEntityMessage(new byte[8])).invokeAsync();
+    ByteArrayEntityResponse response = stage.toCompletableFuture().get(5, TimeUnit.SECONDS);
+    assertTrue(Arrays.equals(resultObject, response.getResponse()));
+  }
+
+  public void testInvokeAsyncCompletesOnExecutor() throws Exception {
+    when(channel.createMessage(Mockito.eq(TCMessageType.VOLTRON_ENTITY_MESSAGE))).then(new Answer<TCAction>() {
+      @Override
+      public TCAction answer(InvocationOnMock invocation) throws Throwable {
+        return new TestRequestBatchMessage(manager, new byte[8], null, true);
+      }
+    });
+    EntityClientEndpoint endpoint = this.manager.fetchEntity(entityID, 1L, instance, new ByteArrayMessageCodec());
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      // hold the executor so the dependent below is attached before the stage completes
+      CountDownLatch hold = new CountDownLatch(1);
+      Future<Thread> completer = executor.submit(() -> {
+        hold.await();
+        return Thread.currentThread();
+      });
+      CompletionStage<ByteArrayEntityResponse> stage = endpoint.message(new ByteArrayEntityMessage(new byte[8])).invokeAsync(InvocationCallback.Types.COMPLETE, executor);
+      CompletableFuture<Thread> dependent = stage.thenApply(r -> Thread.currentThread()).toCompletableFuture();
+      assertFalse(dependent.isDone());
+      hold.countDown();
+      // dependents run on the executor, not on the thread delivering the response
+      assertSame(completer.get(), dependent.get(5, TimeUnit.SECONDS));
+      // the stage is a minimal view which callers cannot complete
+      try {
+        ((CompletableFuture<ByteArrayEntityResponse>)stage).complete(null);
+        fail();
+      } catch (UnsupportedOperationException expected) {
+        // expected
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  public void testBatchedInvokesShareOneMessage() throws Exception {
+    usePackedInvokes();
+    byte[] fetched = new byte[8];
+    ByteBuffer.wrap(fetched).putLong(1L);
+    TestRequestBatchMessage fetch = new TestRequestBatchMessage(this.manager, fetched, null, true);
+    TestRequestBatchMessage batch = new TestRequestBatchMessage(this.manager, null, null, false);
+    when(channel.createMessage(TCMessageType.VOLTRON_ENTITY_MESSAGE)).thenReturn(fetch, batch);
+    EntityClientEndpoint<EntityMessage, EntityResponse> endpoint = this.manager.fetchEntity(entityID, 1L, instance, new ByteArrayMessageCodec());
+
+    List<EntityMessage> messages = Arrays.asList(new ByteArrayEntityMessage(new byte[] {0}), new ByteArrayEntityMessage(new byte[] {1}), new ByteArrayEntityMessage(new byte[] {2}));
+    CompletableFuture<List<EntityResponse>> result = endpoint.messages(messages).invokeAsync().toCompletableFuture();
+    assertTrue(batch.sent);
+    assertThat(batch.getBatchedInvokes().size(), is(2));
+    Mockito.verify(channel, Mockito.times(2)).createMessage(TCMessageType.VOLTRON_ENTITY_MESSAGE);
+
+    // complete out of order, the responses still come back in message order
+    List<TransactionID> tids = Arrays.asList(batch.getTransactionID(), batch.getBatchedInvokes().get(0).getTransactionID(), batch.getBatchedInvokes().get(1).getTransactionID());
+    for (int x = tids.size() - 1; x >= 0; x--) {
+      assertFalse(result.isDone());
+      this.manager.complete(tids.get(x), new byte[] {(byte)x});
+    }
+    List<EntityResponse> responses = result.get(5, TimeUnit.SECONDS);
+    for (int x = 0; x < tids.size(); x++) {
+      assertTrue(Arrays.equals(new byte[] {(byte)x}, ((ByteArrayEntityResponse)responses.get(x)).getResponse()));
+    }
+  }
+
+  public void testBatchedInvokesSplitAtCreditWindow() throws Exception {
+    usePackedInvokes();
+    TestRequestBatchMessage first = new TestRequestBatchMessage(this.manager, null, null, false);
+    TestRequestBatchMessage second = new TestRequestBatchMessage(this.manager, null, null, false);
+    when(channel.createMessage(TCMessageType.VOLTRON_ENTITY_MESSAGE)).thenReturn(first, second);
+    this.manager.credit(2);
+
+    List<ByteBuffer> payloads = Arrays.asList(ByteBuffer.allocate(1), ByteBuffer.allocate(1), ByteBuffer.allocate(1));
+    CompletableFuture<Void> blocked = CompletableFuture.runAsync(() -> {
+      this.manager.invokeActions(entityID, descriptor, EnumSet.noneOf(Types.class), x -> new SafeInvocationCallback<byte[]>() {}, false, payloads);
+    });
+    try {
+      blocked.get(500, TimeUnit.MILLISECONDS);
+      Assert.fail();
+    } catch (TimeoutException to) {
+      // expected, the window is exhausted by the first message
+    }
+    // the first message must not be held back waiting on credit it holds itself
+    assertTrue(first.sent);
+    assertThat(first.getBatchedInvokes().size(), is(1));
+    assertFalse(second.sent);
+
+    first.explicitComplete(new byte[0], null);
+    this.manager.retired(first.getTransactionID());
+    blocked.get(5, TimeUnit.SECONDS);
+    assertTrue(second.sent);
+    assertTrue(second.getBatchedInvokes().isEmpty());
+  }
+
+  public void testBatchedInvokesUnpackedByDefault() throws Exception {
+    TestRequestBatchMessage first = new TestRequestBatchMessage(this.manager, null, null, false);
+    TestRequestBatchMessage second = new TestRequestBatchMessage(this.manager, null, null, false);
+    when(channel.createMessage(TCMessageType.VOLTRON_ENTITY_MESSAGE)).thenReturn(first, second);
+
+    List<ByteBuffer> payloads = Arrays.asList(ByteBuffer.allocate(1), ByteBuffer.allocate(1));
+    this.manager.invokeActions(entityID, descriptor, EnumSet.noneOf(Types.class), x -> new SafeInvocationCallback<byte[]>() {}, false, payloads);
+    // servers older than the client can't read packed invokes so each goes in its own message
+    assertTrue(first.sent);
+    assertTrue(second.sent);
+    assertTrue(first.getBatchedInvokes().isEmpty());
+    assertTrue(second.getBatchedInvokes().isEmpty());
+  }
+
+  private void usePackedInvokes() {
+    TCPropertiesImpl.getProperties().setProperty(TCPropertiesConsts.L1_ENTITY_INVOKE_PACKED, "true");
+    try {
+      this.manager = new ClientEntityManagerImpl(this.channel);
+    } finally {
+      TCPropertiesImpl.getProperties().setProperty(TCPropertiesConsts.L1_ENTITY_INVOKE_PACKED, "false");
+    }
+  }
+
   @Test
   public void testCreate() throws Exception {
     long version = 1;
@@ -746,20 +965,43 @@ public class ClientEntityManagerTest extends TestCase {
       assertFalse(sent);
       sent = true;
       if (this.autoComplete) {
-        if (null != this.resultObject) {
-          this.clientEntityManager.complete(this.transactionID, this.resultObject);
-        } else {
-          if (null != this.resultException) {
-            this.clientEntityManager.failed(this.transactionID, this.resultException);
-          } else {
-            this.clientEntityManager.complete(this.transactionID);
-          }
+        autoComplete(this.transactionID);
+        for (VoltronEntityMessage invoke : this.batched) {
+          autoComplete(invoke.getTransactionID());
         }
-        this.clientEntityManager.retired(this.transactionID);
       }
       return mock(NetworkRecall.class);
     }
 
+    private void autoComplete(TransactionID tid) {
+      if (null != this.resultObject) {
+        this.clientEntityManager.complete(tid, this.resultObject);
+      } else {
+        if (null != this.resultException) {
+          this.clientEntityManager.failed(tid, this.resultException);
+        } else {
+          this.clientEntityManager.complete(tid);
+        }
+      }
+      this.clientEntityManager.retired(tid);
+    }
+
+    private final List<VoltronEntityMessage> batched = new ArrayList<>();
+    @Override
+    public VoltronEntityMessage createBatchedInvoke(TransactionID transactionID, TCByteBuffer extendedData, Set<Acks> acks) {
+      return new ResendVoltronEntityMessage(new ClientID(1), transactionID, this.descriptor, Type.INVOKE_ACTION, this.requiresReplication, extendedData);
+    }
+
+    @Override
+    public void addBatchedInvoke(VoltronEntityMessage invoke) {
+      this.batched.add(invoke);
+    }
+
+    @Override
+    public List<VoltronEntityMessage> getBatchedInvokes() {
+      return this.batched;
+    }
+
     @Override
     public MessageChannel getChannel() {
       throw new UnsupportedOperationException();
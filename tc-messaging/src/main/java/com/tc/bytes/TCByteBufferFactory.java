@@ -20,6 +20,7 @@ package com.tc.bytes;
 import com.tc.util.Assert;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import java.nio.ByteBuffer;
 
 /**
  * TCByteBuffer source that hides JDK dependencies and that can pool instances. Instance pooling is likely to be a good
@@ -76,6 +77,33 @@ public class TCByteBufferFactory {
     return TCByteBufferImpl.wrap(buf);
   }
   
+  /**
+   * Wrap the remaining content of a nio buffer without copying it.  The returned buffer
+   * shares content with the given buffer.
+   */
+  public static TCByteBuffer wrap(ByteBuffer buf) {
+    if (buf == null) {
+      return null;
+    }
+    return TCByteBufferImpl.wrap(buf);
+  }
+
+  /**
+   * A read-only nio view of the remaining content of the buffer that shares content rather
+   * than copying it.  The position and limit of the given buffer are not affected.
+   */
+  public static ByteBuffer readOnlyView(TCByteBuffer buffer) {
+    if (buffer == null) {
+      return null;
+    }
+    ByteBuffer nio = buffer.getNioBuffer();
+    try {
+      return nio.asReadOnlyBuffer().slice();
+    } finally {
+      buffer.returnNioBuffer(nio);
+    }
+  }
+
   public static byte[] unwrap(TCByteBuffer buffer) {
     if (buffer == null) {
       return null;
@@ -49,6 +49,10 @@ public class TCByteBufferImpl implements TCByteBuffer {
     return new TCByteBufferImpl(null, ByteBuffer.wrap(data));
   }
 
+  static TCByteBuffer wrap(ByteBuffer data) {
+    return new TCByteBufferImpl(null, data.slice());
+  }
+
   protected ByteBuffer getBuffer() {
     return accessBuffer();
   }
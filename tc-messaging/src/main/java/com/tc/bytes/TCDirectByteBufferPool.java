@@ -0,0 +1,297 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tc.bytes;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pool of direct buffers in power of two size classes from the fixed buffer size up to a maximum class.
+ * Buffers are handed out with {@link #poll(int)} or wrapped in a reference with {@link #reference(int)}
+ * and come back explicitly through {@link #offer(TCByteBuffer)}, normally as the return consumer of a
+ * {@link TCReferenceSupport} reference.
+ *
+ * <p>All direct memory held by the pool, leased or free, is charged against a budget.  When the budget is
+ * spent free buffers of other classes are dropped, and if that is not enough the request is served from
+ * the heap rather than letting the JDK fall back to System.gc() to find direct memory.  Free buffers are
+ * only kept up to a retained capacity, normally far below the budget, anything returned beyond it is
+ * dropped so an idle pool does not sit on the memory of its busiest moment.
+ *
+ * <p>When reference monitoring is on, see {@link TCReferenceSupport#startMonitoringReferences()}, leased
+ * buffers are tracked weakly.  A buffer collected without being returned is logged as a leak along with
+ * its allocation site and its bytes are given back to the budget.  Otherwise only a count of leased
+ * buffers is kept and a leaked buffer keeps its share of the budget, later requests fall back to the heap.
+ */
+public class TCDirectByteBufferPool {
+  private static final Logger LOGGER = LoggerFactory.getLogger(TCDirectByteBufferPool.class);
+
+  private final int minClass;
+  private final int maxClass;
+  private final long budget;
+  private final long retain;
+  private final Queue<TCByteBuffer>[] free;
+  //  direct bytes sitting in the free lists
+  private final AtomicLong freeBytes = new AtomicLong();
+  private final AtomicInteger leasedCount = new AtomicInteger();
+  private final Map<Lease, Lease> leases = new ConcurrentHashMap<>();
+  private final ReferenceQueue<TCByteBuffer> collected = new ReferenceQueue<>();
+  //  direct bytes owned by the pool, leased or free
+  private final AtomicLong reserved = new AtomicLong();
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder heapFallbacks = new LongAdder();
+  private final LongAdder trimmed = new LongAdder();
+  private final LongAdder leaks = new LongAdder();
+
+  public TCDirectByteBufferPool(long budget) {
+    this(TCByteBufferFactory.getFixedBufferSize(), 1024 * 1024, budget);
+  }
+
+  public TCDirectByteBufferPool(int minBufferSize, int maxBufferSize, long budget) {
+    this(minBufferSize, maxBufferSize, budget, budget);
+  }
+
+  /**
+   * @param retain free bytes kept for reuse, buffers returned beyond this are dropped
+   */
+  @SuppressWarnings("unchecked")
+  public TCDirectByteBufferPool(int minBufferSize, int maxBufferSize, long budget, long retain) {
+    this.minClass = roundUp(minBufferSize);
+    this.maxClass = Math.max(minClass, roundUp(maxBufferSize));
+    this.budget = budget;
+    this.retain = Math.min(budget, retain);
+    this.free = new Queue[Integer.numberOfTrailingZeros(maxClass) - Integer.numberOfTrailingZeros(minClass) + 1];
+    for (int x = 0; x < free.length; x++) {
+      free[x] = new ConcurrentLinkedQueue<>();
+    }
+  }
+
+  private static int roundUp(int size) {
+    int high = Integer.highestOneBit(Math.max(size, 1));
+    return high == size ? size : high << 1;
+  }
+
+  private int classIndex(int size) {
+    if (size <= minClass) {
+      return 0;
+    }
+    return Math.min(free.length - 1, Integer.numberOfTrailingZeros(roundUp(size)) - Integer.numberOfTrailingZeros(minClass));
+  }
+
+  /**
+   * A buffer with a capacity of the size class covering {@code size}, capped at the largest class.  Callers
+   * asking for more than the largest class are expected to chain buffers.  The limit equals the capacity.
+   */
+  public TCByteBuffer poll(int size) {
+    int index = classIndex(size);
+    int capacity = minClass << index;
+    TCByteBuffer buffer = free[index].poll();
+    if (buffer != null) {
+      hits.increment();
+      freeBytes.addAndGet(-capacity);
+      buffer.unlock();
+    } else if (reserve(capacity)) {
+      misses.increment();
+      buffer = new TCByteBufferImpl(capacity, true);
+    } else {
+      heapFallbacks.increment();
+      return new TCByteBufferImpl(capacity, false);
+    }
+    leasedCount.incrementAndGet();
+    if (TCReferenceSupport.isMonitoringReferences()) {
+      expunge();
+      Lease lease = new Lease(buffer, index, collected);
+      leases.put(lease, lease);
+    }
+    return buffer;
+  }
+
+  /**
+   * A reference to a pooled buffer, the buffer is returned to the pool when the last duplicate is closed.
+   */
+  public TCReference reference(int size) {
+    return TCReferenceSupport.createReference(this::offer, poll(size));
+  }
+
+  /**
+   * Return a buffer leased from this pool.  Buffers that did not come from the pool, such as heap
+   * fallbacks, are refused and left to the garbage collector.
+   */
+  public boolean offer(TCByteBuffer buffer) {
+    //  heap fallbacks are the only buffers handed out that are not direct
+    if (!buffer.isDirect()) {
+      return false;
+    }
+    if (!leases.isEmpty()) {
+      Lease lease = leases.remove(new Lease(buffer));
+      if (lease != null) {
+        lease.clear();
+      }
+    }
+    leasedCount.decrementAndGet();
+    if (buffer instanceof TCByteBufferImpl) {
+      ((TCByteBufferImpl)buffer).verifyLocked();
+    }
+    int capacity = buffer.capacity();
+    if (freeBytes.addAndGet(capacity) > retain) {
+      //  over the retained capacity, let the cleaner have it
+      freeBytes.addAndGet(-capacity);
+      reserved.addAndGet(-capacity);
+      trimmed.increment();
+    } else {
+      free[classIndex(capacity)].offer(buffer);
+    }
+    return true;
+  }
+
+  private boolean reserve(int capacity) {
+    while (true) {
+      long current = reserved.get();
+      if (current + capacity <= budget) {
+        if (reserved.compareAndSet(current, current + capacity)) {
+          return true;
+        }
+      } else if (!trim(current + capacity - budget)) {
+        return false;
+      }
+    }
+  }
+
+  //  drop free buffers, largest first, their memory goes back with the buffer's cleaner
+  private boolean trim(long needed) {
+    long released = 0;
+    for (int x = free.length - 1; x >= 0 && released < needed; x--) {
+      TCByteBuffer drop = free[x].poll();
+      while (drop != null) {
+        released += drop.capacity();
+        freeBytes.addAndGet(-drop.capacity());
+        reserved.addAndGet(-drop.capacity());
+        trimmed.increment();
+        drop = released < needed ? free[x].poll() : null;
+      }
+    }
+    return released > 0;
+  }
+
+  private void expunge() {
+    Lease lost = (Lease)collected.poll();
+    while (lost != null) {
+      if (leases.remove(lost) != null) {
+        int capacity = minClass << lost.index;
+        leasedCount.decrementAndGet();
+        reserved.addAndGet(-capacity);
+        leaks.increment();
+        if (lost.site != null) {
+          LOGGER.warn("pooled buffer of {} bytes was never returned", capacity, lost.site);
+        } else {
+          LOGGER.warn("pooled buffer of {} bytes was never returned", capacity);
+        }
+      }
+      lost = (Lease)collected.poll();
+    }
+  }
+
+  public void clear() {
+    for (Queue<TCByteBuffer> q : free) {
+      TCByteBuffer drop = q.poll();
+      while (drop != null) {
+        freeBytes.addAndGet(-drop.capacity());
+        reserved.addAndGet(-drop.capacity());
+        drop = q.poll();
+      }
+    }
+  }
+
+  public int leased() {
+    expunge();
+    return leasedCount.get();
+  }
+
+  public long reserved() {
+    return reserved.get();
+  }
+
+  public Map<String, Object> getState() {
+    Map<String, Object> state = new LinkedHashMap<>();
+    state.put("budget", budget);
+    state.put("retain", retain);
+    state.put("reserved", reserved.get());
+    state.put("leased", leased());
+    Map<String, Object> classes = new LinkedHashMap<>();
+    for (int x = 0; x < free.length; x++) {
+      classes.put(Integer.toString(minClass << x), free[x].size());
+    }
+    state.put("free", classes);
+    state.put("hits", hits.sum());
+    state.put("misses", misses.sum());
+    state.put("heapFallbacks", heapFallbacks.sum());
+    state.put("trimmed", trimmed.sum());
+    state.put("leaks", leaks.sum());
+    return state;
+  }
+
+  /**
+   * Weak handle on a leased buffer, equal to any other lease on the same buffer instance.
+   */
+  private static class Lease extends WeakReference<TCByteBuffer> {
+    private final int hash;
+    private final int index;
+    private final Exception site;
+
+    Lease(TCByteBuffer buffer) {
+      super(buffer);
+      this.hash = System.identityHashCode(buffer);
+      this.index = -1;
+      this.site = null;
+    }
+
+    Lease(TCByteBuffer buffer, int index, ReferenceQueue<TCByteBuffer> queue) {
+      super(buffer, queue);
+      this.hash = System.identityHashCode(buffer);
+      this.index = index;
+      this.site = TCReferenceSupport.isMonitoringReferences() ? new Exception("allocation site") : null;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj == this) {
+        return true;
+      }
+      if (obj instanceof Lease) {
+        TCByteBuffer buffer = get();
+        return buffer != null && buffer == ((Lease)obj).get();
+      }
+      return false;
+    }
+  }
+}
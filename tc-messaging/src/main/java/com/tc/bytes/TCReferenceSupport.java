@@ -124,6 +124,10 @@ public class TCReferenceSupport {
     TRACK_REFERENCES = true;
   }
 
+  static boolean isMonitoringReferences() {
+    return TRACK_REFERENCES;
+  }
+
   public static void stopMonitoringReferences() {
     TRACK_REFERENCES = false;
     COMMITTED_REFERENCES.clear();
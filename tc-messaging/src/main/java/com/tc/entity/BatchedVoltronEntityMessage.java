@@ -0,0 +1,114 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tc.entity;
+
+import com.tc.bytes.TCByteBuffer;
+import com.tc.net.ClientID;
+import com.tc.object.EntityDescriptor;
+import com.tc.object.tx.TransactionID;
+import com.tc.util.Assert;
+
+import java.util.Set;
+
+import org.terracotta.entity.EntityMessage;
+
+
+/**
+ * An invoke packed into a {@link NetworkVoltronEntityMessage} after the message's own.  It shares the source, entity
+ * instance, replication requirement and oldest pending transaction of the message which carries it.
+ */
+final class BatchedVoltronEntityMessage implements VoltronEntityMessage {
+  private final VoltronEntityMessage carrier;
+  private final TransactionID transactionID;
+  private final TCByteBuffer extendedData;
+  private final Set<VoltronEntityMessage.Acks> requestedAcks;
+  private final EntityMessage message;
+
+  BatchedVoltronEntityMessage(VoltronEntityMessage carrier, TransactionID transactionID, TCByteBuffer extendedData, Set<VoltronEntityMessage.Acks> requestedAcks, EntityMessage message) {
+    Assert.assertNotNull(transactionID);
+    Assert.assertNotNull(extendedData);
+    Assert.assertNotNull(requestedAcks);
+    this.carrier = carrier;
+    this.transactionID = transactionID;
+    this.extendedData = extendedData.isReadOnly() ? extendedData : extendedData.asReadOnlyBuffer();
+    this.requestedAcks = requestedAcks;
+    this.message = message;
+  }
+
+  @Override
+  public ClientID getSource() {
+    return carrier.getSource();
+  }
+
+  @Override
+  public TransactionID getTransactionID() {
+    return this.transactionID;
+  }
+
+  @Override
+  public EntityDescriptor getEntityDescriptor() {
+    return carrier.getEntityDescriptor();
+  }
+
+  @Override
+  public boolean doesRequireReplication() {
+    return carrier.doesRequireReplication();
+  }
+
+  @Override
+  public boolean doesRequestReceived() {
+    return this.requestedAcks.contains(Acks.RECEIVED);
+  }
+
+  @Override
+  public boolean doesRequestRetired() {
+    return this.requestedAcks.contains(Acks.RETIRED);
+  }
+
+  boolean isCarriedBy(VoltronEntityMessage message) {
+    return this.carrier == message;
+  }
+
+  Set<VoltronEntityMessage.Acks> getRequestedAcks() {
+    return this.requestedAcks;
+  }
+
+  @Override
+  public Type getVoltronType() {
+    return Type.INVOKE_ACTION;
+  }
+
+  @Override
+  public TCByteBuffer getExtendedData() {
+    return this.extendedData.duplicate();
+  }
+
+  @Override
+  public TransactionID getOldestTransactionOnClient() {
+    return carrier.getOldestTransactionOnClient();
+  }
+
+  @Override
+  public EntityMessage getEntityMessage() {
+    return this.message;
+  }
+
+  @Override
+  public String toString() {
+    return "BatchedVoltronEntityMessage{" + "transactionID=" + transactionID + ", carrier=" + carrier + '}';
+  }
+}
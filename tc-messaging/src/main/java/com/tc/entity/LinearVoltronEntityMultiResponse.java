@@ -17,11 +17,17 @@
  */
 package com.tc.entity;
 
+import com.tc.bytes.TCByteBuffer;
+import com.tc.bytes.TCByteBufferAllocator;
+import com.tc.bytes.TCByteBufferFactory;
+import com.tc.bytes.TCReference;
+import com.tc.bytes.TCReferenceSupport;
 import com.tc.io.TCByteBufferInputStream;
 import com.tc.io.TCByteBufferOutputStream;
 import com.tc.net.protocol.tcm.MessageChannel;
 import com.tc.net.protocol.tcm.MessageMonitor;
 import com.tc.net.protocol.tcm.NetworkRecall;
+import com.tc.net.protocol.tcm.TCActionNetworkMessage;
 import com.tc.net.protocol.tcm.TCMessageHeader;
 import com.tc.net.protocol.tcm.TCMessageType;
 import com.tc.object.ClientInstanceID;
@@ -30,17 +36,30 @@ import com.tc.object.session.SessionID;
 import com.tc.object.tx.TransactionID;
 import com.tc.util.Assert;
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.util.Collections;
-import java.util.LinkedList;
-import java.util.List;
+import java.io.UncheckedIOException;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
 
 
 
 public class LinearVoltronEntityMultiResponse extends DSOMessageBase implements VoltronEntityMultiResponse {
   
+  // legacy encoding, one name value pair per op.  Written unless packed encoding is enabled since older clients
+  // only understand this form
   private final byte OP_ID = 1;
   private final byte DONE_ID = 2;
+  // all ops in a single block, see encodeOp
+  private final byte OPS_ID = 3;
+  
+  private static final int POOLED_BLOCK_SIZE = 4 * 1024;
+  // op encoding blocks are recycled between messages once sent.  Returns beyond the capacity are dropped
+  private static final Queue<TCByteBuffer> POOL = new ArrayBlockingQueue<TCByteBuffer>(1024) {
+    @Override
+    public boolean add(TCByteBuffer e) {
+      offer(e);
+      return true;
+    }
+  };
   
   public enum Operation {
     RECEIVED,
@@ -70,91 +89,115 @@ public class LinearVoltronEntityMultiResponse extends DSOMessageBase implements
       boolean hasData() {
         return true;
       }
-    };
+    },
+    CREDIT;
     
     boolean hasData() {
       return false;
     }
   }  
-    
-  private List<Op> timeline = new LinkedList<>();
+  
+  private static final Operation[] OPERATIONS = Operation.values();
+  
+  // ops are appended to this stream as they are added, no per op objects are kept
+  private TCByteBufferOutputStream ops;
+  // the finished ops, set once adding stops or the message is hydrated
+  private TCReference encoded;
+  private int opCount;
+  private long lastId;
 
   private boolean stopAdding;
-  
-  private static class Op {
-    private final Operation type;
-    private final long id;
-    private final byte[] data;
+  // coalescing budget, once either is exceeded the message refuses new ops other than DONE and CREDIT
+  private int maximumBytes = Integer.MAX_VALUE;
+  private long maximumNanos;
+  // write all ops as one OPS_ID block, only readable by clients which include it
+  private boolean packed;
 
-    public Op(Operation type, long id, byte[] data) {
-      this.type = type;
-      this.id = id;
-      this.data = data;
-    }
-    
-    public Op(byte[] raw) {
-      ByteBuffer reader = ByteBuffer.wrap(raw);
-      this.type = Operation.values()[reader.getInt()];
-      this.id = reader.getLong();
-      this.data = new byte[reader.remaining()];
-      reader.get(this.data);
-    }
-    
-    public byte[] convert() {
-      ByteBuffer buffer = ByteBuffer.allocate(4 + 8 + data.length);
-      buffer.putInt(type.ordinal());
-      buffer.putLong(id);
-      if (data != null) {
-        buffer.put(data);
+  /**
+   * Each op is a type byte followed by the id as a zigzag varint delta from the id of the previous op.  Ops with data 
+   * follow that with a varint length and the data.  Acks for consecutive transactions take two bytes each.
+   */
+  private void encodeOp(TCByteBufferOutputStream out, Operation type, long id, byte[] data, long[] longs) {
+    out.writeByte(type.ordinal());
+    writeVarLong(out, zigzag(id - lastId));
+    lastId = id;
+    if (type.hasData()) {
+      if (longs != null) {
+        writeVarLong(out, longs.length * Long.BYTES);
+        for (long l : longs) {
+          out.writeLong(l);
+        }
+      } else {
+        writeVarLong(out, data.length);
+        out.write(data);
       }
-      return buffer.array();
     }
+    opCount += 1;
   }
 
   @Override
   public int replay(ReplayReceiver receiver) {
+    TCReference source = finishedOps();
+    if (source == null) {
+      return 0;
+    }
     int count = 0;
-    for (Op op : timeline) {
-      switch(op.type) {
-        case INVOKE_MESSAGE:
-          receiver.message(new TransactionID(op.id), op.data);
-          break;
-        case RECEIVED:
-          receiver.received(new TransactionID(op.id));
-          break;
-        case RESULT:
-          receiver.result(new TransactionID(op.id), op.data);
-          break;
-        case SERVER_MESSAGE:
-          receiver.message(new ClientInstanceID(op.id), op.data);
-          break;
-        case RESULT_RETIRED:
-          receiver.result(new TransactionID(op.id), op.data);
-      //  fallthrough
-        case RETIRED:
-          receiver.retired(new TransactionID(op.id));
-          break;
-        case DONE:
-          receiver.stats(TransactionID.NULL_ID, new long[] {op.id});
-          break;
-        case STATS:
-          ByteBuffer data = ByteBuffer.wrap(op.data);
-          long[] vals = new long[data.remaining() / Long.BYTES];
-          for (int x=0;x<vals.length;x++) {
-            vals[x] = data.getLong();
-          }
-          receiver.stats(new TransactionID(op.id), vals);
-          break;
-        default:
-          throw new AssertionError("unknown op");
+    long id = 0;
+    try (TCByteBufferInputStream in = new TCByteBufferInputStream(source)) {
+      while (in.available() > 0) {
+        Operation type = OPERATIONS[in.readByte()];
+        id += unzigzag(readVarLong(in));
+        byte[] data = null;
+        if (type.hasData() && type != Operation.STATS) {
+          data = new byte[(int)readVarLong(in)];
+          in.readFully(data);
+        }
+        switch(type) {
+          case INVOKE_MESSAGE:
+            receiver.message(new TransactionID(id), data);
+            break;
+          case RECEIVED:
+            receiver.received(new TransactionID(id));
+            break;
+          case RESULT:
+            receiver.result(new TransactionID(id), data);
+            break;
+          case SERVER_MESSAGE:
+            receiver.message(new ClientInstanceID(id), data);
+            break;
+          case RESULT_RETIRED:
+            receiver.result(new TransactionID(id), data);
+        //  fallthrough
+          case RETIRED:
+            receiver.retired(new TransactionID(id));
+            break;
+          case DONE:
+            receiver.stats(TransactionID.NULL_ID, new long[] {id});
+            break;
+          case STATS:
+            long[] vals = new long[(int)readVarLong(in) / Long.BYTES];
+            for (int x=0;x<vals.length;x++) {
+              vals[x] = in.readLong();
+            }
+            receiver.stats(new TransactionID(id), vals);
+            break;
+          case CREDIT:
+            receiver.credit((int)id);
+            break;
+          default:
+            throw new AssertionError("unknown op");
+        }
+        count+=1;
       }
-      count+=1;
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
     }
     return count;
   }
   
-  
-  
+  private synchronized TCReference finishedOps() {
+    return encoded;
+  }
   
   public LinearVoltronEntityMultiResponse(SessionID sessionID, MessageMonitor monitor, TCByteBufferOutputStream out, MessageChannel channel, TCMessageType type) {
     super(sessionID, monitor, out, channel, type);
@@ -168,16 +211,37 @@ public class LinearVoltronEntityMultiResponse extends DSOMessageBase implements
   public synchronized NetworkRecall send() {
     return super.send();
   }
+  
+  // for testing only
+  TCActionNetworkMessage getNetworkMessage() {
+    return convertToNetworkMessage();
+  }
+
+  @Override
+  public synchronized void limitCoalescing(int maximumBytes, long maximumNanos) {
+    this.maximumBytes = maximumBytes <= 0 ? Integer.MAX_VALUE : maximumBytes;
+    this.maximumNanos = maximumNanos;
+  }
+
+  @Override
+  public synchronized void usePackedEncoding(boolean packed) {
+    this.packed = packed;
+  }
 
   @Override
   public boolean addReceived(TransactionID tid) {
-    return buildOp(Operation.RECEIVED, tid.toLong(), null);
+    return buildOp(Operation.RECEIVED, tid.toLong(), null, null);
   }
   
-  private synchronized boolean buildOp(Operation type, long id, byte[] data) {
+  private synchronized boolean buildOp(Operation type, long id, byte[] data, long[] longs) {
     if (!stopAdding) {
-      Op op = new Op(type, id, data);
-      timeline.add(op);
+      if (type != Operation.DONE && type != Operation.CREDIT && overBudget()) {
+        return false;
+      }
+      if (ops == null) {
+        ops = new TCByteBufferOutputStream(new TCByteBufferAllocator(()->TCByteBufferFactory.getInstance(POOLED_BLOCK_SIZE), POOL));
+      }
+      encodeOp(ops, type, id, data, longs);
       switch (type) {
         case DONE:
           stopAdding = true;
@@ -195,81 +259,177 @@ public class LinearVoltronEntityMultiResponse extends DSOMessageBase implements
     return false;
   }
   
+  private boolean overBudget() {
+    if (ops != null && ops.getBytesWritten() >= maximumBytes) {
+      return true;
+    }
+    return started && maximumNanos > 0 && System.nanoTime() - startAddingTime >= maximumNanos;
+  }
+  
   @Override
   public boolean addRetired(TransactionID tid) {
-    return buildOp(Operation.RETIRED, tid.toLong(), null);
+    return buildOp(Operation.RETIRED, tid.toLong(), null, null);
   }
 
   @Override
   public boolean addResult(TransactionID tid, byte[] result) {
-    return buildOp(Operation.RESULT, tid.toLong(), result);
+    return buildOp(Operation.RESULT, tid.toLong(), result, null);
   }
 
   @Override
   public boolean addResultAndRetire(TransactionID tid, byte[] result) {
-    return buildOp(Operation.RESULT_RETIRED, tid.toLong(), result);
+    return buildOp(Operation.RESULT_RETIRED, tid.toLong(), result, null);
   }
 
   @Override
   public boolean addServerMessage(ClientInstanceID cid, byte[] message) {
-    return buildOp(Operation.SERVER_MESSAGE, cid.getID(), message);
+    return buildOp(Operation.SERVER_MESSAGE, cid.getID(), message, null);
   }
 
   @Override
   public boolean addServerMessage(TransactionID cid, byte[] message) {
-    return buildOp(Operation.INVOKE_MESSAGE, cid.toLong(), message);
+    return buildOp(Operation.INVOKE_MESSAGE, cid.toLong(), message, null);
   }
 
   @Override
   public boolean addStats(TransactionID cid, long[] timings) {
-    ByteBuffer buffer = ByteBuffer.allocate(timings.length * Long.BYTES);
-    for (long t : timings) {
-      buffer.putLong(t);
-    }
-    return buildOp(Operation.STATS, cid.toLong(), buffer.array());
+    return buildOp(Operation.STATS, cid.toLong(), null, timings);
+  }
+
+  @Override
+  public boolean addCredit(int window) {
+    return buildOp(Operation.CREDIT, window, null, null);
   }
   
   @Override
-  public void stopAdding() {
+  public synchronized void stopAdding() {
     stopAddingTime = System.nanoTime();
-    buildOp(Operation.DONE, stopAddingTime - startAddingTime, null);
-    timeline = Collections.unmodifiableList(timeline);
+    buildOp(Operation.DONE, stopAddingTime - startAddingTime, null, null);
+    if (encoded == null && ops != null) {
+      encoded = ops.accessBuffers();
+      ops = null;
+    }
   }
   
   @Override
   protected boolean hydrateValue(byte name) throws IOException {
-    if (name == OP_ID) {
-      Operation type = Operation.values()[getShortValue()];
+    if (name == OPS_ID) {
+      opCount = getIntValue();
+      int len = getIntValue();
+      encoded = TCReferenceSupport.createGCReference(getInputStream().read(len));
+      return true;
+    } else if (name == OP_ID) {
+      // re-encode the legacy form so replay only deals with one encoding
+      if (ops == null) {
+        ops = new TCByteBufferOutputStream();
+      }
+      Operation type = OPERATIONS[getShortValue()];
       long id = getLongValue();
       byte[] data = null;
+      long[] longs = null;
       if (type.hasData()) {
         int len = getIntValue();
-        data = new byte[len];
-        getInputStream().readFully(data);
+        if (type == Operation.STATS) {
+          longs = new long[len / Long.BYTES];
+          for (int x=0;x<longs.length;x++) {
+            longs[x] = getLongValue();
+          }
+        } else {
+          data = new byte[len];
+          getInputStream().readFully(data);
+        }
       }
-      timeline.add(new Op(type, id, data));
+      encodeOp(ops, type, id, data, longs);
       return true;
     } else if (name == DONE_ID) {
-      Assert.assertEquals(getIntValue(), timeline.size());
+      Assert.assertEquals(getIntValue(), opCount);
+      if (ops != null) {
+        encoded = ops.accessBuffers();
+        ops = null;
+      }
       return true;
     }
     return false;
   }
 
   @Override
-  protected void dehydrateValues() {
+  protected synchronized void dehydrateValues() {
+    if (encoded == null && ops != null) {
+      encoded = ops.accessBuffers();
+      ops = null;
+    }
+    if (!packed) {
+      dehydrateLegacy();
+      return;
+    }
+    putNVPair(OPS_ID, opCount);
+    if (encoded == null) {
+      getOutputStream().writeInt(0);
+    } else {
+      getOutputStream().writeInt((int)encoded.available());
+      // the copy into the message releases the pooled blocks for the next response
+      try (TCReference done = encoded) {
+        for (TCByteBuffer buf : done) {
+          getOutputStream().write(buf);
+        }
+      }
+      encoded = null;
+    }
+  }
+  
+  private void dehydrateLegacy() {
     int count = 0;
-    for (Op op : timeline) {
-      putNVPair(OP_ID, (short)op.type.ordinal());
-      getOutputStream().writeLong(op.id);
-      if (op.type.hasData()) {
-        getOutputStream().writeInt(op.data.length);
-        getOutputStream().write(op.data);
+    if (encoded != null) {
+      long id = 0;
+      try (TCReference done = encoded; TCByteBufferInputStream in = new TCByteBufferInputStream(done)) {
+        while (in.available() > 0) {
+          Operation type = OPERATIONS[in.readByte()];
+          id += unzigzag(readVarLong(in));
+          putNVPair(OP_ID, (short)type.ordinal());
+          getOutputStream().writeLong(id);
+          if (type.hasData()) {
+            byte[] data = new byte[(int)readVarLong(in)];
+            in.readFully(data);
+            getOutputStream().writeInt(data.length);
+            getOutputStream().write(data);
+          }
+          count++;
+        }
+      } catch (IOException ioe) {
+        throw new UncheckedIOException(ioe);
       }
-      count++;
+      encoded = null;
     }
-    putNVPair(DONE_ID,count);
-    
+    putNVPair(DONE_ID, count);
+  }
+
+  private static void writeVarLong(TCByteBufferOutputStream out, long value) {
+    while ((value & ~0x7FL) != 0) {
+      out.write((int)((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.write((int)value);
+  }
+  
+  private static long readVarLong(TCByteBufferInputStream in) throws IOException {
+    long value = 0;
+    int shift = 0;
+    while (true) {
+      byte b = in.readByte();
+      value |= (long)(b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+      shift += 7;
+    }
+  }
+  
+  private static long zigzag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+  
+  private static long unzigzag(long value) {
+    return (value >>> 1) ^ -(value & 1);
   }
   
   private long stopAddingTime;
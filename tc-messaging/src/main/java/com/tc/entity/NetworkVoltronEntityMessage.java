@@ -22,6 +22,7 @@ import com.tc.net.ClientID;
 import com.tc.object.EntityDescriptor;
 import com.tc.object.EntityID;
 import com.tc.object.tx.TransactionID;
+import java.util.List;
 import java.util.Set;
 import com.tc.net.protocol.tcm.TCAction;
 
@@ -41,4 +42,22 @@ public interface NetworkVoltronEntityMessage extends VoltronEntityMessage, TCAct
   public void setContents(ClientID clientID, TransactionID transactionID, EntityID eid, EntityDescriptor entityDescriptor, Type type, boolean requiresReplication, TCByteBuffer extendedData, TransactionID oldestTransactionPending, Set<VoltronEntityMessage.Acks> acks);
 
   public void setMessageCodecSupplier(MessageCodecSupplier supplier);
+
+  /**
+   * Creates another invoke against the same entity instance, to be packed into this invoke message.  The invoke shares
+   * the source, entity descriptor, replication requirement and oldest pending transaction of this message.
+   *
+   * @return the invoke, used to track it and to resend it on reconnect
+   */
+  public VoltronEntityMessage createBatchedInvoke(TransactionID transactionID, TCByteBuffer extendedData, Set<VoltronEntityMessage.Acks> acks);
+
+  /**
+   * Packs an invoke created by {@link #createBatchedInvoke} into this message.
+   */
+  public void addBatchedInvoke(VoltronEntityMessage invoke);
+
+  /**
+   * @return the invokes packed into this message after its own, in the order they were added
+   */
+  public List<VoltronEntityMessage> getBatchedInvokes();
 }
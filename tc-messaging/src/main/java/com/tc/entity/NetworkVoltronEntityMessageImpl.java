@@ -35,9 +35,13 @@ import com.tc.object.tx.TransactionID;
 import com.tc.util.Assert;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.Set;
 
+import org.terracotta.entity.BufferMessageCodec;
 import org.terracotta.entity.EntityMessage;
 import org.terracotta.entity.EntityResponse;
 import org.terracotta.entity.MessageCodec;
@@ -56,6 +60,7 @@ public class NetworkVoltronEntityMessageImpl extends DSOMessageBase implements N
   private MessageCodecSupplier supplier;
   private EntityMessage message;
   private Set<VoltronEntityMessage.Acks> requestedAcks;
+  private List<VoltronEntityMessage> batched = Collections.emptyList();
 
   @Override
   public ClientID getSource() {
@@ -151,6 +156,26 @@ public class NetworkVoltronEntityMessageImpl extends DSOMessageBase implements N
     this.supplier = supplier;
   }
 
+  @Override
+  public VoltronEntityMessage createBatchedInvoke(TransactionID transactionID, TCByteBuffer extendedData, Set<VoltronEntityMessage.Acks> acks) {
+    Assert.assertTrue(this.type == Type.INVOKE_ACTION);
+    return new BatchedVoltronEntityMessage(this, transactionID, extendedData, acks, null);
+  }
+
+  @Override
+  public void addBatchedInvoke(VoltronEntityMessage invoke) {
+    Assert.assertTrue(invoke instanceof BatchedVoltronEntityMessage && ((BatchedVoltronEntityMessage)invoke).isCarriedBy(this));
+    if (this.batched.isEmpty()) {
+      this.batched = new ArrayList<>();
+    }
+    this.batched.add(invoke);
+  }
+
+  @Override
+  public List<VoltronEntityMessage> getBatchedInvokes() {
+    return this.batched;
+  }
+
   public NetworkVoltronEntityMessageImpl(SessionID sessionID, MessageMonitor monitor, TCByteBufferOutputStream out, MessageChannel channel, TCMessageType type) {
     super(sessionID, monitor, out, channel, type);
   }
@@ -180,15 +205,42 @@ public class NetworkVoltronEntityMessageImpl extends DSOMessageBase implements N
     
     outputStream.writeLong(this.oldestTransactionPending.toLong());
     
-    outputStream.writeByte(requestedAcks.size());
-    for (VoltronEntityMessage.Acks ack : this.requestedAcks) {
+    writeAcks(outputStream, this.requestedAcks);
+
+    if (!this.batched.isEmpty()) {
+      putNVPair((byte)1, this.batched.size());
+      for (VoltronEntityMessage invoke : this.batched) {
+        outputStream.writeLong(invoke.getTransactionID().toLong());
+        TCByteBuffer data = invoke.getExtendedData();
+        outputStream.writeInt(data.remaining());
+        outputStream.write(data);
+        writeAcks(outputStream, ((BatchedVoltronEntityMessage)invoke).getRequestedAcks());
+      }
+    }
+  }
+
+  private static void writeAcks(TCByteBufferOutputStream outputStream, Set<VoltronEntityMessage.Acks> acks) {
+    outputStream.writeByte(acks.size());
+    for (VoltronEntityMessage.Acks ack : acks) {
       outputStream.writeByte(ack.ordinal());
     }
   }
   
   @Override
   protected boolean hydrateValue(byte name) throws IOException {
-    Assert.assertTrue(0 == name);
+    switch (name) {
+      case 0:
+        hydrateInvoke();
+        return true;
+      case 1:
+        hydrateBatchedInvokes();
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private void hydrateInvoke() throws IOException {
     Assert.assertTrue(null == this.clientID);
     // Read our dummy byte.
     getByteValue();
@@ -200,10 +252,29 @@ public class NetworkVoltronEntityMessageImpl extends DSOMessageBase implements N
     this.extendedData = getByteBuffer();
     this.requiresReplication = getBooleanValue();
     this.oldestTransactionPending = new TransactionID(getLongValue());
-    
+    this.requestedAcks = readAcks();
+
+    if (this.type == Type.INVOKE_ACTION) {
+      this.message = decode(this.extendedData);
+    }
+  }
+
+  private void hydrateBatchedInvokes() throws IOException {
+    Assert.assertTrue(this.type == Type.INVOKE_ACTION);
+    int count = getIntValue();
+    this.batched = new ArrayList<>(count);
+    for (int x = 0; x < count; x++) {
+      TransactionID invokeID = new TransactionID(getLongValue());
+      TCByteBuffer data = getByteBuffer();
+      Set<VoltronEntityMessage.Acks> acks = readAcks();
+      this.batched.add(new BatchedVoltronEntityMessage(this, invokeID, data, acks, decode(data)));
+    }
+  }
+
+  private Set<VoltronEntityMessage.Acks> readAcks() throws IOException {
     int ac = getByteValue();
     if (ac == 0) {
-      this.requestedAcks = EnumSet.noneOf(Acks.class);
+      return EnumSet.noneOf(Acks.class);
     } else {
       Acks first = Acks.values()[getByteValue()];
       if (ac > 1) {
@@ -211,25 +282,28 @@ public class NetworkVoltronEntityMessageImpl extends DSOMessageBase implements N
         for (int x=0;x < ac - 1;x++) {
           rest[x] = Acks.values()[getByteValue()];
         }
-        this.requestedAcks = EnumSet.of(first, rest);
+        return EnumSet.of(first, rest);
       } else {
-        this.requestedAcks = EnumSet.of(first);
+        return EnumSet.of(first);
       }
     }
+  }
 
+  private EntityMessage decode(TCByteBuffer data) {
     try {
-      if (this.type == Type.INVOKE_ACTION) {
-        MessageCodec<? extends EntityMessage, ? extends EntityResponse> codec = supplier.getMessageCodec(this.entityDescriptor);
-        this.message = codec.decodeMessage(TCByteBufferFactory.unwrap(extendedData));
+      MessageCodec<? extends EntityMessage, ? extends EntityResponse> codec = supplier.getMessageCodec(this.entityDescriptor);
+      if (codec instanceof BufferMessageCodec) {
+        return ((BufferMessageCodec<? extends EntityMessage, ? extends EntityResponse>)codec).decodeMessage(TCByteBufferFactory.readOnlyView(data));
+      } else {
+        return codec.decodeMessage(TCByteBufferFactory.unwrap(data));
       }
     } catch (MessageCodecException exception) {
 /*  swallow it - this is an optimzation which does not handle the failure case.  
     If this invocation does not succeed, a later stage will try and decode the message 
     again.  When that fails the exception is handled and sent back to the client.
       */
+      return null;
     }
-    
-    return true;
   }
 
   @Override
@@ -35,6 +35,10 @@ public interface VoltronEntityMultiResponse extends TCAction {
     void message(ClientInstanceID cid, byte[] message);
     void message(TransactionID tid, byte[] message);
     void stats(TransactionID tid, long[] message);
+    /**
+     * The server advertised the number of invokes the client may have in-flight.
+     */
+    default void credit(int window) {}
   }
   
   int replay(ReplayReceiver receiver);
@@ -46,6 +50,26 @@ public interface VoltronEntityMultiResponse extends TCAction {
   boolean addServerMessage(ClientInstanceID cid, byte[] message);
   boolean addServerMessage(TransactionID cid, byte[] message);
   boolean addStats(TransactionID cid, long[] timings);
+  /**
+   * Advertise the number of invokes the receiving client may have in-flight.  Must be
+   * added before {@link #stopAdding()}.
+   */
+  default boolean addCredit(int window) {
+    return false;
+  }
+  
+  /**
+   * Bound how much is coalesced into this response.  Once the encoded ops reach maximumBytes or
+   * maximumNanos have passed since {@link #startAdding()}, further adds are refused so the caller
+   * moves on to a new response.  Zero disables either limit.
+   */
+  default void limitCoalescing(int maximumBytes, long maximumNanos) {}
+
+  /**
+   * Send all ops as one packed block rather than one name value pair per op.  Clients older than the
+   * packed encoding cannot read it so this is off unless configured.
+   */
+  default void usePackedEncoding(boolean packed) {}
   
   void stopAdding();
   
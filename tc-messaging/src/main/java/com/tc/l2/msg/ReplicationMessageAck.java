@@ -32,18 +32,26 @@ public class ReplicationMessageAck extends AbstractGroupMessage implements IBatc
   public static final int INVALID               = 0; // Sent to replicate a request on the passive
   public static final int START_SYNC                = 4; // Sent from the passive when it wants the active to start passive sync.
   public static final int BATCH                = 5; // Sent from the passive to ack a batch of messages.
+  public static final int START_CATCH_UP                = 6; // Sent from a synced passive when it wants the active to replay what it missed.
 
   // Factory methods.
   public static ReplicationMessageAck createSyncRequestMessage() {
     return new ReplicationMessageAck(START_SYNC);
   }
 
+  public static ReplicationMessageAck createCatchUpRequestMessage(long lastActivity) {
+    ReplicationMessageAck message = new ReplicationMessageAck(START_CATCH_UP);
+    message.lastActivity = lastActivity;
+    return message;
+  }
+
   public static ReplicationMessageAck createBatchAck() {
     return new ReplicationMessageAck(BATCH);
   }
 
 
   private List<ReplicationAckTuple> batch;
+  private long lastActivity;
 
   public ReplicationMessageAck() {
     super(INVALID);
@@ -73,6 +81,14 @@ public class ReplicationMessageAck extends AbstractGroupMessage implements IBatc
   public List<ReplicationAckTuple> getBatch() {
     return this.batch;
   }
+
+  /**
+   * @return the id of the last activity a passive requesting catch up applied
+   */
+  public long getLastActivity() {
+    Assert.assertTrue(START_CATCH_UP == this.getType());
+    return this.lastActivity;
+  }
   
   @Override
   public void setSequenceID(long rid) {
@@ -96,6 +112,8 @@ public class ReplicationMessageAck extends AbstractGroupMessage implements IBatc
         ReplicationResultCode result = ReplicationResultCode.decode(in.readInt());
         this.batch.add(new ReplicationAckTuple(respondTo, result));
       }
+    } else if (START_CATCH_UP == this.getType()) {
+      this.lastActivity = in.readLong();
     }
   }
 
@@ -110,6 +128,8 @@ public class ReplicationMessageAck extends AbstractGroupMessage implements IBatc
         out.writeLong(tuple.respondTo.id);
         out.writeInt(tuple.result.code());
       }
+    } else if (START_CATCH_UP == this.getType()) {
+      out.writeLong(this.lastActivity);
     }
   }
 
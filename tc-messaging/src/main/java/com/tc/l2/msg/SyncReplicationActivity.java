@@ -112,7 +112,19 @@ public class SyncReplicationActivity implements OrderedEventContext {
     SYNC_ENTITY_CONCURRENCY_PAYLOAD,
     SYNC_ENTITY_CONCURRENCY_END,
 
-    DISCONNECT_CLIENT;
+    DISCONNECT_CLIENT,
+
+    /**
+     * A chunk of an entity provided snapshot of a concurrency key.  Declared after the original types so their
+     * ordinals, which are used on the wire, do not change.
+     */
+    SYNC_ENTITY_CONCURRENCY_SNAPSHOT,
+
+    /**
+     * Only used locally - queued on a passive behind any replicated activity still waiting to be applied so a request
+     *  to catch up names the last activity the passive actually applied.
+     */
+    LOCAL_CATCH_UP_REQUEST;
 
     public boolean isLifecycleActivity() {
       return false;
@@ -161,6 +173,10 @@ public class SyncReplicationActivity implements OrderedEventContext {
     return new SyncReplicationActivity(ActivityID.getNextID(), null, EntityID.NULL_ID, EntityDescriptor.INVALID_VERSION, fetch, ClientID.NULL_ID, ClientInstanceID.NULL_ID, TransactionID.NULL_ID, TransactionID.NULL_ID, type, null, 0, referenceCount, null);
   }
 
+  public static SyncReplicationActivity createLocalCatchUpRequest() {
+    return new SyncReplicationActivity(ActivityID.getNextID(), null, EntityID.NULL_ID, EntityDescriptor.INVALID_VERSION, FetchID.NULL_ID, ClientID.NULL_ID, ClientInstanceID.NULL_ID, TransactionID.NULL_ID, TransactionID.NULL_ID, ActivityType.LOCAL_CATCH_UP_REQUEST, null, 0, 0, null);
+  }
+
   public static SyncReplicationActivity createOrderingPlaceholder(FetchID fetch, ClientID src, ClientInstanceID instance, TransactionID tid, TransactionID oldest, String debugId) {
     int referenceCount = 0;
     return new SyncReplicationActivity(ActivityID.getNextID(), null, EntityID.NULL_ID, EntityDescriptor.INVALID_VERSION, fetch, src, instance, tid, oldest, ActivityType.ORDERING_PLACEHOLDER, null, 0, referenceCount, debugId);
@@ -228,6 +244,13 @@ public class SyncReplicationActivity implements OrderedEventContext {
     return new SyncReplicationActivity(ActivityID.getNextID(), null, id, version, fetchID, ClientID.NULL_ID, ClientInstanceID.NULL_ID, TransactionID.NULL_ID, TransactionID.NULL_ID, ActivityType.SYNC_ENTITY_CONCURRENCY_PAYLOAD, payload, concurrency, referenceCount, debugId);
   }
 
+  public static SyncReplicationActivity createSnapshotMessage(EntityID id, long version, FetchID fetchID, int concurrency, TCByteBuffer chunk) {
+    // We can only synchronize positive-number keys.
+    Assert.assertTrue(concurrency > 0);
+    int referenceCount = 0;
+    return new SyncReplicationActivity(ActivityID.getNextID(), null, id, version, fetchID, ClientID.NULL_ID, ClientInstanceID.NULL_ID, TransactionID.NULL_ID, TransactionID.NULL_ID, ActivityType.SYNC_ENTITY_CONCURRENCY_SNAPSHOT, chunk, concurrency, referenceCount, null);
+  }
+
   public static SyncReplicationActivity createStartMessage() {
     int referenceCount = 0;
     return new SyncReplicationActivity(ActivityID.getNextID(), null, EntityID.NULL_ID, 0L, FetchID.NULL_ID, ClientID.NULL_ID, ClientInstanceID.NULL_ID, TransactionID.NULL_ID, TransactionID.NULL_ID, ActivityType.SYNC_START, null, 0, referenceCount, null);
@@ -354,16 +377,36 @@ public class SyncReplicationActivity implements OrderedEventContext {
   }
 
   public boolean isSyncActivity() {
-    return (this.action.ordinal() >= ActivityType.SYNC_START.ordinal() && this.action.ordinal() < ActivityType.DISCONNECT_CLIENT.ordinal());
+    return (this.action.ordinal() >= ActivityType.SYNC_START.ordinal() && this.action.ordinal() < ActivityType.DISCONNECT_CLIENT.ordinal())
+        || this.action == ActivityType.SYNC_ENTITY_CONCURRENCY_SNAPSHOT;
+  }
+
+  /**
+   * Activities a passive which has finished sync can be brought up to date with by replaying them in the order they
+   * were replicated.  The end of sync is included so a passive which has seen nothing since can name it.
+   */
+  public boolean isCatchUpActivity() {
+    switch (this.action) {
+      case INVALID:
+      case LOCAL_ENTITY_GC:
+      case FLUSH_LOCAL_PIPELINE:
+      case LOCAL_CATCH_UP_REQUEST:
+        return false;
+      case SYNC_END:
+        return true;
+      default:
+        return !isSyncActivity();
+    }
   }
 
-  protected void serializeTo(TCByteBufferOutput out) {
+  public void serializeTo(TCByteBufferOutput out) {
     // This activity better be valid.
     Assert.assertTrue(ActivityType.INVALID != this.action);
     // We should NOT be serializing local flush activities.
     Assert.assertTrue(ActivityType.FLUSH_LOCAL_PIPELINE != this.action);
     // We should NOT be serializing local flush activities.
     Assert.assertTrue(ActivityType.LOCAL_ENTITY_GC != this.action);
+    Assert.assertTrue(ActivityType.LOCAL_CATCH_UP_REQUEST != this.action);
 
     out.writeLong(this.id.id);
     out.writeInt(this.action.ordinal());
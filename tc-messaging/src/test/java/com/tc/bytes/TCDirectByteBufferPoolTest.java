@@ -0,0 +1,107 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tc.bytes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+
+public class TCDirectByteBufferPoolTest {
+
+  @Test
+  public void testSizeClasses() {
+    TCDirectByteBufferPool pool = new TCDirectByteBufferPool(4096, 1024 * 1024, Long.MAX_VALUE);
+    assertEquals(4096, pool.poll(1).capacity());
+    assertEquals(4096, pool.poll(4096).capacity());
+    assertEquals(8192, pool.poll(4097).capacity());
+    assertEquals(1024 * 1024, pool.poll(1000 * 1000).capacity());
+    //  larger requests are capped at the largest class
+    assertEquals(1024 * 1024, pool.poll(5 * 1024 * 1024).capacity());
+    assertTrue(pool.poll(10).isDirect());
+  }
+
+  @Test
+  public void testReferenceReturnsBufferOnLastClose() {
+    TCDirectByteBufferPool pool = new TCDirectByteBufferPool(4096, 64 * 1024, Long.MAX_VALUE);
+    TCReference ref = pool.reference(20000);
+    TCByteBuffer leased = ref.iterator().next();
+    TCReference dup = ref.duplicate();
+    ref.close();
+    assertEquals(1, pool.leased());
+    dup.close();
+    assertEquals(0, pool.leased());
+    TCReference again = pool.reference(30000);
+    assertEquals(leased.capacity(), again.iterator().next().capacity());
+    assertEquals(1L, pool.getState().get("hits"));
+    again.close();
+  }
+
+  @Test
+  public void testBudgetTrimsThenFallsBackToHeap() {
+    TCDirectByteBufferPool pool = new TCDirectByteBufferPool(4096, 64 * 1024, 16 * 1024);
+    TCByteBuffer small = pool.poll(4096);
+    assertTrue(pool.offer(small.reInit()));
+    TCByteBuffer big = pool.poll(16 * 1024);
+    //  the free small buffer was dropped to make room
+    assertTrue(big.isDirect());
+    assertEquals(1L, pool.getState().get("trimmed"));
+    assertEquals(16L * 1024, pool.reserved());
+    TCByteBuffer heap = pool.poll(4096);
+    assertFalse(heap.isDirect());
+    assertFalse(pool.offer(heap.reInit()));
+    assertTrue(pool.offer(big.reInit()));
+    assertSame(big, pool.poll(9000));
+    assertNotSame(small, pool.poll(100));
+  }
+
+  @Test
+  public void testReturnsBeyondRetainedCapacityAreReleased() {
+    TCDirectByteBufferPool pool = new TCDirectByteBufferPool(4096, 64 * 1024, 1024 * 1024, 64 * 1024);
+    TCByteBuffer first = pool.poll(64 * 1024);
+    TCByteBuffer second = pool.poll(64 * 1024);
+    assertEquals(128L * 1024, pool.reserved());
+    assertTrue(pool.offer(first.reInit()));
+    assertTrue(pool.offer(second.reInit()));
+    //  only one fits in what the pool retains
+    assertEquals(64L * 1024, pool.reserved());
+    assertEquals(1L, pool.getState().get("trimmed"));
+    assertEquals(0, pool.leased());
+    assertSame(first, pool.poll(64 * 1024));
+  }
+
+  @Test
+  public void testUnreturnedBuffersAreReportedAsLeaks() throws Exception {
+    TCReferenceSupport.startMonitoringReferences();
+    try {
+      TCDirectByteBufferPool pool = new TCDirectByteBufferPool(4096, 64 * 1024, 1024 * 1024);
+      pool.poll(8192);
+      for (int x = 0; x < 100 && pool.leased() > 0; x++) {
+        System.gc();
+        Thread.sleep(10);
+      }
+      assertEquals(0, pool.leased());
+      assertEquals(1L, pool.getState().get("leaks"));
+      assertEquals(0L, pool.reserved());
+    } finally {
+      TCReferenceSupport.stopMonitoringReferences();
+    }
+  }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tc.entity;
+
+import com.tc.bytes.TCReference;
+import com.tc.io.TCByteBufferInputStream;
+import com.tc.io.TCByteBufferOutputStream;
+import com.tc.net.protocol.tcm.MessageMonitor;
+import com.tc.net.protocol.tcm.TCActionNetworkMessage;
+import com.tc.net.protocol.tcm.TCMessageHeader;
+import com.tc.net.protocol.tcm.TCMessageType;
+import com.tc.object.ClientInstanceID;
+import com.tc.object.session.SessionID;
+import com.tc.object.tx.TransactionID;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+
+public class LinearVoltronEntityMultiResponseTest {
+
+  private final MessageMonitor monitor = mock(MessageMonitor.class);
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    LinearVoltronEntityMultiResponse message = outgoing();
+    message.addStats(new TransactionID(5), new long[] {1L, -2L, Long.MAX_VALUE});
+    assertTrue(message.startAdding());
+    for (long x = 100; x < 110; x++) {
+      message.addReceived(new TransactionID(x));
+      message.addRetired(new TransactionID(x));
+    }
+    message.addResult(new TransactionID(7), new byte[] {1, 2, 3});
+    message.addServerMessage(new ClientInstanceID(3), new byte[0]);
+    message.addResultAndRetire(new TransactionID(1L << 40), new byte[] {4});
+    message.addCredit(12);
+    message.stopAdding();
+    assertFalse(message.addReceived(new TransactionID(200)));
+
+    List<String> sent = record(message);
+    List<String> received = record(hydrate(message));
+    assertEquals(sent, received);
+    assertEquals("stats:5:[1, -2, " + Long.MAX_VALUE + "]", received.get(0));
+    assertEquals("received:100", received.get(1));
+    assertEquals("retired:109", received.get(20));
+    assertEquals("result:7:[1, 2, 3]", received.get(21));
+    assertEquals("message:3:[]", received.get(22));
+    assertEquals("result:" + (1L << 40) + ":[4]", received.get(23));
+    assertEquals("retired:" + (1L << 40), received.get(24));
+    assertEquals("credit:12", received.get(25));
+    assertTrue(received.get(26).startsWith("stats:-1:"));
+    assertEquals(27, received.size());
+  }
+
+  @Test
+  public void testLegacyEncodingIsWrittenByDefault() throws Exception {
+    assertEquals(1, firstName(false));
+    assertEquals(3, firstName(true));
+  }
+
+  @Test
+  public void testPackedRoundTrip() throws Exception {
+    LinearVoltronEntityMultiResponse message = outgoing();
+    message.usePackedEncoding(true);
+    message.addStats(new TransactionID(5), new long[] {1L, -2L});
+    assertTrue(message.startAdding());
+    message.addResultAndRetire(new TransactionID(1L << 40), new byte[] {4});
+    message.addCredit(12);
+    message.stopAdding();
+
+    List<String> sent = record(message);
+    assertEquals(sent, record(hydrate(message)));
+    assertEquals(5, sent.size());
+  }
+
+  @Test
+  public void testSizeBudgetStopsCoalescing() throws Exception {
+    LinearVoltronEntityMultiResponse message = outgoing();
+    message.limitCoalescing(64, 0);
+    message.startAdding();
+    int added = 0;
+    while (message.addResult(new TransactionID(added), new byte[16])) {
+      added++;
+    }
+    assertTrue(added > 0 && added < 64 / 16 + 1);
+    // the server can always finish the response
+    assertTrue(message.addCredit(1));
+    message.stopAdding();
+    assertEquals(added + 2, hydrate(message).replay(new CountingReceiver()));
+  }
+
+  @Test
+  public void testTimeBudgetStopsCoalescing() throws Exception {
+    LinearVoltronEntityMultiResponse message = outgoing();
+    message.limitCoalescing(0, 1L);
+    message.startAdding();
+    Thread.sleep(1);
+    assertFalse(message.addRetired(new TransactionID(1)));
+  }
+
+  @Test
+  public void testLegacyEncodingIsRead() throws Exception {
+    LinearVoltronEntityMultiResponse template = outgoing();
+    template.stopAdding();
+    TCActionNetworkMessage msg = template.getNetworkMessage();
+    msg.load();
+    TCMessageHeader header = (TCMessageHeader)msg.getHeader();
+
+    TCByteBufferOutputStream legacy = new TCByteBufferOutputStream();
+    legacy.writeInt(3);
+    legacy.writeByte(1);
+    legacy.writeShort(LinearVoltronEntityMultiResponse.Operation.RECEIVED.ordinal());
+    legacy.writeLong(9);
+    legacy.writeByte(1);
+    legacy.writeShort(LinearVoltronEntityMultiResponse.Operation.RESULT_RETIRED.ordinal());
+    legacy.writeLong(9);
+    legacy.writeInt(2);
+    legacy.write(new byte[] {5, 6});
+    legacy.writeByte(2);
+    legacy.writeInt(2);
+    LinearVoltronEntityMultiResponse decoded = new LinearVoltronEntityMultiResponse(SessionID.NULL_ID, monitor, null, header, new TCByteBufferInputStream(legacy.accessBuffers()));
+    decoded.hydrate();
+    assertEquals(Arrays.asList("received:9", "result:9:[5, 6]", "retired:9"), record(decoded));
+  }
+
+  private byte firstName(boolean packed) throws Exception {
+    LinearVoltronEntityMultiResponse message = outgoing();
+    message.usePackedEncoding(packed);
+    message.startAdding();
+    message.addReceived(new TransactionID(1));
+    message.stopAdding();
+    TCActionNetworkMessage msg = message.getNetworkMessage();
+    msg.load();
+    TCByteBufferInputStream in = new TCByteBufferInputStream(msg.getPayload());
+    in.readInt();
+    return in.readByte();
+  }
+
+  private LinearVoltronEntityMultiResponse outgoing() {
+    return new LinearVoltronEntityMultiResponse(new SessionID(0), monitor, new TCByteBufferOutputStream(), null, TCMessageType.VOLTRON_ENTITY_MULTI_RESPONSE);
+  }
+
+  private LinearVoltronEntityMultiResponse hydrate(LinearVoltronEntityMultiResponse message) throws Exception {
+    TCActionNetworkMessage msg = message.getNetworkMessage();
+    msg.load();
+    TCReference payload = msg.getPayload();
+    LinearVoltronEntityMultiResponse decoded = new LinearVoltronEntityMultiResponse(SessionID.NULL_ID, monitor, null, (TCMessageHeader)msg.getHeader(), new TCByteBufferInputStream(payload));
+    decoded.hydrate();
+    return decoded;
+  }
+
+  private static List<String> record(VoltronEntityMultiResponse message) {
+    List<String> ops = new ArrayList<>();
+    message.replay(new VoltronEntityMultiResponse.ReplayReceiver() {
+      @Override
+      public void received(TransactionID tid) {
+        ops.add("received:" + tid.toLong());
+      }
+
+      @Override
+      public void retired(TransactionID tid) {
+        ops.add("retired:" + tid.toLong());
+      }
+
+      @Override
+      public void result(TransactionID tid, byte[] result) {
+        ops.add("result:" + tid.toLong() + ":" + Arrays.toString(result));
+      }
+
+      @Override
+      public void message(ClientInstanceID cid, byte[] message) {
+        ops.add("message:" + cid.getID() + ":" + Arrays.toString(message));
+      }
+
+      @Override
+      public void message(TransactionID tid, byte[] message) {
+        ops.add("invoke:" + tid.toLong() + ":" + Arrays.toString(message));
+      }
+
+      @Override
+      public void stats(TransactionID tid, long[] message) {
+        // the DONE op carries the time spent adding which differs between runs
+        ops.add("stats:" + tid.toLong() + ":" + (tid.isNull() ? "" : Arrays.toString(message)));
+      }
+
+      @Override
+      public void credit(int window) {
+        ops.add("credit:" + window);
+      }
+    });
+    return ops;
+  }
+
+  private static class CountingReceiver implements VoltronEntityMultiResponse.ReplayReceiver {
+    @Override
+    public void received(TransactionID tid) {}
+
+    @Override
+    public void retired(TransactionID tid) {}
+
+    @Override
+    public void result(TransactionID tid, byte[] result) {}
+
+    @Override
+    public void message(ClientInstanceID cid, byte[] message) {}
+
+    @Override
+    public void message(TransactionID tid, byte[] message) {}
+
+    @Override
+    public void stats(TransactionID tid, long[] message) {}
+  }
+}
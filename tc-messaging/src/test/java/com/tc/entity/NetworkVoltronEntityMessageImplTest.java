@@ -33,16 +33,27 @@ import com.tc.net.protocol.tcm.TCActionNetworkMessage;
 import com.tc.net.protocol.tcm.TCMessageHeader;
 import com.tc.net.protocol.tcm.TCMessageType;
 import com.tc.net.protocol.tcm.UnknownNameException;
+import com.tc.object.ClientInstanceID;
 import com.tc.object.EntityDescriptor;
 import com.tc.object.EntityID;
+import com.tc.object.FetchID;
 import com.tc.object.session.SessionID;
 import com.tc.object.tx.TransactionID;
 import java.util.EnumSet;
 
 import org.junit.Test;
+import org.terracotta.entity.EntityMessage;
+import org.terracotta.entity.EntityResponse;
+import org.terracotta.entity.MessageCodec;
+import org.terracotta.entity.MessageCodecException;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 
 /**
@@ -81,4 +92,46 @@ public class NetworkVoltronEntityMessageImplTest {
     assertEquals(messageType, decodingMessage.getVoltronType());
     assertEquals(oldestTransactionPending, decodingMessage.getOldestTransactionOnClient());
   }
+
+  @Test
+  public void testBatchedInvokeSerialization() throws UnknownNameException, IOException, MessageCodecException {
+    MessageMonitor monitor = mock(MessageMonitor.class);
+    TCByteBufferOutputStream outputStream = new TCByteBufferOutputStream(4, 4096);
+    NetworkVoltronEntityMessageImpl message = new NetworkVoltronEntityMessageImpl(new SessionID(0), monitor, outputStream, null, TCMessageType.VOLTRON_ENTITY_MESSAGE);
+
+    ClientID clientID = new ClientID(1);
+    EntityDescriptor entityDescriptor = EntityDescriptor.createDescriptorForInvoke(new FetchID(1), new ClientInstanceID(1));
+    message.setContents(clientID, new TransactionID(2), new EntityID("class", "name"), entityDescriptor, Type.INVOKE_ACTION,
+            true, TCByteBufferFactory.wrap(new byte[] {2}), new TransactionID(1), EnumSet.of(Acks.RECEIVED));
+    message.addBatchedInvoke(message.createBatchedInvoke(new TransactionID(3), TCByteBufferFactory.wrap(new byte[] {3}), EnumSet.noneOf(Acks.class)));
+    message.addBatchedInvoke(message.createBatchedInvoke(new TransactionID(4), TCByteBufferFactory.wrap(new byte[] {4, 4}), EnumSet.of(Acks.RECEIVED, Acks.RETIRED)));
+    TCActionNetworkMessage msg = message.getNetworkMessage();
+
+    TCMessageHeader header = (TCMessageHeader) msg.getHeader();
+    msg.load();
+    TCReference payload = msg.getPayload();
+    outputStream.close();
+    NetworkVoltronEntityMessageImpl decodingMessage = new NetworkVoltronEntityMessageImpl(SessionID.NULL_ID, monitor, null, header, new TCByteBufferInputStream(payload));
+    MessageCodec<EntityMessage, EntityResponse> codec = mock(MessageCodec.class);
+    when(codec.decodeMessage(any(byte[].class))).thenReturn(mock(EntityMessage.class));
+    decodingMessage.setMessageCodecSupplier(descriptor -> codec);
+    decodingMessage.hydrate();
+    assertEquals(new TransactionID(2), decodingMessage.getTransactionID());
+    assertEquals(2, decodingMessage.getBatchedInvokes().size());
+
+    VoltronEntityMessage first = decodingMessage.getBatchedInvokes().get(0);
+    assertEquals(new TransactionID(3), first.getTransactionID());
+    assertEquals(clientID, first.getSource());
+    assertEquals(entityDescriptor.getFetchID(), first.getEntityDescriptor().getFetchID());
+    assertEquals(Type.INVOKE_ACTION, first.getVoltronType());
+    assertTrue(first.doesRequireReplication());
+    assertFalse(first.doesRequestReceived());
+    assertNotNull(first.getEntityMessage());
+
+    VoltronEntityMessage second = decodingMessage.getBatchedInvokes().get(1);
+    assertEquals(new TransactionID(4), second.getTransactionID());
+    assertEquals(2, second.getExtendedData().remaining());
+    assertTrue(second.doesRequestReceived());
+    assertTrue(second.doesRequestRetired());
+  }
 }
@@ -91,9 +91,9 @@ public class ClusterStateImpl implements ClusterState {
   public void syncActiveState() {
 // activate the connection id factory so that it can be used to create connection ids
 // this happens for active only
-// when going active, start the next available ID+10 so that on restarts with persistent state, 
-// this active is picked via the additional election weightings
-    long nextId = getNextAvailableChannelID() + 1;
+// when going active, start the next available ID a full lease block ahead so that on restarts with persistent state, 
+// this active is picked via the additional election weightings.  a stale active stores up to a block past its last ID
+    long nextId = getNextAvailableChannelID() + Math.max(1, persistor.getClientStatePersistor().getConnectionIDBlock());
     setNextAvailableChannelID(nextId);
     connectionIdFactory.activate(stripeIDStateManager.getStripeID(), nextId);
   }
@@ -50,6 +50,8 @@ import com.tc.objectserver.core.impl.ManagementTopologyEventCollector;
 import com.tc.objectserver.impl.Topology;
 import com.tc.objectserver.impl.TopologyManager;
 import com.tc.objectserver.persistence.ServerPersistentState;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
 import com.tc.util.Assert;
 import com.tc.util.State;
 import java.util.Collections;
@@ -80,6 +82,7 @@ public class StateManagerImpl implements StateManager {
   private NodeID                       syncedTo          = ServerID.NULL_ID;
   private volatile ServerMode               state               = ServerMode.INITIAL;
   private final ServerMode               startState;
+  private final boolean                  resumeAfterRestart;
   private final ElectionGate                      elections  = new ElectionGate();
 
   private Enrollment verification = null;
@@ -102,6 +105,7 @@ public class StateManagerImpl implements StateManager {
     this.publishSink = mgr.createStage(ServerConfigurationContext.L2_STATE_CHANGE_STAGE, StateChangedEvent.class, EventHandler.consumer(this::publishStateChange), 1, 1024, false, false).getSink();
     this.clusterStatePersistor = serverPersitenceState;
     this.startState = serverPersitenceState.getInitialMode();
+    this.resumeAfterRestart = TCPropertiesImpl.getProperties().getBoolean(TCPropertiesConsts.L2_PASSIVE_CATCHUP_RESTART, false);
   }
 
   @Override
@@ -346,7 +350,7 @@ public class StateManagerImpl implements StateManager {
       return;
     }
 
-    if (startState.containsData()) {
+    if (startState.containsData() && !canResumeFrom(active)) {
       // in this case, a passive cannot be added to a running cluster with data.  zap and restart
       zapAndResyncLocalNode("server contains stale data.");
       return;
@@ -626,6 +630,19 @@ public class StateManagerImpl implements StateManager {
     return peerWins;
   }
 
+  /**
+   * A passive which was stopped cleanly keeps its data if the active it was replicating from is still active, that
+   * active catches it up or zaps it.
+   */
+  private boolean canResumeFrom(NodeID active) {
+    if (resumeAfterRestart && startState == ServerMode.PASSIVE && clusterStatePersistor.isDBClean()
+        && clusterStatePersistor.getResumeSource().equals(active)) {
+      logger.info("keeping data to resume replication from " + active);
+      return true;
+    }
+    return false;
+  }
+
   private void zapAndResyncLocalNode(String msg) {
     throw new ZapDirtyDbServerNodeException("Clear and resync - " + msg);
   }
@@ -511,4 +511,9 @@ public class TCServerInfo extends AbstractTerracottaMBean implements TCServerInf
     PrettyPrinter pp = (shortForm) ? new AbbreviatedMapListPrettyPrint() : new MapListPrettyPrint();
     return server.getClusterState(pp);
   }
+
+  @Override
+  public Map<String, ?> getStageLatencies() {
+    return server.getStageLatencies();
+  }
 }
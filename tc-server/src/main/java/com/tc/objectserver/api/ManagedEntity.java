@@ -59,6 +59,18 @@ public interface ManagedEntity {
    * @param passive target passive
    */
   void sync(SessionID passive);
+
+  /**
+   * Called to sync an entity while other entities may be syncing to the same passive.  When pipelined, the concurrency
+   * keys are streamed back to back and acknowledgements from the passive are only waited on once the whole entity
+   * has been sent.
+   *
+   * @param passive target passive
+   * @param pipelined true if the passive acknowledgements of each concurrency key should not be waited on in turn
+   */
+  default void sync(SessionID passive, boolean pipelined) {
+    sync(passive);
+  }
   /**
   * Called when passive sync wants to start sync on this entity.
   *
@@ -124,6 +124,11 @@ public enum ServerEntityAction {
    * specific entity instance.
    */
   RECEIVE_SYNC_PAYLOAD,
+  /**
+   * A chunk of a binary snapshot on a specific concurrency key within a
+   * specific entity instance.
+   */
+  RECEIVE_SYNC_SNAPSHOT,
   // ***** END: Messages specific to received passive synchronization data *****
   /**
    * An action which should never be replicated, just used to synchronize on the
@@ -135,6 +135,13 @@ public class ActivePassiveAckWaiter {
     return this.completedPending.isEmpty();
   }
 
+  /**
+   * @return true if the session is one this waiter was created to wait on
+   */
+  public boolean includes(SessionID session) {
+    return this.start.contains(session);
+  }
+
   private SessionID nodeToSession(ServerID node) {
     return this.session.getOrDefault(node, SessionID.NULL_ID);
   }
@@ -33,10 +33,13 @@ import com.tc.net.groups.GroupManager;
 import com.tc.objectserver.api.ManagedEntity;
 import com.tc.objectserver.handler.ProcessTransactionHandler;
 import com.tc.objectserver.persistence.EntityPersistor;
+import com.tc.properties.TCProperties;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
 import com.tc.util.Assert;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
 
@@ -59,9 +62,15 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import org.terracotta.tripwire.Event;
@@ -77,6 +86,9 @@ import org.terracotta.tripwire.TripwireFactory;
 public class ActiveToPassiveReplication implements PassiveReplicationBroker, GroupEventsListener {
   
   private static final Logger LOGGER = LoggerFactory.getLogger(ActiveToPassiveReplication.class);
+  private static final int DEFAULT_SYNC_WINDOW = 1;
+  // the number of entities streamed to a syncing passive at the same time, 1 syncs one entity after another
+  private static final int syncWindow = Math.max(1, TCPropertiesImpl.getProperties().getInt(TCPropertiesConsts.L2_PASSIVE_SYNC_WINDOW, DEFAULT_SYNC_WINDOW));
   private volatile boolean activated = false;
   private final Map<ServerID, SessionID> passiveNodes = new ConcurrentHashMap<>();
   private final Set<NodeID> standByNodes = new HashSet<>();
@@ -85,14 +97,34 @@ public class ActiveToPassiveReplication implements PassiveReplicationBroker, Gro
   private final ThreadGroup syncGroup = new ThreadGroup("passive sync thread group");
   private final ExecutorService passiveSyncPool = Executors.newCachedThreadPool(new DaemonThreadFactory("active-to-passive-"));
   private final EntityPersistor persistor;
+  // older passives can only layer a java serialized journal at the end of sync
+  private final boolean compactSync = TCPropertiesImpl.getProperties().getBoolean(TCPropertiesConsts.L2_PASSIVE_SYNC_COMPACT, false);
   private final GroupManager serverCheck;
   private final ProcessTransactionHandler snapshotter;
   private final ConsistencyManager consistencyMgr;
   
   private final Sink<ReplicationReceivingAction> receiveHandler;
   private final AtomicLong sessionMaker = new AtomicLong();
+  // activity replicated once a passive is synced, so one whose stream is interrupted can catch up.  null when disabled
+  private final ReplicationBacklog backlog;
+  private volatile boolean backlogging = false;
+  // sessions still being replayed to from the backlog, live activity is held back from them until they reach the tail
+  private final Set<SessionID> catchingUp = ConcurrentHashMap.newKeySet();
+  // sessions which caught up, they are sent everything recorded after that even if it was scheduled before they were
+  //  back in the set of passives
+  private final Set<SessionID> resumed = ConcurrentHashMap.newKeySet();
+  // activity waiting to be sent, in the order it was recorded.  whichever thread finds it not draining sends it so
+  //  recording never waits on the sends of another thread.  activity which isn't recorded goes through here as well so
+  //  it can't overtake recorded activity still waiting for the same passive
+  private final Queue<Runnable> recorded = new ConcurrentLinkedQueue<>();
+  private final AtomicBoolean draining = new AtomicBoolean();
 
   public ActiveToPassiveReplication(ConsistencyManager consistencyMgr, ProcessTransactionHandler snapshotter, EntityPersistor persistor, ReplicationSender replicationSender, Sink<ReplicationReceivingAction> processor, GroupManager serverMatch) {
+    this(consistencyMgr, snapshotter, persistor, replicationSender, processor, serverMatch, createBacklog(TCPropertiesImpl.getProperties()));
+  }
+
+  ActiveToPassiveReplication(ConsistencyManager consistencyMgr, ProcessTransactionHandler snapshotter, EntityPersistor persistor, ReplicationSender replicationSender, Sink<ReplicationReceivingAction> processor, GroupManager serverMatch, ReplicationBacklog backlog) {
+    this.backlog = backlog;
     this.consistencyMgr = consistencyMgr;
     this.replicationSender = replicationSender;
     this.persistor = persistor;
@@ -101,6 +133,16 @@ public class ActiveToPassiveReplication implements PassiveReplicationBroker, Gro
     this.receiveHandler = processor;
   }
 
+  private static ReplicationBacklog createBacklog(TCProperties props) {
+    long memory = props.getLong(TCPropertiesConsts.L2_PASSIVE_CATCHUP_BACKLOG_MEMORY, 0L);
+    if (memory <= 0) {
+      return null;
+    }
+    String directory = props.getProperty(TCPropertiesConsts.L2_PASSIVE_CATCHUP_BACKLOG_DIRECTORY, true);
+    Path spill = (directory == null || directory.trim().isEmpty()) ? Paths.get(System.getProperty("java.io.tmpdir")) : Paths.get(directory.trim());
+    return new ReplicationBacklog(memory, props.getLong(TCPropertiesConsts.L2_PASSIVE_CATCHUP_BACKLOG_DISK, 0L), spill);
+  }
+
   @Override
   public void zapAndWait(NodeID node) {
     synchronized(this.standByNodes) {
@@ -121,6 +163,8 @@ public class ActiveToPassiveReplication implements PassiveReplicationBroker, Gro
   public void enterActiveState(Set<ServerID> passives) {
     Assert.assertFalse(activated);
     activated = true;
+    // passives carried over from the previous active are already synced
+    backlogging = backlog != null && !passives.isEmpty();
     primePassives(passives);
   }
   /**
@@ -139,6 +183,10 @@ public class ActiveToPassiveReplication implements PassiveReplicationBroker, Gro
  * prime the message channel to a node by setting the starting ordering id to zero.
  */
   private SessionID prime(ServerID node) {
+    return prime(node, false);
+  }
+
+  private SessionID prime(ServerID node, boolean resume) {
     Assert.assertFalse(node.isNull());
     //  no session means we are allowed to proceed
     if (!passiveNodes.containsKey(node)) {
@@ -148,9 +196,15 @@ public class ActiveToPassiveReplication implements PassiveReplicationBroker, Gro
       } else {
         LOGGER.info("Starting message sequence on " + node);
         SessionID newSession = new SessionID(sessionMaker.incrementAndGet());
+        if (resume) {
+          // hidden from the set of passives until it is caught up
+          catchingUp.add(newSession);
+        }
         SessionID current = passiveNodes.putIfAbsent(node, newSession);
         if (current == null) {
-          if (this.replicationSender.addPassive(node, newSession, executionLane(newSession), SyncReplicationActivity.createStartMessage())) {
+          boolean added = resume ? this.replicationSender.resumePassive(node, newSession, executionLane(newSession))
+              : this.replicationSender.addPassive(node, newSession, executionLane(newSession), SyncReplicationActivity.createStartMessage());
+          if (added) {
             return newSession;
           } else {
             LOGGER.info("Failed to send message to passive {} ending session {}", node, newSession);
@@ -159,6 +213,7 @@ public class ActiveToPassiveReplication implements PassiveReplicationBroker, Gro
         } else {
           LOGGER.info("Session {} already exists for {}", current, node);
         }
+        catchingUp.remove(newSession);
       }
     }
     return SessionID.NULL_ID;
@@ -185,6 +240,86 @@ public class ActiveToPassiveReplication implements PassiveReplicationBroker, Gro
       return false;
     }
   }
+  /**
+   * A synced passive which lost its stream to this active asks to be caught up from the last activity it applied.  If
+   * the backlog still holds everything after that activity only that is replayed, otherwise the passive is zapped and
+   * comes back for a full sync.
+   */
+  public void startPassiveCatchUp(ServerID node, long lastActivity) {
+    Assert.assertTrue(activated);
+    executeOnPool(()->{
+      if (!awaitRemoval(node)) {
+        LOGGER.info("{} already has a replication session, ignoring catch up request", node);
+        return;
+      }
+      long position = backlog == null ? -1 : backlog.positionAfter(lastActivity);
+      if (position < 0) {
+        LOGGER.info("replication backlog does not cover activity {} for {}, a full sync is required", lastActivity, node);
+        serverCheck.zapNode(node, L2HAZapNodeRequestProcessor.NODE_JOINED_WITH_DIRTY_DB, "replication backlog does not cover passive");
+        return;
+      }
+      SessionID session = prime(node, true);
+      if (session.isValid()) {
+        LOGGER.info("Starting catch up to node: {} session: {} after activity: {}", node, session, lastActivity);
+        catchUp(node, session, position);
+      } else {
+        LOGGER.info("unable to prime connection to {} for passive catch up", node);
+        serverCheck.closeMember(node);
+      }
+    });
+  }
+
+  /**
+   * The session of a passive which left is removed asynchronously, wait a bounded time for that to finish.
+   *
+   * @return true if the node has no session
+   */
+  private boolean awaitRemoval(ServerID node) {
+    try {
+      for (int x = 0; x < 300 && passiveNodes.containsKey(node); x++) {
+        TimeUnit.MILLISECONDS.sleep(100);
+      }
+    } catch (InterruptedException ie) {
+      L2Utils.handleInterrupted(LOGGER, ie);
+    }
+    return !passiveNodes.containsKey(node);
+  }
+
+  private void catchUp(ServerID node, SessionID session, long position) {
+    try {
+      // the bulk of the replay happens without holding up replication to the other passives
+      long next = replay(node, session, position, backlog.getTail());
+      synchronized (backlog) {
+        if (next >= 0 && replay(node, session, next, backlog.getTail()) >= 0) {
+          catchingUp.remove(session);
+          resumed.add(session);
+          LOGGER.info("Finished catch up to node: {} session: {}", node, session);
+        } else {
+          LOGGER.info("catch up to node: {} session: {} abandoned, session ended", node, session);
+        }
+      }
+    } catch (IOException ioe) {
+      LOGGER.warn("unable to catch up " + node + ", a full sync is required", ioe);
+      serverCheck.zapNode(node, L2HAZapNodeRequestProcessor.NODE_JOINED_WITH_DIRTY_DB, "replication backlog no longer covers passive");
+    }
+  }
+
+  /**
+   * @return the position after the last one replayed or -1 if the session ended
+   */
+  private long replay(ServerID node, SessionID session, long from, long to) throws IOException {
+    for (long position = from; position < to; position++) {
+      if (!session.equals(passiveNodes.get(node))) {
+        return -1;
+      }
+      SyncReplicationActivity activity = backlog.read(position);
+      if (activity != null) {
+        this.replicationSender.replicateMessage(session, activity, null);
+      }
+    }
+    return to;
+  }
+
   /**
    * Using an executor service here to sync multiple passives at once
    * @param newNode
@@ -214,10 +349,16 @@ public class ActiveToPassiveReplication implements PassiveReplicationBroker, Gro
               createStartSyncMessage(tuplesForCreation.
                   toArray(new SyncReplicationActivity.EntityCreationTuple[tuplesForCreation.size()])), Collections.singleton(session)).waitForCompleted();
 
-      for (ManagedEntity entity : e) {
-        LOGGER.debug("starting sync for entity " + newNode + "/" + entity.getID());
-        entity.sync(session);
-        LOGGER.debug("ending sync for entity " + newNode + "/" + entity.getID());
+      if (syncWindow > 1) {
+        if (!syncEntitiesInParallel(newNode, session, e)) {
+          return;
+        }
+      } else {
+        for (ManagedEntity entity : e) {
+          LOGGER.debug("starting sync for entity " + newNode + "/" + entity.getID());
+          entity.sync(session);
+          LOGGER.debug("ending sync for entity " + newNode + "/" + entity.getID());
+        }
       }
       //  passive sync done message.  causes passive to go into passive standby mode
       LOGGER.info("Finished sync to node: {}", newNode);
@@ -231,17 +372,50 @@ public class ActiveToPassiveReplication implements PassiveReplicationBroker, Gro
     });
   }
   
-  private byte[] replicateEntityPersistor() {
-    ByteArrayOutputStream out = new ByteArrayOutputStream();
+  /**
+   * Streams up to syncWindow entities to the passive at once.  Each entity still sends its own sync messages in 
+   * order, the sender tracks every entity in flight so replication of live traffic is filtered per entity.
+   * 
+   * @return true if every entity finished its sync
+   */
+  private boolean syncEntitiesInParallel(ServerID newNode, SessionID session, Iterable<ManagedEntity> entities) {
+    Semaphore window = new Semaphore(syncWindow);
+    List<Future<?>> syncing = new ArrayList<>();
     try {
-      try (ObjectOutputStream data = new ObjectOutputStream(out)) {
-        persistor.serialize(data);
+      for (ManagedEntity entity : entities) {
+        window.acquire();
+        try {
+          syncing.add(passiveSyncPool.submit(()->{
+            try {
+              LOGGER.debug("starting sync for entity " + newNode + "/" + entity.getID());
+              entity.sync(session, true);
+              LOGGER.debug("ending sync for entity " + newNode + "/" + entity.getID());
+            } finally {
+              window.release();
+            }
+          }));
+        } catch (RejectedExecutionException rejected) {
+          window.release();
+          throw rejected;
+        }
       }
-      return out.toByteArray();
-    } catch (IOException ioe) {
-      
+      for (Future<?> f : syncing) {
+        f.get();
+      }
+      return true;
+    } catch (InterruptedException ie) {
+      L2Utils.handleInterrupted(LOGGER, ie);
+    } catch (RejectedExecutionException rejected) {
+      LOGGER.info("rejected execution", rejected);
+    } catch (ExecutionException failure) {
+      throw new RuntimeException(failure.getCause());
     }
-    return null;
+    syncing.forEach(f->f.cancel(true));
+    return false;
+  }
+
+  private byte[] replicateEntityPersistor() {
+    return persistor.serialize(compactSync);
   }
 
   public void batchAckReceived(ReplicationMessageAck context) {
@@ -250,11 +424,14 @@ public class ActiveToPassiveReplication implements PassiveReplicationBroker, Gro
     if (session.isValid()) {
       this.receiveHandler.addToSink(new ReplicationReceivingAction(executionLane(session), ()->{
         for (ReplicationAckTuple tuple : context.getBatch()) {
+          this.replicationSender.acknowledged(session, tuple.respondTo);
+          ActivePassiveAckWaiter waiter = waiters.get(tuple.respondTo);
+          if (null == waiter || !waiter.includes(session)) {
+            // nothing is waiting on this passive, the activity was replayed to it from the backlog
+            continue;
+          }
           if (ReplicationResultCode.RECEIVED == tuple.result) {
-            ActivePassiveAckWaiter waiter = waiters.get(tuple.respondTo);
-            if (null != waiter) {
-              waiter.didReceiveOnPassive(messageFrom);
-            }
+            waiter.didReceiveOnPassive(messageFrom);
           } else {
             // This is a normal completion.
             internalAckCompleted(tuple.respondTo, messageFrom, tuple.result);
@@ -280,7 +457,7 @@ public class ActiveToPassiveReplication implements PassiveReplicationBroker, Gro
 
   @Override
   public Set<SessionID> passives() {
-    Collection<SessionID> copy = passiveNodes.values().stream().filter(SessionID::isValid).collect(Collectors.toCollection(()->new ArrayList<>(passiveNodes.size())));
+    Collection<SessionID> copy = passiveNodes.values().stream().filter(SessionID::isValid).filter(s->!catchingUp.contains(s)).collect(Collectors.toCollection(()->new ArrayList<>(passiveNodes.size())));
     return new AbstractSet<SessionID>() {
       @Override
       public Iterator<SessionID> iterator() {
@@ -294,9 +471,59 @@ public class ActiveToPassiveReplication implements PassiveReplicationBroker, Gro
     };
   }
 
+  @Override
+  public boolean isBacklogging() {
+    return backlogging;
+  }
+
   @Override
   public ActivePassiveAckWaiter replicateActivity(SyncReplicationActivity activity, Set<SessionID> all) {
+    if (backlog == null) {
+      return dispatchActivity(activity, all, new ActivePassiveAckWaiter(this.passiveNodes, all, this));
+    }
     ActivePassiveAckWaiter waiter = new ActivePassiveAckWaiter(this.passiveNodes, all, this);
+    if (activity.isCatchUpActivity()) {
+      boolean endOfSync = activity.getActivityType() == SyncReplicationActivity.ActivityType.SYNC_END;
+      // only the append is ordered under the lock, the sends are drained in the same order outside of it so every
+      //  passive is still sent activity in the order it is recorded
+      synchronized (backlog) {
+        if (endOfSync) {
+          // the passive is synced from here on, record where so it can name it
+          backlogging = true;
+          backlog.mark(activity);
+        } else if (backlogging) {
+          backlog.record(activity);
+        }
+        List<SessionID> caughtUp = endOfSync ? Collections.emptyList() : resumed.stream().filter(session -> !all.contains(session)).collect(Collectors.toList());
+        recorded.add(() -> {
+          dispatchActivity(activity, all, waiter);
+          for (SessionID session : caughtUp) {
+            this.replicationSender.replicateMessage(session, activity, null);
+          }
+        });
+      }
+    } else {
+      recorded.add(() -> dispatchActivity(activity, all, waiter));
+    }
+    drainRecorded();
+    return waiter;
+  }
+
+  private void drainRecorded() {
+    while (!recorded.isEmpty() && draining.compareAndSet(false, true)) {
+      try {
+        Runnable next = recorded.poll();
+        while (next != null) {
+          next.run();
+          next = recorded.poll();
+        }
+      } finally {
+        draining.set(false);
+      }
+    }
+  }
+
+  private ActivePassiveAckWaiter dispatchActivity(SyncReplicationActivity activity, Set<SessionID> all, ActivePassiveAckWaiter waiter) {
     if (!all.isEmpty()) {
       SyncReplicationActivity.ActivityID activityID = activity.getActivityID();
 
@@ -362,6 +589,12 @@ public class ActiveToPassiveReplication implements PassiveReplicationBroker, Gro
   }
   
   private void removePassiveSession(SessionID session) {
+    if (backlog != null) {
+      synchronized (backlog) {
+        catchingUp.remove(session);
+        resumed.remove(session);
+      }
+    }
     this.replicationSender.removePassive(session);
     Iterator<Map.Entry<SyncReplicationActivity.ActivityID, ActivePassiveAckWaiter>> scan = waiters.entrySet().iterator();
     while (scan.hasNext()) {
@@ -405,6 +638,9 @@ public class ActiveToPassiveReplication implements PassiveReplicationBroker, Gro
         items.remove();
       }
     }
+    if (backlog != null) {
+      backlog.close();
+    }
   }
   // for test
   Map<SyncReplicationActivity.ActivityID, ActivePassiveAckWaiter> getWaiters() {
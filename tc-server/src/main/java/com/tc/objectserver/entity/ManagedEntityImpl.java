@@ -73,6 +73,7 @@ import org.terracotta.entity.PassiveSynchronizationChannel;
 import org.terracotta.entity.ReconnectRejectedException;
 import org.terracotta.entity.SyncMessageCodec;
 
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -100,6 +101,10 @@ public class ManagedEntityImpl implements ManagedEntity {
   public static final String REQUEST_CONTEXT_KEY = "RequestContext";
 
   private static final Logger logger   = LoggerFactory.getLogger(ManagedEntityImpl.class);
+  private static final int SNAPSHOT_CHUNK_SIZE = TCPropertiesImpl.getProperties()
+        .getInt(TCPropertiesConsts.L2_PASSIVE_SYNC_SNAPSHOT_CHUNK_SIZE, 1024 * 1024);
+  private static final int SNAPSHOT_WINDOW = TCPropertiesImpl.getProperties()
+        .getInt(TCPropertiesConsts.L2_PASSIVE_SYNC_SNAPSHOT_WINDOW, 8);
 
   private final RequestProcessor executor;
   private final RetirementManager retirementManager;
@@ -126,6 +131,7 @@ public class ManagedEntityImpl implements ManagedEntity {
   private final List<LifecycleListener> createListener = new CopyOnWriteArrayList<>();
 
   private final MessageCodec<EntityMessage, EntityResponse> codec;
+  private final MessageDecoder decoder;
   private final SyncMessageCodec<EntityMessage> syncCodec;
   private volatile ActiveServerEntity<EntityMessage, EntityResponse> activeServerEntity;
   private volatile ConcurrencyStrategy<EntityMessage> concurrencyStrategy;
@@ -170,6 +176,7 @@ public class ManagedEntityImpl implements ManagedEntity {
     this.clientReferenceCount = canDelete ? 0 : ManagedEntity.UNDELETABLE_ENTITY;
     registry.setOwningEntity(this);
     this.codec = factory.getMessageCodec();
+    this.decoder = MessageDecoder.forCodec(this.codec);
     this.syncCodec = factory.getSyncMessageCodec();
   }
 
@@ -250,6 +257,7 @@ public class ManagedEntityImpl implements ManagedEntity {
       case RECEIVE_SYNC_ENTITY_KEY_START:
       case RECEIVE_SYNC_ENTITY_KEY_END:
       case RECEIVE_SYNC_PAYLOAD:
+      case RECEIVE_SYNC_SNAPSHOT:
         Assert.assertTrue(!this.isInActiveState);
         processSyncPayloadOtherMessage(request, resp, data, data.getConcurrency());
         break;
@@ -366,7 +374,7 @@ public class ManagedEntityImpl implements ManagedEntity {
     Trace.activeTrace().log("ManagedEntityImpl.processInvokeRequest");
     if (isInActiveState) {
       try {
-        key = this.concurrencyStrategy.concurrencyKey(message.decodeMessage(raw->this.codec.decodeMessage(raw)));
+        key = this.concurrencyStrategy.concurrencyKey(message.decodeMessage(this.decoder));
       } catch (MessageCodecException codec) {
         // use the universal key because this is going to result in error downstream
         key = ConcurrencyStrategy.UNIVERSAL_KEY;
@@ -410,7 +418,7 @@ public class ManagedEntityImpl implements ManagedEntity {
     Assert.assertTrue(action != ServerEntityAction.RECEIVE_SYNC_ENTITY_START_SYNCING);
     Assert.assertTrue(action != ServerEntityAction.RECEIVE_SYNC_ENTITY_END);
 
-    if (action == ServerEntityAction.RECEIVE_SYNC_PAYLOAD) {
+    if (action == ServerEntityAction.RECEIVE_SYNC_PAYLOAD || action == ServerEntityAction.RECEIVE_SYNC_SNAPSHOT) {
       scheduleInOrder(sync, response, syncPayload,
         ()-> {
           invoke(sync, response, syncPayload, concurrencyKey);
@@ -463,7 +471,7 @@ public class ManagedEntityImpl implements ManagedEntity {
 
   private EntityMessage decodeMessage(MessagePayload payload, ResultCapture capture) {
     try {
-      return payload.decodeMessage(r->codec.decodeMessage(r));
+      return payload.decodeMessage(decoder);
     } catch (MessageCodecException ce) {
       capture.failure(ServerException.createMessageCodecException(id, ce));
     }
@@ -650,6 +658,9 @@ public class ManagedEntityImpl implements ManagedEntity {
         case RECEIVE_SYNC_PAYLOAD:
           receiveSyncEntityPayload(response, message);
           break;
+        case RECEIVE_SYNC_SNAPSHOT:
+          receiveSyncEntitySnapshot(response, message, concurrencyKey);
+          break;
         case LOCAL_FLUSH:
         case LOCAL_FLUSH_AND_SYNC:
         case ORDER_PLACEHOLDER_ONLY:
@@ -733,6 +744,15 @@ public class ManagedEntityImpl implements ManagedEntity {
     Assert.assertFalse(this.isInActiveState);
   }
 
+  private void receiveSyncEntitySnapshot(ResultCapture response, MessagePayload message, int concurrencyKey) {
+    // This only makes sense if we have a passive instance.
+    Assert.assertNotNull(this.passiveServerEntity);
+    this.passiveServerEntity.synchronizeSnapshot(concurrencyKey, TCByteBufferFactory.readOnlyView(message.getByteBufferPayload()));
+    response.complete();
+    // No retire on passive.
+    Assert.assertFalse(this.isInActiveState);
+  }
+
   @Override
   public boolean isDestroyed() {
     return this.isDestroyed;
@@ -1192,6 +1212,11 @@ public class ManagedEntityImpl implements ManagedEntity {
 
   @Override
   public void sync(SessionID passive) {
+    sync(passive, false);
+  }
+
+  @Override
+  public void sync(SessionID passive, boolean pipelined) {
 //  this is simply a barrier to make sure all actions are flushed before sync is started (hence, it has a null passive).
     PassiveSyncServerEntityRequest req = new PassiveSyncServerEntityRequest(passive);
 // wait for future is ok, occuring on sync executor thread
@@ -1208,6 +1233,7 @@ public class ManagedEntityImpl implements ManagedEntity {
     //  waitForCompletion below waits for completion of the local request processor
     syncStart.waitForCompletion();
 // wait for future is ok, occuring on sync executor thread
+    List<ActivePassiveAckWaiter> keysSent = new ArrayList<>();
     try {
       if (!this.isDestroyed) {
         for (Integer concurrency : concurrencyStrategy.getKeysForSynchronization()) {
@@ -1226,8 +1252,15 @@ public class ManagedEntityImpl implements ManagedEntity {
         //  wait for completed above waits for acknowledgment from the passive
         //  waitForCompletion below waits for completion of the local request processor
           sectionComplete.waitForCompletion();
-          executor.scheduleSync(SyncReplicationActivity.createEndEntityKeyMessage(id, version, fetchID, concurrency), passive).waitForCompleted();
+          ActivePassiveAckWaiter keyEnd = executor.scheduleSync(SyncReplicationActivity.createEndEntityKeyMessage(id, version, fetchID, concurrency), passive);
+          if (pipelined) {
+//  messages for the next key follow on the same ordered stream so only the passive acknowledgement is deferred
+            keysSent.add(keyEnd);
+          } else {
+            keyEnd.waitForCompleted();
+          }
         }
+        keysSent.forEach(ActivePassiveAckWaiter::waitForCompleted);
   //  end passive sync for an entity
   // wait for future is ok, occuring on sync executor thread
         executor.scheduleSync(SyncReplicationActivity.createEndEntityMessage(id, version, fetchID), passive).waitForCompleted();
@@ -1371,7 +1404,7 @@ public class ManagedEntityImpl implements ManagedEntity {
         if (logger.isDebugEnabled()) {
           try {
             if (request.getAction() == ServerEntityAction.INVOKE_ACTION) {
-              payload.decodeMessage(raw->codec.decodeMessage(raw));
+              payload.decodeMessage(decoder);
             }
           } catch (MessageCodecException codec) {
 
@@ -1397,7 +1430,7 @@ public class ManagedEntityImpl implements ManagedEntity {
       }
       if (isActive() && request.getAction() == ServerEntityAction.INVOKE_ACTION) {
         try {
-          ExecutionStrategy.Location loc = executionStrategy.getExecutionLocation(payload.decodeMessage(raw->codec.decodeMessage(raw)));
+          ExecutionStrategy.Location loc = executionStrategy.getExecutionLocation(payload.decodeMessage(decoder));
           if (loc != ExecutionStrategy.Location.IGNORE) {
             replicate = loc.runOnPassive();
           }
@@ -1571,6 +1604,25 @@ public class ManagedEntityImpl implements ManagedEntity {
       }
     }
 
+    @Override
+    public OutputStream openSnapshot() {
+      if (prepare) {
+        throw new UnsupportedOperationException("snapshots can only be streamed while synchronizing a key");
+      }
+      // passives older than this server can't decode snapshot chunks and nothing tells which version a passive runs
+      if (!TCPropertiesImpl.getProperties().getBoolean(TCPropertiesConsts.L2_PASSIVE_SYNC_SNAPSHOT_ENABLED, false)) {
+        throw new UnsupportedOperationException("passives are not known to support snapshot synchronization");
+      }
+      return new PassiveSnapshotStream(chunk->{
+        List<ActivePassiveAckWaiter> waiters = new ArrayList<>(passives.size());
+        for (SessionID passive : passives) {
+          waiters.add(executor.scheduleSync(SyncReplicationActivity.createSnapshotMessage(id, version, fetchID,
+                                             concurrencyKey, chunk.duplicate()), passive));
+        }
+        return waiters;
+      }, SNAPSHOT_CHUNK_SIZE, SNAPSHOT_WINDOW);
+    }
+
     @Override
     public boolean equals(Object o) {
       if (this == o) {
@@ -17,7 +17,11 @@
  */
 package com.tc.objectserver.entity;
 
+import java.nio.ByteBuffer;
+import org.terracotta.entity.BufferMessageCodec;
 import org.terracotta.entity.EntityMessage;
+import org.terracotta.entity.EntityResponse;
+import org.terracotta.entity.MessageCodec;
 import org.terracotta.entity.MessageCodecException;
 
 /**
@@ -25,4 +29,40 @@ import org.terracotta.entity.MessageCodecException;
  */
 public interface MessageDecoder {
   EntityMessage decode(byte[] raw) throws MessageCodecException;
+
+  /**
+   * Decode from a read-only view of the payload.  Decoders that cannot read buffers
+   * directly are handed a copy.
+   */
+  default EntityMessage decode(ByteBuffer raw) throws MessageCodecException {
+    if (raw == null) {
+      return decode((byte[])null);
+    }
+    byte[] copy = new byte[raw.remaining()];
+    raw.duplicate().get(copy);
+    return decode(copy);
+  }
+
+  /**
+   * A decoder for the entity codec which avoids copying the payload when the
+   * codec can decode directly from buffers.
+   */
+  static MessageDecoder forCodec(MessageCodec<? extends EntityMessage, ? extends EntityResponse> codec) {
+    if (codec instanceof BufferMessageCodec) {
+      BufferMessageCodec<? extends EntityMessage, ? extends EntityResponse> buffers = (BufferMessageCodec<? extends EntityMessage, ? extends EntityResponse>)codec;
+      return new MessageDecoder() {
+        @Override
+        public EntityMessage decode(byte[] raw) throws MessageCodecException {
+          return buffers.decodeMessage(raw);
+        }
+
+        @Override
+        public EntityMessage decode(ByteBuffer raw) throws MessageCodecException {
+          return raw == null ? buffers.decodeMessage((byte[])null) : buffers.decodeMessage(raw);
+        }
+      };
+    } else {
+      return codec::decodeMessage;
+    }
+  }
 }
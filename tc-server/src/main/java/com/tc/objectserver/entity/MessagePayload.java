@@ -110,7 +110,7 @@ public class MessagePayload {
     }
     try {
       if (message == null) {
-        message = codec.decode(convertRawToBytes());
+        message = codec.decode(TCByteBufferFactory.readOnlyView(raw));
       }
       return message;
     } catch (MessageCodecException ce) {
@@ -238,6 +238,9 @@ import org.slf4j.LoggerFactory;
             // added the message, exit the loop
             break;
           }
+          // the response is finished or out of coalescing budget.  it is already queued for send so 
+          //  drop it from the map and start a new one rather than waiting for the sender to swap it
+          invokeReturn.remove(clientID, vmr);
         } finally {
           if (enqueue) {
             multiSend.getSink().addToSink(new ResponseMessage(vmr));
@@ -27,4 +27,12 @@ public interface PassiveReplicationBroker {
   ActivePassiveAckWaiter replicateActivity(SyncReplicationActivity activity, Set<SessionID> passives);
   void zapAndWait(NodeID node);
   Set<SessionID> passives();
+
+  /**
+   * @return true if activity should be handed to the broker even when there is no passive to send it to, so a passive
+   * which comes back can catch up on it
+   */
+  default boolean isBacklogging() {
+    return false;
+  }
 }
@@ -0,0 +1,157 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tc.objectserver.entity;
+
+import com.tc.bytes.TCByteBuffer;
+import com.tc.bytes.TCByteBufferFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.function.Function;
+
+/**
+ * Cuts an entity snapshot into fixed size chunks and hands each one to the replication stream.  Up to
+ * {@code window} chunks are in flight before the writer waits for the passives to receive the oldest,
+ * which bounds the memory held for a snapshot to roughly {@code window * chunkSize}.  Buffers of received
+ * chunks are reused.
+ */
+class PassiveSnapshotStream extends OutputStream {
+
+  private final Function<TCByteBuffer, Collection<ActivePassiveAckWaiter>> sender;
+  private final int chunkSize;
+  private final int window;
+  private final Deque<Chunk> inflight = new ArrayDeque<>();
+  private final Deque<byte[]> free = new ArrayDeque<>();
+  private byte[] current;
+  private int count;
+  private long chunks;
+  private boolean closed;
+
+  PassiveSnapshotStream(Function<TCByteBuffer, Collection<ActivePassiveAckWaiter>> sender, int chunkSize, int window) {
+    if (chunkSize <= 0 || window <= 0) {
+      throw new IllegalArgumentException("chunk size and window must be positive");
+    }
+    this.sender = sender;
+    this.chunkSize = chunkSize;
+    this.window = window;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    ensureOpen();
+    if (current == null) {
+      current = nextBuffer();
+    }
+    current[count++] = (byte)b;
+    if (count == chunkSize) {
+      sendChunk();
+    }
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    ensureOpen();
+    if (off < 0 || len < 0 || len > b.length - off) {
+      throw new IndexOutOfBoundsException();
+    }
+    while (len > 0) {
+      if (current == null) {
+        current = nextBuffer();
+      }
+      int part = Math.min(len, chunkSize - count);
+      System.arraycopy(b, off, current, count, part);
+      count += part;
+      off += part;
+      len -= part;
+      if (count == chunkSize) {
+        sendChunk();
+      }
+    }
+  }
+
+  /**
+   * Sends whatever has been written so far, even if the chunk is not full.
+   */
+  @Override
+  public void flush() throws IOException {
+    ensureOpen();
+    if (count > 0) {
+      sendChunk();
+    }
+  }
+
+  /**
+   * Sends the last chunk and waits for the passives to receive every chunk of the snapshot.
+   */
+  @Override
+  public void close() throws IOException {
+    if (!closed) {
+      flush();
+      closed = true;
+      while (!inflight.isEmpty()) {
+        inflight.removeFirst().waitForReceived();
+      }
+      free.clear();
+    }
+  }
+
+  long getChunkCount() {
+    return chunks;
+  }
+
+  private void ensureOpen() throws IOException {
+    if (closed) {
+      throw new IOException("snapshot stream is closed");
+    }
+  }
+
+  private byte[] nextBuffer() {
+    byte[] buffer = free.pollFirst();
+    return (buffer == null) ? new byte[chunkSize] : buffer;
+  }
+
+  private void sendChunk() {
+    if (inflight.size() >= window) {
+      Chunk oldest = inflight.removeFirst();
+      oldest.waitForReceived();
+      free.addLast(oldest.data);
+    }
+    Collection<ActivePassiveAckWaiter> waiters = sender.apply(TCByteBufferFactory.wrap(ByteBuffer.wrap(current, 0, count)));
+    inflight.addLast(new Chunk(current, waiters));
+    chunks += 1;
+    current = null;
+    count = 0;
+  }
+
+  private static class Chunk {
+    private final byte[] data;
+    private final Collection<ActivePassiveAckWaiter> waiters;
+
+    Chunk(byte[] data, Collection<ActivePassiveAckWaiter> waiters) {
+      this.data = data;
+      this.waiters = waiters;
+    }
+
+    void waitForReceived() {
+      waiters.forEach(ActivePassiveAckWaiter::waitForReceived);
+    }
+  }
+}
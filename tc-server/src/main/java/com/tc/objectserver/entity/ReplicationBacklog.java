@@ -0,0 +1,318 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tc.objectserver.entity;
+
+import com.tc.bytes.TCByteBuffer;
+import com.tc.bytes.TCByteBufferFactory;
+import com.tc.bytes.TCReference;
+import com.tc.io.TCByteBufferInputStream;
+import com.tc.io.TCByteBufferOutputStream;
+import com.tc.l2.msg.SyncReplicationActivity;
+import com.tc.util.Assert;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded record of the activities replicated by the active, in the order they were handed to the passives, so a
+ * passive whose replication stream was interrupted can be caught up by replaying only what it missed.
+ * <p>
+ * Every recorded activity is given the next position.  The newest activities are held in memory up to the memory
+ * limit, past that the oldest ones are spilled to segment files up to the disk limit and past that the oldest segment
+ * is deleted.  Markers take a position so a passive can name them as the last activity it saw but have nothing to
+ * replay.
+ */
+class ReplicationBacklog implements Closeable {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ReplicationBacklog.class);
+  // rough accounting of the bookkeeping held for each activity beside its payload
+  private static final int ENTRY_OVERHEAD = 128;
+  private static final long MIN_SEGMENT_SIZE = 1024 * 1024;
+
+  private static final String SEGMENT_PREFIX = "replication-";
+  private static final String SEGMENT_SUFFIX = ".log";
+
+  private final long memoryLimit;
+  private final long diskLimit;
+  private final long segmentSize;
+  private final Path directory;
+
+  private final Map<Long, Long> positions = new HashMap<>();
+  // entries held in memory from head onward, the list is compacted once the dead prefix outgrows the live part
+  private final List<Entry> memory = new ArrayList<>();
+  private int head = 0;
+  private final Deque<Segment> segments = new ArrayDeque<>();
+  private long memoryBytes = 0;
+  private long diskBytes = 0;
+  private long oldest = 0;
+  private long next = 0;
+  private long lastDropped = -1;
+
+  ReplicationBacklog(long memoryLimit, long diskLimit, Path directory) {
+    Assert.assertTrue(memoryLimit > 0);
+    this.memoryLimit = memoryLimit;
+    this.diskLimit = Math.max(0, diskLimit);
+    this.segmentSize = Math.max(MIN_SEGMENT_SIZE, this.diskLimit / 8);
+    this.directory = directory;
+  }
+
+  /**
+   * @return the position given to the activity
+   */
+  synchronized long record(SyncReplicationActivity activity) {
+    return append(activity.getActivityID().id, activity, activity.getExtendedData().remaining());
+  }
+
+  /**
+   * Records a position for the activity without keeping its content.
+   *
+   * @return the position given to the activity
+   */
+  synchronized long mark(SyncReplicationActivity activity) {
+    return append(activity.getActivityID().id, null, 0);
+  }
+
+  private long append(long id, SyncReplicationActivity activity, int size) {
+    long position = next++;
+    positions.put(id, position);
+    Entry entry = new Entry(position, id, activity, size + ENTRY_OVERHEAD);
+    memory.add(entry);
+    memoryBytes += entry.size;
+    while (memoryBytes > memoryLimit && memory.size() - head > 1) {
+      Entry spill = memory.set(head++, null);
+      memoryBytes -= spill.size;
+      if (diskLimit == 0 || !spill(spill)) {
+        dropSegments();
+        drop(spill.position, spill.id);
+      }
+    }
+    if (head > 1024 && head > memory.size() / 2) {
+      memory.subList(0, head).clear();
+      head = 0;
+    }
+    return position;
+  }
+
+  /**
+   * @return the position of the first activity recorded after the given one or -1 if the backlog no longer covers
+   * everything after it
+   */
+  synchronized long positionAfter(long activityID) {
+    Long position = positions.get(activityID);
+    if (position != null) {
+      return position + 1;
+    } else if (activityID == lastDropped) {
+      return oldest;
+    } else {
+      return -1;
+    }
+  }
+
+  /**
+   * @return the position the next recorded activity will be given
+   */
+  synchronized long getTail() {
+    return next;
+  }
+
+  /**
+   * @return the activity recorded at the position or null if the position holds a marker
+   * @throws IOException if the position has been dropped or the spilled activity could not be read back
+   */
+  synchronized SyncReplicationActivity read(long position) throws IOException {
+    Assert.assertTrue(position < next);
+    if (position < oldest) {
+      throw new IOException("position " + position + " is no longer held by the backlog, oldest is " + oldest);
+    }
+    if (head < memory.size()) {
+      // positions are contiguous so the entry is found by offset
+      long first = memory.get(head).position;
+      if (position >= first) {
+        return memory.get(head + (int)(position - first)).activity;
+      }
+    }
+    for (Segment segment : segments) {
+      if (position < segment.first + segment.ids.size()) {
+        return segment.read((int)(position - segment.first));
+      }
+    }
+    throw new AssertionError("position " + position + " not found");
+  }
+
+  private boolean spill(Entry entry) {
+    try {
+      Segment segment = segments.peekLast();
+      if (segment == null || segment.length >= segmentSize) {
+        Files.createDirectories(directory);
+        segment = new Segment(Files.createTempFile(directory, SEGMENT_PREFIX, SEGMENT_SUFFIX), entry.position);
+        segments.addLast(segment);
+      }
+      diskBytes += segment.append(entry);
+      while (diskBytes > diskLimit && segments.size() > 1) {
+        dropOldestSegment();
+      }
+      return true;
+    } catch (IOException ioe) {
+      LOGGER.warn("unable to spill replication backlog to " + directory + ", dropping the oldest activity", ioe);
+      return false;
+    }
+  }
+
+  private void dropOldestSegment() {
+    Segment gone = segments.removeFirst();
+    diskBytes -= gone.length;
+    gone.delete();
+    for (int x = 0; x < gone.ids.size(); x++) {
+      drop(gone.first + x, gone.ids.get(x));
+    }
+  }
+
+  private void dropSegments() {
+    while (!segments.isEmpty()) {
+      dropOldestSegment();
+    }
+  }
+
+  private void drop(long position, long id) {
+    Assert.assertEquals(oldest, position);
+    positions.remove(id);
+    lastDropped = id;
+    oldest = position + 1;
+  }
+
+  synchronized Map<String, Object> getState() {
+    Map<String, Object> state = new LinkedHashMap<>();
+    state.put("oldest", oldest);
+    state.put("next", next);
+    state.put("memoryBytes", memoryBytes);
+    state.put("diskBytes", diskBytes);
+    state.put("segments", segments.size());
+    return state;
+  }
+
+  @Override
+  public synchronized void close() {
+    segments.forEach(Segment::delete);
+    segments.clear();
+    memory.clear();
+    head = 0;
+    positions.clear();
+    memoryBytes = 0;
+    diskBytes = 0;
+  }
+
+  private static class Entry {
+    private final long position;
+    private final long id;
+    private final SyncReplicationActivity activity;
+    private final long size;
+
+    private Entry(long position, long id, SyncReplicationActivity activity, long size) {
+      this.position = position;
+      this.id = id;
+      this.activity = activity;
+      this.size = size;
+    }
+  }
+
+  private static class Segment {
+    private final Path file;
+    private final FileChannel channel;
+    private final long first;
+    // activity id, file offset and length of each position held starting at first, a length of 0 is a marker
+    private final List<Long> ids = new ArrayList<>();
+    private final List<Long> offsets = new ArrayList<>();
+    private final List<Integer> lengths = new ArrayList<>();
+    private long length = 0;
+
+    private Segment(Path file, long first) throws IOException {
+      this.file = file;
+      this.first = first;
+      this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private long append(Entry entry) throws IOException {
+      Assert.assertEquals(first + ids.size(), entry.position);
+      byte[] data = entry.activity == null ? new byte[0] : serialize(entry.activity);
+      ByteBuffer buffer = ByteBuffer.wrap(data);
+      while (buffer.hasRemaining()) {
+        channel.write(buffer, length + buffer.position());
+      }
+      ids.add(entry.id);
+      offsets.add(length);
+      lengths.add(data.length);
+      length += data.length;
+      return data.length;
+    }
+
+    private SyncReplicationActivity read(int index) throws IOException {
+      int size = lengths.get(index);
+      if (size == 0) {
+        return null;
+      }
+      long offset = offsets.get(index);
+      ByteBuffer buffer = ByteBuffer.allocate(size);
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, offset + buffer.position()) < 0) {
+          throw new IOException("unexpected end of " + file);
+        }
+      }
+      try (TCByteBufferInputStream in = new TCByteBufferInputStream(TCByteBufferFactory.wrap(buffer.array()))) {
+        return SyncReplicationActivity.deserializeFrom(in);
+      }
+    }
+
+    private void delete() {
+      try {
+        channel.close();
+        Files.deleteIfExists(file);
+      } catch (IOException ioe) {
+        LOGGER.warn("unable to delete replication backlog segment " + file, ioe);
+      }
+    }
+
+    private static byte[] serialize(SyncReplicationActivity activity) {
+      TCByteBufferOutputStream out = new TCByteBufferOutputStream();
+      activity.serializeTo(out);
+      out.close();
+      byte[] data = new byte[out.getBytesWritten()];
+      int idx = 0;
+      try (TCReference ref = out.accessBuffers()) {
+        for (TCByteBuffer buf : ref) {
+          int length = buf.limit();
+          buf.get(data, idx, length);
+          idx += length;
+        }
+      }
+      Assert.assertEquals(idx, data.length);
+      return data;
+    }
+  }
+}
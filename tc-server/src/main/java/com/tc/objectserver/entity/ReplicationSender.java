@@ -29,9 +29,12 @@ import com.tc.object.session.SessionID;
 import com.tc.objectserver.handler.GroupMessageBatchContext;
 import com.tc.objectserver.handler.ReplicationSendingAction;
 import com.tc.properties.TCPropertiesImpl;
+import com.tc.text.PrettyPrintable;
 import com.tc.util.Assert;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
@@ -45,12 +48,15 @@ import org.terracotta.tripwire.Event;
 import org.terracotta.tripwire.TripwireFactory;
 
 
-public class ReplicationSender {
+public class ReplicationSender implements PrettyPrintable {
   private static final int DEFAULT_BATCH_LIMIT = 1024;
   private static final int DEFAULT_INFLIGHT_MESSAGES = 1;
   // Find out how many messages we should keep in-flight and our maximum batch size.
   private static int maximumBatchSize = TCPropertiesImpl.getProperties().getInt("active-passive.batchsize", DEFAULT_BATCH_LIMIT);
   private static int idealMessagesInFlight = TCPropertiesImpl.getProperties().getInt("active-passive.inflight", DEFAULT_INFLIGHT_MESSAGES);
+  // the in-flight window adapts up to this limit based on batch latency when it is set above the ideal value, by default
+  //  it is the ideal value which fixes the window
+  private static int maximumMessagesInFlight = TCPropertiesImpl.getProperties().getInt("active-passive.inflight.max", idealMessagesInFlight);
   //  this is all single threaded.  If there is any attempt to make this multi-threaded,
   //  control structures must be fixed
   private final GroupManager<AbstractGroupMessage> group;
@@ -82,6 +88,16 @@ public class ReplicationSender {
     return state.attemptToSend(activity);
   }
 
+  /**
+   * Starts a session to a passive which is already synced and is being caught up, nothing is filtered from it.
+   */
+  public boolean resumePassive(ServerID node, SessionID session, Integer execution) {
+    SyncState state = createAndRegisterSyncState(node, session, execution);
+    state.begun = true;
+    state.complete = true;
+    return true;
+  }
+
   public void replicateMessage(SessionID session, SyncReplicationActivity activity, Consumer<Boolean> sentCallback) {
     if (debugLogging) {
       logger.debug("WIRE:" + activity);
@@ -106,6 +122,16 @@ public class ReplicationSender {
 
   }
   
+  /**
+   * Called when the passive acknowledges an activity so batches are timed to the passive rather than the local socket.
+   */
+  public void acknowledged(SessionID session, SyncReplicationActivity.ActivityID activity) {
+    SyncState state = filtering.get(session);
+    if (state != null) {
+      state.batchContext.acknowledged(activity.id);
+    }
+  }
+
   private SyncState createAndRegisterSyncState(ServerID node, SessionID session, int lane) {
     // We can't already have a state for this passive.
     Assert.assertTrue(!node.isNull());
@@ -132,6 +158,15 @@ public class ReplicationSender {
       logger.debug("ignoring: " + session + " no longer exists");
     }
   }
+  @Override
+  public Map<String, ?> getStateMap() {
+    Map<String, Object> state = new LinkedHashMap<>();
+    state.put("className", this.getClass().getName());
+    Map<String, Object> passives = new LinkedHashMap<>();
+    state.put("passives", passives);
+    filtering.forEach((session, sync)->passives.put(session.toString(), sync.getState()));
+    return state;
+  }
 // for testing only
   boolean isSyncOccuring(SessionID origin) {
     SyncState state = filtering.get(origin);
@@ -144,19 +179,16 @@ public class ReplicationSender {
   private class SyncState {
     // liveSet is the total set of entities which we believe have finished syncing and fully exist on the passive.
     private final Set<FetchID> liveFetch = new HashSet<>();
-    // syncdID is the set of concurrency keys, of the entity syncingID, which we believe have finished syncing and fully
-    //  exist on the passive.
-    private final Set<Integer> syncdID = new HashSet<>();
-    // syncingID is the entity currently being synced to this passive.
-    private FetchID syncingFetch = FetchID.NULL_ID;
-    // syncingConcurrency is the concurrency key we are currently syncing to syncingID, 0 if none is in progress.
-    private int syncingConcurrency = -1;
+    // syncing holds the entities currently being synced to this passive.  more than one entity can be in progress 
+    //  when the active streams entities in parallel, each one tracks its own concurrency keys.
+    private final Map<FetchID, EntitySync> syncing = new HashMap<>();
     // begun is true when we decide to start syncing to this passive node (triggered by SYNC_BEGIN).
     boolean begun = false;
     // complete is true when we decide that syncing to this node is now complete (triggered by SYNC_END).
     boolean complete = false;
-    private SyncReplicationActivity.ActivityType lastSeen;
-    private SyncReplicationActivity.ActivityType lastSent;
+    // the last sync activity seen and sent for the sync as a whole (keyed by the null fetch) and for each entity.
+    private final Map<FetchID, SyncReplicationActivity.ActivityType> lastSeen = new HashMap<>();
+    private final Map<FetchID, SyncReplicationActivity.ActivityType> lastSent = new HashMap<>();
 
     private final GroupMessageBatchContext<ReplicationMessage, SyncReplicationActivity> batchContext;
     
@@ -167,7 +199,7 @@ public class ReplicationSender {
       this.session = nodeToId;
       this.executionLane = lane;
       
-      this.batchContext = new GroupMessageBatchContext<>(ReplicationMessage::createActivityContainer, group, target, maximumBatchSize, idealMessagesInFlight, (node)->flushBatch());  
+      this.batchContext = new GroupMessageBatchContext<>(ReplicationMessage::createActivityContainer, group, target, maximumBatchSize, idealMessagesInFlight, maximumMessagesInFlight, (node)->flushBatch(), activity->activity.getActivityID().id);
     }
     
     private boolean isSameSession(SessionID session) {
@@ -177,6 +209,14 @@ public class ReplicationSender {
     public boolean isSyncOccuring() {
       return (begun && !complete);
     }
+
+    public Map<String, Object> getState() {
+      Map<String, Object> state = new LinkedHashMap<>();
+      state.put("lane", executionLane);
+      state.put("syncing", isSyncOccuring());
+      state.put("batching", batchContext.getState());
+      return state;
+    }
     
     public boolean hasSyncBegun() {
       return begun;
@@ -218,39 +258,35 @@ public class ReplicationSender {
             if (liveFetch.contains(activity.getFetchID())) {
               return false;
             } else {
-              syncingFetch = activity.getFetchID();
-              syncdID.clear();
-              syncdID.add(ConcurrencyStrategy.MANAGEMENT_KEY);
-              syncdID.add(ConcurrencyStrategy.UNIVERSAL_KEY);
-              syncingConcurrency = 0;
+              syncing.put(activity.getFetchID(), new EntitySync());
               return true;
             }
-          case SYNC_ENTITY_CONCURRENCY_BEGIN:
-            if (syncingFetch.equals(activity.getFetchID())) {
-              Assert.assertEquals(syncingConcurrency, 0);
-              syncingConcurrency = activity.getConcurrency();
+          case SYNC_ENTITY_CONCURRENCY_BEGIN: {
+            EntitySync entity = syncing.get(activity.getFetchID());
+            if (entity != null) {
+              Assert.assertEquals(entity.syncingConcurrency, 0);
+              entity.syncingConcurrency = activity.getConcurrency();
               return true;
             } else {
               return false;
             }
+          }
           case SYNC_ENTITY_CONCURRENCY_PAYLOAD:
-            if (syncingFetch.equals(activity.getFetchID())) {
-              return true;
-            } else {
-              return false;
-            }
-          case SYNC_ENTITY_CONCURRENCY_END:
-            if (syncingFetch.equals(activity.getFetchID())) {
-              syncdID.add(syncingConcurrency);
-              syncingConcurrency = 0;
+          case SYNC_ENTITY_CONCURRENCY_SNAPSHOT:
+            return syncing.containsKey(activity.getFetchID());
+          case SYNC_ENTITY_CONCURRENCY_END: {
+            EntitySync entity = syncing.get(activity.getFetchID());
+            if (entity != null) {
+              entity.syncdID.add(entity.syncingConcurrency);
+              entity.syncingConcurrency = 0;
               return true;
             } else {
               return false;
             }
+          }
           case SYNC_ENTITY_END:
-            if (syncingFetch.equals(activity.getFetchID())) {
-              liveFetch.add(syncingFetch);
-              syncingFetch = FetchID.NULL_ID;
+            if (syncing.remove(activity.getFetchID()) != null) {
+              liveFetch.add(activity.getFetchID());
               return true;
             } else {
               return false;
@@ -259,8 +295,7 @@ public class ReplicationSender {
  //  sync is complete, clear all collections and let everything pass
             complete = true;
             liveFetch.clear();
-            syncdID.clear();
-            syncingFetch = FetchID.NULL_ID;
+            syncing.clear();
             return true;
           case CREATE_ENTITY:
 // if this create came through, it is not part of the snapshot set so everything
@@ -275,20 +310,23 @@ public class ReplicationSender {
           case DISCONNECT_CLIENT:
           case DESTROY_ENTITY:
             return begun;
-          case INVOKE_ACTION:
+          case INVOKE_ACTION: {
             if (liveFetch.contains(activity.getFetchID())) {
               return true;
-            } else if (syncingFetch.equals(activity.getFetchID())) {
+            }
+            EntitySync entity = syncing.get(activity.getFetchID());
+            if (entity != null) {
               int concurrencyKey = activity.getConcurrency();
-              if (syncingConcurrency == concurrencyKey) {
+              if (entity.syncingConcurrency == concurrencyKey) {
 //  special case.  passive will apply this after sync of the key is complete
                 return true;
               }
-              return syncdID.contains(concurrencyKey);
+              return entity.syncdID.contains(concurrencyKey);
             } else {
 // hasn't been sync'd yet.  state will be captured in sync
               return false;
             }
+          }
           case LOCAL_ENTITY_GC:
           case FLUSH_LOCAL_PIPELINE:
           case ORDERING_PLACEHOLDER:
@@ -305,39 +343,51 @@ public class ReplicationSender {
     public SyncReplicationActivity.ActivityType validateInput(SyncReplicationActivity activity) {
       SyncReplicationActivity.ActivityType type = activity.getActivityType();
       if (activity.isSyncActivity()) {
-        lastSeen = validate(type, lastSeen);
+        validate(activity, lastSeen);
       }
       return type;
     }
     
     public void validateSending(SyncReplicationActivity activity) {
       if (activity.isSyncActivity()) {
-        lastSent = validate(activity.getActivityType(), lastSent);
+        validate(activity, lastSent);
       }
     }
     
-    private SyncReplicationActivity.ActivityType validate(SyncReplicationActivity.ActivityType type, SyncReplicationActivity.ActivityType compare) {
+    private void validate(SyncReplicationActivity activity, Map<FetchID, SyncReplicationActivity.ActivityType> last) {
+      SyncReplicationActivity.ActivityType type = activity.getActivityType();
+      FetchID scope = isEntityScoped(type) ? activity.getFetchID() : FetchID.NULL_ID;
+      SyncReplicationActivity.ActivityType compare = last.get(scope);
       switch (type) {
         case SYNC_BEGIN:
           Assert.assertTrue(type + " " + compare, EnumSet.of(SyncReplicationActivity.ActivityType.SYNC_START).contains(compare));
           break;
         case SYNC_ENTITY_BEGIN:
-          Assert.assertTrue(type + " " + compare, EnumSet.of(SyncReplicationActivity.ActivityType.SYNC_BEGIN, SyncReplicationActivity.ActivityType.SYNC_ENTITY_END).contains(compare));
+          Assert.assertTrue(type + " " + compare, compare == null || compare == SyncReplicationActivity.ActivityType.SYNC_ENTITY_END);
+          Assert.assertTrue(type + " " + last.get(FetchID.NULL_ID), last.get(FetchID.NULL_ID) == SyncReplicationActivity.ActivityType.SYNC_BEGIN);
           break;
         case SYNC_ENTITY_CONCURRENCY_BEGIN:
           Assert.assertTrue(type + " " + compare, EnumSet.of(SyncReplicationActivity.ActivityType.SYNC_ENTITY_CONCURRENCY_PAYLOAD, SyncReplicationActivity.ActivityType.SYNC_ENTITY_BEGIN, SyncReplicationActivity.ActivityType.SYNC_ENTITY_CONCURRENCY_END).contains(compare));
           break;
         case SYNC_ENTITY_CONCURRENCY_PAYLOAD:
-          Assert.assertTrue(type + " " + compare, EnumSet.of(SyncReplicationActivity.ActivityType.SYNC_ENTITY_BEGIN, SyncReplicationActivity.ActivityType.SYNC_ENTITY_CONCURRENCY_BEGIN, SyncReplicationActivity.ActivityType.SYNC_ENTITY_CONCURRENCY_END, SyncReplicationActivity.ActivityType.SYNC_ENTITY_CONCURRENCY_PAYLOAD).contains(compare));
+          Assert.assertTrue(type + " " + compare, EnumSet.of(SyncReplicationActivity.ActivityType.SYNC_ENTITY_BEGIN, SyncReplicationActivity.ActivityType.SYNC_ENTITY_CONCURRENCY_BEGIN, SyncReplicationActivity.ActivityType.SYNC_ENTITY_CONCURRENCY_END, SyncReplicationActivity.ActivityType.SYNC_ENTITY_CONCURRENCY_PAYLOAD, SyncReplicationActivity.ActivityType.SYNC_ENTITY_CONCURRENCY_SNAPSHOT).contains(compare));
+          break;
+        case SYNC_ENTITY_CONCURRENCY_SNAPSHOT:
+          Assert.assertTrue(type + " " + compare, EnumSet.of(SyncReplicationActivity.ActivityType.SYNC_ENTITY_CONCURRENCY_BEGIN, SyncReplicationActivity.ActivityType.SYNC_ENTITY_CONCURRENCY_PAYLOAD, SyncReplicationActivity.ActivityType.SYNC_ENTITY_CONCURRENCY_SNAPSHOT).contains(compare));
           break;
         case SYNC_ENTITY_CONCURRENCY_END:
-          Assert.assertTrue(type + " " + compare, EnumSet.of(SyncReplicationActivity.ActivityType.SYNC_ENTITY_CONCURRENCY_BEGIN, SyncReplicationActivity.ActivityType.SYNC_ENTITY_CONCURRENCY_PAYLOAD).contains(compare));
+          Assert.assertTrue(type + " " + compare, EnumSet.of(SyncReplicationActivity.ActivityType.SYNC_ENTITY_CONCURRENCY_BEGIN, SyncReplicationActivity.ActivityType.SYNC_ENTITY_CONCURRENCY_PAYLOAD, SyncReplicationActivity.ActivityType.SYNC_ENTITY_CONCURRENCY_SNAPSHOT).contains(compare));
           break;
         case SYNC_ENTITY_END:
           Assert.assertTrue(type + " " + compare, EnumSet.of(SyncReplicationActivity.ActivityType.SYNC_ENTITY_BEGIN, SyncReplicationActivity.ActivityType.SYNC_ENTITY_CONCURRENCY_END).contains(compare));
           break;
         case SYNC_END:
-          Assert.assertTrue(type + " " + compare, EnumSet.of(SyncReplicationActivity.ActivityType.SYNC_ENTITY_END, SyncReplicationActivity.ActivityType.SYNC_BEGIN).contains(compare));
+          Assert.assertTrue(type + " " + compare, EnumSet.of(SyncReplicationActivity.ActivityType.SYNC_BEGIN).contains(compare));
+//  every entity which started must have finished
+          for (Map.Entry<FetchID, SyncReplicationActivity.ActivityType> entity : last.entrySet()) {
+            Assert.assertTrue(type + " " + entity, entity.getKey().isNull() || entity.getValue() == SyncReplicationActivity.ActivityType.SYNC_ENTITY_END);
+          }
+          last.clear();
           break;
         case SYNC_START:
           break;
@@ -345,7 +395,21 @@ public class ReplicationSender {
         default:
           throw new AssertionError("unexpected message type");
       }
-      return type;
+      last.put(scope, type);
+    }
+    
+    private boolean isEntityScoped(SyncReplicationActivity.ActivityType type) {
+      switch (type) {
+        case SYNC_ENTITY_BEGIN:
+        case SYNC_ENTITY_CONCURRENCY_BEGIN:
+        case SYNC_ENTITY_CONCURRENCY_PAYLOAD:
+        case SYNC_ENTITY_CONCURRENCY_SNAPSHOT:
+        case SYNC_ENTITY_CONCURRENCY_END:
+        case SYNC_ENTITY_END:
+          return true;
+        default:
+          return false;
+      }
     }
     
     private boolean send(SyncReplicationActivity activity) {
@@ -365,4 +429,17 @@ public class ReplicationSender {
       }));
     }
   }
+  
+  private static class EntitySync {
+    // syncdID is the set of concurrency keys of the entity which we believe have finished syncing and fully
+    //  exist on the passive.
+    private final Set<Integer> syncdID = new HashSet<>();
+    // syncingConcurrency is the concurrency key we are currently syncing, 0 if none is in progress.
+    private int syncingConcurrency = 0;
+
+    private EntitySync() {
+      syncdID.add(ConcurrencyStrategy.MANAGEMENT_KEY);
+      syncdID.add(ConcurrencyStrategy.UNIVERSAL_KEY);
+    }
+  }
 }
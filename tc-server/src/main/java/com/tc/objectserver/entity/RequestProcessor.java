@@ -17,6 +17,7 @@
  */
 package com.tc.objectserver.entity;
 
+import com.tc.async.api.DirectExecutionMode;
 import com.tc.async.api.MultiThreadedEventContext;
 import com.tc.async.api.Sink;
 import com.tc.async.api.StageManager;
@@ -36,6 +37,8 @@ import com.tc.properties.TCPropertiesImpl;
 import com.tc.util.Assert;
 import java.util.Collections;
 import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
@@ -48,7 +51,8 @@ public class RequestProcessor {
   private PassiveReplicationBroker passives;
   private final Sink<EntityRequest> requestExecution;
   private final Sink<EntityRequest> syncExecution;
-  private boolean isActive = false;
+  private final OrderingLanes lanes;
+  private volatile boolean isActive = false;
   private static final Logger PLOGGER = LoggerFactory.getLogger(MessagePayload.class);
   
   public RequestProcessor(StageManager stageManager, boolean use_direct) {
@@ -57,6 +61,9 @@ public class RequestProcessor {
     numOfProcessors = Math.max(MIN_NUM_PROCESSORS, numOfProcessors);
     requestExecution = stageManager.createStage(ServerConfigurationContext.REQUEST_PROCESSOR_STAGE, EntityRequest.class, new RequestProcessorHandler(), numOfProcessors,  stageManager.getDefaultStageMaximumCapacity(), use_direct, true).getSink();
     syncExecution = stageManager.createStage(ServerConfigurationContext.REQUEST_PROCESSOR_DURING_SYNC_STAGE, EntityRequest.class, new SyncRequestProcessorHandler(), MIN_NUM_PROCESSORS, stageManager.getDefaultStageMaximumCapacity(), use_direct, true).getSink();
+//  a single threaded server schedules everything directly which locks every lane, one lane makes that a single lock
+    int defaultLanes = TCPropertiesImpl.getProperties().getBoolean(TCPropertiesConsts.L2_SEDA_STAGE_SINGLE_THREAD, false) ? 1 : numOfProcessors * 4;
+    lanes = new OrderingLanes(TCPropertiesImpl.getProperties().getInt(TCPropertiesConsts.ENTITY_PROCESSOR_LANES, defaultLanes));
   }
 //  TODO: do some accounting for transaction de-dupping on failover
   
@@ -65,8 +72,13 @@ public class RequestProcessor {
   }
   
   RequestProcessor(Sink<EntityRequest> requestExecution, Sink<EntityRequest> syncExecution) {
+    this(requestExecution, syncExecution, OrderingLanes.DEFAULT_LANES);
+  }
+
+  RequestProcessor(Sink<EntityRequest> requestExecution, Sink<EntityRequest> syncExecution, int laneCount) {
     this.requestExecution = requestExecution;
     this.syncExecution = requestExecution;
+    this.lanes = new OrderingLanes(laneCount);
   }
 
   public void enterActiveState() {
@@ -82,9 +94,12 @@ public class RequestProcessor {
     this.passives = passives;
   }
 
-//  this is synchronized because both PTH and Request Processor thread has access to this method.  the replication and schduling on the executor needs
-//  to happen in the same order.  synchronizing this method enforces that
-  public synchronized void scheduleRequest(boolean inSync, EntityID eid, long version, FetchID fetchID, ServerEntityRequest request, MessagePayload payload, Consumer<ActivePassiveAckWaiter> call, boolean replicate, int concurrencyKey) {
+//  both PTH and Request Processor threads have access to this method.  the replication and scheduling on the executor needs
+//  to happen in the same order for any one entity and concurrency key.  requests are serialized on the ordering lane of their 
+//  scheduling key so independent entities and keys do not contend.  management requests flush every queue and requests which
+//  may be executed directly on the calling thread must not overlap anything else so those lock every lane.  direct execution
+//  is only chosen for a single idle client unless the server is single threaded, in which case it runs with one lane
+  public void scheduleRequest(boolean inSync, EntityID eid, long version, FetchID fetchID, ServerEntityRequest request, MessagePayload payload, Consumer<ActivePassiveAckWaiter> call, boolean replicate, int concurrencyKey) {
     // Determine if this kind of action is one we want to replicate.
     final ServerEntityAction requestAction = (!replicate && request.requiresReceived()) ? ServerEntityAction.ORDER_PLACEHOLDER_ONLY : request.getAction();
     // We will try to replicate anything which isn't just a local flush operation.
@@ -101,18 +116,33 @@ public class RequestProcessor {
       if (PLOGGER.isDebugEnabled()) {
         PLOGGER.debug("SCHEDULING:{} {} on {} with concurrency:{} replicatedTo: {}",requestAction, payload.getDebugId(), eid, concurrencyKey, replicateTo);
       }
-      return !replicateTo.isEmpty() 
+  //  with nobody to send to, activity is still recorded if a passive which went away could come back for it
+      boolean record = replicateTo.isEmpty() && isActive && isActionReplicated && passives != null
+          && (replicate || request.requiresReceived()) && passives.isBacklogging();
+      return !replicateTo.isEmpty() || record
         ? passives.replicateActivity(createReplicationActivity(eid, version, fetchID, request.getNodeID(), request.getClientInstance(), requestAction, 
             request.getTransaction(), request.getOldestTransactionOnClient(), payload, concurrencyKey), replicateTo)
         : NoReplicationBroker.NOOP_WAITER;
     };
     
     EntityRequest entityRequest =  new EntityRequest(eid, call, token, concurrencyKey, payload);
+    Sink<EntityRequest> sink = inSync ? syncExecution : requestExecution;
 
-    if (inSync) {
-      syncExecution.addToSink(entityRequest);
+    if (concurrencyKey == ConcurrencyStrategy.MANAGEMENT_KEY || DirectExecutionMode.isActivated()) {
+      lanes.lockAll();
+      try {
+        sink.addToSink(entityRequest);
+      } finally {
+        lanes.unlockAll();
+      }
     } else {
-      requestExecution.addToSink(entityRequest);
+      Lock lane = lanes.laneFor(entityRequest.getLaneKey());
+      lane.lock();
+      try {
+        sink.addToSink(entityRequest);
+      } finally {
+        lane.unlock();
+      }
     }
   }
 
@@ -141,6 +171,49 @@ public class RequestProcessor {
     return activity;
   }
   
+  /**
+   * Striped locks which keep the scheduling of requests sharing a scheduling key in order without making requests for 
+   * unrelated keys wait on each other.  A single lane is equivalent to synchronizing every request.
+   */
+  static class OrderingLanes {
+    static final int DEFAULT_LANES = 64;
+    private final ReentrantLock[] lanes;
+    private final int mask;
+
+    OrderingLanes(int count) {
+      int size = Integer.highestOneBit(Math.max(1, Math.min(count, 1 << 16)));
+      if (size < count) {
+        size <<= 1;
+      }
+      lanes = new ReentrantLock[size];
+      for (int x = 0; x < size; x++) {
+        lanes[x] = new ReentrantLock();
+      }
+      mask = size - 1;
+    }
+
+    Lock laneFor(int key) {
+      int h = key ^ (key >>> 16);
+      return lanes[h & mask];
+    }
+
+    int size() {
+      return lanes.length;
+    }
+//  always in index order so that two threads locking everything can not deadlock
+    void lockAll() {
+      for (ReentrantLock lane : lanes) {
+        lane.lock();
+      }
+    }
+
+    void unlockAll() {
+      for (int x = lanes.length - 1; x >= 0; x--) {
+        lanes[x].unlock();
+      }
+    }
+  }
+
   public static class EntityRequest implements MultiThreadedEventContext, Runnable {
     private final EntityID entity;
     private final Consumer<ActivePassiveAckWaiter> invoke;
@@ -164,6 +237,11 @@ public class RequestProcessor {
 //  create some additional entropy so all entities are not ordered the same
       return key ^ entity.hashCode();
     }
+//  universal requests are not ordered with anything, not even the keyed requests of their entity, see getSchedulingKey.
+//  any lane would do for them, the entity hash just keeps the choice stable
+    int getLaneKey() {
+      return (key == ConcurrencyStrategy.UNIVERSAL_KEY) ? entity.hashCode() : key ^ entity.hashCode();
+    }
 //  Runnable so handler can cast and execute
     @Override
     public void run() {
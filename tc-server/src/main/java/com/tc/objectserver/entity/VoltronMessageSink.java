@@ -41,10 +41,28 @@ public class VoltronMessageSink extends TCMessageHydrateSink<VoltronEntityMessag
                                                      .getBoolean(TCPropertiesConsts.L2_SEDA_STAGE_ALWAYS_HYDRATE, false);
 
   public VoltronMessageSink(Stage<HydrateContext> helper, Sink<VoltronEntityMessage> destSink, MessageCodecSupplier codecSupplier) {
-    super(destSink);
+    this(helper, codecSupplier, unpackBatchedInvokes(destSink));
+  }
+
+  private VoltronMessageSink(Stage<HydrateContext> helper, MessageCodecSupplier codecSupplier, Sink<VoltronEntityMessage> dest) {
+    super(dest);
     this.helper = helper;
     this.codecSupplier = codecSupplier;
-    this.dest = destSink;
+    this.dest = dest;
+  }
+
+  /**
+   * Invokes packed into one network message are handed on individually, in the order the client packed them.
+   */
+  private static Sink<VoltronEntityMessage> unpackBatchedInvokes(Sink<VoltronEntityMessage> destSink) {
+    return message -> {
+      destSink.addToSink(message);
+      if (message instanceof NetworkVoltronEntityMessage) {
+        for (VoltronEntityMessage invoke : ((NetworkVoltronEntityMessage)message).getBatchedInvokes()) {
+          destSink.addToSink(invoke);
+        }
+      }
+    };
   }
 
   @Override
@@ -21,11 +21,13 @@ package com.tc.objectserver.handler;
 import com.tc.async.api.AbstractEventHandler;
 import com.tc.async.api.ConfigurationContext;
 import com.tc.l2.state.StateManager;
+import com.tc.net.ClientID;
 import com.tc.net.protocol.tcm.MessageChannel;
 import com.tc.object.msg.ClientHandshakeMessage;
 import com.tc.objectserver.api.EntityManager;
 import com.tc.objectserver.core.impl.GuardianContext;
 import com.tc.objectserver.core.api.ServerConfigurationContext;
+import com.tc.objectserver.handshakemanager.ClientHandshakeAdmission;
 import com.tc.objectserver.handshakemanager.ClientHandshakeException;
 import com.tc.objectserver.handshakemanager.ServerClientHandshakeManager;
 import com.tc.net.core.ProductID;
@@ -42,12 +44,18 @@ public class ClientHandshakeHandler extends AbstractEventHandler<ClientHandshake
   private final ProcessTransactionHandler transactionHandler;
   private final Version               serverVersion;
   private final VersionCompatibility versionCheck;
+  private final ClientHandshakeAdmission admission;
 
   public ClientHandshakeHandler(EntityManager entityManager, ProcessTransactionHandler transactionHandler, VersionCompatibility versionCheck) {
+    this(entityManager, transactionHandler, versionCheck, ClientHandshakeAdmission.unlimited());
+  }
+
+  public ClientHandshakeHandler(EntityManager entityManager, ProcessTransactionHandler transactionHandler, VersionCompatibility versionCheck, ClientHandshakeAdmission admission) {
     this.entityManager = entityManager;
     this.transactionHandler = transactionHandler;
     this.serverVersion = new Version(ProductInfo.getInstance().version());
     this.versionCheck = versionCheck;
+    this.admission = admission;
   }
 
   @Override
@@ -75,6 +83,9 @@ public class ClientHandshakeHandler extends AbstractEventHandler<ClientHandshake
       MessageChannel c = clientMsg.getChannel();
       getLogger().error("Closing channel " + c.getChannelID() + " because of previous errors");
       c.close();
+    } finally {
+      // the client is past the point of the storm, let the next one through the transport
+      admission.release((ClientID) clientMsg.getSourceNodeID());
     }
   }
 
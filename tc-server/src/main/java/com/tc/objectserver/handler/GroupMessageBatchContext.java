@@ -27,35 +27,97 @@ import com.tc.net.groups.GroupException;
 import com.tc.net.groups.GroupManager;
 import com.tc.net.groups.GroupMessage;
 import com.tc.net.utils.L2Utils;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.LongSupplier;
 import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
 
 
 public class GroupMessageBatchContext<M extends IBatchableGroupMessage<E>, E> {
   private static final Logger LOGGER = LoggerFactory.getLogger(GroupMessageBatchContext.class);
   
   private static final long THRESHOLD = 16 * 1024 * 1024;
+  // adaptive mode sizes batches to roughly this many payload bytes, bounded by the configured maximum batch size
+  private static final long TARGET_BATCH_BYTES = 1024 * 1024;
+  private static final int MINIMUM_ADAPTIVE_BATCH = 16;
   
   private final Function<E, M> messageFactory;
   private final GroupManager<AbstractGroupMessage> groupManager;
   private final ServerID target;
   private final int maximumBatchSize;
   private final int idealMessagesInFlight;
+  private final int maximumMessagesInFlight;
+  private final boolean adaptive;
   private final Consumer<ServerID> networkDoneTarget;
+  // source of the batch send and completion times, nanoseconds
+  private final LongSupplier clock;
+  // when set, batches are timed until the peer acknowledges the element carrying the last key of the batch rather 
+  //  than until the local sent callback
+  private final ToLongFunction<E> ackKey;
   
   private int messagesInFlight;
   private M cachedMessage;
+  private long cachedLastKey;
   private long nextReplicationID;
+  
+  // current limits.  These only move when adaptive, otherwise they stay at the configured values
+  private int batchLimit;
+  private int window;
+  // batches awaiting their latency sample, in the order they were handed to the network
+  private final Deque<SentBatch> sendTimes = new ArrayDeque<>();
+  private int completedInWindow;
+  private long minimumLatency = Long.MAX_VALUE;
+  private long smoothedLatency;
+  private long smoothedBytesPerMessage;
+  private long increases;
+  private long decreases;
 
 
   public GroupMessageBatchContext(Function<E, M> messageFactory, GroupManager<AbstractGroupMessage> groupManager, ServerID target, int maximumBatchSize, int idealMessagesInFlight, Consumer<ServerID> networkDoneTarget) {
+    this(messageFactory, groupManager, target, maximumBatchSize, idealMessagesInFlight, idealMessagesInFlight, networkDoneTarget);
+  }
+
+  /**
+   * Creates a batch context which adapts its in-flight window and batch size to the observed network completion 
+   *  latency and payload size of the batches it sends.  The window starts at idealMessagesInFlight and moves between 
+   *  one and maximumMessagesInFlight, growing additively while latency stays near the observed minimum and halving 
+   *  when it inflates.  If maximumMessagesInFlight is not larger than idealMessagesInFlight, or idealMessagesInFlight 
+   *  is zero (unlimited), the context behaves exactly as a fixed one.
+   */
+  public GroupMessageBatchContext(Function<E, M> messageFactory, GroupManager<AbstractGroupMessage> groupManager, ServerID target, int maximumBatchSize, int idealMessagesInFlight, int maximumMessagesInFlight, Consumer<ServerID> networkDoneTarget) {
+    this(messageFactory, groupManager, target, maximumBatchSize, idealMessagesInFlight, maximumMessagesInFlight, networkDoneTarget, null, System::nanoTime);
+  }
+
+  /**
+   * Creates an adaptive batch context which times each batch from its hand-off to the group manager until the peer 
+   *  acknowledges the last element of the batch, reported through {@link #acknowledged(long)}, so the window follows 
+   *  the round trip to the peer rather than the local socket.
+   * 
+   * @param ackKey maps an element to the key the peer acknowledges it with
+   */
+  public GroupMessageBatchContext(Function<E, M> messageFactory, GroupManager<AbstractGroupMessage> groupManager, ServerID target, int maximumBatchSize, int idealMessagesInFlight, int maximumMessagesInFlight, Consumer<ServerID> networkDoneTarget, ToLongFunction<E> ackKey) {
+    this(messageFactory, groupManager, target, maximumBatchSize, idealMessagesInFlight, maximumMessagesInFlight, networkDoneTarget, ackKey, System::nanoTime);
+  }
+
+  GroupMessageBatchContext(Function<E, M> messageFactory, GroupManager<AbstractGroupMessage> groupManager, ServerID target, int maximumBatchSize, int idealMessagesInFlight, int maximumMessagesInFlight, Consumer<ServerID> networkDoneTarget, ToLongFunction<E> ackKey, LongSupplier clock) {
     this.messageFactory = messageFactory;
     this.groupManager = groupManager;
     this.target = target;
     this.maximumBatchSize = maximumBatchSize;
     this.idealMessagesInFlight = idealMessagesInFlight;
+    this.adaptive = idealMessagesInFlight > 0 && maximumMessagesInFlight > idealMessagesInFlight;
+    this.maximumMessagesInFlight = this.adaptive ? maximumMessagesInFlight : idealMessagesInFlight;
     this.networkDoneTarget = networkDoneTarget;
+    this.clock = clock;
+    this.ackKey = ackKey;
+    this.batchLimit = maximumBatchSize;
+    this.window = idealMessagesInFlight;
   }
 
   /**
@@ -70,7 +132,7 @@ public class GroupMessageBatchContext<M extends IBatchableGroupMessage<E>, E> {
     // See if we have an existing message we must batch.
     boolean didCreateNewBatch = false;
     try {
-      while (this.cachedMessage != null && this.cachedMessage.getBatchSize() >= maximumBatchSize) {
+      while (this.cachedMessage != null && this.cachedMessage.getBatchSize() >= batchLimit) {
         wait();
       }      
     } catch (InterruptedException ie) {
@@ -87,6 +149,9 @@ public class GroupMessageBatchContext<M extends IBatchableGroupMessage<E>, E> {
       this.cachedMessage.setSequenceID(nextReplicationID++);
       didCreateNewBatch = true;
     }
+    if (this.ackKey != null) {
+      this.cachedLastKey = this.ackKey.applyAsLong(activity);
+    }
     return didCreateNewBatch;
   }
 
@@ -155,9 +220,9 @@ public class GroupMessageBatchContext<M extends IBatchableGroupMessage<E>, E> {
       // See if we have a batched message and are ready to send one.
       // Note that we will override the ideal number of in-flight messages if the batch is getting too large.
     if (null != this.cachedMessage) {
-      if ((0 == this.idealMessagesInFlight) ||
-        (this.messagesInFlight < this.idealMessagesInFlight) ||
-        (this.cachedMessage.getBatchSize() >= this.maximumBatchSize) || 
+      if ((0 == this.window) ||
+        (this.messagesInFlight < this.window) ||
+        (this.cachedMessage.getBatchSize() >= this.batchLimit) || 
         (this.cachedMessage.getPayloadSize() > THRESHOLD)
       ) {
         // There is a batched message so send it.
@@ -165,6 +230,14 @@ public class GroupMessageBatchContext<M extends IBatchableGroupMessage<E>, E> {
         this.cachedMessage = null;
         notifyAll();
         this.messagesInFlight += 1;
+        if (this.adaptive) {
+          if (this.ackKey != null && this.sendTimes.size() >= this.maximumMessagesInFlight * 4) {
+            // the peer has not acknowledged the tail of these batches, stop waiting on the oldest
+            this.sendTimes.pollFirst();
+          }
+          this.sendTimes.addLast(new SentBatch(clock.getAsLong(), this.cachedLastKey));
+          sampleBatchSize(messageToSend.getBatchSize(), messageToSend.getPayloadSize());
+        }
       }
     }
     return messageToSend;
@@ -183,6 +256,12 @@ public class GroupMessageBatchContext<M extends IBatchableGroupMessage<E>, E> {
   public void handleNetworkDone() {
     synchronized (this) {
       this.messagesInFlight -= 1;
+      if (this.adaptive && this.ackKey == null) {
+        SentBatch sent = this.sendTimes.pollFirst();
+        if (sent != null) {
+          sampleLatency(clock.getAsLong() - sent.sendTime);
+        }
+      }
       notifyAll();
     }
     
@@ -191,4 +270,105 @@ public class GroupMessageBatchContext<M extends IBatchableGroupMessage<E>, E> {
       this.networkDoneTarget.accept(target);
     }
   }
+
+  /**
+   * Called when the peer acknowledges the element with the given key.  If that element closed a batch, the batch and 
+   *  any sent before it are complete, since the peer processes batches in order, and their latency is sampled.  Keys 
+   *  which did not close a batch are ignored.
+   */
+  public synchronized void acknowledged(long key) {
+    if (this.adaptive && this.ackKey != null) {
+      boolean closesBatch = false;
+      for (SentBatch sent : this.sendTimes) {
+        if (sent.lastKey == key) {
+          closesBatch = true;
+          break;
+        }
+      }
+      if (closesBatch) {
+        long now = clock.getAsLong();
+        SentBatch sent;
+        do {
+          sent = this.sendTimes.pollFirst();
+          sampleLatency(now - sent.sendTime);
+        } while (sent.lastKey != key);
+      }
+    }
+  }
+
+  /**
+   * Latency is measured from the hand-off of a batch to the group manager until its sent callback or, when batches 
+   *  are timed to the peer, until the acknowledgement of its last element.  The minimum is 
+   *  taken as the unloaded cost of a batch; as long as the smoothed latency stays within twice that minimum the window 
+   *  grows by one for every full window of completed batches.  Once it goes beyond four times the minimum, the window 
+   *  is halved, or if the window is already one batch, the minimum is reset to the current sample.
+   */
+  private void sampleLatency(long latency) {
+    this.minimumLatency = Math.min(this.minimumLatency, latency);
+    this.smoothedLatency = this.smoothedLatency == 0 ? latency : this.smoothedLatency + ((latency - this.smoothedLatency) >> 3);
+    long floor = Math.max(this.minimumLatency, 1);
+    if (this.smoothedLatency > floor * 4) {
+      if (this.window > 1) {
+        this.window = Math.max(1, this.window >> 1);
+        this.decreases += 1;
+        if (LOGGER.isDebugEnabled()) {
+          LOGGER.debug("replication window to {} decreased to {} latency:{}us", target, window, TimeUnit.NANOSECONDS.toMicros(smoothedLatency));
+        }
+      } else {
+        // already at a single batch so the path itself got slower, take this as the new floor
+        this.minimumLatency = latency;
+        floor = Math.max(latency, 1);
+      }
+      this.completedInWindow = 0;
+      // let the latency recover toward the floor before judging the smaller window
+      this.smoothedLatency = floor * 2;
+    } else if (this.smoothedLatency <= floor * 2 && ++this.completedInWindow >= this.window) {
+      this.completedInWindow = 0;
+      if (this.window < this.maximumMessagesInFlight) {
+        this.window += 1;
+        this.increases += 1;
+      }
+    }
+  }
+
+  private void sampleBatchSize(int count, long bytes) {
+    if (count > 0) {
+      long perMessage = Math.max(1, bytes / count);
+      this.smoothedBytesPerMessage = this.smoothedBytesPerMessage == 0 ? perMessage : this.smoothedBytesPerMessage + ((perMessage - this.smoothedBytesPerMessage) >> 3);
+      long limit = TARGET_BATCH_BYTES / this.smoothedBytesPerMessage;
+      this.batchLimit = (int)Math.max(Math.min(MINIMUM_ADAPTIVE_BATCH, this.maximumBatchSize), Math.min(limit, this.maximumBatchSize));
+    }
+  }
+
+  public synchronized Map<String, Object> getState() {
+    Map<String, Object> state = new LinkedHashMap<>();
+    state.put("target", target.toString());
+    state.put("adaptive", adaptive);
+    state.put("initialWindow", idealMessagesInFlight);
+    state.put("window", window);
+    state.put("maximumWindow", maximumMessagesInFlight);
+    state.put("inflight", messagesInFlight);
+    state.put("batchLimit", batchLimit);
+    state.put("maximumBatchSize", maximumBatchSize);
+    state.put("nextSequence", nextReplicationID);
+    if (adaptive) {
+      state.put("timedToAck", ackKey != null);
+      state.put("minimumLatencyMicros", minimumLatency == Long.MAX_VALUE ? 0L : TimeUnit.NANOSECONDS.toMicros(minimumLatency));
+      state.put("smoothedLatencyMicros", TimeUnit.NANOSECONDS.toMicros(smoothedLatency));
+      state.put("bytesPerMessage", smoothedBytesPerMessage);
+      state.put("windowIncreases", increases);
+      state.put("windowDecreases", decreases);
+    }
+    return state;
+  }
+
+  private static class SentBatch {
+    private final long sendTime;
+    private final long lastKey;
+
+    private SentBatch(long sendTime, long lastKey) {
+      this.sendTime = sendTime;
+      this.lastKey = lastKey;
+    }
+  }
 }
@@ -164,6 +164,15 @@ public class PassiveAckSender implements PassiveMessageResultCollector {
     }
   }
 
+  @Override
+  public void requestPassiveCatchUp(NodeID target, long lastActivity) {
+    try {
+      groupManager.sendTo(target, ReplicationMessageAck.createCatchUpRequestMessage(lastActivity));
+    } catch (GroupException ge) {
+      LOGGER.warn("can't request passive catch up", ge);
+    }
+  }
+
   @Override
   public ServerEntityRequest transform(SyncReplicationActivity activity) {
     SyncReplicationActivity.ActivityType activityType = activity.getActivityType();
@@ -207,6 +216,8 @@ public class PassiveAckSender implements PassiveMessageResultCollector {
         return ServerEntityAction.RECEIVE_SYNC_ENTITY_KEY_START;
       case SYNC_ENTITY_CONCURRENCY_PAYLOAD:
         return ServerEntityAction.RECEIVE_SYNC_PAYLOAD;
+      case SYNC_ENTITY_CONCURRENCY_SNAPSHOT:
+        return ServerEntityAction.RECEIVE_SYNC_SNAPSHOT;
       case SYNC_ENTITY_CONCURRENCY_END:
         return ServerEntityAction.RECEIVE_SYNC_ENTITY_KEY_END;
       case SYNC_ENTITY_END:
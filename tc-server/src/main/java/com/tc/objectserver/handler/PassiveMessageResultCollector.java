@@ -38,5 +38,7 @@ public interface PassiveMessageResultCollector {
 
   void requestPassiveSync(NodeID target);
 
+  void requestPassiveCatchUp(NodeID target, long lastActivity);
+
   ServerEntityRequest transform(SyncReplicationActivity activity);
 }
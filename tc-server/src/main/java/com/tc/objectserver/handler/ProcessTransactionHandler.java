@@ -53,6 +53,8 @@ import com.tc.objectserver.entity.ReferenceMessage;
 import com.tc.objectserver.entity.ServerEntityRequestImpl;
 import com.tc.objectserver.persistence.EntityData;
 import com.tc.objectserver.persistence.Persistor;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
 import com.tc.services.ClientMessageSender;
 import com.tc.util.Assert;
 import com.tc.util.SparseList;
@@ -68,6 +70,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.function.Consumer;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
 
 import org.slf4j.Logger;
@@ -99,6 +102,14 @@ public class ProcessTransactionHandler implements ReconnectListener {
   private boolean reconnecting = true;
 
   private Stage<ResponseMessage> multiSend;
+  private Stage<Object> requestProcessor;
+  // the most invokes any one client may have in-flight, 0 disables flow control
+  private final int creditWindow = TCPropertiesImpl.getProperties().getInt(TCPropertiesConsts.ENTITY_PROCESSOR_CREDIT, 0);
+  // how much a single response to a client coalesces before new ops start another response
+  private final int coalesceBytes = TCPropertiesImpl.getProperties().getInt(TCPropertiesConsts.ENTITY_RESPONSE_COALESCE_BYTES, 1024 * 1024);
+  private final long coalesceNanos = TimeUnit.MICROSECONDS.toNanos(TCPropertiesImpl.getProperties().getLong(TCPropertiesConsts.ENTITY_RESPONSE_COALESCE_MICROS, 0L));
+  // packed responses are only readable by clients that know the encoding
+  private final boolean packedResponses = TCPropertiesImpl.getProperties().getBoolean(TCPropertiesConsts.ENTITY_RESPONSE_PACKED, false);
   private final ConcurrentHashMap<ClientID, VoltronEntityMultiResponse> invokeReturn = new ConcurrentHashMap<>();
   private final ConcurrentHashMap<ClientID, Integer> inflightFetch = new ConcurrentHashMap<>();
   private final ConcurrentHashMap<TransactionID, Future<Void>> transactionOrderPersistenceFutures = new ConcurrentHashMap<>();
@@ -117,8 +128,13 @@ public class ProcessTransactionHandler implements ReconnectListener {
 
       if (response instanceof VoltronEntityMultiResponse) {
         VoltronEntityMultiResponse voltronEntityMultiResponse = (VoltronEntityMultiResponse)response;
-        VoltronEntityMultiResponse sub = (VoltronEntityMultiResponse)response.getChannel().createMessage(TCMessageType.VOLTRON_ENTITY_MULTI_RESPONSE);
-        invokeReturn.put((ClientID)destinationID, sub);
+        // only replace the response if it is still the one collecting ops, a full response
+        //  may already have been rotated out for a newer one
+        invokeReturn.computeIfPresent((ClientID)destinationID, (client, current)->current == voltronEntityMultiResponse 
+            ? (VoltronEntityMultiResponse)createMultiResponse(response.getChannel()) : current);
+        if (creditWindow > 0) {
+          voltronEntityMultiResponse.addCredit(availableCredit());
+        }
         voltronEntityMultiResponse.stopAdding();
         if (!transactionOrderPersistenceFutures.isEmpty()) {
           waitForTransactions(voltronEntityMultiResponse);
@@ -139,6 +155,27 @@ public class ProcessTransactionHandler implements ReconnectListener {
     }
   };
 
+  /**
+   * The window advertised to clients shrinks as the request processor backs up so
+   * a client flooding the server is slowed down before it queues unbounded work.
+   */
+  int availableCredit() {
+    int backlog = requestProcessor != null ? requestProcessor.size() : 0;
+    return Math.max(1, creditWindow - backlog);
+  }
+
+  private TCAction createMultiResponse(MessageChannel channel) {
+    return limitCoalescing(channel.createMessage(TCMessageType.VOLTRON_ENTITY_MULTI_RESPONSE));
+  }
+
+  private TCAction limitCoalescing(TCAction msg) {
+    if (msg instanceof VoltronEntityMultiResponse) {
+      ((VoltronEntityMultiResponse)msg).limitCoalescing(coalesceBytes, coalesceNanos);
+      ((VoltronEntityMultiResponse)msg).usePackedEncoding(packedResponses);
+    }
+    return msg;
+  }
+
   public AbstractEventHandler<ResponseMessage> getMultiResponseSender() {
     return multiSender;
   }
@@ -233,6 +270,7 @@ public class ProcessTransactionHandler implements ReconnectListener {
       ServerConfigurationContext server = (ServerConfigurationContext)context;
 
       multiSend = server.getStage(ServerConfigurationContext.RESPOND_TO_REQUEST_STAGE, ResponseMessage.class);
+      requestProcessor = server.getStage(ServerConfigurationContext.REQUEST_PROCESSOR_STAGE, Object.class);
 
 //  go right to active state.  this only gets initialized once ACTIVE-COORDINATOR is entered
       reconnectDone = entityManager.enterActiveState();
@@ -462,7 +500,7 @@ public class ProcessTransactionHandler implements ReconnectListener {
         request.getNodeID(),
         request.getClientInstance(),
         request.getTransaction(),
-        (type)->safeGetChannel(request.getNodeID()).map(c->c.createMessage(type)).orElse(null),
+        (type)->safeGetChannel(request.getNodeID()).map(c->limitCoalescing(c.createMessage(type))).orElse(null),
         invokeReturn,
         multiSend,
         request.requiresReceived(),
@@ -489,8 +527,15 @@ public class ProcessTransactionHandler implements ReconnectListener {
   }
 
   public void loadExistingEntities() {
+    loadExistingEntities(this.persistor, this.entityManager);
+  }
+
+  /**
+   * Creates every persisted entity in the entity manager, as active or passive entities depending on its state.
+   */
+  static void loadExistingEntities(Persistor persistor, EntityManager entityManager) {
     // issue-439: We need to sort these entities, ascending by consumerID.
-    List<EntityData.Value> sortingList = new ArrayList<EntityData.Value>(this.persistor.getEntityPersistor().loadEntityData());
+    List<EntityData.Value> sortingList = new ArrayList<EntityData.Value>(persistor.getEntityPersistor().loadEntityData());
     Collections.sort(sortingList, new Comparator<EntityData.Value>() {
       @Override
       public int compare(EntityData.Value o1, EntityData.Value o2) {
@@ -51,16 +51,19 @@ import com.tc.objectserver.entity.NoopResultCapture;
 import com.tc.objectserver.entity.PassiveResultCapture;
 import com.tc.objectserver.entity.PlatformEntity;
 import com.tc.objectserver.entity.ResultCaptureImpl;
+import com.tc.objectserver.persistence.ClusterStatePersistor;
 import com.tc.objectserver.persistence.Persistor;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
 import com.tc.tracing.Trace;
 import com.tc.util.Assert;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
 import java.util.Collections;
 import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.Future;
@@ -85,13 +88,26 @@ public class ReplicatedTransactionHandler {
   private final ManagedEntity platform;
 
   private final SyncState state = new SyncState();
+  // a cleanly stopped passive records where it was in the stream and resumes from there when it restarts
+  private final boolean resumeAfterRestart = TCPropertiesImpl.getProperties().getBoolean(TCPropertiesConsts.L2_PASSIVE_CATCHUP_RESTART, false);
 
   private volatile long currentSequence = 0;
+  // the active the replication stream comes from and the last activity applied from it which the active can replay
+  //  from, -1 until this passive has finished sync
+  private volatile ServerID streamSource = ServerID.NULL_ID;
+  private long lastActivity = -1;
 
   public long getCurrentSequence() {
     return currentSequence;
   }
 
+  /**
+   * @return true if the node is the active this passive was last replicating from and could catch up from
+   */
+  public boolean isStreamSource(NodeID node) {
+    return streamSource.equals(node);
+  }
+
   public ReplicatedTransactionHandler(StateManager state, Persistor persistor,
       EntityManager manager, PassiveMessageResultCollector collector) {
     this.stateManager = state;
@@ -109,7 +125,10 @@ public class ReplicatedTransactionHandler {
     @Override
     public void handleEvent(ReplicationMessage message) throws EventHandlerException {
       try {
-        currentSequence = message.getSequenceID();
+        // containers queued locally carry no sequence and must not move the one elections are weighed with
+        if (message.getSequenceID() >= 0) {
+          currentSequence = message.getSequenceID();
+        }
         processMessage(message);
       } catch (Throwable t) {
         // We don't expect to see an exception executing a replicated message.
@@ -123,7 +142,9 @@ public class ReplicatedTransactionHandler {
   //  when this spins up, send  request to active and ask for sync
       if (stateManager.getCurrentMode() == ServerMode.UNINITIALIZED) {
         try {
-          requestPassiveSync();
+          if (!resumeAfterRestart || !resumeFromRestart()) {
+            requestPassiveSync();
+          }
         } catch (IllegalStateException ill) {
             LOGGER.warn("unable to request passive sync due to state " + stateManager.getCurrentMode(), ill);
         }
@@ -170,10 +191,14 @@ public class ReplicatedTransactionHandler {
           return Collections.emptySet();
         }
       };
+  //  a passive which is stopping lets everything already scheduled finish so the last activity it records is applied
+      boolean resumable = resumeAfterRestart && stateManager.getCurrentMode() == ServerMode.STOP && state.finished && lastActivity >= 0;
   //    MGMT_KEY because the request processor needs to be flushed
       for (ManagedEntity me : entityManager.getAll()) {
         BarrierCompletion latch = new BarrierCompletion();
-        me.clearQueue();
+        if (!resumable) {
+          me.clearQueue();
+        }
         me.addRequestMessage(req,
             MessagePayload.emptyPayload(),
             new ResultCaptureImpl(null, (result)->latch.complete(), null, exception->latch.failure(exception)));
@@ -182,7 +207,10 @@ public class ReplicatedTransactionHandler {
       BarrierCompletion latch = new BarrierCompletion();
       platform.addRequestMessage(req, MessagePayload.emptyPayload(),
           new ResultCaptureImpl(null, (result)->latch.complete(), null, exception->latch.failure(exception)));
-
+      if (resumable) {
+        LOGGER.info("Recording resume point " + lastActivity + " from " + streamSource);
+        persistor.getClusterStatePersistor().setResumePoint(streamSource, lastActivity);
+      }
     }
   };
 
@@ -199,6 +227,13 @@ public class ReplicatedTransactionHandler {
     }
     ServerID activeSender = rep.messageFrom();
     for (SyncReplicationActivity activity : rep.getActivities()) {
+      if (activity.getActivityType() == ActivityType.LOCAL_CATCH_UP_REQUEST) {
+        requestPassiveCatchUp();
+        continue;
+      } else if (activity.getActivityType() == ActivityType.SYNC_START) {
+        streamSource = activeSender;
+        lastActivity = -1;
+      }
       EntityID eid = null;
       if (activity.getActivityType() != ActivityType.SYNC_BEGIN) {
         Optional<ManagedEntity> opt = entityManager.getEntity(EntityDescriptor.createDescriptorForInvoke(activity.getFetchID(), activity.getClientInstanceID()));
@@ -234,6 +269,10 @@ public class ReplicatedTransactionHandler {
           replicatedActivityReceived(activeSender, activity);
         }
       }
+      if (state.finished && activity.isCatchUpActivity()) {
+        streamSource = activeSender;
+        lastActivity = activity.getActivityID().id;
+      }
     }
   }
 
@@ -373,6 +412,7 @@ public class ReplicatedTransactionHandler {
             ackMessenger.acknowledge(activeSender, activity, ReplicationResultCode.SUCCESS);
             break;
           default:
+            // only the scheduling happens on this thread, the invoke runs on the request processor by entity and concurrency key
             entityInstance.addRequestMessage(request, payload, createCapture(()->ackMessenger.ackReceived(activeSender, activity, transactionOrderPersistenceFuture),
                 (result)-> ackMessenger.acknowledge(activeSender, activity, ReplicationResultCode.SUCCESS),
                 (exception) -> ackMessenger.acknowledge(activeSender, activity, ReplicationResultCode.FAIL)));
@@ -405,6 +445,47 @@ public class ReplicatedTransactionHandler {
     ackMessenger.requestPassiveSync(node);
   }
 
+  /**
+   * A passive which was stopped cleanly while replicating from the current active loads the entities it kept and asks
+   * that active to replay what it missed instead of syncing everything again.  The resume point is removed first so
+   * if this server stops before it is caught up it is zapped and fully synced when it comes back.
+   *
+   * @return true if catch up was requested
+   */
+  private boolean resumeFromRestart() {
+    ClusterStatePersistor clusterState = persistor.getClusterStatePersistor();
+    ServerID source = clusterState.getResumeSource();
+    long resumeActivity = clusterState.getResumeActivity();
+    clusterState.clearResumePoint();
+    NodeID node = stateManager.getActiveNodeID();
+    if (resumeActivity < 0 || !source.equals(node)) {
+      return false;
+    }
+    LOGGER.info("Resuming replication from " + node + " after restart");
+    ProcessTransactionHandler.loadExistingEntities(persistor, entityManager);
+    state.start();
+    state.finish();
+    streamSource = source;
+    lastActivity = resumeActivity;
+    moveToPassiveUnitialized(node);
+    moveToPassiveStandBy();
+    requestPassiveCatchUp();
+    return true;
+  }
+
+  /**
+   * A passive which has finished sync and lost its stream from the active keeps all of its state so it asks that
+   * active to replay what it missed.  The active falls back to zapping this server for a full sync if it can't.
+   */
+  private void requestPassiveCatchUp() {
+    if (stateManager.getCurrentMode() == ServerMode.PASSIVE && lastActivity >= 0) {
+      LOGGER.info("Requesting catch up from " + streamSource + " after activity " + lastActivity);
+      ackMessenger.requestPassiveCatchUp(streamSource, lastActivity);
+    } else {
+      LOGGER.info("not requesting catch up in state " + stateManager.getCurrentMode() + " with last activity " + lastActivity);
+    }
+  }
+
   private void syncActivityReceived(ServerID activeSender, SyncReplicationActivity activity) {
     Trace trace = new Trace(String.valueOf(activity.getActivityID().id), "Sync");
     trace.start();
@@ -465,7 +546,7 @@ public class ReplicatedTransactionHandler {
           platform.addRequestMessage(activityToLocalRequest(activity), payload, createCapture(null, (result)-> {
             if (SyncReplicationActivity.ActivityType.SYNC_END == thisActivityType) {
               try {
-                this.persistor.getEntityPersistor().layer(new ObjectInputStream(new ByteArrayInputStream(payload.getRawPayload())));
+                this.persistor.getEntityPersistor().layer(payload.getRawPayload());
               } catch (IOException ioe) {
                 throw new RuntimeException(ioe);
               }
@@ -500,7 +581,7 @@ public class ReplicatedTransactionHandler {
   }
 
   private void finish(FetchID fetch) {
-    state.endEntity(fetch);
+    scheduleDeferred(state.endEntity(fetch));
   }
 
   private void finish(FetchID fetch, int concurrency) {
@@ -572,13 +653,10 @@ public class ReplicatedTransactionHandler {
   }
 
  private class SyncState {
-    private LinkedList<DeferredContainer> defer = new LinkedList<>();
  //  at this point, id based checking is legacy.  Everything should have a fetchid.  TODO: remove
     private final Set<FetchID> syncdFetches = new HashSet<>();
-    private final Set<Integer> syncdKeys = new HashSet<>();
- //  at this point, id based checking is legacy.  Everything should have a fetchid
-    private FetchID syncingFetch = FetchID.NULL_ID;
-    private int currentKey = -1;
+ //  entities currently being synced, the active may stream several at once
+    private final Map<FetchID, EntitySync> syncing = new HashMap<>();
     private boolean finished = false;
     private boolean started = false;
 
@@ -588,50 +666,54 @@ public class ReplicatedTransactionHandler {
 
     private void startEntity(FetchID fetch) {
       assertStarted(null);
-      Assert.assertTrue(syncingFetch.isNull());
-      syncingFetch = fetch;
-// these keys are never sync'd only replicated so add them to the set
-      syncdKeys.add(ConcurrencyStrategy.MANAGEMENT_KEY);
-      syncdKeys.add(ConcurrencyStrategy.UNIVERSAL_KEY);
+      Assert.assertNull(syncing.put(fetch, new EntitySync()));
       LOGGER.debug("Starting " + fetch);
     }
 
-    private void endEntity(FetchID fetch) {
+    private Deque<DeferredContainer> endEntity(FetchID fetch) {
       assertStarted(null);
-      Assert.assertEquals(syncingFetch, fetch);
+      EntitySync entity = syncing.remove(fetch);
+      Assert.assertNotNull(entity);
       syncdFetches.add(fetch);
-      syncdKeys.clear();
-      syncingFetch = FetchID.NULL_ID;
       LOGGER.debug("Ending " + fetch);
+//  anything still held back for this entity can be applied now that it is fully sync'd
+      return entity.defer;
     }
 
     private void startConcurrency(FetchID fetch, int concurrency) {
       assertStarted(null);
-      Assert.assertEquals(syncingFetch, fetch);
-      currentKey = concurrency;
+      EntitySync entity = syncing.get(fetch);
+      Assert.assertNotNull(entity);
+      entity.currentKey = concurrency;
       if (LOGGER.isDebugEnabled()) {
-        LOGGER.debug("Starting " + fetch + "/" + currentKey);
+        LOGGER.debug("Starting " + fetch + "/" + concurrency);
       }
     }
 
     private Deque<DeferredContainer> endConcurrency(FetchID fetch, int concurrency) {
       assertStarted(null);
+      EntitySync entity = syncing.get(fetch);
+      Assert.assertNotNull(entity);
       try {
-        Assert.assertEquals(syncingFetch, fetch);
-        Assert.assertEquals(currentKey, concurrency);
-        syncdKeys.add(concurrency);
-        currentKey = -1;
-        return defer;
+        Assert.assertEquals(entity.currentKey, concurrency);
+        entity.syncdKeys.add(concurrency);
+        entity.currentKey = -1;
+        return entity.defer;
       } finally {
-        defer = new LinkedList<>();
+        entity.defer = new LinkedList<>();
       }
     }
 
     private Deque<DeferredContainer> finish() {
       assertStarted(null);
+      LinkedList<DeferredContainer> remaining = new LinkedList<>();
+      for (EntitySync entity : syncing.values()) {
+        remaining.addAll(entity.defer);
+      }
+      syncing.clear();
       syncdFetches.clear();
       finished = true;
-      return defer;
+      return remaining;
     }
 
     private boolean ignore(SyncReplicationActivity activity) {
@@ -661,9 +743,10 @@ public class ReplicatedTransactionHandler {
 
       SyncReplicationActivity.ActivityType activityType = activity.getActivityType();
 
-      if (fetch.equals(syncingFetch)) {
+      EntitySync entity = syncing.get(fetch);
+      if (entity != null) {
         int concurrencyKey = activity.getConcurrency();
-        if (syncdKeys.contains(concurrencyKey)) {
+        if (entity.syncdKeys.contains(concurrencyKey)) {
           return false;
         } else if (SyncReplicationActivity.ActivityType.CREATE_ENTITY == activityType) {
           return true;
@@ -673,14 +756,14 @@ public class ReplicatedTransactionHandler {
         } else if (SyncReplicationActivity.ActivityType.DESTROY_ENTITY == activityType) {
 //          Assert.fail("destroy received during a sync of an entity " + activity);
           return false;
-        } else if (currentKey == concurrencyKey) {
-          defer.add(new DeferredContainer(activeSender, activity));
+        } else if (entity.currentKey == concurrencyKey) {
+          entity.defer.add(new DeferredContainer(activeSender, activity));
           return true;
         } else if (concurrencyKey == ConcurrencyStrategy.UNIVERSAL_KEY) {
           // if a message comes on the universal key, make sure it lags at least one step by deferrign the
           // operation.  This prevents the invoke from possibly outracing the creation message at the start
           // of sync.  Consider deferring all universal key operations to the end of entity sync.
-          defer.add(new DeferredContainer(activeSender, activity));
+          entity.defer.add(new DeferredContainer(activeSender, activity));
           return true;
         }
       }
@@ -706,6 +789,18 @@ public class ReplicatedTransactionHandler {
     }
   }
 
+  private static class EntitySync {
+    private LinkedList<DeferredContainer> defer = new LinkedList<>();
+    private final Set<Integer> syncdKeys = new HashSet<>();
+    private int currentKey = -1;
+
+    private EntitySync() {
+// these keys are never sync'd only replicated so add them to the set
+      syncdKeys.add(ConcurrencyStrategy.MANAGEMENT_KEY);
+      syncdKeys.add(ConcurrencyStrategy.UNIVERSAL_KEY);
+    }
+  }
+
   public static class BasicServerEntityRequest implements ServerEntityRequest {
     private final ServerEntityAction action;
     private final ClientID source;
@@ -0,0 +1,143 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tc.objectserver.handshakemanager;
+
+import com.tc.net.ClientID;
+import com.tc.text.PrettyPrintable;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounds the number of clients that have been let through the transport handshake but have not yet
+ * been processed by the client handshake stage.  After a failover every client reconnects at once;
+ * clients over the limit are refused at the transport and told to come back after about as long as
+ * a slot has recently been held.  A client that is admitted and never sends its handshake gives up
+ * its slot after the lease expires.
+ */
+public class ClientHandshakeAdmission implements PrettyPrintable {
+
+  private final int limit;
+  private final long leaseNanos;
+  private final LongSupplier clock;
+  private final Map<ClientID, Long> pending = new HashMap<>();
+  private long admitted;
+  private long refused;
+  private long expired;
+  // moving average of how long an admitted client holds its slot
+  private long holdNanos;
+
+  public ClientHandshakeAdmission(int limit, long lease, TimeUnit units) {
+    this(limit, lease, units, System::nanoTime);
+  }
+
+  ClientHandshakeAdmission(int limit, long lease, TimeUnit units, LongSupplier clock) {
+    this.limit = limit;
+    this.leaseNanos = units.toNanos(lease);
+    this.clock = clock;
+  }
+
+  public static ClientHandshakeAdmission unlimited() {
+    return new ClientHandshakeAdmission(0, 0, TimeUnit.MILLISECONDS);
+  }
+
+  public boolean isLimited() {
+    return limit > 0;
+  }
+
+  /**
+   * @return true if the client may continue the handshake, false if it should retry later
+   */
+  public synchronized boolean admit(ClientID client) {
+    if (!isLimited()) {
+      return true;
+    }
+    long now = clock.getAsLong();
+    if (pending.size() >= limit && !pending.containsKey(client)) {
+      expire(now);
+    }
+    if (pending.size() >= limit && !pending.containsKey(client)) {
+      refused++;
+      return false;
+    }
+    pending.put(client, now);
+    admitted++;
+    return true;
+  }
+
+  /**
+   * The client handshake for this client has been processed.
+   */
+  public synchronized void release(ClientID client) {
+    if (isLimited()) {
+      Long start = pending.remove(client);
+      if (start != null) {
+        long held = clock.getAsLong() - start;
+        holdNanos = holdNanos == 0 ? held : (holdNanos * 7 + held) / 8;
+      }
+    }
+  }
+
+  /**
+   * The client was admitted but refused for another reason, its slot is given back without counting how long it was
+   * held.
+   */
+  public synchronized void cancel(ClientID client) {
+    if (isLimited()) {
+      pending.remove(client);
+    }
+  }
+
+  /**
+   * @return milliseconds a client which was refused should wait before trying again, 0 if there is room for it
+   *         or admission is not limited
+   */
+  public synchronized long retryAfter(ClientID client) {
+    if (!isLimited() || pending.size() < limit || pending.containsKey(client)) {
+      return 0;
+    }
+    // until a slot has been given back the lease is the only bound on how long one is held
+    long wait = holdNanos > 0 ? holdNanos : leaseNanos;
+    return Math.max(1, TimeUnit.NANOSECONDS.toMillis(wait));
+  }
+
+  private void expire(long now) {
+    Iterator<Long> times = pending.values().iterator();
+    while (times.hasNext()) {
+      if (now - times.next() >= leaseNanos) {
+        times.remove();
+        expired++;
+      }
+    }
+  }
+
+  @Override
+  public synchronized Map<String, ?> getStateMap() {
+    Map<String, Object> map = new LinkedHashMap<>();
+    map.put("className", this.getClass().getName());
+    map.put("limit", limit);
+    map.put("pending", pending.size());
+    map.put("admitted", admitted);
+    map.put("refused", refused);
+    map.put("expired", expired);
+    map.put("averageHoldMillis", TimeUnit.NANOSECONDS.toMillis(holdNanos));
+    return map;
+  }
+}
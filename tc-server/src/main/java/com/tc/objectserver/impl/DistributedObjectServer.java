@@ -144,6 +144,8 @@ import com.tc.objectserver.handler.ProcessTransactionHandler;
 import com.tc.objectserver.handshakemanager.ServerClientHandshakeManager;
 import com.tc.objectserver.persistence.ClientStatePersistor;
 import com.tc.objectserver.persistence.Persistor;
+import com.tc.objectserver.persistence.FilePlatformStorageProviderConfiguration;
+import com.tc.objectserver.persistence.FilePlatformStorageServiceProvider;
 import com.tc.objectserver.persistence.NullPlatformStorageServiceProvider;
 import com.tc.objectserver.persistence.NullPlatformStorageProviderConfiguration;
 import com.tc.properties.TCProperties;
@@ -188,6 +190,7 @@ import com.tc.text.MapListPrettyPrint;
 import com.tc.net.core.ProductID;
 import java.net.BindException;
 import java.nio.charset.Charset;
+import java.nio.file.Paths;
 import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.Map;
@@ -212,12 +215,14 @@ import com.tc.net.protocol.transport.ConnectionID;
 import com.tc.net.protocol.transport.DisabledHealthCheckerConfigImpl;
 import com.tc.net.protocol.transport.MessageTransport;
 import com.tc.net.protocol.transport.NullConnectionIDFactoryImpl;
+import com.tc.net.protocol.transport.RetryAfterValidator;
 import com.tc.objectserver.handler.ResponseMessage;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import com.tc.objectserver.entity.VoltronMessageSink;
 import com.tc.objectserver.handler.ReplicationReceivingAction;
 import com.tc.objectserver.handler.ReplicationSendingAction;
+import com.tc.objectserver.handshakemanager.ClientHandshakeAdmission;
 import com.tc.objectserver.handshakemanager.ClientHandshakePrettyPrintable;
 import com.tc.objectserver.persistence.NullPersistor;
 import com.tc.spi.DiagnosticFormat;
@@ -291,6 +296,8 @@ public class DistributedObjectServer {
   private final TerracottaServiceProviderRegistryImpl serviceRegistry;
   private WeightGeneratorFactory globalWeightGeneratorFactory;
   private EntityManagerImpl entityManager;
+  private ReplicationSender replicationSender;
+  private ClientHandshakeAdmission handshakeAdmission = ClientHandshakeAdmission.unlimited();
 
   private final CompletableFuture<Void> stopped = new CompletableFuture<>();
 
@@ -376,11 +383,13 @@ public class DistributedObjectServer {
     collectState(this.seda.getStageManager(), pp);
     collectState(this.persistor, pp);
     collectState(this.communicationsManager, pp);
+    collectState(this.handshakeAdmission, pp);
     if (managementContext != null) {
       collectState(new ClientHandshakePrettyPrintable(this.managementContext.getChannelManager().getActiveChannels()), pp);
     }
     collectState(this.groupCommManager, pp);
     collectState(this.l2Coordinator, pp);
+    collectState(this.replicationSender, pp);
     collectState(this.entityManager, pp);
     collectState(this.serviceRegistry, pp);
     collectState(this.managementContext, pp);
@@ -496,10 +505,21 @@ public class DistributedObjectServer {
 
     // See if we need to add an in-memory service for IPlatformPersistence.
     if (!this.serviceRegistry.hasUserProvidedServiceProvider(IPlatformPersistence.class)) {
-      // In this case, we do still need to provide an implementation of IPlatformPersistence, backed by memory, so that entities can request a service which is as persistent as this server is.
-      NullPlatformStorageServiceProvider nullPlatformStorageServiceProvider = new NullPlatformStorageServiceProvider();
-      nullPlatformStorageServiceProvider.initialize(new NullPlatformStorageProviderConfiguration(), platformConfiguration);
-      serviceRegistry.registerExternal(nullPlatformStorageServiceProvider);
+      String persistenceDirectory = tcProperties.getProperty(TCPropertiesConsts.L2_PERSISTENCE_DIRECTORY, true);
+      if (persistenceDirectory != null && !persistenceDirectory.trim().isEmpty()) {
+        // A directory was named so the platform state is kept durably on disk.
+        FilePlatformStorageServiceProvider filePlatformStorageServiceProvider = new FilePlatformStorageServiceProvider();
+        if (!filePlatformStorageServiceProvider.initialize(new FilePlatformStorageProviderConfiguration(Paths.get(persistenceDirectory.trim()),
+            tcProperties.getInt(TCPropertiesConsts.L2_PERSISTENCE_SEGMENT_SIZE, 8 * 1024 * 1024)), platformConfiguration)) {
+          throw new IOException("unable to use persistence directory " + persistenceDirectory);
+        }
+        serviceRegistry.registerExternal(filePlatformStorageServiceProvider);
+      } else {
+        // In this case, we do still need to provide an implementation of IPlatformPersistence, backed by memory, so that entities can request a service which is as persistent as this server is.
+        NullPlatformStorageServiceProvider nullPlatformStorageServiceProvider = new NullPlatformStorageServiceProvider();
+        nullPlatformStorageServiceProvider.initialize(new NullPlatformStorageProviderConfiguration(), platformConfiguration);
+        serviceRegistry.registerExternal(nullPlatformStorageServiceProvider);
+      }
     }
 
     // We want to register our IMonitoringProducer shim.
@@ -602,12 +622,32 @@ public class DistributedObjectServer {
     ConsistencyManager consistencyMgr = createConsistencyManager(configSetupManager, knownPeers, voteCount);
 
     final InetSocketAddress dsoBind = new InetSocketAddress(l2DSOConfig.getTsaPort().getHostString(), l2DSOConfig.getTsaPort().getPort());
+    this.handshakeAdmission = new ClientHandshakeAdmission(tcProperties.getInt(TCPropertiesConsts.L2_L1_HANDSHAKE_ADMISSION_LIMIT, 0),
+        tcProperties.getLong(TCPropertiesConsts.TC_TRANSPORT_HANDSHAKE_TIMEOUT), TimeUnit.MILLISECONDS);
     this.l1Listener = this.communicationsManager.createListener(dsoBind, (MessageChannel c)->!c.getProductID().isReconnectEnabled() || !server.isReconnectWindow(),
-                                                                this.connectionIdFactory, (MessageTransport t)->{
-                                                                  return getContext().getClientHandshakeManager().isStarting()
-                                                                          || t.getConnectionID().getProductId() == ProductID.DIAGNOSTIC
-                                                                          || consistencyMgr.requestTransition(context.getL2Coordinator().getStateManager().getCurrentMode(),
-                                                                                t.getConnectionID().getClientID(), ConsistencyManager.Transition.ADD_CLIENT);
+                                                                this.connectionIdFactory, new RetryAfterValidator() {
+                                                                  @Override
+                                                                  public boolean test(MessageTransport t) {
+                                                                    if (t.getConnectionID().getProductId() == ProductID.DIAGNOSTIC) {
+                                                                      return true;
+                                                                    }
+                                                                    if (!handshakeAdmission.admit(t.getConnectionID().getClientID())) {
+                                                                      return false;
+                                                                    }
+                                                                    boolean valid = getContext().getClientHandshakeManager().isStarting()
+                                                                            || consistencyMgr.requestTransition(context.getL2Coordinator().getStateManager().getCurrentMode(),
+                                                                                  t.getConnectionID().getClientID(), ConsistencyManager.Transition.ADD_CLIENT);
+                                                                    if (!valid) {
+                                                                      handshakeAdmission.cancel(t.getConnectionID().getClientID());
+                                                                    }
+                                                                    return valid;
+                                                                  }
+
+                                                                  @Override
+                                                                  public long retryAfter(MessageTransport refused) {
+                                                                    //  refused transports are answered with no active and told how long to wait
+                                                                    return handshakeAdmission.retryAfter(refused.getConnectionID().getClientID());
+                                                                  }
                                                                 });
     this.l1Diagnostics = createDiagnosticsListener(dsoBind, infoConnections);
 
@@ -747,6 +787,7 @@ public class DistributedObjectServer {
         new GenericHandler<>(), 1);
 //  routing for passive to receive replication
     EventHandler<ReplicationMessage> replicationEvents = null;
+    ReplicatedTransactionHandler replicatedTransactionHandler = null;
     PassiveMessageResultCollector collector = null;
     if (configSetupManager.getRelayPeer() != null) {
       //  if the relay source, route the relay transaction handler
@@ -762,7 +803,7 @@ public class DistributedObjectServer {
       if (collector == null) {
         collector = new PassiveAckSender(groupCommManager, m->!state.isActiveCoordinator(), replicationResponseStage.getSink());
       }
-      ReplicatedTransactionHandler replicatedTransactionHandler = new ReplicatedTransactionHandler(state, this.persistor, entityManager, collector);
+      replicatedTransactionHandler = new ReplicatedTransactionHandler(state, this.persistor, entityManager, collector);
       sequenceWeight.setReplicatedTransactionHandler(replicatedTransactionHandler);
       replicationEvents = replicatedTransactionHandler.getEventHandler();
     }
@@ -794,7 +835,7 @@ public class DistributedObjectServer {
     final Sink<ReplicationSendingAction> replicationSenderFlushStage =
         stageManager.createStage(ServerConfigurationContext.ACTIVE_TO_PASSIVE_DRIVER_FLUSH_STAGE,
                                  ReplicationSendingAction.class, new GenericHandler<>(), max(3, knownPeers)).getSink();
-    ReplicationSender replicationSender = new ReplicationSender(replicationSenderStage, replicationSenderFlushStage, groupCommManager);
+    this.replicationSender = new ReplicationSender(replicationSenderStage, replicationSenderFlushStage, groupCommManager);
     final Sink<ReplicationReceivingAction> replicationReceivingStage =
         stageManager.createStage(ServerConfigurationContext.PASSIVE_TO_ACTIVE_DRIVER_STAGE,
                                  ReplicationReceivingAction.class, new GenericHandler<>(), max(3, knownPeers)).getSink();
@@ -823,6 +864,14 @@ public class DistributedObjectServer {
                 }
                 passives.startPassiveSync(context.messageFrom());
                 break;
+              case ReplicationMessageAck.START_CATCH_UP:
+                try {
+                  l2Coordinator.getReplicatedClusterStateManager().publishClusterState(context.messageFrom());
+                } catch (GroupException ge) {
+                  logger.warn("error syncing state", ge);
+                }
+                passives.startPassiveCatchUp(context.messageFrom(), context.getLastActivity());
+                break;
               default:
                 throw new AssertionError("bad message " + context);
           }
@@ -836,6 +885,9 @@ public class DistributedObjectServer {
     GroupEventsDispatchHandler dispatchHandler = new GroupEventsDispatchHandler();
     dispatchHandler.addListener(this.l2Coordinator);
     dispatchHandler.addListener(passives);
+    if (replicatedTransactionHandler != null) {
+      dispatchHandler.addListener(requestCatchUpOnRejoin(replicatedTransactionHandler, replicationStage.getSink()));
+    }
 
     Stage<GroupEvent> groupEvents = stageManager.createStage(ServerConfigurationContext.GROUP_EVENTS_DISPATCH_STAGE, GroupEvent.class, dispatchHandler, 1);
     this.groupCommManager.registerForGroupEvents(dispatchHandler.createDispatcher(groupEvents.getSink()));
@@ -1100,6 +1152,29 @@ public class DistributedObjectServer {
     return control;
   }
 
+  /**
+   * When the active a passive was replicating from rejoins, a catch up request is queued behind whatever is still
+   * waiting to be applied from the stream which was lost.
+   */
+  private GroupEventsListener requestCatchUpOnRejoin(ReplicatedTransactionHandler handler, Sink<ReplicationMessage> replication) {
+    return new GroupEventsListener() {
+      @Override
+      public void nodeJoined(NodeID nodeID) {
+        if (handler.isStreamSource(nodeID)) {
+          try {
+            replication.addToSink(ReplicationMessage.createLocalContainer(SyncReplicationActivity.createLocalCatchUpRequest()));
+          } catch (IllegalStateException state) {
+//  ignore, the replication stage is not running in this state
+          }
+        }
+      }
+
+      @Override
+      public void nodeLeft(NodeID nodeID) {
+      }
+    };
+  }
+
   private GroupEventsListener connectPassiveEvents(Sink<PlatformInfoRequest> infoHandler, LocalMonitoringProducer monitoringShimService) {
     return new GroupEventsListener() {
 
@@ -1362,7 +1437,7 @@ public class DistributedObjectServer {
   }
 
   protected ClientHandshakeHandler createHandShakeHandler(EntityManager entities, ProcessTransactionHandler processTransactionHandler, VersionCompatibility versionCheck) {
-    return new ClientHandshakeHandler(entities, processTransactionHandler, versionCheck);
+    return new ClientHandshakeHandler(entities, processTransactionHandler, versionCheck, handshakeAdmission);
   }
 
   // for tests only
@@ -1429,6 +1504,11 @@ public class DistributedObjectServer {
         throw new UnsupportedOperationException("Not supported yet.");
       }
 
+      @Override
+      public void requestPassiveCatchUp(NodeID target, long lastActivity) {
+        throw new UnsupportedOperationException("Not supported yet.");
+      }
+
       @Override
       public ServerEntityRequest transform(SyncReplicationActivity activity) {
         SyncReplicationActivity.ActivityType activityType = activity.getActivityType();
@@ -17,13 +17,18 @@
  */
 package com.tc.objectserver.persistence;
 
+import com.tc.io.TCByteBufferInput;
+import com.tc.io.TCByteBufferOutput;
 import com.tc.net.ClientID;
 import com.tc.objectserver.api.ClientNotFoundException;
 import com.tc.util.Assert;
 import com.tc.net.core.ProductID;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
 import com.tc.util.sequence.MutableSequence;
 
 import java.io.IOException;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -33,33 +38,72 @@ import java.util.stream.Collectors;
 import org.terracotta.persistence.IPlatformPersistence;
 
 
+/**
+ * Persists the clients known to the server and the sequence used to give out client IDs.
+ * <p>
+ * Client IDs are leased from storage a block at a time so that only one allocation per block waits on a write.  On
+ * restart the sequence resumes at the end of the last leased block, skipping whatever was leased but never handed out.
+ * Adding or removing a client appends one small change record, the clients map is only rewritten once enough changes
+ * have built up.
+ */
 public class ClientStatePersistor {
   private static final String CLIENTS_MAP_FILE_NAME =  "clients_map.map";
   private static final String NEXT_CLIENT_ID_FILE_NAME =  "next_client_id.dat";
+  // the first change record not already folded into the stored clients map
+  private static final String CLIENTS_DELTA_BASE_FILE_NAME = "clients_delta_base.dat";
+  private static final String DELTA_FILE_PREFIX = "clients_delta_";
   
   
   private final IPlatformPersistence storageManager;
   private final ConcurrentHashMap<ClientID, Boolean> clients;
   private final MutableSequence clientIDSequence;
+  private final int checkpointInterval;
+  private long deltaBase;
+  private long nextDelta;
   
-  @SuppressWarnings("unchecked")
   public ClientStatePersistor(IPlatformPersistence storageManager) {
+    this(storageManager,
+        TCPropertiesImpl.getProperties().getInt(TCPropertiesConsts.L2_PERSISTENCE_CLIENTID_BLOCK, 64),
+        TCPropertiesImpl.getProperties().getInt(TCPropertiesConsts.L2_PERSISTENCE_CLIENTS_CHECKPOINT, 1024));
+  }
+
+  @SuppressWarnings("unchecked")
+  ClientStatePersistor(IPlatformPersistence storageManager, int idBlock, int checkpointInterval) {
     this.storageManager = storageManager;
+    this.checkpointInterval = Math.max(1, checkpointInterval);
     
     ConcurrentHashMap<ClientID, Boolean> clientsMap = null;
+    boolean legacy;
     try {
-      clientsMap = (ConcurrentHashMap<ClientID, Boolean>) this.storageManager.loadDataElement(CLIENTS_MAP_FILE_NAME);
+      Serializable stored = this.storageManager.loadDataElement(CLIENTS_MAP_FILE_NAME);
+      legacy = PersistentStateCodec.isLegacy(stored);
+      clientsMap = legacy ? (ConcurrentHashMap<ClientID, Boolean>) stored : PersistentStateCodec.decode(stored, PersistentStateCodec::readClients);
       if (null == clientsMap) {
         clientsMap = new ConcurrentHashMap<>();
       }
+      Long base = (Long) this.storageManager.loadDataElement(CLIENTS_DELTA_BASE_FILE_NAME);
+      this.deltaBase = (null != base) ? base : 0L;
+      long next = this.deltaBase;
+      for (ClientDelta delta = loadDelta(next); delta != null; delta = loadDelta(++next)) {
+        delta.applyTo(clientsMap);
+      }
+      this.nextDelta = next;
     } catch (IOException e) {
       // We don't expect this during startup so just throw it as runtime.
       throw new RuntimeException("Failure reading ClientStatePersistor data", e);
     }
     this.clients = clientsMap;
+    // A checkpoint interrupted after storing the base can leave the changes it covered behind.
+    for (long stale = this.deltaBase - 1; stale >= 0 && safeLoadDelta(stale) != null; stale--) {
+      safeStore(deltaName(stale), null);
+    }
+    if (legacy) {
+      // rewrite the java serialized map in the compact encoding
+      storeClients();
+    }
     // orphaned clients are not supposed to reconnect on restart.  since we are repopulating 
     // restart data, set aside the orphaned clients
-    this.clientIDSequence = new Sequence(this.storageManager);
+    this.clientIDSequence = new Sequence(this.storageManager, idBlock);
     Assert.assertNotNull(this.clients);
   }
 
@@ -67,6 +111,14 @@ public class ClientStatePersistor {
     return clientIDSequence;
   }
 
+  /**
+   * The number of client IDs leased from storage at once.  A server that was active before a restart may have stored
+   * up to one block more than the IDs it handed out, so a newly activated server moves its next ID at least this far.
+   */
+  public int getConnectionIDBlock() {
+    return ((Sequence)clientIDSequence).block;
+  }
+
   public Set<ClientID> loadOrphanClientIDs() {
     return clients.entrySet().stream().filter(entry->!entry.getValue()).map((entry)->entry.getKey()).collect(Collectors.toSet());
   }
@@ -83,19 +135,19 @@ public class ClientStatePersistor {
     return clients.containsKey(id);
   }
 
-  public void saveClientState(ClientID channelID, ProductID product) {
+  public synchronized void saveClientState(ClientID channelID, ProductID product) {
     // if the client is in the orphaned set, do not add it to the saved list because 
     // it should never connect again.  this can happen if the ConnectionIDFactory services
     // a connection before the existing clients are loaded into the reconnect window
     clients.put(channelID, product.isPermanent());
-    safeStoreClients();
+    record(new ClientDelta(channelID, product.isPermanent()));
   }
 
-  public void deleteClientState(ClientID id) throws ClientNotFoundException {
+  public synchronized void deleteClientState(ClientID id) throws ClientNotFoundException {
     if (clients.remove(id) == null) {
       throw new ClientNotFoundException();
     }
-    safeStoreClients();
+    record(new ClientDelta(id, null));
   }
 
   Map<String, Object> reportStateToMap(Map<String, Object> map) {
@@ -106,26 +158,106 @@ public class ClientStatePersistor {
       cs.add(clientID.toString());
     }
     map.put("next", clientIDSequence.current());
+    synchronized (this) {
+      map.put("deltasSinceCheckpoint", this.nextDelta - this.deltaBase);
+    }
 
     return map;
   }
-  
-  private void safeStoreClients() {
+
+  private void record(ClientDelta delta) {
+    safeStore(deltaName(this.nextDelta), PersistentStateCodec.encode(delta::writeTo));
+    this.nextDelta += 1;
+    if (this.nextDelta - this.deltaBase >= this.checkpointInterval) {
+      // the base goes last, until it is stored a restart replays the changes over whichever map made it to disk
+      storeClients();
+      long folded = this.deltaBase;
+      this.deltaBase = this.nextDelta;
+      safeStore(CLIENTS_DELTA_BASE_FILE_NAME, this.deltaBase);
+      for (long seq = folded; seq < this.deltaBase; seq++) {
+        safeStore(deltaName(seq), null);
+      }
+    }
+  }
+
+  private void storeClients() {
+    safeStore(CLIENTS_MAP_FILE_NAME, PersistentStateCodec.encode(out -> PersistentStateCodec.writeClients(out, this.clients)));
+  }
+
+  private ClientDelta loadDelta(long seq) throws IOException {
+    return PersistentStateCodec.decode(this.storageManager.loadDataElement(deltaName(seq)), ClientDelta::readFrom);
+  }
+
+  private ClientDelta safeLoadDelta(long seq) {
     try {
-      this.storageManager.storeDataElement(CLIENTS_MAP_FILE_NAME, this.clients);
+      return loadDelta(seq);
+    } catch (IOException e) {
+      // We don't expect this during startup so just throw it as runtime.
+      throw new RuntimeException("Failure reading ClientStatePersistor data", e);
+    }
+  }
+
+  private void safeStore(String name, Serializable element) {
+    try {
+      this.storageManager.storeDataElement(name, element);
     } catch (IOException e) {
       // Not expected during run.
       Assert.fail(e.getLocalizedMessage());
     }
   }
 
+  private static String deltaName(long seq) {
+    return DELTA_FILE_PREFIX + seq;
+  }
+
+  /**
+   * A client added to or removed from the clients map.
+   */
+  private static class ClientDelta {
+    private static final byte REMOVED = 0;
+    private static final byte ADDED = 1;
+    private static final byte ADDED_PERMANENT = 2;
+
+    private final ClientID client;
+    // null when the client was removed
+    private final Boolean permanent;
+
+    ClientDelta(ClientID client, Boolean permanent) {
+      this.client = client;
+      this.permanent = permanent;
+    }
+
+    static ClientDelta readFrom(TCByteBufferInput in) throws IOException {
+      ClientID client = new ClientID(in.readLong());
+      byte state = in.readByte();
+      return new ClientDelta(client, state == REMOVED ? null : Boolean.valueOf(state == ADDED_PERMANENT));
+    }
+
+    void writeTo(TCByteBufferOutput out) {
+      out.writeLong(client.toLong());
+      out.writeByte(permanent == null ? REMOVED : permanent ? ADDED_PERMANENT : ADDED);
+    }
+
+    void applyTo(Map<ClientID, Boolean> clients) {
+      if (permanent == null) {
+        clients.remove(client);
+      } else {
+        clients.put(client, permanent);
+      }
+    }
+  }
+
 
   private static class Sequence implements MutableSequence {
     private final IPlatformPersistence storageManager;
+    private final int block;
     private long next;
+    // every ID below this has been made durable as possibly handed out
+    private long leased;
 
-    Sequence(IPlatformPersistence storageManager) {
+    Sequence(IPlatformPersistence storageManager, int block) {
       this.storageManager = storageManager;
+      this.block = Math.max(1, block);
       long nextID = 0;
       try {
         Long nextInStorage = (Long) this.storageManager.loadDataElement(NEXT_CLIENT_ID_FILE_NAME);
@@ -136,23 +268,32 @@ public class ClientStatePersistor {
         // We don't expect this during startup so just throw it as runtime.
         throw new RuntimeException("Failure reading ClientStatePersistor next client ID", e);
       }
+      // anything leased before a restart may have been handed out so start after all of it
       this.next = nextID;
+      this.leased = nextID;
     }
 
+    /**
+     * Activation and passive sync store the exact value rather than a lease.  The stored value is the election weight
+     * after a restart so a lagging passive must not be rounded up to the same lease as the active.  Activation passes a
+     * value a full block ahead so it also outweighs the lease a stale active left behind.  Every ID handed out is below
+     * the new value so nothing is reused.
+     */
     @Override
     public synchronized void setNext(long next) {
       if (next < this.next) {
         throw new AssertionError("next=" + next + " current=" + this.next);
       }
       this.next = next;
-      storeNextID();
+      this.leased = next;
+      storeLeased();
     }
 
     @Override
     public synchronized long next() {
       long r = next;
       next += 1;
-      storeNextID();
+      lease();
       return r;
     }
 
@@ -161,9 +302,16 @@ public class ClientStatePersistor {
       return next;
     }
     
-    private void storeNextID() {
+    private void lease() {
+      if (next > leased) {
+        leased = next + block - 1;
+        storeLeased();
+      }
+    }
+
+    private void storeLeased() {
       try {
-        this.storageManager.storeDataElement(NEXT_CLIENT_ID_FILE_NAME, this.next);
+        this.storageManager.storeDataElement(NEXT_CLIENT_ID_FILE_NAME, this.leased);
       } catch (IOException e) {
         // We don't expect this during startup so just throw it as runtime.
         throw new RuntimeException("Failure storing ClientStatePersistor next client ID", e);
@@ -19,6 +19,7 @@ package com.tc.objectserver.persistence;
 
 import com.tc.l2.state.ServerMode;
 import com.tc.l2.state.StateManager;
+import com.tc.net.ServerID;
 
 /**
  *
@@ -45,5 +46,10 @@ public class ClusterPersistentState implements ServerPersistentState {
   public ServerMode getInitialMode() {
     return StateManager.convert(persistor.getInitialState());
   }
+
+  @Override
+  public ServerID getResumeSource() {
+    return persistor.getResumeSource();
+  }
   
 }
@@ -18,10 +18,13 @@
 package com.tc.objectserver.persistence;
 
 import com.tc.l2.state.StateManager;
+import com.tc.net.ServerID;
 import com.tc.net.StripeID;
 import com.tc.util.State;
 import com.tc.util.version.Version;
 import java.io.IOException;
+import java.io.Serializable;
+import java.util.Base64;
 import java.util.HashMap;
 import java.util.Map;
 import org.terracotta.persistence.IPlatformPersistence;
@@ -33,6 +36,9 @@ public class ClusterStatePersistor {
   private static final String L2_STATE_KEY = "l2state";
   private static final String STRIPE_ID_KEY = "stripeid";
   private static final String VERSION_KEY = "version";
+  private static final String RESUME_SOURCE_NAME_KEY = "resume.source.name";
+  private static final String RESUME_SOURCE_UID_KEY = "resume.source.uid";
+  private static final String RESUME_ACTIVITY_KEY = "resume.activity";
 
   private final IPlatformPersistence storageManager;
   private final HashMap<String, String> map;
@@ -42,14 +48,21 @@ public class ClusterStatePersistor {
   public ClusterStatePersistor(IPlatformPersistence storageManager) {
     this.storageManager = storageManager;
     HashMap<String, String> map = null;
+    boolean legacy;
     try {
-      map = (HashMap<String, String>) this.storageManager.loadDataElement(MAP_FILE_NAME);
+      Serializable stored = this.storageManager.loadDataElement(MAP_FILE_NAME);
+      legacy = PersistentStateCodec.isLegacy(stored);
+      map = legacy ? (HashMap<String, String>) stored : PersistentStateCodec.decode(stored, PersistentStateCodec::readStrings);
     } catch (IOException e) {
       // We don't expect this during startup so just throw it as runtime.
       throw new RuntimeException("Failure reading ClusterStatePersistor map file", e);
     }
     this.map = (null != map) ? map : new HashMap<String, String>();
     this.initialState = getCurrentL2State();
+    if (legacy) {
+      // rewrite the java serialized map in the compact encoding
+      store();
+    }
   }
 
   public void setStripeID(StripeID stripeID) {
@@ -95,6 +108,43 @@ public class ClusterStatePersistor {
     putAndStore(DB_CLEAN_KEY, String.valueOf(dbClean));
   }
 
+  /**
+   * Records the active a passive was replicating from and the last activity it applied so the passive can ask that
+   * same active to catch it up after a restart.
+   */
+  public synchronized void setResumePoint(ServerID source, long lastActivity) {
+    this.map.put(RESUME_SOURCE_NAME_KEY, source.getName());
+    this.map.put(RESUME_SOURCE_UID_KEY, Base64.getEncoder().encodeToString(source.getUID()));
+    this.map.put(RESUME_ACTIVITY_KEY, String.valueOf(lastActivity));
+    store();
+  }
+
+  /**
+   * @return the active recorded with the resume point or ServerID.NULL_ID if there is none
+   */
+  public ServerID getResumeSource() {
+    String name = map.get(RESUME_SOURCE_NAME_KEY);
+    String uid = map.get(RESUME_SOURCE_UID_KEY);
+    return name == null || uid == null ? ServerID.NULL_ID : new ServerID(name, Base64.getDecoder().decode(uid));
+  }
+
+  /**
+   * @return the last activity recorded with the resume point or -1 if there is none
+   */
+  public long getResumeActivity() {
+    String s = map.get(RESUME_ACTIVITY_KEY);
+    return s == null ? -1 : Long.parseLong(s);
+  }
+
+  public synchronized void clearResumePoint() {
+    boolean removed = this.map.remove(RESUME_SOURCE_NAME_KEY) != null;
+    removed |= this.map.remove(RESUME_SOURCE_UID_KEY) != null;
+    removed |= this.map.remove(RESUME_ACTIVITY_KEY) != null;
+    if (removed) {
+      store();
+    }
+  }
+
   public void clear() {
     map.clear();
     initialState = null;
@@ -111,8 +161,12 @@ public class ClusterStatePersistor {
   // This isn't called from different threads but we can easily synchronize around the putAndStore.
   private synchronized void putAndStore(String key, String value) {
     this.map.put(key, value);
+    store();
+  }
+
+  private synchronized void store() {
     try {
-      this.storageManager.storeDataElement(MAP_FILE_NAME, this.map);
+      this.storageManager.storeDataElement(MAP_FILE_NAME, PersistentStateCodec.encode(out -> PersistentStateCodec.writeStrings(out, this.map)));
     } catch (IOException e) {
       // In general, we have no way of solving this problem so throw it.
       throw new RuntimeException("Failure storing ClusterStatePersistor map file", e);
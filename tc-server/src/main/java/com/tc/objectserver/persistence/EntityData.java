@@ -17,7 +17,9 @@
  */
 package com.tc.objectserver.persistence;
 
+import com.tc.net.ClientID;
 import java.io.Serializable;
+import java.util.HashSet;
 
 
 
@@ -86,4 +88,38 @@ public class EntityData {
       return "JournalEntry{" + "operation=" + operation + ", transactionID=" + transactionID + '}';
     }
   }
+
+  public static enum Change implements Serializable {
+    ENTITY_PUT,
+    ENTITY_REMOVE,
+    JOURNAL,
+    TRACK_CLIENT,
+    UNTRACK_CLIENT,
+    RETAIN_CLIENTS,
+  }
+
+  /**
+   * A single change appended to the delta journal between checkpoints of the entity and journal maps.  Only the fields
+   * used by the change are set.  Any change may also carry the journal entry for the client transaction which caused it.
+   */
+  public static class Delta implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public Change change;
+    // ENTITY_PUT and ENTITY_REMOVE
+    public Key key;
+    // ENTITY_PUT only
+    public Value value;
+    // TRACK_CLIENT, UNTRACK_CLIENT and the owner of entry
+    public ClientID clientID;
+    public long oldestTransactionOnClient;
+    public JournalEntry entry;
+    // RETAIN_CLIENTS only
+    public HashSet<ClientID> clients;
+
+    @Override
+    public String toString() {
+      return "Delta{" + "change=" + change + ", clientID=" + clientID + ", entry=" + entry + '}';
+    }
+  }
 }
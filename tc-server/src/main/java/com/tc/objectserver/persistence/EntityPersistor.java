@@ -24,14 +24,19 @@ import com.tc.object.EntityID;
 import com.tc.objectserver.persistence.EntityData.JournalEntry;
 import com.tc.objectserver.persistence.EntityData.Key;
 import com.tc.objectserver.persistence.EntityData.Value;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
 import com.tc.util.Assert;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.ObjectInput;
-import java.io.ObjectOutput;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -45,6 +50,10 @@ import org.terracotta.persistence.IPlatformPersistence;
 
 /**
  * Stores the information relating to the entities currently alive on the platform into persistent storage.
+ * <p>
+ * Each lifecycle change is written as one small {@link EntityData.Delta} data element rather than rewriting the entity
+ * and journal maps.  Once enough deltas have built up the maps are checkpointed and the deltas they cover are dropped.
+ * On restart the checkpoint is loaded and the remaining deltas are replayed over it in order.
  */
 public class EntityPersistor {
   private static final Logger LOGGER = LoggerFactory.getLogger(EntityPersistor.class);
@@ -53,6 +62,9 @@ public class EntityPersistor {
   private static final String JOURNAL_CONTAINER_FILE_NAME = "journal_container.map";
   private static final String COUNTERS_FILE_NAME = "counters.map";
   private static final String COUNTERS_CONSUMER_ID = "counters:consumerID";
+  // the first delta not already folded into the checkpointed maps
+  private static final String COUNTERS_DELTA_BASE = "counters:deltaBase";
+  private static final String DELTA_FILE_PREFIX = "entity_delta_";
 
   private final IPlatformPersistence storageManager;
   private final HashMap<EntityData.Key, EntityData.Value> entities;
@@ -60,21 +72,50 @@ public class EntityPersistor {
   private final HashMap<ClientID, List<EntityData.JournalEntry>> entityLifeJournal;
   private final HashMap<String, Long> counters;
   private final Map<EntityID, PermanentEntityResult> result = new ConcurrentHashMap<>();
+  private final int checkpointInterval;
+  private long deltaBase;
+  private long nextDelta;
 
-  @SuppressWarnings({ "unchecked" })
   public EntityPersistor(IPlatformPersistence storageManager) {
+    this(storageManager, TCPropertiesImpl.getProperties().getInt(TCPropertiesConsts.L2_PERSISTENCE_ENTITY_CHECKPOINT, 1024));
+  }
+
+  @SuppressWarnings({ "unchecked" })
+  EntityPersistor(IPlatformPersistence storageManager, int checkpointInterval) {
     this.storageManager = storageManager;
+    this.checkpointInterval = Math.max(1, checkpointInterval);
     try {
-      HashMap<EntityData.Key, EntityData.Value> entities = (HashMap<Key, Value>) this.storageManager.loadDataElement(ENTITIES_ALIVE_FILE_NAME);
+      Serializable stored = this.storageManager.loadDataElement(ENTITIES_ALIVE_FILE_NAME);
+      boolean legacy = PersistentStateCodec.isLegacy(stored);
+      HashMap<EntityData.Key, EntityData.Value> entities = legacy ? (HashMap<Key, Value>) stored : PersistentStateCodec.decode(stored, PersistentStateCodec::readEntities);
       this.entities = (null != entities) ? entities : new HashMap<>();
-      HashMap<ClientID, List<EntityData.JournalEntry>> entityLifeJournal = (HashMap<ClientID, List<JournalEntry>>) this.storageManager.loadDataElement(JOURNAL_CONTAINER_FILE_NAME);
+      stored = this.storageManager.loadDataElement(JOURNAL_CONTAINER_FILE_NAME);
+      legacy |= PersistentStateCodec.isLegacy(stored);
+      HashMap<ClientID, List<EntityData.JournalEntry>> entityLifeJournal = PersistentStateCodec.isLegacy(stored) ? (HashMap<ClientID, List<JournalEntry>>) stored : PersistentStateCodec.decode(stored, PersistentStateCodec::readJournal);
       this.entityLifeJournal = (null != entityLifeJournal) ? entityLifeJournal : new HashMap<>();
-      HashMap<String, Long> counters = (HashMap<String, Long>) this.storageManager.loadDataElement(COUNTERS_FILE_NAME);
+      stored = this.storageManager.loadDataElement(COUNTERS_FILE_NAME);
+      legacy |= PersistentStateCodec.isLegacy(stored);
+      HashMap<String, Long> counters = PersistentStateCodec.isLegacy(stored) ? (HashMap<String, Long>) stored : PersistentStateCodec.decode(stored, PersistentStateCodec::readCounters);
       this.counters = (null != counters) ? counters : new HashMap<>();
       // Make sure that the consumerID is initialized to 1 (0 reserved for platform).
       if (!this.counters.containsKey(COUNTERS_CONSUMER_ID)) {
         this.counters.put(COUNTERS_CONSUMER_ID, Long.valueOf(1L));
       }
+      this.deltaBase = this.counters.getOrDefault(COUNTERS_DELTA_BASE, 0L);
+      long next = this.deltaBase;
+      for (EntityData.Delta delta = loadDelta(next); delta != null; delta = loadDelta(++next)) {
+        apply(delta);
+      }
+      this.nextDelta = next;
+      LOGGER.debug("replayed " + (this.nextDelta - this.deltaBase) + " entity deltas");
+      // A checkpoint interrupted after storing the counters can leave the deltas it covered behind.
+      for (long stale = this.deltaBase - 1; stale >= 0 && loadDelta(stale) != null; stale--) {
+        storeToDisk(deltaName(stale), null);
+      }
+      if (legacy) {
+        LOGGER.info("rewriting java serialized entity state in the compact encoding");
+        checkpoint();
+      }
     } catch (IOException e) {
       // We don't expect this during startup so just throw it as runtime.
       throw new RuntimeException("Failure reading EntityPersistor map files", e);
@@ -88,6 +129,10 @@ public class EntityPersistor {
     if (!this.counters.containsKey(COUNTERS_CONSUMER_ID)) {
       this.counters.put(COUNTERS_CONSUMER_ID, Long.valueOf(1L));
     }
+    // The deltas go first, newest first, so an interrupted clear can't leave any behind for a replay from zero.
+    for (long seq = this.nextDelta - 1; seq >= this.deltaBase; seq--) {
+      storeToDisk(deltaName(seq), null);
+    }
     // We can destroy the backing for these objects.
     try {
       this.storageManager.storeDataElement(ENTITIES_ALIVE_FILE_NAME, null);
@@ -97,16 +142,14 @@ public class EntityPersistor {
       // In general, we have no way of solving this problem so throw it.
       throw new RuntimeException("Failure storing EntityPersistor map files", e);
     }
+    this.deltaBase = 0;
+    this.nextDelta = 0;
   }
   
   public synchronized void clearEntityClientJournal() {
     this.entityLifeJournal.clear();
-    try {
-      this.storageManager.storeDataElement(JOURNAL_CONTAINER_FILE_NAME, null);
-    } catch (IOException e) {
-      // In general, we have no way of solving this problem so throw it.
-      throw new RuntimeException("Failure storing EntityPersistor map files", e);
-    }
+    // fold in the pending deltas so a replay can't bring back any of the journal
+    checkpoint();
   }
 
   public synchronized Collection<EntityData.Value> loadEntityData() {
@@ -161,15 +204,16 @@ public class EntityPersistor {
     LOGGER.debug("entityCreated " + clientID + " " + transactionID + " " + id + " " + version);
     Assert.assertTrue(canDelete);
     Assert.assertFalse(clientID.isNull());
-    addNewEntityToMap(id, version, consumerID, canDelete, configuration);
+    EntityData.Delta delta = newEntityDelta(id, version, consumerID, canDelete, configuration);
     
     // Record this in the journal - null error on success.
-    addToJournal(clientID, transactionID, oldestTransactionOnClient, EntityData.Operation.CREATE, null, null);
+    journalDelta(delta, clientID, transactionID, oldestTransactionOnClient, EntityData.Operation.CREATE, null, null);
+    record(delta);
   }
   
   public synchronized void entityCreatedNoJournal(EntityID id, long version, long consumerID, boolean canDelete, byte[] configuration) {
     LOGGER.debug("entityCreatedNoJournal " + id);
-    addNewEntityToMap(id, version, consumerID, canDelete, configuration);
+    record(newEntityDelta(id, version, consumerID, canDelete, configuration));
     if (!canDelete) {
       permanentEntityCreated(id, consumerID, null);
     }
@@ -211,13 +255,17 @@ public class EntityPersistor {
     key.className = id.getClassName();
     key.entityName = id.getEntityName();
     Assert.assertTrue(this.entities.containsKey(key) || this.deletes.containsKey(key));
+    EntityData.Delta delta = new EntityData.Delta();
     if (this.deletes.remove(key) == null) {
-      this.entities.remove(key);
+      delta.change = EntityData.Change.ENTITY_REMOVE;
+      delta.key = key;
+    } else {
+      delta.change = EntityData.Change.JOURNAL;
     }
-    storeToDisk(ENTITIES_ALIVE_FILE_NAME, this.entities);
     
     // Record this in the journal - null error on success.
-    addToJournal(clientID, transactionID, oldestTransactionOnClient, EntityData.Operation.DESTROY, null, null);
+    journalDelta(delta, clientID, transactionID, oldestTransactionOnClient, EntityData.Operation.DESTROY, null, null);
+    record(delta);
   }
 
   public synchronized byte[] reconfiguredResultInJournal(EntityID eid, ClientID clientID, long transactionID) throws ServerException {
@@ -263,11 +311,14 @@ public class EntityPersistor {
     val.configuration = configuration;
     Assert.assertEquals(version, val.version);
     
-    this.entities.put(key, val);
-    storeToDisk(ENTITIES_ALIVE_FILE_NAME, this.entities);
+    EntityData.Delta delta = new EntityData.Delta();
+    delta.change = EntityData.Change.ENTITY_PUT;
+    delta.key = key;
+    delta.value = val;
     
     // Record this in the journal.
-    addToJournal(clientID, transactionID, oldestTransactionOnClient, EntityData.Operation.RECONFIGURE, previousConfiguration, null);
+    journalDelta(delta, clientID, transactionID, oldestTransactionOnClient, EntityData.Operation.RECONFIGURE, previousConfiguration, null);
+    record(delta);
     
     // Return what we over-wrote.
     return previousConfiguration;
@@ -276,7 +327,7 @@ public class EntityPersistor {
   public synchronized long getNextConsumerID() {
     long consumerID = this.counters.get(COUNTERS_CONSUMER_ID);
     this.counters.put(COUNTERS_CONSUMER_ID, Long.valueOf(consumerID + 1));
-    storeToDisk(COUNTERS_FILE_NAME, this.counters);
+    storeCounters();
     return consumerID;
   }
 
@@ -284,19 +335,22 @@ public class EntityPersistor {
     long checkID = this.counters.get(COUNTERS_CONSUMER_ID);
     if (consumerID >= checkID) {
       this.counters.put(COUNTERS_CONSUMER_ID, Long.valueOf(consumerID + 1));
-      storeToDisk(COUNTERS_FILE_NAME, this.counters);
+      storeCounters();
     }
   }
   
   public synchronized void addTrackingForClient(ClientID sourceNodeID) {
-    if (this.entityLifeJournal.putIfAbsent(sourceNodeID, new ArrayList<>()) == null) {
-      storeToDisk(JOURNAL_CONTAINER_FILE_NAME, this.entityLifeJournal);
-    }
+    EntityData.Delta delta = new EntityData.Delta();
+    delta.change = EntityData.Change.TRACK_CLIENT;
+    delta.clientID = sourceNodeID;
+    record(delta);
   }
   
   public synchronized void removeTrackingForClient(ClientID sourceNodeID) {
-    this.entityLifeJournal.remove(sourceNodeID);
-    storeToDisk(JOURNAL_CONTAINER_FILE_NAME, this.entityLifeJournal);
+    EntityData.Delta delta = new EntityData.Delta();
+    delta.change = EntityData.Change.UNTRACK_CLIENT;
+    delta.clientID = sourceNodeID;
+    record(delta);
   }
 
   public void reportStateToMap(Map<String, Object> map) {
@@ -322,6 +376,7 @@ public class EntityPersistor {
     }
 
     map.put("nextConsumerID", this.counters.get(COUNTERS_CONSUMER_ID));
+    map.put("deltasSinceCheckpoint", this.nextDelta - this.deltaBase);
   }
   
   private List<JournalEntry> filterJournal(List<JournalEntry> list, long oldestTransactionOnClient) {
@@ -335,22 +390,39 @@ public class EntityPersistor {
     return newList;
   }
 
-  private void addToJournal(ClientID clientID, long transactionID, long oldestTransactionOnClient, EntityData.Operation operation, byte[] reconfigureResult, ServerException error) {
+  private void journalDelta(EntityData.Delta delta, ClientID clientID, long transactionID, long oldestTransactionOnClient, EntityData.Operation operation, byte[] reconfigureResult, ServerException error) {
     if (!clientID.isNull()) {
-      List<EntityData.JournalEntry> rawJournal = this.entityLifeJournal.get(clientID);
-      // If the list is not here, the client has already left the custer, don't bother saving the result
-      if (rawJournal != null) {
-        List<EntityData.JournalEntry> clientJournal = filterJournal(rawJournal, oldestTransactionOnClient);
-        JournalEntry newEntry = new JournalEntry();
-        newEntry.operation = operation;
-        newEntry.transactionID = transactionID;
-        newEntry.failure = error;
-        newEntry.reconfigureResponse = reconfigureResult;
+      JournalEntry newEntry = new JournalEntry();
+      newEntry.operation = operation;
+      newEntry.transactionID = transactionID;
+      newEntry.failure = error;
+      newEntry.reconfigureResponse = reconfigureResult;
+      delta.clientID = clientID;
+      delta.oldestTransactionOnClient = oldestTransactionOnClient;
+      delta.entry = newEntry;
+    }
+  }
+
+  private void addToJournal(ClientID clientID, long transactionID, long oldestTransactionOnClient, EntityData.Operation operation, byte[] reconfigureResult, ServerException error) {
+    EntityData.Delta delta = new EntityData.Delta();
+    delta.change = EntityData.Change.JOURNAL;
+    journalDelta(delta, clientID, transactionID, oldestTransactionOnClient, operation, reconfigureResult, error);
+    record(delta);
+  }
+
+  private boolean addToJournal(ClientID clientID, long oldestTransactionOnClient, JournalEntry newEntry) {
+    List<EntityData.JournalEntry> rawJournal = this.entityLifeJournal.get(clientID);
+    // If the list is not here, the client has already left the custer, don't bother saving the result
+    if (rawJournal != null) {
+      List<EntityData.JournalEntry> clientJournal = filterJournal(rawJournal, oldestTransactionOnClient);
+      // a delta replayed over a checkpoint which was stored after it may already be there
+      if (findEntry(clientJournal, newEntry.transactionID) == null) {
         clientJournal.add(newEntry);
-        this.entityLifeJournal.put(clientID, clientJournal);
-        storeToDisk(JOURNAL_CONTAINER_FILE_NAME, this.entityLifeJournal);
       }
+      this.entityLifeJournal.put(clientID, clientJournal);
+      return true;
     }
+    return false;
   }
 
   private JournalEntry getEntryForTransaction(ClientID clientID, long transactionID) {
@@ -359,17 +431,21 @@ public class EntityPersistor {
     // Note that we may not know anything about this client.
     LOGGER.debug("checking " + clientID + " " + clientJournal);
     if (null != clientJournal) {
-      for (JournalEntry entry : clientJournal) {
-        if (entry.transactionID == transactionID) {
-          foundEntry = entry;
-          break;
-        }
-      }
+      foundEntry = findEntry(clientJournal, transactionID);
     }
     return foundEntry;
   }
 
-  private void addNewEntityToMap(EntityID id, long version, long consumerID, boolean canDelete, byte[] configuration) {
+  private static JournalEntry findEntry(List<JournalEntry> clientJournal, long transactionID) {
+    for (JournalEntry entry : clientJournal) {
+      if (entry.transactionID == transactionID) {
+        return entry;
+      }
+    }
+    return null;
+  }
+
+  private EntityData.Delta newEntityDelta(EntityID id, long version, long consumerID, boolean canDelete, byte[] configuration) {
     String className = id.getClassName();
     String entityName = id.getEntityName();
     
@@ -383,11 +459,14 @@ public class EntityPersistor {
     value.canDelete = canDelete;
     value.entityName = entityName;
     value.configuration = configuration;
-    EntityData.Value previous = this.entities.put(key, value);
-    if (previous != null) {
+    if (this.entities.containsKey(key)) {
       deletes.put(key, value);
     }
-    storeToDisk(ENTITIES_ALIVE_FILE_NAME, this.entities);
+    EntityData.Delta delta = new EntityData.Delta();
+    delta.change = EntityData.Change.ENTITY_PUT;
+    delta.key = key;
+    delta.value = value;
+    return delta;
   }
   
   private void permanentEntityCreated(EntityID id, long consumerid, Exception e) {
@@ -401,54 +480,162 @@ public class EntityPersistor {
   }
   
   public synchronized void removeOrphanedClientsFromJournal(Set<ClientID> connectedClients) {
-    this.entityLifeJournal.entrySet().removeIf(e->!connectedClients.contains(e.getKey()));
-    storeToDisk(JOURNAL_CONTAINER_FILE_NAME, this.entityLifeJournal);
+    EntityData.Delta delta = new EntityData.Delta();
+    delta.change = EntityData.Change.RETAIN_CLIENTS;
+    delta.clients = new HashSet<>(connectedClients);
+    record(delta);
   }
   
-  public synchronized void serialize(ObjectOutput bucket) throws IOException {
-    Set<ClientID> locals = this.entityLifeJournal.keySet();
-    int size = locals.size();
-    bucket.writeInt(size);
-    for (ClientID local : locals) {
-      bucket.writeObject(local);
-      bucket.writeObject(this.entityLifeJournal.get(local));
+  /**
+   * @param compact write the compact encoding, which passives older than this server can't layer
+   * @return the client journals and next consumer ID for syncing a passive, to be applied there with {@link #layer(byte[])}
+   */
+  public synchronized byte[] serialize(boolean compact) {
+    if (compact) {
+      return PersistentStateCodec.encode(out -> {
+        PersistentStateCodec.writeJournal(out, this.entityLifeJournal);
+        out.writeLong(this.counters.get(COUNTERS_CONSUMER_ID));
+      });
     }
-    bucket.writeLong(this.counters.get(COUNTERS_CONSUMER_ID));
-  }  
-  
-  public synchronized void layer(ObjectInput bucket) throws IOException {
-    try {
-      int size = bucket.readInt();
-      LOGGER.debug("log size " + size);
-      for (int x=0;x<size;x++) {
-        ClientID key = (ClientID)bucket.readObject();
-        @SuppressWarnings("unchecked")
-        List<EntityData.JournalEntry> journal = (List<EntityData.JournalEntry>)bucket.readObject();
-        List<EntityData.JournalEntry> check = this.entityLifeJournal.get(key);
-        if (check == null) {
-          this.entityLifeJournal.put(key, journal);
-          LOGGER.debug(key + " putting " + journal);
-        } else {
-          int pos = 0;
-          for (JournalEntry je : journal) {
-            while (pos < check.size() && check.get(pos).transactionID < je.transactionID) {
-              pos += 1;
-            }
-            if (pos == check.size() || check.get(pos).transactionID != je.transactionID) {
-              check.add(pos, je);
-            }
+    ByteArrayOutputStream raw = new ByteArrayOutputStream();
+    try (ObjectOutputStream bucket = new ObjectOutputStream(raw)) {
+      bucket.writeInt(this.entityLifeJournal.size());
+      for (Map.Entry<ClientID, List<JournalEntry>> journal : this.entityLifeJournal.entrySet()) {
+        bucket.writeObject(journal.getKey());
+        bucket.writeObject(journal.getValue());
+      }
+      bucket.writeLong(this.counters.get(COUNTERS_CONSUMER_ID));
+    } catch (IOException ioe) {
+      throw new RuntimeException("Failure serializing the entity journal for sync", ioe);
+    }
+    return raw.toByteArray();
+  }
+
+  public synchronized void layer(byte[] data) throws IOException {
+    Map<ClientID, List<JournalEntry>> journals;
+    long nextConsumer;
+    if (PersistentStateCodec.isEncoded(data)) {
+      long[] consumer = new long[1];
+      journals = PersistentStateCodec.decode(data, in -> {
+        HashMap<ClientID, List<JournalEntry>> read = PersistentStateCodec.readJournal(in);
+        consumer[0] = in.readLong();
+        return read;
+      });
+      nextConsumer = consumer[0];
+    } else {
+      // java serialized by an active which predates the compact encoding
+      try (ObjectInputStream bucket = new ObjectInputStream(new ByteArrayInputStream(data))) {
+        journals = new LinkedHashMap<>();
+        int size = bucket.readInt();
+        for (int x=0;x<size;x++) {
+          ClientID key = (ClientID)bucket.readObject();
+          @SuppressWarnings("unchecked")
+          List<EntityData.JournalEntry> journal = (List<EntityData.JournalEntry>)bucket.readObject();
+          journals.put(key, journal);
+        }
+        nextConsumer = bucket.readLong();
+      } catch (ClassNotFoundException cnf) {
+        throw new IOException(cnf);
+      }
+    }
+    LOGGER.debug("log size " + journals.size());
+    for (Map.Entry<ClientID, List<JournalEntry>> layered : journals.entrySet()) {
+      ClientID key = layered.getKey();
+      List<EntityData.JournalEntry> journal = layered.getValue();
+      List<EntityData.JournalEntry> check = this.entityLifeJournal.get(key);
+      if (check == null) {
+        this.entityLifeJournal.put(key, journal);
+        LOGGER.debug(key + " putting " + journal);
+      } else {
+        int pos = 0;
+        for (JournalEntry je : journal) {
+          while (pos < check.size() && check.get(pos).transactionID < je.transactionID) {
+            pos += 1;
+          }
+          if (pos == check.size() || check.get(pos).transactionID != je.transactionID) {
+            check.add(pos, je);
           }
-          LOGGER.debug(key + " layering " + journal + " " + check);
-          this.entityLifeJournal.put(key, check);
         }
+        LOGGER.debug(key + " layering " + journal + " " + check);
+        this.entityLifeJournal.put(key, check);
       }
-    } catch (ClassNotFoundException cnf) {
-      throw new IOException(cnf);
     }
-    storeToDisk(JOURNAL_CONTAINER_FILE_NAME, this.entityLifeJournal);
-    long nextConsumer = bucket.readLong();
     this.counters.put(COUNTERS_CONSUMER_ID, nextConsumer);
-    storeToDisk(COUNTERS_FILE_NAME, this.counters);
+    checkpoint();
+  }
+
+  /**
+   * Applies the change to the in-memory maps, used both as changes are made and when replaying them on restart.
+   * @return true if the maps changed
+   */
+  private boolean apply(EntityData.Delta delta) {
+    boolean changed;
+    switch (delta.change) {
+      case ENTITY_PUT:
+        this.entities.put(delta.key, delta.value);
+        changed = true;
+        break;
+      case ENTITY_REMOVE:
+        changed = this.entities.remove(delta.key) != null;
+        break;
+      case TRACK_CLIENT:
+        changed = this.entityLifeJournal.putIfAbsent(delta.clientID, new ArrayList<>()) == null;
+        break;
+      case UNTRACK_CLIENT:
+        changed = this.entityLifeJournal.remove(delta.clientID) != null;
+        break;
+      case RETAIN_CLIENTS:
+        changed = this.entityLifeJournal.keySet().retainAll(delta.clients);
+        break;
+      case JOURNAL:
+        changed = false;
+        break;
+      default:
+        throw new AssertionError("unknown change " + delta.change);
+    }
+    if (delta.entry != null) {
+      changed |= addToJournal(delta.clientID, delta.oldestTransactionOnClient, delta.entry);
+    }
+    return changed;
+  }
+
+  private void record(EntityData.Delta delta) {
+    if (apply(delta)) {
+      storeToDisk(deltaName(this.nextDelta), PersistentStateCodec.encode(out -> PersistentStateCodec.writeDelta(out, delta)));
+      this.nextDelta += 1;
+      if (this.nextDelta - this.deltaBase >= this.checkpointInterval) {
+        checkpoint();
+      }
+    }
+  }
+
+  private void checkpoint() {
+    storeToDisk(ENTITIES_ALIVE_FILE_NAME, PersistentStateCodec.encode(out -> PersistentStateCodec.writeEntities(out, this.entities)));
+    storeToDisk(JOURNAL_CONTAINER_FILE_NAME, this.entityLifeJournal.isEmpty() ? null : PersistentStateCodec.encode(out -> PersistentStateCodec.writeJournal(out, this.entityLifeJournal)));
+    // The counters go last, until they are stored a restart replays the deltas over whichever maps made it to disk.
+    long folded = this.deltaBase;
+    this.deltaBase = this.nextDelta;
+    this.counters.put(COUNTERS_DELTA_BASE, this.deltaBase);
+    storeCounters();
+    dropDeltas(folded, this.deltaBase);
+  }
+
+  private void storeCounters() {
+    storeToDisk(COUNTERS_FILE_NAME, PersistentStateCodec.encode(out -> PersistentStateCodec.writeCounters(out, this.counters)));
+  }
+
+  private void dropDeltas(long from, long to) {
+    for (long seq = from; seq < to; seq++) {
+      storeToDisk(deltaName(seq), null);
+    }
+  }
+
+  private EntityData.Delta loadDelta(long seq) throws IOException {
+    return PersistentStateCodec.decode(this.storageManager.loadDataElement(deltaName(seq)), PersistentStateCodec::readDelta);
+  }
+
+  private static String deltaName(long seq) {
+    return DELTA_FILE_PREFIX + seq;
   }
 
   private void storeToDisk(String dataName, Serializable dataElement) {
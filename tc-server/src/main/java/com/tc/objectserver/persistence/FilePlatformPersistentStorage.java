@@ -0,0 +1,156 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tc.objectserver.persistence;
+
+import org.terracotta.entity.StateDumpCollector;
+import org.terracotta.entity.StateDumpable;
+import org.terracotta.persistence.IPlatformPersistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.nio.channels.FileChannel;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * Durable {@link IPlatformPersistence} rooted in a directory.  Data elements are written one per file and replaced
+ * atomically with a rename.  Sequences go to a {@link SequenceLog} where concurrent writers are made durable by a shared
+ * group commit.
+ */
+public class FilePlatformPersistentStorage implements IPlatformPersistence, StateDumpable, Closeable {
+  static final String DATA_SUFFIX = ".dat";
+  private static final String TEMP_SUFFIX = ".tmp";
+  private static final String SEQUENCE_DIRECTORY = "sequences";
+
+  private final Path directory;
+  private final SequenceLog sequences;
+
+  public FilePlatformPersistentStorage(Path directory, int segmentSize) throws IOException {
+    this.directory = directory;
+    Files.createDirectories(directory);
+    this.sequences = new SequenceLog(directory.resolve(SEQUENCE_DIRECTORY), segmentSize);
+  }
+
+  @Override
+  public Serializable loadDataElement(String name) throws IOException {
+    return loadDataElementInLoader(name, ClassLoader.getSystemClassLoader());
+  }
+
+  @Override
+  public Serializable loadDataElementInLoader(String name, ClassLoader loader) throws IOException {
+    byte[] data;
+    try {
+      data = Files.readAllBytes(directory.resolve(name + DATA_SUFFIX));
+    } catch (NoSuchFileException notfound) {
+      return null;
+    }
+    try (ObjectInputStream in = new LoaderObjectInputStream(new ByteArrayInputStream(data), loader)) {
+      return (Serializable)in.readObject();
+    } catch (ClassNotFoundException cnf) {
+      throw new IOException(cnf);
+    }
+  }
+
+  @Override
+  public void storeDataElement(String name, Serializable element) throws IOException {
+    Path target = directory.resolve(name + DATA_SUFFIX);
+    if (null == element) {
+      Files.deleteIfExists(target);
+      return;
+    }
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(element);
+    }
+//  write and sync a temporary copy then rename it over the original so a crash leaves either the old or the new element
+    Path temp = directory.resolve(name + TEMP_SUFFIX);
+    try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      channel.force(true);
+    }
+    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  @Override
+  public Future<Void> fastStoreSequence(long sequenceIndex, SequenceTuple newEntry, long oldestValidSequenceID) {
+    return sequences.append(sequenceIndex, newEntry, oldestValidSequenceID);
+  }
+
+  @Override
+  public List<SequenceTuple> loadSequence(long sequenceIndex) throws IOException {
+    return sequences.load(sequenceIndex);
+  }
+
+  @Override
+  public void deleteSequence(long sequenceIndex) throws IOException {
+    sequences.delete(sequenceIndex);
+  }
+
+  @Override
+  public void close() throws IOException {
+    sequences.close();
+  }
+
+  @Override
+  public void addStateTo(StateDumpCollector stateDumpCollector) {
+    stateDumpCollector.addState("directory", directory.toString());
+    stateDumpCollector.addState("sequenceSegments", sequences.segmentCount());
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + DATA_SUFFIX)) {
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        stateDumpCollector.addState("key", name.substring(0, name.length() - DATA_SUFFIX.length()));
+      }
+    } catch (IOException ioe) {
+      stateDumpCollector.addState("error", ioe.getMessage());
+    }
+  }
+
+  private static class LoaderObjectInputStream extends ObjectInputStream {
+    private final ClassLoader loader;
+
+    LoaderObjectInputStream(InputStream in, ClassLoader loader) throws IOException {
+      super(in);
+      this.loader = loader;
+    }
+
+    @Override
+    protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+      try {
+        return Class.forName(desc.getName(), false, loader);
+      } catch (ClassNotFoundException cnf) {
+        return super.resolveClass(desc);
+      }
+    }
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tc.objectserver.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terracotta.entity.PlatformConfiguration;
+import org.terracotta.entity.ServiceConfiguration;
+import org.terracotta.entity.ServiceProvider;
+import org.terracotta.entity.ServiceProviderConfiguration;
+import org.terracotta.entity.ServiceProviderCleanupException;
+import org.terracotta.entity.StateDumpCollector;
+import org.terracotta.entity.StateDumpable;
+import org.terracotta.persistence.IPlatformPersistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+
+/**
+ * Closed by the service registry when the server shuts down, which stops the committer threads and unmaps the
+ * segments of every storage it handed out.
+ */
+public class FilePlatformStorageServiceProvider implements ServiceProvider, StateDumpable, Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FilePlatformStorageServiceProvider.class);
+    private final Map<Long, FilePlatformPersistentStorage> providers = new ConcurrentHashMap<>();
+    private Path root;
+    private int segmentSize;
+
+    @Override
+    public boolean initialize(ServiceProviderConfiguration serviceProviderConfiguration, PlatformConfiguration platformConfiguration) {
+        FilePlatformStorageProviderConfiguration config = (FilePlatformStorageProviderConfiguration)serviceProviderConfiguration;
+        this.root = config.getRoot();
+        this.segmentSize = config.getSegmentSize();
+        try {
+            Files.createDirectories(root);
+        } catch (IOException ioe) {
+            LOGGER.error("unable to create persistence directory {}", root, ioe);
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public <T> T getService(long entityID, ServiceConfiguration<T> serviceConfiguration) {
+        FilePlatformPersistentStorage storage = providers.computeIfAbsent(entityID, id -> {
+            try {
+                return new FilePlatformPersistentStorage(root.resolve(String.valueOf(id)), segmentSize);
+            } catch (IOException ioe) {
+                throw new UncheckedIOException(ioe);
+            }
+        });
+        return serviceConfiguration.getServiceType().cast(storage);
+    }
+
+    @Override
+    public Collection<Class<?>> getProvidedServiceTypes() {
+      return Collections.singleton(IPlatformPersistence.class);
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (FilePlatformPersistentStorage storage : providers.values()) {
+            storage.close();
+        }
+        providers.clear();
+    }
+
+    @Override
+    public void prepareForSynchronization() throws ServiceProviderCleanupException {
+        try {
+            close();
+//  a passive about to sync starts from nothing, the active sends everything it needs
+            try (Stream<Path> files = Files.walk(root)) {
+                files.sorted(Comparator.reverseOrder()).filter(p -> !p.equals(root)).forEach(p -> {
+                    try {
+                        Files.delete(p);
+                    } catch (IOException ioe) {
+                        throw new UncheckedIOException(ioe);
+                    }
+                });
+            }
+        } catch (IOException | UncheckedIOException e) {
+            throw new ServiceProviderCleanupException("unable to clear persistence directory " + root, e);
+        }
+    }
+
+    @Override
+    public void addStateTo(StateDumpCollector stateDumpCollector) {
+        for (Map.Entry<Long, FilePlatformPersistentStorage> entry : providers.entrySet()) {
+            entry.getValue().addStateTo(stateDumpCollector.subStateDumpCollector(String.valueOf(entry.getKey())));
+        }
+    }
+}
@@ -0,0 +1,358 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tc.objectserver.persistence;
+
+import com.tc.bytes.TCByteBuffer;
+import com.tc.bytes.TCByteBufferFactory;
+import com.tc.bytes.TCReference;
+import com.tc.io.TCByteBufferInput;
+import com.tc.io.TCByteBufferInputStream;
+import com.tc.io.TCByteBufferOutput;
+import com.tc.io.TCByteBufferOutputStream;
+import com.tc.net.ClientID;
+import com.tc.objectserver.persistence.EntityData.JournalEntry;
+import com.tc.util.Assert;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Compact binary encoding of the platform state kept by the persistors.  Every encoding starts with a marker byte and a
+ * format version and is stored as a plain byte array, so the only java serialization left is that of the array itself.
+ * <p>
+ * Data elements written before this encoding existed hold the java serialized objects directly.  Callers check
+ * {@link #isLegacy(Serializable)} and use the stored object as it is, rewriting it in this encoding on first start.
+ */
+final class PersistentStateCodec {
+  // java serialization streams always start with 0xACED so they can't be mistaken for this encoding
+  private static final byte MAGIC = 0x7C;
+  private static final byte VERSION = 1;
+
+  private static final int HAS_KEY = 1;
+  private static final int HAS_VALUE = 2;
+  private static final int HAS_CLIENT = 4;
+  private static final int HAS_ENTRY = 8;
+  private static final int HAS_CLIENTS = 16;
+
+  private PersistentStateCodec() {}
+
+  interface Reader<T> {
+    T read(TCByteBufferInput in) throws IOException;
+  }
+
+  static byte[] encode(Consumer<TCByteBufferOutput> body) {
+    TCByteBufferOutputStream out = new TCByteBufferOutputStream();
+    out.writeByte(MAGIC);
+    out.writeByte(VERSION);
+    body.accept(out);
+    out.close();
+    byte[] data = new byte[out.getBytesWritten()];
+    int idx = 0;
+    try (TCReference ref = out.accessBuffers()) {
+      for (TCByteBuffer buf : ref) {
+        int length = buf.limit();
+        buf.get(data, idx, length);
+        idx += length;
+      }
+    }
+    Assert.assertEquals(idx, data.length);
+    return data;
+  }
+
+  static boolean isEncoded(byte[] data) {
+    return data.length >= 2 && data[0] == MAGIC;
+  }
+
+  /**
+   * @return true if the element was stored before this encoding existed
+   */
+  static boolean isLegacy(Serializable stored) {
+    return stored != null && !(stored instanceof byte[]);
+  }
+
+  /**
+   * @return null if nothing was stored
+   */
+  static <T> T decode(Serializable stored, Reader<T> reader) throws IOException {
+    if (stored == null) {
+      return null;
+    }
+    byte[] data = (byte[]) stored;
+    if (!isEncoded(data)) {
+      throw new IOException("unrecognized persistent state encoding");
+    }
+    try (TCByteBufferInputStream in = new TCByteBufferInputStream(TCByteBufferFactory.wrap(data))) {
+      in.readByte();
+      byte version = in.readByte();
+      if (version != VERSION) {
+        throw new IOException("unsupported persistent state version " + version);
+      }
+      return reader.read(in);
+    }
+  }
+
+  static void writeEntities(TCByteBufferOutput out, Map<EntityData.Key, EntityData.Value> entities) {
+    out.writeInt(entities.size());
+    // the key is the class and entity name which the value already holds
+    for (EntityData.Value value : entities.values()) {
+      writeValue(out, value);
+    }
+  }
+
+  static HashMap<EntityData.Key, EntityData.Value> readEntities(TCByteBufferInput in) throws IOException {
+    int size = in.readInt();
+    HashMap<EntityData.Key, EntityData.Value> entities = new HashMap<>(size * 4 / 3 + 1);
+    for (int x = 0; x < size; x++) {
+      EntityData.Value value = readValue(in);
+      entities.put(keyOf(value), value);
+    }
+    return entities;
+  }
+
+  static void writeJournal(TCByteBufferOutput out, Map<ClientID, List<JournalEntry>> journal) {
+    out.writeInt(journal.size());
+    for (Map.Entry<ClientID, List<JournalEntry>> client : journal.entrySet()) {
+      out.writeLong(client.getKey().toLong());
+      writeJournalEntries(out, client.getValue());
+    }
+  }
+
+  static HashMap<ClientID, List<JournalEntry>> readJournal(TCByteBufferInput in) throws IOException {
+    int size = in.readInt();
+    HashMap<ClientID, List<JournalEntry>> journal = new HashMap<>(size * 4 / 3 + 1);
+    for (int x = 0; x < size; x++) {
+      ClientID client = new ClientID(in.readLong());
+      journal.put(client, readJournalEntries(in));
+    }
+    return journal;
+  }
+
+  static void writeJournalEntries(TCByteBufferOutput out, List<JournalEntry> entries) {
+    out.writeInt(entries.size());
+    for (JournalEntry entry : entries) {
+      writeJournalEntry(out, entry);
+    }
+  }
+
+  static List<JournalEntry> readJournalEntries(TCByteBufferInput in) throws IOException {
+    int size = in.readInt();
+    List<JournalEntry> entries = new ArrayList<>(size);
+    for (int x = 0; x < size; x++) {
+      entries.add(readJournalEntry(in));
+    }
+    return entries;
+  }
+
+  static void writeCounters(TCByteBufferOutput out, Map<String, Long> counters) {
+    out.writeInt(counters.size());
+    for (Map.Entry<String, Long> counter : counters.entrySet()) {
+      out.writeString(counter.getKey());
+      out.writeLong(counter.getValue());
+    }
+  }
+
+  static HashMap<String, Long> readCounters(TCByteBufferInput in) throws IOException {
+    int size = in.readInt();
+    HashMap<String, Long> counters = new HashMap<>();
+    for (int x = 0; x < size; x++) {
+      counters.put(in.readString(), in.readLong());
+    }
+    return counters;
+  }
+
+  static void writeStrings(TCByteBufferOutput out, Map<String, String> map) {
+    out.writeInt(map.size());
+    for (Map.Entry<String, String> entry : map.entrySet()) {
+      out.writeString(entry.getKey());
+      out.writeString(entry.getValue());
+    }
+  }
+
+  static HashMap<String, String> readStrings(TCByteBufferInput in) throws IOException {
+    int size = in.readInt();
+    HashMap<String, String> map = new HashMap<>();
+    for (int x = 0; x < size; x++) {
+      map.put(in.readString(), in.readString());
+    }
+    return map;
+  }
+
+  static void writeClients(TCByteBufferOutput out, Map<ClientID, Boolean> clients) {
+    out.writeInt(clients.size());
+    for (Map.Entry<ClientID, Boolean> client : clients.entrySet()) {
+      out.writeLong(client.getKey().toLong());
+      out.writeBoolean(client.getValue());
+    }
+  }
+
+  static ConcurrentHashMap<ClientID, Boolean> readClients(TCByteBufferInput in) throws IOException {
+    int size = in.readInt();
+    ConcurrentHashMap<ClientID, Boolean> clients = new ConcurrentHashMap<>(size * 4 / 3 + 1);
+    for (int x = 0; x < size; x++) {
+      clients.put(new ClientID(in.readLong()), in.readBoolean());
+    }
+    return clients;
+  }
+
+  static void writeDelta(TCByteBufferOutput out, EntityData.Delta delta) {
+    out.writeByte(delta.change.ordinal());
+    int fields = (delta.key != null ? HAS_KEY : 0) | (delta.value != null ? HAS_VALUE : 0)
+        | (delta.clientID != null ? HAS_CLIENT : 0) | (delta.entry != null ? HAS_ENTRY : 0)
+        | (delta.clients != null ? HAS_CLIENTS : 0);
+    out.writeByte(fields);
+    if (delta.value != null) {
+      // the key of a put always matches its value
+      writeValue(out, delta.value);
+    } else if (delta.key != null) {
+      out.writeString(delta.key.className);
+      out.writeString(delta.key.entityName);
+    }
+    if (delta.clientID != null) {
+      out.writeLong(delta.clientID.toLong());
+      out.writeLong(delta.oldestTransactionOnClient);
+    }
+    if (delta.entry != null) {
+      writeJournalEntry(out, delta.entry);
+    }
+    if (delta.clients != null) {
+      out.writeInt(delta.clients.size());
+      for (ClientID client : delta.clients) {
+        out.writeLong(client.toLong());
+      }
+    }
+  }
+
+  static EntityData.Delta readDelta(TCByteBufferInput in) throws IOException {
+    EntityData.Delta delta = new EntityData.Delta();
+    delta.change = EntityData.Change.values()[in.readByte()];
+    int fields = in.readByte();
+    if ((fields & HAS_VALUE) != 0) {
+      delta.value = readValue(in);
+      delta.key = keyOf(delta.value);
+    } else if ((fields & HAS_KEY) != 0) {
+      delta.key = new EntityData.Key();
+      delta.key.className = in.readString();
+      delta.key.entityName = in.readString();
+    }
+    if ((fields & HAS_CLIENT) != 0) {
+      delta.clientID = new ClientID(in.readLong());
+      delta.oldestTransactionOnClient = in.readLong();
+    }
+    if ((fields & HAS_ENTRY) != 0) {
+      delta.entry = readJournalEntry(in);
+    }
+    if ((fields & HAS_CLIENTS) != 0) {
+      int size = in.readInt();
+      delta.clients = new HashSet<>();
+      for (int x = 0; x < size; x++) {
+        delta.clients.add(new ClientID(in.readLong()));
+      }
+    }
+    return delta;
+  }
+
+  private static void writeValue(TCByteBufferOutput out, EntityData.Value value) {
+    out.writeString(value.className);
+    out.writeString(value.entityName);
+    out.writeLong(value.version);
+    out.writeLong(value.consumerID);
+    out.writeBoolean(value.canDelete);
+    writeBytes(out, value.configuration);
+  }
+
+  private static EntityData.Value readValue(TCByteBufferInput in) throws IOException {
+    EntityData.Value value = new EntityData.Value();
+    value.className = in.readString();
+    value.entityName = in.readString();
+    value.version = in.readLong();
+    value.consumerID = in.readLong();
+    value.canDelete = in.readBoolean();
+    value.configuration = readBytes(in);
+    return value;
+  }
+
+  private static EntityData.Key keyOf(EntityData.Value value) {
+    EntityData.Key key = new EntityData.Key();
+    key.className = value.className;
+    key.entityName = value.entityName;
+    return key;
+  }
+
+  private static void writeJournalEntry(TCByteBufferOutput out, JournalEntry entry) {
+    out.writeByte(entry.operation.ordinal());
+    out.writeLong(entry.transactionID);
+    writeBytes(out, entry.reconfigureResponse);
+    // failures are rare and can be any exception so they keep java serialization
+    writeBytes(out, entry.failure == null ? null : serializeFailure(entry.failure));
+  }
+
+  private static JournalEntry readJournalEntry(TCByteBufferInput in) throws IOException {
+    JournalEntry entry = new JournalEntry();
+    entry.operation = EntityData.Operation.values()[in.readByte()];
+    entry.transactionID = in.readLong();
+    entry.reconfigureResponse = readBytes(in);
+    byte[] failure = readBytes(in);
+    if (failure != null) {
+      try (ObjectInputStream objects = new ObjectInputStream(new ByteArrayInputStream(failure))) {
+        entry.failure = (Exception) objects.readObject();
+      } catch (ClassNotFoundException cnf) {
+        throw new IOException(cnf);
+      }
+    }
+    return entry;
+  }
+
+  private static byte[] serializeFailure(Exception failure) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream objects = new ObjectOutputStream(bytes)) {
+      objects.writeObject(failure);
+    } catch (IOException ioe) {
+      throw new RuntimeException("Failure serializing journal entry", ioe);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static void writeBytes(TCByteBufferOutput out, byte[] data) {
+    if (data == null) {
+      out.writeInt(-1);
+    } else {
+      out.writeInt(data.length);
+      out.write(data);
+    }
+  }
+
+  private static byte[] readBytes(TCByteBufferInput in) throws IOException {
+    int length = in.readInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] data = new byte[length];
+    in.readFully(data);
+    return data;
+  }
+}
@@ -18,6 +18,7 @@
 package com.tc.objectserver.persistence;
 
 import com.tc.l2.state.ServerMode;
+import com.tc.net.ServerID;
 
 /**
  *
@@ -38,4 +39,9 @@ public class RelayPersistentState implements ServerPersistentState {
   public ServerMode getInitialMode() {
     return ServerMode.RELAY;
   }
+
+  @Override
+  public ServerID getResumeSource() {
+    return ServerID.NULL_ID;
+  }
 }
@@ -0,0 +1,435 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tc.objectserver.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terracotta.persistence.IPlatformPersistence.SequenceTuple;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of sequence tuples kept in a chain of memory-mapped segment files.  Writers append fixed size records
+ * and get a future which is completed by a single commit thread once the pages holding the record have been forced to
+ * disk, so any number of concurrent writers share one fsync.
+ * <p>
+ * When a segment fills, the live tuples are written to the head of the next segment between checkpoint markers and once
+ * that checkpoint is durable all of the older segments are deleted.  Tuples which were discarded by an
+ * oldestValidSequenceID never make it into a checkpoint so the log only ever holds live data plus one segment of history.
+ */
+class SequenceLog implements Closeable {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SequenceLog.class);
+
+  static final int RECORD_SIZE = 40;
+  private static final int BODY_OFFSET = 8;
+
+  private static final int APPEND = 1;
+  private static final int DELETE = 2;
+  private static final int CHECKPOINT_BEGIN = 3;
+  private static final int CHECKPOINT_END = 4;
+
+  private static final String SEGMENT_PREFIX = "sequence-";
+  private static final String SEGMENT_SUFFIX = ".log";
+
+  private final Path directory;
+  private final int segmentSize;
+  private final Map<Long, LinkedList<SequenceTuple>> sequences = new HashMap<>();
+  private final Deque<Segment> segments = new ArrayDeque<>();
+  private final ByteBuffer scratch = ByteBuffer.allocate(RECORD_SIZE - BODY_OFFSET + 4);
+  private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+  private final CRC32 crc = new CRC32();
+  private final Object forceLock = new Object();
+  private final Thread committer;
+
+  private Segment current;
+  private List<CompletableFuture<Void>> pending = new ArrayList<>();
+  private Set<Segment> dirty = new LinkedHashSet<>();
+  private boolean closed = false;
+
+  SequenceLog(Path directory, int segmentSize) throws IOException {
+    this.directory = directory;
+    this.segmentSize = Math.max(segmentSize, RECORD_SIZE * 16) / RECORD_SIZE * RECORD_SIZE;
+    Files.createDirectories(directory);
+    recover();
+    synchronized (this) {
+//  always start with a compacted segment so a restart never replays more than it has to
+      roll();
+    }
+    this.committer = new Thread(this::commitLoop, "SequenceLog committer - " + directory.getFileName());
+    this.committer.setDaemon(true);
+    this.committer.start();
+  }
+
+  synchronized Future<Void> append(long sequenceIndex, SequenceTuple newEntry, long oldestValidSequenceID) {
+    try {
+      checkOpen();
+      write(APPEND, sequenceIndex, newEntry.localSequenceID, newEntry.globalSequenceID, oldestValidSequenceID);
+      apply(sequences, sequenceIndex, newEntry.localSequenceID, newEntry.globalSequenceID, oldestValidSequenceID);
+      return enqueue();
+    } catch (IOException ioe) {
+      CompletableFuture<Void> failed = new CompletableFuture<>();
+      failed.completeExceptionally(ioe);
+      return failed;
+    }
+  }
+
+  void delete(long sequenceIndex) throws IOException {
+    Future<Void> done;
+    synchronized (this) {
+      checkOpen();
+      if (!sequences.containsKey(sequenceIndex)) {
+        return;
+      }
+      write(DELETE, sequenceIndex, 0L, 0L, 0L);
+      sequences.remove(sequenceIndex);
+      done = enqueue();
+    }
+    await(done);
+  }
+
+  synchronized List<SequenceTuple> load(long sequenceIndex) {
+    LinkedList<SequenceTuple> sequence = sequences.get(sequenceIndex);
+    if (sequence == null) {
+      return null;
+    }
+    List<SequenceTuple> copy = new ArrayList<>(sequence.size());
+    for (SequenceTuple tuple : sequence) {
+      copy.add(tuple(tuple.localSequenceID, tuple.globalSequenceID));
+    }
+    return copy;
+  }
+
+  synchronized int segmentCount() {
+    return segments.size();
+  }
+
+  @Override
+  public void close() throws IOException {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      notifyAll();
+    }
+    try {
+      committer.join();
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+    }
+    synchronized (this) {
+      for (Segment segment : segments) {
+        segment.close();
+      }
+      segments.clear();
+    }
+  }
+
+  private void checkOpen() throws IOException {
+    if (closed) {
+      throw new IOException("sequence log at " + directory + " is closed");
+    }
+  }
+
+  private CompletableFuture<Void> enqueue() {
+    CompletableFuture<Void> done = new CompletableFuture<>();
+    pending.add(done);
+    dirty.add(current);
+    if (pending.size() == 1) {
+      notifyAll();
+    }
+    return done;
+  }
+
+  private void commitLoop() {
+    while (true) {
+      List<CompletableFuture<Void>> batch;
+      Set<Segment> toForce;
+      synchronized (this) {
+        while (pending.isEmpty() && !closed) {
+          try {
+            wait();
+          } catch (InterruptedException ie) {
+            // keep committing until closed
+          }
+        }
+        if (pending.isEmpty()) {
+          return;
+        }
+        batch = pending;
+        toForce = dirty;
+        pending = new ArrayList<>();
+        dirty = new LinkedHashSet<>();
+      }
+      Throwable failure = null;
+      synchronized (forceLock) {
+        for (Segment segment : toForce) {
+          try {
+            segment.force();
+          } catch (RuntimeException | IOException e) {
+            failure = e;
+          }
+        }
+      }
+      for (CompletableFuture<Void> done : batch) {
+        if (failure == null) {
+          done.complete(null);
+        } else {
+          done.completeExceptionally(failure);
+        }
+      }
+    }
+  }
+
+  private void write(int type, long index, long local, long global, long oldest) throws IOException {
+    if (current.remaining() < RECORD_SIZE) {
+      roll();
+    }
+    current.put(record(type, index, local, global, oldest));
+  }
+
+  private ByteBuffer record(int type, long index, long local, long global, long oldest) {
+    record.clear();
+    record.putInt(type).putInt(checksum(type, index, local, global, oldest)).putLong(index).putLong(local).putLong(global).putLong(oldest);
+    record.flip();
+    return record;
+  }
+
+  private int checksum(int type, long index, long local, long global, long oldest) {
+    scratch.clear();
+    scratch.putInt(type).putLong(index).putLong(local).putLong(global).putLong(oldest);
+    crc.reset();
+    crc.update(scratch.array(), 0, scratch.position());
+    return (int)crc.getValue();
+  }
+
+  /**
+   * Starts a new segment holding a checkpoint of every live tuple and deletes the segments which came before it once
+   * the checkpoint is on disk.
+   */
+  private void roll() throws IOException {
+    int live = 2;
+    for (List<SequenceTuple> sequence : sequences.values()) {
+      live += sequence.size();
+    }
+    int size = segmentSize;
+    while ((long)size < (long)live * RECORD_SIZE * 2 && size < Integer.MAX_VALUE / 2) {
+      size <<= 1;
+    }
+    long number = (current == null) ? 0L : current.number + 1;
+    synchronized (forceLock) {
+      if (current != null) {
+        current.force();
+      }
+      Segment next = Segment.create(directory.resolve(segmentName(number)), number, size);
+      next.put(record(CHECKPOINT_BEGIN, 0L, 0L, 0L, 0L));
+      for (Map.Entry<Long, LinkedList<SequenceTuple>> sequence : sequences.entrySet()) {
+        for (SequenceTuple tuple : sequence.getValue()) {
+          next.put(record(APPEND, sequence.getKey(), tuple.localSequenceID, tuple.globalSequenceID, Long.MIN_VALUE));
+        }
+      }
+      next.put(record(CHECKPOINT_END, 0L, 0L, 0L, 0L));
+      next.force();
+      for (Segment old : segments) {
+        old.close();
+        Files.deleteIfExists(old.path);
+      }
+      segments.clear();
+      segments.add(next);
+      current = next;
+    }
+  }
+
+  private void recover() throws IOException {
+    TreeMap<Long, Path> found = new TreeMap<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        try {
+          found.put(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())), file);
+        } catch (NumberFormatException nfe) {
+          LOGGER.warn("ignoring unrecognized file {} in sequence log", file);
+        }
+      }
+    }
+    Map<Long, LinkedList<SequenceTuple>> staging = null;
+    boolean torn = false;
+    for (Map.Entry<Long, Path> file : found.entrySet()) {
+      Segment segment = Segment.open(file.getValue(), file.getKey());
+      segments.add(segment);
+      current = segment;
+      if (torn) {
+        continue;
+      }
+      ByteBuffer data = segment.buffer.duplicate();
+      data.clear();
+      while (data.remaining() >= RECORD_SIZE) {
+        int start = data.position();
+        int type = data.getInt();
+        if (type == 0) {
+          break;
+        }
+        int check = data.getInt();
+        long index = data.getLong();
+        long local = data.getLong();
+        long global = data.getLong();
+        long oldest = data.getLong();
+        if (checksum(type, index, local, global, oldest) != check) {
+          LOGGER.warn("sequence log {} has a torn record at offset {}, ignoring the remainder of the log", file.getValue(), start);
+          torn = true;
+          break;
+        }
+        switch (type) {
+          case APPEND:
+            apply(staging == null ? sequences : staging, index, local, global, oldest);
+            break;
+          case DELETE:
+            (staging == null ? sequences : staging).remove(index);
+            break;
+          case CHECKPOINT_BEGIN:
+            staging = new HashMap<>();
+            break;
+          case CHECKPOINT_END:
+            if (staging != null) {
+              sequences.clear();
+              sequences.putAll(staging);
+              staging = null;
+            }
+            break;
+          default:
+            LOGGER.warn("sequence log {} has an unknown record type {} at offset {}, ignoring the remainder of the log", file.getValue(), type, start);
+            torn = true;
+            break;
+        }
+        if (torn) {
+          break;
+        }
+      }
+//  a checkpoint never spans segments so one left unfinished was cut short by a crash and never replaced anything
+      staging = null;
+    }
+  }
+
+  private static void apply(Map<Long, LinkedList<SequenceTuple>> target, long index, long local, long global, long oldest) {
+    LinkedList<SequenceTuple> sequence = target.computeIfAbsent(index, i -> new LinkedList<>());
+//  sequences are always increasing so stop cleaning at the first valid entry
+    Iterator<SequenceTuple> tuple = sequence.iterator();
+    while (tuple.hasNext()) {
+      if (tuple.next().localSequenceID < oldest) {
+        tuple.remove();
+      } else {
+        break;
+      }
+    }
+    sequence.add(tuple(local, global));
+  }
+
+  private static SequenceTuple tuple(long local, long global) {
+    SequenceTuple tuple = new SequenceTuple();
+    tuple.localSequenceID = local;
+    tuple.globalSequenceID = global;
+    return tuple;
+  }
+
+  private static String segmentName(long number) {
+    return String.format("%s%016d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX);
+  }
+
+  private static void await(Future<Void> done) throws IOException {
+    try {
+      done.get();
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new IOException(ie);
+    } catch (ExecutionException ee) {
+      throw (ee.getCause() instanceof IOException) ? (IOException)ee.getCause() : new IOException(ee.getCause());
+    }
+  }
+
+  private static class Segment {
+    private final Path path;
+    private final long number;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private boolean closed = false;
+
+    private Segment(Path path, long number, FileChannel channel, MappedByteBuffer buffer) {
+      this.path = path;
+      this.number = number;
+      this.channel = channel;
+      this.buffer = buffer;
+    }
+
+    static Segment create(Path path, long number, int size) throws IOException {
+      FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+//  make sure the new file and its length survive a crash before anything depends on it
+      channel.force(true);
+      return new Segment(path, number, channel, buffer);
+    }
+
+    static Segment open(Path path, long number) throws IOException {
+      FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+//  existing segments are only read, every restart appends to a fresh segment
+      buffer.position(buffer.limit());
+      return new Segment(path, number, channel, buffer);
+    }
+
+    int remaining() {
+      return buffer.remaining();
+    }
+
+    void put(ByteBuffer record) {
+      buffer.put(record);
+    }
+
+    void force() throws IOException {
+      if (!closed) {
+        buffer.force();
+      }
+    }
+
+    void close() throws IOException {
+      closed = true;
+      channel.close();
+    }
+  }
+}
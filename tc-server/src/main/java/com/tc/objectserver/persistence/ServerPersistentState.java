@@ -18,6 +18,7 @@
 package com.tc.objectserver.persistence;
 
 import com.tc.l2.state.ServerMode;
+import com.tc.net.ServerID;
 
 /**
  *
@@ -29,4 +30,9 @@ public interface ServerPersistentState {
   void setDBClean(boolean clean);
   
   ServerMode getInitialMode();
+
+  /**
+   * @return the active a cleanly stopped passive can ask to catch it up or ServerID.NULL_ID
+   */
+  ServerID getResumeSource();
 }
@@ -28,6 +28,7 @@ import com.tc.util.State;
 import org.terracotta.server.StopAction;
 
 import java.util.List;
+import java.util.Map;
 
 public interface TCServer extends Pauseable {
   String[] processArguments();
@@ -84,6 +85,8 @@ public interface TCServer extends Pauseable {
 
   String getClusterState(PrettyPrinter form);
 
+  Map<String, ?> getStageLatencies();
+
   ProductInfo productInfo();
 
   List<Client> getConnectedClients();
@@ -486,6 +486,11 @@ public class TCServerImpl extends SEDA implements TCServer {
     return new String(dsoServer.getClusterState(Charset.defaultCharset(), form), Charset.defaultCharset());
   }
 
+  @Override
+  public Map<String, ?> getStageLatencies() {
+    return getStageManager().getLatencies();
+  }
+
   @Override
   public List<Client> getConnectedClients()
   {
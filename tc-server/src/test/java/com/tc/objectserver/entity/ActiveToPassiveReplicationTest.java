@@ -17,10 +17,19 @@
  */
 package com.tc.objectserver.entity;
 
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Predicate;
 
 import org.junit.After;
@@ -31,19 +40,27 @@ import org.junit.Test;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import com.tc.async.api.Sink;
+import com.tc.bytes.TCByteBufferFactory;
+import com.tc.l2.ha.L2HAZapNodeRequestProcessor;
 import com.tc.l2.msg.SyncReplicationActivity;
 import com.tc.l2.state.ConsistencyManager;
 import com.tc.l2.state.ConsistencyManager.Transition;
 import com.tc.l2.state.ServerMode;
+import com.tc.net.ClientID;
 import com.tc.net.NodeID;
 import com.tc.net.ServerID;
 import com.tc.net.groups.GroupManager;
+import com.tc.object.ClientInstanceID;
+import com.tc.object.EntityID;
+import com.tc.object.FetchID;
 import com.tc.object.session.SessionID;
+import com.tc.object.tx.TransactionID;
 import com.tc.objectserver.handler.ProcessTransactionHandler;
 import com.tc.objectserver.persistence.EntityPersistor;
 import com.tc.util.Assert;
@@ -205,6 +222,128 @@ public class ActiveToPassiveReplicationTest {
     Mockito.verify(replicate).addPassive(eq(passive), any(SessionID.class), any(Integer.class), any(SyncReplicationActivity.class));
   }
   
+  @Test
+  public void testCatchUpReplaysOnlyMissedActivity() throws Exception {
+    replication = createReplicationWithBacklog();
+    when(replicate.resumePassive(any(ServerID.class), any(SessionID.class), anyInt())).thenReturn(Boolean.TRUE);
+    replication.enterActiveState(Collections.singleton(passive));
+    Assert.assertTrue(replication.isBacklogging());
+
+    SyncReplicationActivity seen = createInvoke();
+    replication.replicateActivity(seen, replication.passives());
+    replication.nodeLeft(passive);
+    while (!replication.passives().isEmpty()) {
+      Thread.sleep(10);
+    }
+    // nobody to send to but still recorded for the passive to catch up on
+    SyncReplicationActivity missed1 = createInvoke();
+    SyncReplicationActivity missed2 = createInvoke();
+    replication.replicateActivity(missed1, replication.passives());
+    replication.replicateActivity(missed2, replication.passives());
+
+    replication.startPassiveCatchUp(passive, seen.getActivityID().id);
+    Assert.assertTrue(replication.finishPassiveSync(30000));
+
+    ArgumentCaptor<SessionID> session = ArgumentCaptor.forClass(SessionID.class);
+    Mockito.verify(replicate).resumePassive(eq(passive), session.capture(), anyInt());
+    ArgumentCaptor<SyncReplicationActivity> replayed = ArgumentCaptor.forClass(SyncReplicationActivity.class);
+    Mockito.verify(replicate, Mockito.times(2)).replicateMessage(eq(session.getValue()), replayed.capture(), any());
+    Assert.assertEquals(Arrays.asList(missed1, missed2), replayed.getAllValues());
+    Assert.assertEquals(Collections.singleton(session.getValue()), new HashSet<>(replication.passives()));
+  }
+
+  @Test
+  public void testCatchUpNotCoveredByBacklogZapsPassive() throws Exception {
+    replication = createReplicationWithBacklog();
+    replication.enterActiveState(Collections.emptySet());
+    replication.startPassiveCatchUp(passive, SyncReplicationActivity.ActivityID.getNextID().id);
+    Assert.assertTrue(replication.finishPassiveSync(30000));
+    Mockito.verify(group).zapNode(eq(passive), eq(L2HAZapNodeRequestProcessor.NODE_JOINED_WITH_DIRTY_DB), any(String.class));
+    Mockito.verify(replicate, Mockito.never()).resumePassive(any(ServerID.class), any(SessionID.class), anyInt());
+  }
+
+  @Test
+  public void testConcurrentActivityIsSentInRecordedOrder() throws Exception {
+    ReplicationBacklog backlog = new ReplicationBacklog(1024 * 1024, 0, Paths.get(System.getProperty("java.io.tmpdir")));
+    replication = createReplicationWithBacklog(backlog);
+    replication.enterActiveState(Collections.singleton(passive));
+    long first = backlog.getTail();
+
+    ExecutorService threads = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> done = new ArrayList<>();
+      for (int x = 0; x < 4; x++) {
+        done.add(threads.submit(() -> {
+          for (int y = 0; y < 100; y++) {
+            replication.replicateActivity(createInvoke(), replication.passives());
+          }
+        }));
+      }
+      for (Future<?> f : done) {
+        f.get();
+      }
+    } finally {
+      threads.shutdown();
+    }
+
+    List<SyncReplicationActivity> recorded = new ArrayList<>();
+    for (long position = first; position < backlog.getTail(); position++) {
+      recorded.add(backlog.read(position));
+    }
+    ArgumentCaptor<SyncReplicationActivity> sent = ArgumentCaptor.forClass(SyncReplicationActivity.class);
+    Mockito.verify(replicate, Mockito.times(400)).replicateMessage(any(SessionID.class), sent.capture(), any());
+    Assert.assertEquals(recorded, sent.getAllValues());
+  }
+
+  @Test
+  public void testSyncActivityDoesNotOvertakeQueuedActivity() throws Exception {
+    replication = createReplicationWithBacklog();
+    replication.enterActiveState(Collections.singleton(passive));
+    CountDownLatch sending = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicBoolean blocked = new AtomicBoolean();
+    List<SyncReplicationActivity> sent = new CopyOnWriteArrayList<>();
+    Mockito.doAnswer(invocation -> {
+      if (blocked.compareAndSet(false, true)) {
+        sending.countDown();
+        release.await();
+      }
+      sent.add(invocation.getArgument(1));
+      return null;
+    }).when(replicate).replicateMessage(any(SessionID.class), any(SyncReplicationActivity.class), any());
+
+    SyncReplicationActivity first = createInvoke();
+    SyncReplicationActivity queued = createInvoke();
+    SyncReplicationActivity sync = SyncReplicationActivity.createStartEntityMessage(new EntityID("test", "test"), 1L, new FetchID(1L), TCByteBufferFactory.wrap(new byte[0]), 0);
+    ExecutorService thread = Executors.newSingleThreadExecutor();
+    try {
+      Future<?> draining = thread.submit(() -> replication.replicateActivity(first, replication.passives()));
+      sending.await();
+      // the first send is stuck so these are left for that thread to send
+      replication.replicateActivity(queued, replication.passives());
+      replication.replicateActivity(sync, replication.passives());
+      release.countDown();
+      draining.get();
+    } finally {
+      thread.shutdown();
+    }
+    Assert.assertEquals(Arrays.asList(first, queued, sync), sent);
+  }
+
+  private ActiveToPassiveReplication createReplicationWithBacklog() {
+    return createReplicationWithBacklog(new ReplicationBacklog(1024 * 1024, 0, Paths.get(System.getProperty("java.io.tmpdir"))));
+  }
+
+  private ActiveToPassiveReplication createReplicationWithBacklog(ReplicationBacklog backlog) {
+    ProcessTransactionHandler pth = mock(ProcessTransactionHandler.class);
+    return new ActiveToPassiveReplication(consistency, pth, mock(EntityPersistor.class), replicate, mock(Sink.class), group, backlog);
+  }
+
+  private static SyncReplicationActivity createInvoke() {
+    return SyncReplicationActivity.createInvokeMessage(new FetchID(1L), new ClientID(1), new ClientInstanceID(1), new TransactionID(1),
+        new TransactionID(1), SyncReplicationActivity.ActivityType.INVOKE_ACTION, TCByteBufferFactory.wrap(new byte[0]), 1, "");
+  }
+
   @After
   public void tearDown() {
   }
@@ -38,6 +38,8 @@ import com.tc.objectserver.core.api.ServerConfigurationContext;
 import com.tc.objectserver.core.impl.ManagementTopologyEventCollector;
 import com.tc.objectserver.entity.RequestProcessor.EntityRequest;
 import com.tc.services.InternalServiceRegistry;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
 import com.tc.util.Assert;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -59,16 +61,20 @@ import org.terracotta.entity.ExecutionStrategy;
 import org.terracotta.entity.MessageCodec;
 import org.terracotta.entity.MessageCodecException;
 import org.terracotta.entity.PassiveServerEntity;
+import org.terracotta.entity.PassiveSynchronizationChannel;
 import org.terracotta.entity.ServiceRegistry;
 import org.terracotta.entity.SyncMessageCodec;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
@@ -76,6 +82,8 @@ import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
@@ -103,6 +111,7 @@ public class ManagedEntityImplTest {
   private Sink             executionSink;
   private Sink             messageSelf;
   private RequestProcessor requestMulti;
+  private PassiveReplicationBroker broker;
   private ClientEntityStateManager clientEntityStateManager;
   private ManagementTopologyEventCollector eventCollector;
   private ClientID nodeID;
@@ -144,7 +153,7 @@ public class ManagedEntityImplTest {
     }).when(loopback).completed(Mockito.any(EntityID.class), Mockito.any(FetchID.class), Mockito.any(ServerEntityAction.class));
     
     executionSink = mock(Sink.class);
-    PassiveReplicationBroker broker = mock(PassiveReplicationBroker.class);
+    broker = mock(PassiveReplicationBroker.class);
     when(broker.passives()).thenReturn(Collections.emptySet());
     when(broker.replicateActivity(any(SyncReplicationActivity.class), any(Set.class))).thenReturn(mock(ActivePassiveAckWaiter.class));
     RequestProcessor processor = new RequestProcessor(executionSink);
@@ -407,6 +416,27 @@ public class ManagedEntityImplTest {
     verify(response).complete();
   }
 
+  @SuppressWarnings("unchecked")
+  @Test
+  public void testPassiveInvokesExecuteOnTheirConcurrencyKey() throws Exception {
+    ServerEntityRequest request = mockCreateEntityRequest();
+    TestingResponse response = mockResponse();
+    invokeOnTransactionHandler(()->managedEntity.addRequestMessage(request, mockCreatePayload("foo"), response));
+    response.waitFor();
+    // replicated invokes are scheduled on the replication stage but run on the request processor by entity and key
+    TestingResponse first = mockResponse();
+    TestingResponse second = mockResponse();
+    invokeOnTransactionHandler(()->managedEntity.addRequestMessage(mockInvokeRequest(), MessagePayload.syncPayloadNormal(TCByteBufferFactory.wrap(new byte[0]), 3), first));
+    invokeOnTransactionHandler(()->managedEntity.addRequestMessage(mockInvokeRequest(), MessagePayload.syncPayloadNormal(TCByteBufferFactory.wrap(new byte[0]), 5), second));
+    first.waitFor();
+    second.waitFor();
+    ArgumentCaptor<EntityRequest> scheduled = ArgumentCaptor.forClass(EntityRequest.class);
+    verify(executionSink, Mockito.atLeast(3)).addToSink(scheduled.capture());
+    List<Object> keys = scheduled.getAllValues().stream().map(EntityRequest::getSchedulingKey).collect(Collectors.toList());
+    Assert.assertTrue(keys.contains(3 ^ entityID.hashCode()));
+    Assert.assertTrue(keys.contains(5 ^ entityID.hashCode()));
+  }
+
   @Test
   public void testDoubleCreatePassive() throws Exception {
     ServerEntityRequest request = mockCreateEntityRequest();
@@ -855,6 +885,75 @@ public class ManagedEntityImplTest {
     managedEntity.sync(new SessionID(1L));
   }
   
+  @Test
+  public void testSnapshotSyncNotSupportedByDefault() throws Exception {
+    ServerEntityRequest createRequest = mockCreateEntityRequest();
+    TestingResponse createResponse = mockResponse();
+    invokeOnTransactionHandler(()->managedEntity.addRequestMessage(createRequest, mockCreatePayload("foo"), createResponse));
+    createResponse.waitFor();
+    promote();
+    managedEntity.startSync();
+    AtomicBoolean unsupported = new AtomicBoolean();
+    Mockito.doAnswer((inv)->{
+      PassiveSynchronizationChannel<EntityMessage> channel = inv.getArgument(0);
+      try {
+        channel.openSnapshot();
+      } catch (UnsupportedOperationException e) {
+        unsupported.set(true);
+      }
+      return null;
+    }).when(activeServerEntity).synchronizeKeyToPassive(any(), eq(1));
+    managedEntity.sync(new SessionID(1L));
+    Assert.assertTrue(unsupported.get());
+  }
+
+  @Test
+  public void testSnapshotSyncIsChunked() throws Exception {
+    ServerEntityRequest createRequest = mockCreateEntityRequest();
+    TestingResponse createResponse = mockResponse();
+    invokeOnTransactionHandler(()->managedEntity.addRequestMessage(createRequest, mockCreatePayload("foo"), createResponse));
+    createResponse.waitFor();
+    promote();
+    managedEntity.startSync();
+    Mockito.doAnswer((inv)->{
+      PassiveSynchronizationChannel<EntityMessage> channel = inv.getArgument(0);
+      try (OutputStream snapshot = channel.openSnapshot()) {
+        snapshot.write(new byte[(5 * 1024 * 1024) / 2]);
+      }
+      return null;
+    }).when(activeServerEntity).synchronizeKeyToPassive(any(), eq(1));
+    TCPropertiesImpl.getProperties().setProperty(TCPropertiesConsts.L2_PASSIVE_SYNC_SNAPSHOT_ENABLED, "true");
+    try {
+      managedEntity.sync(new SessionID(1L));
+    } finally {
+      TCPropertiesImpl.getProperties().setProperty(TCPropertiesConsts.L2_PASSIVE_SYNC_SNAPSHOT_ENABLED, "false");
+    }
+    ArgumentCaptor<SyncReplicationActivity> sent = ArgumentCaptor.forClass(SyncReplicationActivity.class);
+    verify(broker, Mockito.atLeastOnce()).replicateActivity(sent.capture(), any(Set.class));
+    List<SyncReplicationActivity> chunks = sent.getAllValues().stream()
+        .filter(a->a.getActivityType() == SyncReplicationActivity.ActivityType.SYNC_ENTITY_CONCURRENCY_SNAPSHOT)
+        .collect(Collectors.toList());
+    Assert.assertEquals(3, chunks.size());
+    Assert.assertEquals(1024 * 1024, chunks.get(0).getExtendedData().remaining());
+    Assert.assertEquals(512 * 1024, chunks.get(2).getExtendedData().remaining());
+    Assert.assertTrue(chunks.stream().allMatch(a->a.getConcurrency() == 1 && a.isSyncActivity()));
+  }
+
+  @Test
+  public void testSnapshotChunkDeliveredToPassive() throws Exception {
+    ServerEntityRequest createRequest = mockCreateEntityRequest();
+    TestingResponse createResponse = mockResponse();
+    invokeOnTransactionHandler(()->managedEntity.addRequestMessage(createRequest, mockCreatePayload("foo"), createResponse));
+    createResponse.waitFor();
+    byte[] chunk = new byte[] {1, 2, 3};
+    TestingResponse response = mockResponse();
+    invokeOnTransactionHandler(()->managedEntity.addRequestMessage(mockRequestForAction(ServerEntityAction.RECEIVE_SYNC_SNAPSHOT),
+        MessagePayload.syncPayloadNormal(TCByteBufferFactory.wrap(chunk), 1), response));
+    response.waitFor();
+    verify(response).complete();
+    verify(passiveServerEntity).synchronizeSnapshot(eq(1), eq(ByteBuffer.wrap(chunk)));
+  }
+
   @Test
   public void testDestroy() throws Exception {
     TestingResponse response = mockResponse();
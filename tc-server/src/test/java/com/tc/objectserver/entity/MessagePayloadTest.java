@@ -23,6 +23,11 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import static org.junit.Assert.*;
+import com.tc.bytes.TCByteBufferFactory;
+import java.nio.ByteBuffer;
+import org.terracotta.entity.BufferMessageCodec;
+import org.terracotta.entity.EntityMessage;
+import org.terracotta.entity.EntityResponse;
 import org.terracotta.entity.MessageCodecException;
 
 /**
@@ -62,4 +67,39 @@ public class MessagePayloadTest {
             // expected
         }
     }
+
+    @Test
+    public void testBufferCodecDecodesSharedView() throws Exception {
+        byte[] data = new byte[] {1, 2, 3, 4};
+        MessagePayload payload = MessagePayload.commonMessagePayload(TCByteBufferFactory.wrap(data), null, false, false);
+        ByteBuffer[] seen = new ByteBuffer[1];
+        MessageDecoder decoder = MessageDecoder.forCodec(new BufferMessageCodec<EntityMessage, EntityResponse>() {
+            @Override
+            public ByteBuffer encodeMessageToBuffer(EntityMessage message) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public EntityMessage decodeMessage(ByteBuffer raw) {
+                seen[0] = raw;
+                return new EntityMessage() {};
+            }
+
+            @Override
+            public ByteBuffer encodeResponseToBuffer(EntityResponse response) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public EntityResponse decodeResponse(ByteBuffer raw) {
+                throw new UnsupportedOperationException();
+            }
+        });
+        assertNotNull(payload.decodeMessage(decoder));
+        assertTrue(seen[0].isReadOnly());
+        assertEquals(ByteBuffer.wrap(data), seen[0]);
+        // the view shares content with the payload rather than a copy
+        data[0] = 9;
+        assertEquals(9, seen[0].get(0));
+    }
 }
@@ -0,0 +1,93 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tc.objectserver.entity;
+
+import com.tc.bytes.TCByteBuffer;
+import com.tc.util.Assert;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+
+public class PassiveSnapshotStreamTest {
+  @Test
+  public void testWritesAreCutIntoChunks() throws Exception {
+    List<TCByteBuffer> sent = new ArrayList<>();
+    PassiveSnapshotStream stream = new PassiveSnapshotStream(chunk -> {
+      sent.add(chunk);
+      return Collections.emptyList();
+    }, 4, 2);
+    stream.write(new byte[] {0, 1, 2, 3, 4, 5, 6, 7, 8, 9});
+    Assert.assertEquals(2, sent.size());
+    stream.write(10);
+    stream.close();
+    Assert.assertEquals(3, sent.size());
+    Assert.assertEquals(3L, stream.getChunkCount());
+    Assert.assertEquals(4, sent.get(0).remaining());
+    Assert.assertEquals(3, sent.get(2).remaining());
+    Assert.assertEquals(8, sent.get(2).get());
+  }
+
+  @Test
+  public void testWriterWaitsOnlyWhenWindowIsFull() throws Exception {
+    List<ActivePassiveAckWaiter> waiters = new ArrayList<>();
+    PassiveSnapshotStream stream = new PassiveSnapshotStream(chunk -> {
+      ActivePassiveAckWaiter waiter = mock(ActivePassiveAckWaiter.class);
+      waiters.add(waiter);
+      return Collections.singleton(waiter);
+    }, 2, 2);
+    stream.write(new byte[4]);
+    Assert.assertEquals(2, waiters.size());
+    verify(waiters.get(0), never()).waitForReceived();
+    stream.write(new byte[2]);
+    verify(waiters.get(0)).waitForReceived();
+    verify(waiters.get(1), never()).waitForReceived();
+    stream.close();
+    verify(waiters.get(1)).waitForReceived();
+    verify(waiters.get(2)).waitForReceived();
+  }
+
+  @Test
+  public void testReceivedBuffersAreReused() throws Exception {
+    List<byte[]> arrays = new ArrayList<>();
+    PassiveSnapshotStream stream = new PassiveSnapshotStream(chunk -> {
+      arrays.add(chunk.array());
+      return Collections.<ActivePassiveAckWaiter>emptyList();
+    }, 2, 1);
+    stream.write(new byte[6]);
+    stream.close();
+    Assert.assertEquals(3, arrays.size());
+    Assert.assertTrue(arrays.get(0) != arrays.get(1));
+    Assert.assertTrue(arrays.get(0) == arrays.get(2));
+  }
+
+  @Test(expected = IOException.class)
+  public void testWriteAfterCloseFails() throws Exception {
+    PassiveSnapshotStream stream = new PassiveSnapshotStream(chunk -> Collections.<ActivePassiveAckWaiter>emptyList(), 2, 1);
+    stream.close();
+    stream.write(1);
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tc.objectserver.entity;
+
+import com.tc.bytes.TCByteBufferFactory;
+import com.tc.l2.msg.SyncReplicationActivity;
+import com.tc.net.ClientID;
+import com.tc.object.ClientInstanceID;
+import com.tc.object.FetchID;
+import com.tc.object.tx.TransactionID;
+import com.tc.util.Assert;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+public class ReplicationBacklogTest {
+  // each invoke costs its payload plus the bookkeeping overhead so three fit in this much memory
+  private static final int PAYLOAD = 100;
+  private static final long THREE_ENTRIES = 3 * (PAYLOAD + 128);
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testActivityIsReplayedAfterTheLastOneSeen() throws Exception {
+    try (ReplicationBacklog backlog = new ReplicationBacklog(1024 * 1024, 0, folder.getRoot().toPath())) {
+      SyncReplicationActivity end = SyncReplicationActivity.createEndSyncMessage(TCByteBufferFactory.wrap(new byte[0]));
+      Assert.assertEquals(0L, backlog.mark(end));
+      List<SyncReplicationActivity> recorded = record(backlog, 3);
+      Assert.assertEquals(4L, backlog.getTail());
+      // markers have nothing to replay
+      Assert.assertNull(backlog.read(0));
+      Assert.assertEquals(1L, backlog.positionAfter(end.getActivityID().id));
+      Assert.assertEquals(3L, backlog.positionAfter(recorded.get(1).getActivityID().id));
+      Assert.assertTrue(recorded.get(2) == backlog.read(3));
+      Assert.assertEquals(-1L, backlog.positionAfter(SyncReplicationActivity.ActivityID.getNextID().id));
+    }
+  }
+
+  @Test
+  public void testOldestActivityIsDroppedWithoutDisk() throws Exception {
+    try (ReplicationBacklog backlog = new ReplicationBacklog(THREE_ENTRIES, 0, folder.getRoot().toPath())) {
+      List<SyncReplicationActivity> recorded = record(backlog, 5);
+      // the newest activity which was dropped is still covered, everything after it is held
+      Assert.assertEquals(-1L, backlog.positionAfter(recorded.get(0).getActivityID().id));
+      Assert.assertEquals(2L, backlog.positionAfter(recorded.get(1).getActivityID().id));
+      Assert.assertEquals(3L, backlog.positionAfter(recorded.get(2).getActivityID().id));
+      try {
+        backlog.read(1);
+        Assert.fail();
+      } catch (IOException expected) {
+        // dropped
+      }
+      Assert.assertTrue(recorded.get(2) == backlog.read(2));
+      Assert.assertEquals(0L, files());
+    }
+  }
+
+  @Test
+  public void testOldestActivityIsSpilledToDisk() throws Exception {
+    try (ReplicationBacklog backlog = new ReplicationBacklog(THREE_ENTRIES, 1024 * 1024, folder.getRoot().toPath())) {
+      List<SyncReplicationActivity> recorded = record(backlog, 10);
+      Assert.assertEquals(1L, backlog.positionAfter(recorded.get(0).getActivityID().id));
+      Assert.assertTrue(files() > 0);
+      for (int x = 0; x < recorded.size(); x++) {
+        SyncReplicationActivity expected = recorded.get(x);
+        SyncReplicationActivity read = backlog.read(x);
+        Assert.assertEquals(expected.getActivityID(), read.getActivityID());
+        Assert.assertEquals(expected.getActivityType(), read.getActivityType());
+        Assert.assertEquals(expected.getFetchID(), read.getFetchID());
+        Assert.assertEquals(expected.getConcurrency(), read.getConcurrency());
+        Assert.assertEquals(x, (int)read.getExtendedData().get(0));
+      }
+    }
+    Assert.assertEquals(0L, files());
+  }
+
+  private List<SyncReplicationActivity> record(ReplicationBacklog backlog, int count) {
+    List<SyncReplicationActivity> recorded = new ArrayList<>();
+    for (int x = 0; x < count; x++) {
+      byte[] payload = new byte[PAYLOAD];
+      payload[0] = (byte)x;
+      SyncReplicationActivity activity = SyncReplicationActivity.createInvokeMessage(new FetchID(1L), new ClientID(1),
+          new ClientInstanceID(1), new TransactionID(x + 1), new TransactionID(1), SyncReplicationActivity.ActivityType.INVOKE_ACTION,
+          TCByteBufferFactory.wrap(payload), 1, "");
+      backlog.record(activity);
+      recorded.add(activity);
+    }
+    return recorded;
+  }
+
+  private long files() throws IOException {
+    try (Stream<Path> list = Files.list(folder.getRoot().toPath())) {
+      return list.count();
+    }
+  }
+}
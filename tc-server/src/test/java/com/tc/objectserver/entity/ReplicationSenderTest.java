@@ -50,6 +50,7 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.mockito.ArgumentMatchers;
+import org.terracotta.entity.ConcurrencyStrategy;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -310,6 +311,53 @@ public class ReplicationSenderTest {
     validateCollector(validation);
   }
   
+  @Test
+  public void filterInterleavedEntitySync() throws Exception {
+    EntityID first = new EntityID("TEST", "first");
+    EntityID second = new EntityID("TEST", "second");
+    FetchID firstFetch = new FetchID(1L);
+    FetchID secondFetch = new FetchID(2L);
+    List<SyncReplicationActivity> origin = new LinkedList<>();
+    List<SyncReplicationActivity> validation = new LinkedList<>();
+    buildTest(origin, validation, SyncReplicationActivity.createStartMessage(), true);
+    buildTest(origin, validation, makeMessage(SyncReplicationActivity.ActivityType.SYNC_BEGIN), false);
+    buildTest(origin, validation, SyncReplicationActivity.createStartEntityMessage(first, 1, firstFetch, TCByteBufferFactory.wrap(new byte[0]), 0), false);
+    buildTest(origin, validation, SyncReplicationActivity.createStartEntityMessage(second, 1, secondFetch, TCByteBufferFactory.wrap(new byte[0]), 0), false);
+    buildTest(origin, validation, SyncReplicationActivity.createStartEntityKeyMessage(first, 1, firstFetch, 1), false);
+    buildTest(origin, validation, SyncReplicationActivity.createStartEntityKeyMessage(second, 1, secondFetch, 2), false);
+    // each entity is only interested in its own key while in flight
+    buildTest(origin, validation, invoke(firstFetch, 1), false);
+    buildTest(origin, validation, invoke(firstFetch, 2), true);
+    buildTest(origin, validation, invoke(secondFetch, 2), false);
+    buildTest(origin, validation, invoke(secondFetch, 1), true);
+    buildTest(origin, validation, invoke(secondFetch, ConcurrencyStrategy.UNIVERSAL_KEY), false);
+    buildTest(origin, validation, SyncReplicationActivity.createPayloadMessage(second, 1, secondFetch, 2, TCByteBufferFactory.wrap(new byte[0]), ""), false);
+    buildTest(origin, validation, SyncReplicationActivity.createEndEntityKeyMessage(first, 1, firstFetch, 1), false);
+    buildTest(origin, validation, invoke(firstFetch, 1), false);
+    buildTest(origin, validation, SyncReplicationActivity.createEndEntityMessage(first, 1, firstFetch), false);
+    buildTest(origin, validation, invoke(firstFetch, 2), false);
+    buildTest(origin, validation, invoke(secondFetch, 1), true);
+    buildTest(origin, validation, SyncReplicationActivity.createEndEntityKeyMessage(second, 1, secondFetch, 2), false);
+    buildTest(origin, validation, SyncReplicationActivity.createEndEntityMessage(second, 1, secondFetch), false);
+    buildTest(origin, validation, invoke(secondFetch, 1), false);
+    buildTest(origin, validation, makeMessage(SyncReplicationActivity.ActivityType.SYNC_END), false);
+
+    origin.stream().forEach(activity-> {
+      if (SyncReplicationActivity.ActivityType.SYNC_START == activity.getActivityType()) {
+        this.testSender.addPassive(node, session, 1, activity);
+      } else {
+        this.testSender.replicateMessage(session, activity, null);
+      }
+    });
+    Assert.assertFalse(testSender.isSyncOccuring(session));
+    validateCollector(validation);
+  }
+
+  private SyncReplicationActivity invoke(FetchID target, int key) {
+    return SyncReplicationActivity.createInvokeMessage(target, new ClientID(1), new ClientInstanceID(1), TransactionID.NULL_ID, TransactionID.NULL_ID,
+        SyncReplicationActivity.ActivityType.INVOKE_ACTION, TCByteBufferFactory.wrap(new byte[0]), key, "");
+  }
+
   private void validateCollector(Collection<SyncReplicationActivity> valid) {
     Iterator<SyncReplicationActivity> next = valid.iterator();
     collector.stream().forEach(msg->{
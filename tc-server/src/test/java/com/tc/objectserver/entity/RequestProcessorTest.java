@@ -38,6 +38,8 @@ import com.tc.properties.TCPropertiesImpl;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import org.junit.After;
 import org.junit.AfterClass;
@@ -181,6 +183,52 @@ public class RequestProcessorTest {
     verify(dump).addToSink(ArgumentMatchers.argThat(new MultiThreadedEventMatcher(testid, ConcurrencyStrategy.MANAGEMENT_KEY)));
   }
   
+  @Test
+  public void testIndependentKeysDoNotBlock() throws Exception {
+    EntityID testid = new EntityID("MockEntity", "foo");
+    ServerEntityRequest request = mock(ServerEntityRequest.class);
+    when(request.getAction()).thenReturn(ServerEntityAction.INVOKE_ACTION);
+    when(request.replicateTo(anySet())).thenReturn(Collections.emptySet());
+    CountDownLatch entered = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger scheduled = new AtomicInteger();
+    Sink<EntityRequest> dump = mock(Sink.class);
+    doAnswer(inv->{
+      if (((EntityRequest)inv.getArguments()[0]).getSchedulingKey().equals(testid.hashCode() ^ 1)) {
+        entered.countDown();
+        release.await();
+      }
+      scheduled.incrementAndGet();
+      return null;
+    }).when(dump).addToSink(any());
+    RequestProcessor instance = new RequestProcessor(dump, dump, 64);
+
+    Thread blocked = new Thread(()->instance.scheduleRequest(false, testid, 1L, new FetchID(1L), request, MessagePayload.emptyPayload(), (w)->{}, true, 1));
+    blocked.start();
+    entered.await();
+    // a different key is not held up by the stalled lane
+    instance.scheduleRequest(false, testid, 1L, new FetchID(1L), request, MessagePayload.emptyPayload(), (w)->{}, true, 2);
+    Assert.assertEquals(1, scheduled.get());
+    // a management request has to wait for every lane
+    Thread management = new Thread(()->instance.scheduleRequest(false, testid, 1L, new FetchID(1L), request, MessagePayload.emptyPayload(), (w)->{}, true, ConcurrencyStrategy.MANAGEMENT_KEY));
+    management.start();
+    management.join(200);
+    Assert.assertTrue(management.isAlive());
+    Assert.assertEquals(1, scheduled.get());
+    release.countDown();
+    blocked.join();
+    management.join();
+    Assert.assertEquals(3, scheduled.get());
+  }
+
+  @Test
+  public void testOrderingLanesRoundToPowerOfTwo() {
+    Assert.assertEquals(1, new RequestProcessor.OrderingLanes(0).size());
+    Assert.assertEquals(1, new RequestProcessor.OrderingLanes(1).size());
+    Assert.assertEquals(16, new RequestProcessor.OrderingLanes(9).size());
+    Assert.assertEquals(64, new RequestProcessor.OrderingLanes(64).size());
+  }
+
   @Test
   public void testReplicationCall() {
     System.out.println("replication");
@@ -0,0 +1,186 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tc.objectserver.handler;
+
+import com.tc.l2.msg.IBatchableGroupMessage;
+import com.tc.net.ServerID;
+import com.tc.net.groups.AbstractGroupMessage;
+import com.tc.net.groups.GroupManager;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+public class GroupMessageBatchContextTest {
+
+  private GroupManager<AbstractGroupMessage> groupManager;
+  private ServerID target;
+  private final List<Runnable> pending = new ArrayList<>();
+  // batch latency is measured against this clock so the test decides how long each batch takes
+  private long now;
+
+  @SuppressWarnings("unchecked")
+  @Before
+  public void setUp() throws Exception {
+    groupManager = mock(GroupManager.class);
+    target = new ServerID("passive", "passive".getBytes());
+    // hold the sent callbacks so the test decides when each batch completes
+    doAnswer(invocation -> {
+      pending.add(invocation.getArgument(2));
+      return null;
+    }).when(groupManager).sendToWithSentCallback(eq(target), any(), any());
+  }
+
+  @Test
+  public void testFixedContextDoesNotAdapt() throws Exception {
+    GroupMessageBatchContext<TestBatch, Long> context = new GroupMessageBatchContext<>(l->new TestBatch(l, 64), groupManager, target, 1024, 1, null);
+    for (int x = 0; x < 20; x++) {
+      context.batchMessage(1L);
+      context.flushBatch();
+      completeAfter(1);
+    }
+    Map<String, Object> state = context.getState();
+    assertFalse((Boolean)state.get("adaptive"));
+    assertEquals(1, state.get("window"));
+    assertEquals(1024, state.get("batchLimit"));
+  }
+
+  @Test
+  public void testWindowGrowsAndBacksOff() throws Exception {
+    GroupMessageBatchContext<TestBatch, Long> context = new GroupMessageBatchContext<>(l->new TestBatch(l, 64), groupManager, target, 1024, 1, 8, null, null, () -> now);
+    for (int x = 0; x < 40; x++) {
+      context.batchMessage(1L);
+      context.flushBatch();
+      completeAfter(5);
+    }
+    int grown = (Integer)context.getState().get("window");
+    assertTrue("window " + grown, grown > 1);
+    assertTrue(grown <= 8);
+
+    // batches suddenly take far longer than the observed minimum
+    context.batchMessage(1L);
+    context.flushBatch();
+    completeAfter(200);
+    Map<String, Object> state = context.getState();
+    assertEquals(Math.max(1, grown >> 1), state.get("window"));
+    assertEquals(1L, state.get("windowDecreases"));
+    assertEquals(0, state.get("inflight"));
+  }
+
+  @Test
+  public void testLatencyTimedToPeerAck() throws Exception {
+    GroupMessageBatchContext<TestBatch, Long> context = new GroupMessageBatchContext<>(l->new TestBatch(l, 64), groupManager, target, 1024, 1, 8, null, l->l, () -> now);
+    long key = 0;
+    for (int x = 0; x < 40; x++) {
+      context.batchMessage(++key);
+      context.flushBatch();
+      completeAfter(0);
+      now += TimeUnit.MILLISECONDS.toNanos(5);
+      context.acknowledged(key);
+    }
+    int grown = (Integer)context.getState().get("window");
+    assertTrue("window " + grown, grown > 1);
+
+    // the socket takes the batch at once but the peer is slow to acknowledge it
+    context.batchMessage(++key);
+    context.batchMessage(++key);
+    context.flushBatch();
+    completeAfter(0);
+    now += TimeUnit.MILLISECONDS.toNanos(200);
+    // only the last element of the batch closes it
+    context.acknowledged(key - 1);
+    assertEquals(grown, context.getState().get("window"));
+    context.acknowledged(key);
+    Map<String, Object> state = context.getState();
+    assertEquals(Math.max(1, grown >> 1), state.get("window"));
+    assertEquals(1L, state.get("windowDecreases"));
+  }
+
+  @Test
+  public void testBatchLimitFollowsPayloadSize() throws Exception {
+    GroupMessageBatchContext<TestBatch, Long> context = new GroupMessageBatchContext<>(l->new TestBatch(l, 256 * 1024), groupManager, target, 1024, 1, 8, null, null, () -> now);
+    context.batchMessage(1L);
+    context.flushBatch();
+    assertEquals(16, context.getState().get("batchLimit"));
+    completeAfter(0);
+
+    context = new GroupMessageBatchContext<>(l->new TestBatch(l, 16), groupManager, target, 1024, 1, 8, null, null, () -> now);
+    context.batchMessage(1L);
+    context.flushBatch();
+    assertEquals(1024, context.getState().get("batchLimit"));
+    completeAfter(0);
+  }
+
+  private void completeAfter(long millis) {
+    now += TimeUnit.MILLISECONDS.toNanos(millis);
+    List<Runnable> done = new ArrayList<>(pending);
+    pending.clear();
+    done.forEach(Runnable::run);
+  }
+
+  private static class TestBatch implements IBatchableGroupMessage<Long> {
+    private final long bytesPerElement;
+    private int count;
+    private long sequence;
+
+    TestBatch(Long first, long bytesPerElement) {
+      this.bytesPerElement = bytesPerElement;
+      addToBatch(first);
+    }
+
+    @Override
+    public void addToBatch(Long element) {
+      count += 1;
+    }
+
+    @Override
+    public int getBatchSize() {
+      return count;
+    }
+
+    @Override
+    public long getPayloadSize() {
+      return count * bytesPerElement;
+    }
+
+    @Override
+    public void setSequenceID(long rid) {
+      sequence = rid;
+    }
+
+    @Override
+    public long getSequenceID() {
+      return sequence;
+    }
+
+    @Override
+    public AbstractGroupMessage asAbstractGroupMessage() {
+      return mock(AbstractGroupMessage.class);
+    }
+  }
+}
@@ -232,6 +232,8 @@ public class PassiveAckSenderTest {
         PassiveAckSender.decodeReplicationType(SyncReplicationActivity.ActivityType.SYNC_ENTITY_END));
     assertEquals(ServerEntityAction.DISCONNECT_CLIENT,
         PassiveAckSender.decodeReplicationType(SyncReplicationActivity.ActivityType.DISCONNECT_CLIENT));
+    assertEquals(ServerEntityAction.RECEIVE_SYNC_SNAPSHOT,
+        PassiveAckSender.decodeReplicationType(SyncReplicationActivity.ActivityType.SYNC_ENTITY_CONCURRENCY_SNAPSHOT));
   }
 
   @Test(expected = AssertionError.class)
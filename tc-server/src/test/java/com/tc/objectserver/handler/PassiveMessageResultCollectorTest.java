@@ -197,6 +197,11 @@ public class PassiveMessageResultCollectorTest {
       throw new UnsupportedOperationException("Not supported in test implementation");
     }
 
+    @Override
+    public void requestPassiveCatchUp(NodeID target, long lastActivity) {
+      throw new UnsupportedOperationException("Not supported in test implementation");
+    }
+
     @Override
     public ServerEntityRequest transform(SyncReplicationActivity activity) {
       return new ReplicatedTransactionHandler.BasicServerEntityRequest(
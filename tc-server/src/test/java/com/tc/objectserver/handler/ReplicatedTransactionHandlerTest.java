@@ -17,6 +17,8 @@
  */
 package com.tc.objectserver.handler;
 
+import com.tc.async.api.AbstractEventHandler;
+import com.tc.async.api.ConfigurationContext;
 import com.tc.async.api.EventHandler;
 import com.tc.async.api.EventHandlerException;
 import com.tc.async.api.Sink;
@@ -28,7 +30,9 @@ import com.tc.io.TCByteBufferInputStream;
 import com.tc.io.TCByteBufferOutput;
 import com.tc.io.TCByteBufferOutputStream;
 import com.tc.l2.msg.ReplicationMessage;
+import com.tc.l2.msg.ReplicationMessageAck;
 import com.tc.l2.msg.SyncReplicationActivity;
+import com.tc.l2.state.ServerMode;
 import com.tc.l2.state.StateManager;
 import com.tc.net.ClientID;
 import com.tc.net.ServerID;
@@ -50,9 +54,14 @@ import com.tc.objectserver.api.ServerEntityRequest;
 import com.tc.objectserver.entity.MessagePayload;
 import com.tc.objectserver.entity.PlatformEntity;
 import com.tc.objectserver.entity.SimpleCompletion;
+import com.tc.objectserver.persistence.ClusterStatePersistor;
+import com.tc.objectserver.persistence.EntityData;
 import com.tc.objectserver.persistence.EntityPersistor;
+import com.tc.objectserver.persistence.NullPlatformPersistentStorage;
 import com.tc.objectserver.persistence.Persistor;
 import com.tc.objectserver.persistence.TransactionOrderPersistor;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
 import com.tc.util.Assert;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -67,6 +76,7 @@ import org.junit.Test;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
@@ -82,6 +92,8 @@ import org.terracotta.entity.MessageCodec;
 public class ReplicatedTransactionHandlerTest {
   private EntityPersistor entityPersistor;
   private TransactionOrderPersistor transactionOrderPersistor;
+  private Persistor persistor;
+  private Sink<Runnable> ackSink;
   private ReplicatedTransactionHandler rth;
   private ClientID source;
   private ClientInstanceID instance;
@@ -99,7 +111,7 @@ public class ReplicatedTransactionHandlerTest {
     this.entityPersistor = mock(EntityPersistor.class);
     this.transactionOrderPersistor = mock(TransactionOrderPersistor.class);
 
-    Persistor persistor = mock(Persistor.class);
+    this.persistor = mock(Persistor.class);
     when(persistor.getEntityPersistor()).thenReturn(this.entityPersistor);
     when(persistor.getTransactionOrderPersistor()).thenReturn(this.transactionOrderPersistor);
 
@@ -118,14 +130,14 @@ public class ReplicatedTransactionHandlerTest {
     when(entityManager.getEntity(any(EntityDescriptor.class))).thenReturn(Optional.empty());
     when(entityManager.getEntity(eq(EntityDescriptor.createDescriptorForLifecycle(PlatformEntity.PLATFORM_ID, 1L)))).thenReturn(Optional.of(platform));
     Stage runner = mock(Stage.class);
-    Sink<Runnable> sink = mock(Sink.class);
-    when(runner.getSink()).thenReturn(sink);
+    this.ackSink = mock(Sink.class);
+    when(runner.getSink()).thenReturn(ackSink);
     doAnswer(answer->{
       ((Runnable)answer.getArguments()[0]).run();
       return null;
-    }).when(sink).addToSink(any(Runnable.class));
+    }).when(ackSink).addToSink(any(Runnable.class));
 
-    this.rth = new ReplicatedTransactionHandler(stateManager, persistor, this.entityManager, new PassiveAckSender(groupManager, m->true, sink));
+    this.rth = new ReplicatedTransactionHandler(stateManager, persistor, this.entityManager, new PassiveAckSender(groupManager, m->true, ackSink));
     // We need to do things like serialize/deserialize this so we can't easily use a mocked source.
     this.source = new ClientID(1);
     this.instance = new ClientInstanceID(1);
@@ -230,6 +242,89 @@ public class ReplicatedTransactionHandlerTest {
     verify(groupManager, times(2)).sendToWithSentCallback(eq(sid), any(), any());
   }
 
+  @Test
+  public void testCatchUpRequestedAfterLastAppliedActivity() throws Exception {
+    ServerID sid = new ServerID("test", "test".getBytes());
+    when(stateManager.getCurrentMode()).thenReturn(ServerMode.PASSIVE);
+    // nothing applied yet, a passive which is not synced can't catch up
+    loopbackSink.addToSink(ReplicationMessage.createLocalContainer(SyncReplicationActivity.createLocalCatchUpRequest()));
+    Assert.assertFalse(rth.isStreamSource(sid));
+
+    sendFrom(sid, SyncReplicationActivity.createStartSyncMessage(new SyncReplicationActivity.EntityCreationTuple[0]));
+    ByteArrayOutputStream raw = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(raw)) {
+      out.writeInt(0);
+    }
+    sendFrom(sid, SyncReplicationActivity.createEndSyncMessage(TCByteBufferFactory.wrap(raw.toByteArray())));
+    SyncReplicationActivity last = createMockReplicationMessage(new FetchID(1L), new byte[0], 1);
+    sendFrom(sid, last);
+    Assert.assertTrue(rth.isStreamSource(sid));
+
+    loopbackSink.addToSink(ReplicationMessage.createLocalContainer(SyncReplicationActivity.createLocalCatchUpRequest()));
+    ArgumentCaptor<AbstractGroupMessage> request = ArgumentCaptor.forClass(AbstractGroupMessage.class);
+    verify(groupManager).sendTo(eq(sid), request.capture());
+    ReplicationMessageAck ack = (ReplicationMessageAck)request.getValue();
+    Assert.assertEquals(ReplicationMessageAck.START_CATCH_UP, ack.getType());
+    Assert.assertEquals(last.getActivityID().id, ack.getLastActivity());
+  }
+
+  @Test
+  public void testStoppedPassiveResumesFromSameActiveAfterRestart() throws Exception {
+    ServerID sid = new ServerID("test", "test".getBytes());
+    ClusterStatePersistor clusterState = new ClusterStatePersistor(new NullPlatformPersistentStorage());
+    when(persistor.getClusterStatePersistor()).thenReturn(clusterState);
+    TCPropertiesImpl.getProperties().setProperty(TCPropertiesConsts.L2_PASSIVE_CATCHUP_RESTART, "true");
+    try {
+      this.rth = new ReplicatedTransactionHandler(stateManager, persistor, this.entityManager, new PassiveAckSender(groupManager, m->true, ackSink));
+      this.loopbackSink = new ForwardingSink<ReplicationMessage>(this.rth.getEventHandler());
+      sendFrom(sid, SyncReplicationActivity.createStartSyncMessage(new SyncReplicationActivity.EntityCreationTuple[0]));
+      ByteArrayOutputStream raw = new ByteArrayOutputStream();
+      try (ObjectOutputStream out = new ObjectOutputStream(raw)) {
+        out.writeInt(0);
+      }
+      sendFrom(sid, SyncReplicationActivity.createEndSyncMessage(TCByteBufferFactory.wrap(raw.toByteArray())));
+      SyncReplicationActivity last = createMockReplicationMessage(new FetchID(1L), new byte[0], 1);
+      sendFrom(sid, last);
+
+      when(stateManager.getCurrentMode()).thenReturn(ServerMode.STOP);
+      this.rth.getEventHandler().destroy();
+      Assert.assertEquals(sid, clusterState.getResumeSource());
+      Assert.assertEquals(last.getActivityID().id, clusterState.getResumeActivity());
+
+      EntityData.Value kept = new EntityData.Value();
+      kept.className = "foo";
+      kept.entityName = "bar";
+      kept.version = 1;
+      kept.consumerID = 2;
+      kept.configuration = new byte[0];
+      when(entityPersistor.loadEntityData()).thenReturn(Collections.singletonList(kept));
+      Mockito.clearInvocations(stateManager, groupManager);
+      when(stateManager.getActiveNodeID()).thenReturn(sid);
+      when(stateManager.getCurrentMode()).thenReturn(ServerMode.UNINITIALIZED, ServerMode.PASSIVE);
+      ReplicatedTransactionHandler restarted = new ReplicatedTransactionHandler(stateManager, persistor, this.entityManager, new PassiveAckSender(groupManager, m->true, ackSink));
+      ((AbstractEventHandler<ReplicationMessage>)restarted.getEventHandler()).initializeContext(mock(ConfigurationContext.class));
+
+      verify(entityManager).loadExisting(eq(new EntityID("foo", "bar")), eq(1L), eq(2L), eq(false), any());
+      verify(stateManager).moveToPassiveStandbyState();
+      ArgumentCaptor<AbstractGroupMessage> request = ArgumentCaptor.forClass(AbstractGroupMessage.class);
+      verify(groupManager).sendTo(eq(sid), request.capture());
+      ReplicationMessageAck ack = (ReplicationMessageAck)request.getValue();
+      Assert.assertEquals(ReplicationMessageAck.START_CATCH_UP, ack.getType());
+      Assert.assertEquals(last.getActivityID().id, ack.getLastActivity());
+      // a second restart before this one is caught up must sync from scratch
+      Assert.assertEquals(ServerID.NULL_ID, clusterState.getResumeSource());
+    } finally {
+      TCPropertiesImpl.getProperties().setProperty(TCPropertiesConsts.L2_PASSIVE_CATCHUP_RESTART, "false");
+    }
+  }
+
+  private void sendFrom(ServerID sid, SyncReplicationActivity activity) {
+    ReplicationMessage msg = createReceivedActivity(activity);
+    msg.setMessageOrginator(sid);
+    msg.setSequenceID(rid++);
+    loopbackSink.addToSink(msg);
+  }
+
   @Test
   public void testDestroy() throws Exception {
     this.rth.getEventHandler().destroy();
@@ -0,0 +1,88 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tc.objectserver.handshakemanager;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+import com.tc.net.ClientID;
+
+
+public class ClientHandshakeAdmissionTest {
+
+  private final AtomicLong clock = new AtomicLong();
+
+  @Test
+  public void testUnlimitedAdmitsEveryone() {
+    ClientHandshakeAdmission admission = ClientHandshakeAdmission.unlimited();
+    for (int x = 0; x < 1000; x++) {
+      assertTrue(admission.admit(new ClientID(x)));
+    }
+    assertEquals(0, admission.getStateMap().get("pending"));
+  }
+
+  @Test
+  public void testRefusesOverLimitUntilReleased() {
+    ClientHandshakeAdmission admission = new ClientHandshakeAdmission(2, 10, TimeUnit.SECONDS, clock::get);
+    assertTrue(admission.admit(new ClientID(1)));
+    assertTrue(admission.admit(new ClientID(2)));
+    assertFalse(admission.admit(new ClientID(3)));
+    //  a retry of an admitted client keeps its slot
+    assertTrue(admission.admit(new ClientID(2)));
+    admission.release(new ClientID(1));
+    assertTrue(admission.admit(new ClientID(3)));
+    assertEquals(1L, admission.getStateMap().get("refused"));
+  }
+
+  @Test
+  public void testAbandonedSlotsExpire() {
+    ClientHandshakeAdmission admission = new ClientHandshakeAdmission(1, 10, TimeUnit.SECONDS, clock::get);
+    assertTrue(admission.admit(new ClientID(1)));
+    clock.addAndGet(TimeUnit.SECONDS.toNanos(5));
+    assertFalse(admission.admit(new ClientID(2)));
+    clock.addAndGet(TimeUnit.SECONDS.toNanos(5));
+    assertTrue(admission.admit(new ClientID(2)));
+    assertEquals(1L, admission.getStateMap().get("expired"));
+  }
+
+  @Test
+  public void testRefusedClientsAreToldHowLongSlotsAreHeld() {
+    ClientHandshakeAdmission admission = new ClientHandshakeAdmission(1, 10, TimeUnit.SECONDS, clock::get);
+    assertEquals(0, admission.retryAfter(new ClientID(1)));
+    assertTrue(admission.admit(new ClientID(1)));
+    assertEquals(0, admission.retryAfter(new ClientID(1)));
+    //  nothing released yet, only the lease bounds the wait
+    assertFalse(admission.admit(new ClientID(2)));
+    assertEquals(10_000, admission.retryAfter(new ClientID(2)));
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(200));
+    admission.release(new ClientID(1));
+    assertTrue(admission.admit(new ClientID(2)));
+    assertFalse(admission.admit(new ClientID(3)));
+    assertEquals(200, admission.retryAfter(new ClientID(3)));
+    //  a client refused by something else gives its slot back without skewing the wait
+    admission.cancel(new ClientID(2));
+    assertEquals(0, admission.retryAfter(new ClientID(3)));
+    assertTrue(admission.admit(new ClientID(3)));
+    assertFalse(admission.admit(new ClientID(4)));
+    assertEquals(200, admission.retryAfter(new ClientID(4)));
+  }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tc.objectserver.persistence;
+
+import com.tc.l2.ha.ClusterStateImpl;
+import com.tc.l2.ha.ConnectionIDWeightGenerator;
+import com.tc.net.ClientID;
+import com.tc.net.core.ProductID;
+import com.tc.net.groups.StripeIDStateManager;
+import com.tc.net.protocol.transport.ConnectionIDFactory;
+import com.tc.util.sequence.MutableSequence;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+public class ClientStatePersistorTest {
+  private NullPlatformPersistentStorage storage;
+
+  @Before
+  public void setUp() {
+    storage = new NullPlatformPersistentStorage();
+  }
+
+  @Test
+  public void testClientIDsLeasedInBlocks() throws Exception {
+    MutableSequence sequence = new ClientStatePersistor(storage, 10, 1024).getConnectionIDSequence();
+    for (long x = 0; x < 12; x++) {
+      assertEquals(x, sequence.next());
+    }
+    // one write per block of ten
+    assertEquals(20L, storage.loadDataElement("next_client_id.dat"));
+  }
+
+  @Test
+  public void testRestartSkipsUnusedLease() throws Exception {
+    MutableSequence sequence = new ClientStatePersistor(storage, 10, 1024).getConnectionIDSequence();
+    sequence.next();
+    sequence.next();
+    MutableSequence restarted = new ClientStatePersistor(storage, 10, 1024).getConnectionIDSequence();
+    assertEquals(10L, restarted.current());
+    assertEquals(10L, restarted.next());
+  }
+
+  @Test
+  public void testSetNextStoresExactValue() throws Exception {
+    MutableSequence sequence = new ClientStatePersistor(storage, 10, 1024).getConnectionIDSequence();
+    sequence.setNext(35);
+    assertEquals(35L, sequence.current());
+    assertEquals(35L, storage.loadDataElement("next_client_id.dat"));
+    assertEquals(35L, new ClientStatePersistor(storage, 10, 1024).getConnectionIDSequence().current());
+    // handing out IDs after it leases again
+    assertEquals(35L, sequence.next());
+    assertEquals(45L, storage.loadDataElement("next_client_id.dat"));
+  }
+
+  @Test
+  public void testActiveOutweighsLaggingPassiveAfterRestart() throws Exception {
+    NullPlatformPersistentStorage passiveStorage = new NullPlatformPersistentStorage();
+    MutableSequence active = new ClientStatePersistor(storage, 10, 1024).getConnectionIDSequence();
+    MutableSequence passive = new ClientStatePersistor(passiveStorage, 10, 1024).getConnectionIDSequence();
+    // the active bumps its next ID on activation and replicates every ID it hands out, the passive is one behind
+    active.setNext(1);
+    passive.setNext(1);
+    for (int x = 0; x < 3; x++) {
+      passive.setNext(active.next() + 1);
+    }
+    active.next();
+
+    ConnectionIDWeightGenerator activeWeight = weightOf(new ClientStatePersistor(storage, 10, 1024).getConnectionIDSequence());
+    ConnectionIDWeightGenerator passiveWeight = weightOf(new ClientStatePersistor(passiveStorage, 10, 1024).getConnectionIDSequence());
+    assertTrue(activeWeight.getWeight() > passiveWeight.getWeight());
+  }
+
+  @Test
+  public void testNewActiveOutweighsStaleActiveAfterRestart() throws Exception {
+    NullPlatformPersistentStorage passiveStorage = new NullPlatformPersistentStorage();
+    MutableSequence active = new ClientStatePersistor(storage, 64, 1024).getConnectionIDSequence();
+    ClientStatePersistor passivePersistor = new ClientStatePersistor(passiveStorage, 64, 1024);
+    MutableSequence passive = passivePersistor.getConnectionIDSequence();
+    active.setNext(1);
+    passive.setNext(1);
+    for (int x = 0; x < 10; x++) {
+      passive.setNext(active.next() + 1);
+    }
+    // the active dies holding a lease far past its last ID and the passive takes over
+    assertEquals(65L, storage.loadDataElement("next_client_id.dat"));
+    Persistor persistor = mock(Persistor.class);
+    when(persistor.getClientStatePersistor()).thenReturn(passivePersistor);
+    ConnectionIDFactory factory = mock(ConnectionIDFactory.class);
+    when(factory.getCurrentConnectionID()).thenAnswer(invocation -> passive.current());
+    new ClusterStateImpl(persistor, factory, mock(StripeIDStateManager.class)).syncActiveState();
+
+    ConnectionIDWeightGenerator staleWeight = weightOf(new ClientStatePersistor(storage, 64, 1024).getConnectionIDSequence());
+    ConnectionIDWeightGenerator newWeight = weightOf(new ClientStatePersistor(passiveStorage, 64, 1024).getConnectionIDSequence());
+    assertTrue(newWeight.getWeight() > staleWeight.getWeight());
+  }
+
+  private static ConnectionIDWeightGenerator weightOf(MutableSequence sequence) {
+    ConnectionIDFactory factory = mock(ConnectionIDFactory.class);
+    when(factory.getCurrentConnectionID()).thenAnswer(invocation -> sequence.current());
+    return new ConnectionIDWeightGenerator(factory);
+  }
+
+  @Test
+  public void testClientChangesReplayedOnRestart() throws Exception {
+    ClientStatePersistor persistor = new ClientStatePersistor(storage, 10, 1024);
+    persistor.saveClientState(new ClientID(1), ProductID.PERMANENT);
+    persistor.saveClientState(new ClientID(2), ProductID.STRIPE);
+    persistor.saveClientState(new ClientID(3), ProductID.PERMANENT);
+    persistor.deleteClientState(new ClientID(3));
+    // nothing checkpointed yet
+    assertEquals(null, storage.loadDataElement("clients_map.map"));
+
+    ClientStatePersistor restarted = new ClientStatePersistor(storage, 10, 1024);
+    assertTrue(restarted.loadPermanentClientIDs().contains(new ClientID(1)));
+    assertTrue(restarted.loadOrphanClientIDs().contains(new ClientID(2)));
+    assertFalse(restarted.containsClient(new ClientID(3)));
+  }
+
+  @Test
+  public void testCheckpointDropsChanges() throws Exception {
+    ClientStatePersistor persistor = new ClientStatePersistor(storage, 10, 3);
+    for (long x = 1; x <= 7; x++) {
+      persistor.saveClientState(new ClientID(x), ProductID.PERMANENT);
+    }
+    int deltas = 0;
+    for (String name : storage.nameToDataMap.keySet()) {
+      if (name.startsWith("clients_delta_") && !name.equals("clients_delta_base.dat")) {
+        deltas += 1;
+      }
+    }
+    assertEquals(1, deltas);
+    assertEquals(7, new ClientStatePersistor(storage, 10, 3).loadAllClientIDs().size());
+  }
+
+  @Test
+  public void testLegacyClientsMapMigrated() throws Exception {
+    ConcurrentHashMap<ClientID, Boolean> legacy = new ConcurrentHashMap<>();
+    legacy.put(new ClientID(1), true);
+    legacy.put(new ClientID(2), false);
+    storage.storeDataElement("clients_map.map", legacy);
+
+    ClientStatePersistor persistor = new ClientStatePersistor(storage, 10, 1024);
+    assertTrue(persistor.loadPermanentClientIDs().contains(new ClientID(1)));
+    assertTrue(persistor.loadOrphanClientIDs().contains(new ClientID(2)));
+    assertTrue(storage.loadDataElement("clients_map.map") instanceof byte[]);
+    assertEquals(2, new ClientStatePersistor(storage, 10, 1024).loadAllClientIDs().size());
+  }
+}
@@ -22,7 +22,14 @@ import com.tc.net.ClientID;
 import com.tc.object.EntityID;
 import com.tc.object.tx.TransactionID;
 import com.tc.test.TCTestCase;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 
 import org.junit.Assert;
 
@@ -247,4 +254,149 @@ public class EntityPersistorTest extends TCTestCase {
       // expected
     }
   }    
+
+  public void testRestartReplaysDeltas() throws Exception {
+    EntityID kept = new EntityID("test", "kept");
+    EntityID destroyed = new EntityID("test", "destroyed");
+    this.entityPersistor.entityCreated(client, 1L, 1L, kept, 1L, 1L, true, new byte[0]);
+    this.entityPersistor.entityCreated(client, 2L, 1L, destroyed, 1L, 2L, true, new byte[0]);
+    this.entityPersistor.entityReconfigureSucceeded(client, 3L, 1L, kept, 1L, new byte[3]);
+    this.entityPersistor.entityDestroyed(client, 4L, 1L, destroyed);
+
+    EntityPersistor restarted = new EntityPersistor(this.persistentStorage);
+    Assert.assertTrue(restarted.containsEntity(kept));
+    Assert.assertFalse(restarted.containsEntity(destroyed));
+    Assert.assertEquals(3, restarted.loadEntityData().iterator().next().configuration.length);
+    Assert.assertTrue(restarted.wasEntityCreatedInJournal(kept, client, 1L));
+    Assert.assertEquals(0, restarted.reconfiguredResultInJournal(kept, client, 3L).length);
+    Assert.assertTrue(restarted.wasEntityDestroyedInJournal(destroyed, client, 4L));
+  }
+
+  public void testCheckpointDropsDeltas() throws Exception {
+    EntityPersistor persistor = new EntityPersistor(this.persistentStorage, 4);
+    for (int x = 0; x < 10; x++) {
+      persistor.entityCreated(client, x + 1, 1L, new EntityID("test", "entity" + x), 1L, x + 1, true, new byte[0]);
+    }
+    // one delta for tracking the client and one per create, checkpoints after the 4th and 8th
+    Assert.assertEquals(3, countDeltas());
+
+    EntityPersistor restarted = new EntityPersistor(this.persistentStorage, 4);
+    Assert.assertEquals(10, restarted.loadEntityData().size());
+    Assert.assertTrue(restarted.wasEntityCreatedInJournal(new EntityID("test", "entity9"), client, 10L));
+  }
+
+  public void testClearDropsDeltas() throws Exception {
+    EntityID eid = new EntityID("test", "test");
+    this.entityPersistor.entityCreated(client, 1L, 1L, eid, 1L, 1L, true, new byte[0]);
+    this.entityPersistor.clear();
+    Assert.assertEquals(0, countDeltas());
+    Assert.assertFalse(new EntityPersistor(this.persistentStorage).containsEntity(eid));
+  }
+
+  public void testInterruptedClearLeavesNoDeltas() throws Exception {
+    this.persistentStorage = new NullPlatformPersistentStorage() {
+      @Override
+      public void storeDataElement(String name, Serializable element) throws IOException {
+        if (name.equals("counters.map") && element == null) {
+          throw new IOException("interrupted");
+        }
+        super.storeDataElement(name, element);
+      }
+    };
+    EntityPersistor persistor = new EntityPersistor(this.persistentStorage);
+    persistor.entityCreated(client, 1L, 1L, new EntityID("test", "test"), 1L, 1L, true, new byte[0]);
+    try {
+      persistor.clear();
+      fail();
+    } catch (RuntimeException e) {
+      // expected
+    }
+    Assert.assertEquals(0, countDeltas());
+  }
+
+  public void testLegacyStateMigrated() throws Exception {
+    EntityData.Key key = new EntityData.Key();
+    key.className = "test";
+    key.entityName = "legacy";
+    EntityData.Value value = new EntityData.Value();
+    value.className = "test";
+    value.entityName = "legacy";
+    value.version = 1L;
+    value.consumerID = 7L;
+    value.canDelete = true;
+    value.configuration = new byte[2];
+    HashMap<EntityData.Key, EntityData.Value> entities = new HashMap<>();
+    entities.put(key, value);
+    EntityData.JournalEntry entry = new EntityData.JournalEntry();
+    entry.operation = EntityData.Operation.CREATE;
+    entry.transactionID = 5L;
+    HashMap<ClientID, List<EntityData.JournalEntry>> journal = new HashMap<>();
+    journal.put(client, new ArrayList<>(Collections.singletonList(entry)));
+    HashMap<String, Long> counters = new HashMap<>();
+    counters.put("counters:consumerID", 8L);
+    NullPlatformPersistentStorage legacy = new NullPlatformPersistentStorage();
+    legacy.storeDataElement("entities_alive.map", entities);
+    legacy.storeDataElement("journal_container.map", journal);
+    legacy.storeDataElement("counters.map", counters);
+
+    EntityPersistor migrated = new EntityPersistor(legacy);
+    Assert.assertTrue(migrated.containsEntity(new EntityID("test", "legacy")));
+    Assert.assertTrue(migrated.wasEntityCreatedInJournal(new EntityID("test", "legacy"), client, 5L));
+    Assert.assertEquals(8L, migrated.getNextConsumerID());
+    Assert.assertTrue(legacy.loadDataElement("entities_alive.map") instanceof byte[]);
+    Assert.assertTrue(legacy.loadDataElement("journal_container.map") instanceof byte[]);
+    Assert.assertTrue(legacy.loadDataElement("counters.map") instanceof byte[]);
+
+    EntityPersistor restarted = new EntityPersistor(legacy);
+    Assert.assertEquals(2, restarted.loadEntityData().iterator().next().configuration.length);
+    Assert.assertEquals(9L, restarted.getNextConsumerID());
+  }
+
+  public void testSyncPayloadLayeredOnPassive() throws Exception {
+    EntityID eid = new EntityID("test", "test");
+    this.entityPersistor.entityCreated(client, 1L, 1L, eid, 1L, 1L, true, new byte[0]);
+    this.entityPersistor.entityDestroyFailed(client, 2L, 1L, ServerException.createNotFoundException(eid));
+    this.entityPersistor.setNextConsumerID(4L);
+
+    for (boolean compact : new boolean[] {false, true}) {
+      byte[] payload = this.entityPersistor.serialize(compact);
+      Assert.assertEquals(compact, PersistentStateCodec.isEncoded(payload));
+      EntityPersistor passive = new EntityPersistor(new NullPlatformPersistentStorage());
+      passive.layer(payload);
+      Assert.assertTrue(passive.wasEntityCreatedInJournal(eid, client, 1L));
+      try {
+        passive.wasEntityDestroyedInJournal(eid, client, 2L);
+        fail();
+      } catch (ServerException e) {
+        // expected
+      }
+      Assert.assertEquals(5L, passive.getNextConsumerID());
+    }
+  }
+
+  public void testLegacySyncPayloadLayeredOnPassive() throws Exception {
+    EntityData.JournalEntry entry = new EntityData.JournalEntry();
+    entry.operation = EntityData.Operation.CREATE;
+    entry.transactionID = 3L;
+    ByteArrayOutputStream raw = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(raw)) {
+      out.writeInt(1);
+      out.writeObject(client);
+      out.writeObject(new ArrayList<>(Collections.singletonList(entry)));
+      out.writeLong(6L);
+    }
+    this.entityPersistor.layer(raw.toByteArray());
+    Assert.assertTrue(this.entityPersistor.wasEntityCreatedInJournal(new EntityID("test", "test"), client, 3L));
+    Assert.assertEquals(6L, this.entityPersistor.getNextConsumerID());
+  }
+
+  private int countDeltas() {
+    int count = 0;
+    for (String name : this.persistentStorage.nameToDataMap.keySet()) {
+      if (name.startsWith("entity_delta_")) {
+        count += 1;
+      }
+    }
+    return count;
+  }
 }
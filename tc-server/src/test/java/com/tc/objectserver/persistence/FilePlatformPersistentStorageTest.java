@@ -0,0 +1,202 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tc.objectserver.persistence;
+
+import com.tc.net.ClientID;
+import com.tc.net.core.ProductID;
+import com.tc.object.tx.TransactionID;
+import com.tc.services.TerracottaServiceProviderRegistryImpl;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.terracotta.persistence.IPlatformPersistence;
+import org.terracotta.persistence.IPlatformPersistence.SequenceTuple;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+public class FilePlatformPersistentStorageTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private Path root;
+  private FilePlatformPersistentStorage storage;
+
+  @Before
+  public void setUp() throws Exception {
+    root = folder.newFolder().toPath();
+    storage = new FilePlatformPersistentStorage(root, 4096);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    storage.close();
+  }
+
+  @Test
+  public void testDataElementsSurviveRestart() throws Exception {
+    HashMap<String, Long> counters = new HashMap<>();
+    counters.put("next", 42L);
+    storage.storeDataElement("counters", counters);
+    storage.storeDataElement("gone", "value");
+    storage.storeDataElement("gone", null);
+    reopen();
+    assertEquals(counters, storage.loadDataElement("counters"));
+    assertEquals(counters, storage.loadDataElementInLoader("counters", getClass().getClassLoader()));
+    assertNull(storage.loadDataElement("gone"));
+    assertNull(storage.loadDataElement("never"));
+  }
+
+  @Test
+  public void testServerShutdownClosesStorage() throws Exception {
+    FilePlatformStorageServiceProvider provider = new FilePlatformStorageServiceProvider();
+    provider.initialize(new FilePlatformStorageProviderConfiguration(folder.newFolder().toPath(), 4096), null);
+    TerracottaServiceProviderRegistryImpl registry = new TerracottaServiceProviderRegistryImpl();
+    registry.registerExternal(provider);
+    IPlatformPersistence open = provider.getService(1L, () -> IPlatformPersistence.class);
+    registry.shutdown();
+    assertNotSame(open, provider.getService(1L, () -> IPlatformPersistence.class));
+    provider.close();
+  }
+
+  @Test
+  public void testSequencesSurviveRestart() throws Exception {
+    for (int x = 1; x <= 10; x++) {
+      storage.fastStoreSequence(1L, tuple(x, x * 2), x - 2).get();
+      storage.fastStoreSequence(2L, tuple(x, x * 3), 0L).get();
+    }
+    storage.fastStoreSequence(3L, tuple(1, 1), 0L).get();
+    storage.deleteSequence(3L);
+    reopen();
+    List<SequenceTuple> first = storage.loadSequence(1L);
+    assertEquals(3, first.size());
+    assertEquals(8L, first.get(0).localSequenceID);
+    assertEquals(20L, first.get(2).globalSequenceID);
+    assertEquals(10, storage.loadSequence(2L).size());
+    assertNull(storage.loadSequence(3L));
+  }
+
+  @Test
+  public void testConcurrentWritersShareCommits() throws Exception {
+    ExecutorService writers = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<?>> done = new ArrayList<>();
+      for (int w = 0; w < 8; w++) {
+        long index = w;
+        done.add(writers.submit(() -> {
+          for (int x = 0; x < 500; x++) {
+            storage.fastStoreSequence(index, tuple(x, x), x - 10).get();
+          }
+          return null;
+        }));
+      }
+      for (Future<?> f : done) {
+        f.get();
+      }
+    } finally {
+      writers.shutdown();
+    }
+    reopen();
+    for (long w = 0; w < 8; w++) {
+      List<SequenceTuple> sequence = storage.loadSequence(w);
+      assertEquals(11, sequence.size());
+      assertEquals(499L, sequence.get(10).localSequenceID);
+    }
+  }
+
+  @Test
+  public void testCompactionDiscardsExpiredTuples() throws Exception {
+    // many more records than fit in one 4k segment, only the last few are valid
+    for (int x = 0; x < 5000; x++) {
+      storage.fastStoreSequence(1L, tuple(x, x), x - 1);
+    }
+    storage.fastStoreSequence(1L, tuple(5000, 5000), 4999).get();
+    assertEquals(1, segmentFiles().size());
+    reopen();
+    assertEquals(2, storage.loadSequence(1L).size());
+    assertEquals(1, segmentFiles().size());
+  }
+
+  @Test
+  public void testTornRecordIsIgnored() throws Exception {
+    for (int x = 1; x <= 5; x++) {
+      storage.fastStoreSequence(1L, tuple(x, x), 0L).get();
+    }
+    storage.close();
+    Path segment = segmentFiles().get(0);
+    // the checkpoint takes two records, then the five appends, so break the last append
+    try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+      file.seek(SequenceLog.RECORD_SIZE * 6 + 12);
+      file.writeLong(-1L);
+    }
+    storage = new FilePlatformPersistentStorage(root, 4096);
+    assertEquals(4, storage.loadSequence(1L).size());
+  }
+
+  @Test
+  public void testTransactionOrderPersistorRestart() throws Exception {
+    ClientID client = new ClientID(1);
+    TransactionOrderPersistor persistor = new TransactionOrderPersistor(storage, Collections.emptySet());
+    persistor.addTrackingForClient(client, ProductID.PERMANENT);
+    for (int x = 2; x < 10; x++) {
+      persistor.updateWithNewMessage(client, new TransactionID(x), new TransactionID(x - 2)).get();
+    }
+    reopen();
+    persistor = new TransactionOrderPersistor(storage, Collections.singleton(client));
+    assertEquals(-1, persistor.getIndexToReplay(client, new TransactionID(6)));
+    assertEquals(0, persistor.getIndexToReplay(client, new TransactionID(7)));
+    assertEquals(2, persistor.getIndexToReplay(client, new TransactionID(9)));
+    assertEquals(8L, persistor.getReceivedTransactionCount());
+  }
+
+  private List<Path> segmentFiles() throws IOException {
+    List<Path> files = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(root.resolve("sequences"))) {
+      stream.forEach(files::add);
+    }
+    Collections.sort(files);
+    return files;
+  }
+
+  private void reopen() throws IOException {
+    storage.close();
+    storage = new FilePlatformPersistentStorage(root, 4096);
+  }
+
+  private static SequenceTuple tuple(long local, long global) {
+    SequenceTuple tuple = new SequenceTuple();
+    tuple.localSequenceID = local;
+    tuple.globalSequenceID = global;
+    return tuple;
+  }
+}
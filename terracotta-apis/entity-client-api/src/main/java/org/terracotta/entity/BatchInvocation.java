@@ -0,0 +1,121 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A batch of invocations presented as one invocation whose result is the list of responses, in message order.
+ * <p>
+ * Each acknowledgement is passed on once every invocation of the batch has seen it.  Failures are passed on as
+ * they happen and a batch with any failure has no result.</p>
+ *
+ * @param <R> the response type of each invocation
+ */
+final class BatchInvocation<R> implements Invocation<List<R>> {
+
+  private final List<Invocation<R>> invocations;
+
+  BatchInvocation(List<Invocation<R>> invocations) {
+    this.invocations = invocations;
+  }
+
+  @Override
+  public Task invoke(InvocationCallback<List<R>> callback, Set<InvocationCallback.Types> interests) {
+    Collector<R> collector = new Collector<>(callback, invocations.size());
+    List<Task> tasks = new ArrayList<>(invocations.size());
+    for (int x = 0; x < invocations.size(); x++) {
+      tasks.add(invocations.get(x).invoke(collector.member(x), interests));
+    }
+    return () -> {
+      boolean cancelled = true;
+      for (Task task : tasks) {
+        cancelled &= task.cancel();
+      }
+      return cancelled;
+    };
+  }
+
+  private static final class Collector<R> {
+    private final InvocationCallback<List<R>> target;
+    private final Object[] results;
+    private final AtomicIntegerArray counts = new AtomicIntegerArray(InvocationCallback.Types.values().length);
+    private volatile boolean failed;
+
+    private Collector(InvocationCallback<List<R>> target, int size) {
+      this.target = target;
+      this.results = new Object[size];
+    }
+
+    private InvocationCallback<R> member(int index) {
+      return new InvocationCallback<R>() {
+        @Override
+        public void sent() {
+          if (last(InvocationCallback.Types.SENT)) {
+            target.sent();
+          }
+        }
+
+        @Override
+        public void received() {
+          if (last(InvocationCallback.Types.RECEIVED)) {
+            target.received();
+          }
+        }
+
+        @Override
+        public void result(R response) {
+          results[index] = response;
+        }
+
+        @Override
+        public void failure(Throwable failure) {
+          failed = true;
+          target.failure(failure);
+        }
+
+        @Override
+        public void complete() {
+          if (last(InvocationCallback.Types.COMPLETE)) {
+            if (!failed) {
+              @SuppressWarnings("unchecked")
+              List<R> responses = (List<R>) (List<?>) Collections.unmodifiableList(Arrays.asList(results));
+              target.result(responses);
+            }
+            target.complete();
+          }
+        }
+
+        @Override
+        public void retired() {
+          if (last(InvocationCallback.Types.RETIRED)) {
+            target.retired();
+          }
+        }
+      };
+    }
+
+    private boolean last(InvocationCallback.Types type) {
+      return counts.incrementAndGet(type.ordinal()) == results.length;
+    }
+  }
+}
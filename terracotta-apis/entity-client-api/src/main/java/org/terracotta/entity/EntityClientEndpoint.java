@@ -17,6 +17,8 @@
 package org.terracotta.entity;
 
 import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Future;
 
 
@@ -53,6 +55,26 @@ public interface EntityClientEndpoint<M extends EntityMessage, R extends EntityR
    */
   Invocation<R> message(M message);
 
+  /**
+   * Called to create a single invocation of a batch of messages to the remote server-side entity.  The result of the
+   * invocation is the list of responses, in message order, and each acknowledgement is delivered once every message in
+   * the batch has seen it.  Implementations may send the whole batch as one network unit.
+   *
+   * @param messages the messages to send, in order
+   * @return An Invocation instance which sends the batch
+   * @throws IllegalArgumentException if {@code messages} is empty
+   */
+  default Invocation<List<R>> messages(List<M> messages) {
+    if (messages.isEmpty()) {
+      throw new IllegalArgumentException("empty batch");
+    }
+    List<Invocation<R>> invocations = new ArrayList<>(messages.size());
+    for (M message : messages) {
+      invocations.add(message(message));
+    }
+    return new BatchInvocation<>(invocations);
+  }
+
   /**
    * The instance will be unusable after this call.
    */
@@ -17,19 +17,15 @@
 package org.terracotta.entity;
 
 import java.util.Set;
-import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
-import static java.util.EnumSet.of;
 import static org.terracotta.entity.InvocationCallback.Types.COMPLETE;
-import static org.terracotta.entity.InvocationCallback.Types.FAILURE;
-import static org.terracotta.entity.InvocationCallback.Types.RECEIVED;
-import static org.terracotta.entity.InvocationCallback.Types.RESULT;
 import static org.terracotta.entity.InvocationCallback.Types.RETIRED;
-import static org.terracotta.entity.InvocationCallback.Types.SENT;
 
 /**
  * A representation of an invocation against a server-side entity.
@@ -76,77 +72,47 @@ public interface Invocation<R> {
    * @return a future that completes when the given acknowledgement is received
    */
   default Future<R> invokeAnd(InvocationCallback.Types waitFor) {
-    CompletableFuture<R> future = new CompletableFuture<>();
-
-    Task task = invoke(new InvocationCallback<R>() {
-
-      private volatile R response;
-
-      @Override
-      public void sent() {
-        notify(SENT);
-      }
-
-      @Override
-      public void received() {
-        notify(RECEIVED);
-      }
-
-      @Override
-      public void result(R response) {
-        this.response = response;
-        notify(RESULT);
-      }
-
-      @Override
-      public void complete() {
-        notify(COMPLETE);
-      }
-
-      @Override
-      public void retired() {
-        notify(RETIRED);
-      }
-
-      private void notify(Types callback) {
-        if (callback.equals(waitFor)) {
-          future.complete(response);
-        }
-      }
-
-      @Override
-      public void failure(Throwable failure) {
-        future.completeExceptionally(failure);
-      }
-    }, of(RESULT, FAILURE, waitFor));
-
-    return new Future<R>() {
-
-      @Override
-      public boolean cancel(boolean mayInterruptIfRunning) {
-        return task.cancel() && future.cancel(mayInterruptIfRunning);
-      }
-
-      @Override
-      public boolean isCancelled() {
-        return future.isCancelled();
-      }
+    return InvocationFuture.invoke(this, waitFor);
+  }
 
-      @Override
-      public boolean isDone() {
-        return future.isDone();
-      }
+  /**
+   * Sends the configured message to the server returning a stage representing the completion of the invocation.
+   *
+   * @return a stage that completes when the invocation is complete
+   * @see #invokeAsync(InvocationCallback.Types, Executor)
+   */
+  default CompletionStage<R> invokeAsync() {
+    return invokeAsync(COMPLETE);
+  }
 
-      @Override
-      public R get() throws InterruptedException, ExecutionException {
-        return future.get();
-      }
+  /**
+   * Sends the configured message to the server returning a stage representing the requested acknowledgement.
+   * <p>
+   * The stage is completed on the default asynchronous executor of {@link java.util.concurrent.CompletableFuture}, never on the thread
+   * delivering the server response.</p>
+   *
+   * @param waitFor the acknowledgement to wait for
+   * @return a stage that completes when the given acknowledgement is received
+   * @see #invokeAsync(InvocationCallback.Types, Executor)
+   */
+  default CompletionStage<R> invokeAsync(InvocationCallback.Types waitFor) {
+    return invokeAsync(waitFor, InvocationFuture.DEFAULT_EXECUTOR);
+  }
 
-      @Override
-      public R get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
-        return future.get(timeout, unit);
-      }
-    };
+  /**
+   * Sends the configured message to the server returning a stage representing the requested acknowledgement.
+   * <p>
+   * The stage is completed on the given executor so dependent actions never run on the thread delivering server
+   * responses, where a blocking action would hold up every other invocation on the connection.  The returned stage
+   * is a minimal view; it cannot be completed or cancelled by the caller.  Use {@link #invokeAnd(InvocationCallback.Types)}
+   * where the invocation may need to be cancelled.</p>
+   *
+   * @param waitFor the acknowledgement to wait for
+   * @param executor the executor completing the stage
+   * @return a stage that completes when the given acknowledgement is received
+   */
+  default CompletionStage<R> invokeAsync(InvocationCallback.Types waitFor, Executor executor) {
+    return InvocationFuture.invokeAsync(this, waitFor, executor);
   }
 
   /**
@@ -0,0 +1,131 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.terracotta.entity.InvocationCallback.Types.COMPLETE;
+import static org.terracotta.entity.InvocationCallback.Types.FAILURE;
+import static org.terracotta.entity.InvocationCallback.Types.RECEIVED;
+import static org.terracotta.entity.InvocationCallback.Types.RESULT;
+import static org.terracotta.entity.InvocationCallback.Types.RETIRED;
+import static org.terracotta.entity.InvocationCallback.Types.SENT;
+
+/**
+ * The future of an invocation which is also the callback the invocation reports to, so waiting on an invoke costs
+ * a single object.
+ *
+ * @param <R> the returned response type
+ */
+final class InvocationFuture<R> extends CompletableFuture<R> implements InvocationCallback<R> {
+
+  private static final Map<Types, Set<Types>> INTERESTS = new EnumMap<>(Types.class);
+
+  static {
+    for (Types waitFor : Types.values()) {
+      INTERESTS.put(waitFor, Collections.unmodifiableSet(EnumSet.of(RESULT, FAILURE, waitFor)));
+    }
+  }
+
+  // the executor CompletableFuture uses for its own async methods
+  static final Executor DEFAULT_EXECUTOR = new CompletableFuture<Void>().defaultExecutor();
+
+  private final Types waitFor;
+  private volatile R response;
+  private volatile Invocation.Task task;
+
+  private InvocationFuture(Types waitFor) {
+    this.waitFor = waitFor;
+  }
+
+  static <R> InvocationFuture<R> invoke(Invocation<R> invocation, Types waitFor) {
+    InvocationFuture<R> future = new InvocationFuture<>(waitFor);
+    future.task = invocation.invoke(future, INTERESTS.get(waitFor));
+    return future;
+  }
+
+  static <R> CompletionStage<R> invokeAsync(Invocation<R> invocation, Types waitFor, Executor executor) {
+    CompletableFuture<R> stage = new CompletableFuture<>();
+    invoke(invocation, waitFor).whenComplete((response, failure) -> {
+      Runnable completion = () -> {
+        if (failure == null) {
+          stage.complete(response);
+        } else {
+          stage.completeExceptionally(failure);
+        }
+      };
+      try {
+        executor.execute(completion);
+      } catch (RejectedExecutionException rejected) {
+        // the executor is shutting down, completing here is better than never completing
+        completion.run();
+      }
+    });
+    return stage.minimalCompletionStage();
+  }
+
+  @Override
+  public void sent() {
+    notify(SENT);
+  }
+
+  @Override
+  public void received() {
+    notify(RECEIVED);
+  }
+
+  @Override
+  public void result(R response) {
+    this.response = response;
+    notify(RESULT);
+  }
+
+  @Override
+  public void complete() {
+    notify(COMPLETE);
+  }
+
+  @Override
+  public void retired() {
+    notify(RETIRED);
+  }
+
+  private void notify(Types callback) {
+    if (callback == waitFor) {
+      complete(response);
+    }
+  }
+
+  @Override
+  public void failure(Throwable failure) {
+    completeExceptionally(failure);
+  }
+
+  @Override
+  public boolean cancel(boolean mayInterruptIfRunning) {
+    Invocation.Task current = task;
+    return current != null && current.cancel() && super.cancel(mayInterruptIfRunning);
+  }
+}
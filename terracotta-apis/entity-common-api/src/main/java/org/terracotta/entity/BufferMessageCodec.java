@@ -0,0 +1,113 @@
+/*
+ * Copyright Terracotta, Inc.
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity;
+
+import java.nio.ByteBuffer;
+
+/**
+ *
+ * A BufferMessageCodec is a {@link MessageCodec} that can encode into and decode from {@link ByteBuffer}s directly,
+ * allowing the platform to hand payloads between the codec and the network without intermediate byte[] copies.
+ * <p>
+ * The platform uses the buffer methods whenever the codec provided by an entity implements this interface and falls back
+ * to the byte[] methods otherwise.  The byte[] methods are implemented here in terms of the buffer methods so an
+ * implementation only needs to provide the buffer variants.
+ * <p>
+ * The same statelessness requirements as {@link MessageCodec} apply.  In addition, buffers passed to the decode methods
+ * are read-only views over platform owned memory which are only valid for the duration of the call.  Any data needed
+ * after decode returns must be copied out of the buffer.
+ *
+ * @param <M> An {@link EntityMessage} to be encoded/decoded
+ * @param <R> An {@link EntityResponse} to be encoded/decoded
+ */
+public interface BufferMessageCodec<M extends EntityMessage, R extends EntityResponse> extends MessageCodec<M, R> {
+
+  /**
+   * Encodes the given {@link EntityMessage} object into a buffer which can be passed over the wire.  The encoded data
+   * is the content between the position and the limit of the returned buffer.  The platform takes ownership of the
+   * returned buffer and the codec must not modify it afterwards.
+   *
+   * @param message The request object to be encoded
+   * @return The buffer containing the encoded data
+   * @throws MessageCodecException The message could not be serialized or was considered invalid.
+   */
+  ByteBuffer encodeMessageToBuffer(M message) throws MessageCodecException;
+
+  /**
+   * Decodes the content between the position and the limit of the given buffer into a high-level {@link EntityMessage}
+   * instance
+   *
+   * @param payload A read-only view of the raw wire message
+   * @return A high-level message instance
+   * @throws MessageCodecException The message could not be deserialized or was considered invalid.
+   */
+  M decodeMessage(ByteBuffer payload) throws MessageCodecException;
+
+  /**
+   * Encodes a given {@link EntityResponse} object into a buffer which can be passed over the wire.  The encoded data
+   * is the content between the position and the limit of the returned buffer.
+   *
+   * @param response The response object to be encoded
+   * @return The buffer containing the encoded data
+   * @throws MessageCodecException The message could not be serialized or was considered invalid.
+   */
+  ByteBuffer encodeResponseToBuffer(R response) throws MessageCodecException;
+
+  /**
+   * Decodes the content between the position and the limit of the given buffer into a high-level {@link EntityResponse}
+   * instance
+   *
+   * @param payload A read-only view of the raw wire message
+   * @return A high-level message instance
+   * @throws MessageCodecException The message could not be deserialized or was considered invalid.
+   */
+  R decodeResponse(ByteBuffer payload) throws MessageCodecException;
+
+  @Override
+  default byte[] encodeMessage(M message) throws MessageCodecException {
+    return toArray(encodeMessageToBuffer(message));
+  }
+
+  @Override
+  default M decodeMessage(byte[] payload) throws MessageCodecException {
+    return decodeMessage(ByteBuffer.wrap(payload).asReadOnlyBuffer());
+  }
+
+  @Override
+  default byte[] encodeResponse(R response) throws MessageCodecException {
+    return toArray(encodeResponseToBuffer(response));
+  }
+
+  @Override
+  default R decodeResponse(byte[] payload) throws MessageCodecException {
+    return decodeResponse(ByteBuffer.wrap(payload).asReadOnlyBuffer());
+  }
+
+  /**
+   * Copies the remaining content of the buffer into an array, returning the backing array
+   * directly when it exactly matches the content.
+   */
+  static byte[] toArray(ByteBuffer buffer) {
+    if (buffer.hasArray() && !buffer.isReadOnly() && buffer.arrayOffset() == 0 && buffer.position() == 0
+        && buffer.remaining() == buffer.array().length) {
+      return buffer.array();
+    }
+    byte[] data = new byte[buffer.remaining()];
+    buffer.duplicate().get(data);
+    return data;
+  }
+}
@@ -16,6 +16,7 @@
  */
 package org.terracotta.entity;
 
+import java.nio.ByteBuffer;
 
 /**
  * <p>The methods specifically supported by passive entities.  Note that a passive doesn't know anything about
@@ -91,4 +92,18 @@ public interface PassiveServerEntity<M extends EntityMessage, R extends EntityRe
    *  where this call is executed.</p>
    */
   void endSyncConcurrencyKey(int concurrencyKey);
+
+  /**
+   * <p>Called on concurrencyKey with the next chunk of a snapshot the active streamed through
+   *  {@link PassiveSynchronizationChannel#openSnapshot()}.  Chunks arrive in the order they were written, between
+   *  {@link #startSyncConcurrencyKey(int)} and {@link #endSyncConcurrencyKey(int)}, and a chunk boundary has no meaning
+   *  to the entity.</p>
+   * <p>The buffer is only valid for the duration of the call.</p>
+   *
+   * @param concurrencyKey the key being synchronized
+   * @param chunk the next bytes of the snapshot
+   */
+  default void synchronizeSnapshot(int concurrencyKey, ByteBuffer chunk) {
+    throw new UnsupportedOperationException("snapshot synchronization is not supported");
+  }
 }
@@ -16,6 +16,8 @@
  */
 package org.terracotta.entity;
 
+import java.io.OutputStream;
+
 /**
  * The interface which describes the abstraction over the channel which sends message payloads to the passive version of an
  * entity, on a passive server in the stripe.
@@ -33,4 +35,22 @@ public interface PassiveSynchronizationChannel<M extends EntityMessage> {
    * @param message The entity-specific EntityMessage to send.
    */
   public void synchronizeToPassive(M message);
+
+  /**
+   * Opens a stream for an opaque binary snapshot of the state under this concurrency key, as an alternative to sending
+   * the state one message at a time.  The bytes written are cut into chunks and delivered, in order, to
+   * {@link PassiveServerEntity#synchronizeSnapshot(int, java.nio.ByteBuffer)} on the passive.  Chunks are sent
+   * without waiting for each one to be received, a bounded number are kept in flight.  Closing the stream sends the
+   * last chunk and waits until the passive has received every chunk.
+   * <p>
+   * Snapshots can only be streamed from {@link ActiveServerEntity#synchronizeKeyToPassive(PassiveSynchronizationChannel, int)}
+   * and may be mixed with calls to {@link #synchronizeToPassive(EntityMessage)} once the stream is closed.
+   *
+   * @return a stream for the snapshot of this concurrency key
+   * @throws UnsupportedOperationException if the server cannot stream snapshots or the passives are not known to
+   *        receive them, the entity should fall back to {@link #synchronizeToPassive(EntityMessage)}
+   */
+  default OutputStream openSnapshot() {
+    throw new UnsupportedOperationException("snapshot synchronization is not supported");
+  }
 }
@@ -0,0 +1,84 @@
+/*
+ * Copyright IBM Corp. 2024, 2026
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.tripwire;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+/**
+ * Latency percentiles of a SEDA Stage
+ */
+@Category("Tripwire")
+@Period("1 s")
+@Label("Stage Latency")
+@StackTrace(false)
+class StageLatencyEvent extends Event implements org.terracotta.tripwire.Event {
+
+  private final String stage;
+  private long count;
+  @Label("Queued p50")
+  @Timespan(Timespan.NANOSECONDS)
+  private long queuedP50;
+  @Label("Queued p99")
+  @Timespan(Timespan.NANOSECONDS)
+  private long queuedP99;
+  @Label("Queued p99.9")
+  @Timespan(Timespan.NANOSECONDS)
+  private long queuedP999;
+  @Label("Queued Max")
+  @Timespan(Timespan.NANOSECONDS)
+  private long queuedMax;
+  @Label("Executed p50")
+  @Timespan(Timespan.NANOSECONDS)
+  private long executedP50;
+  @Label("Executed p99")
+  @Timespan(Timespan.NANOSECONDS)
+  private long executedP99;
+  @Label("Executed p99.9")
+  @Timespan(Timespan.NANOSECONDS)
+  private long executedP999;
+  @Label("Executed Max")
+  @Timespan(Timespan.NANOSECONDS)
+  private long executedMax;
+
+  StageLatencyEvent(String stage)  {
+    this.stage = stage;
+  }
+
+  void setStats(StageLatency latency) {
+    this.count = latency.getCount();
+    this.queuedP50 = latency.getQueued(50);
+    this.queuedP99 = latency.getQueued(99);
+    this.queuedP999 = latency.getQueued(99.9);
+    this.queuedMax = latency.getQueued(100);
+    this.executedP50 = latency.getExecuted(50);
+    this.executedP99 = latency.getExecuted(99);
+    this.executedP999 = latency.getExecuted(99.9);
+    this.executedMax = latency.getExecuted(100);
+  }
+
+  boolean hasCount() {
+    return count > 0;
+  }
+
+  @Override
+  public void setDescription(String description) {
+
+  }
+}
@@ -16,6 +16,7 @@
 package org.terracotta.tripwire;
 
 import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 import jdk.jfr.FlightRecorder;
 
 
@@ -28,6 +29,7 @@ class StageMonitorImpl implements StageMonitor {
   private volatile StageEvent event;
   private volatile int min = Integer.MAX_VALUE;
   private volatile int max = 0;
+  private final Runnable latencies;
 
   private final Runnable runnable = ()-> {
       StageEvent e = newEvent();
@@ -42,8 +44,19 @@ class StageMonitorImpl implements StageMonitor {
     };
 
   StageMonitorImpl(String target, int threads) {
+    this(target, threads, null);
+  }
+
+  StageMonitorImpl(String target, int threads, Supplier<StageLatency> latency) {
     this.stage = target;
     this.threads = threads;
+    this.latencies = (latency == null) ? null : ()-> {
+      StageLatencyEvent e = new StageLatencyEvent(stage);
+      e.setStats(latency.get());
+      if (e.hasCount()) {
+        e.commit();
+      }
+    };
   }
   
   private StageEvent newEvent() {
@@ -72,10 +85,16 @@ class StageMonitorImpl implements StageMonitor {
   @Override
   public void register() {
     FlightRecorder.addPeriodicEvent(StageEvent.class, runnable);
+    if (latencies != null) {
+      FlightRecorder.addPeriodicEvent(StageLatencyEvent.class, latencies);
+    }
   }
 
   @Override
   public void unregister() {
     FlightRecorder.removePeriodicEvent(runnable);
+    if (latencies != null) {
+      FlightRecorder.removePeriodicEvent(latencies);
+    }
   }
 }
@@ -68,7 +68,11 @@ public class TripwireFactory {
   }
   
   public static org.terracotta.tripwire.StageMonitor createStageMonitor(String stage, int threads) {
-    return (ENABLED) ? new StageMonitorImpl(stage, threads) : new StageMonitor() {
+    return createStageMonitor(stage, threads, null);
+  }
+
+  public static org.terracotta.tripwire.StageMonitor createStageMonitor(String stage, int threads, Supplier<StageLatency> latency) {
+    return (ENABLED) ? new StageMonitorImpl(stage, threads, latency) : new StageMonitor() {
       @Override
       public void eventOccurred(int backlog, long value) {
       }